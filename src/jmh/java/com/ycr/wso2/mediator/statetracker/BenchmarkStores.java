@@ -0,0 +1,88 @@
+package com.ycr.wso2.mediator.statetracker;
+
+import org.h2.jdbcx.JdbcDataSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Creates the stores and key sets shared by the benchmarks
+ */
+final class BenchmarkStores {
+
+    private BenchmarkStores() {
+    }
+
+    /**
+     * @param type StatusManagerType name; DATABASE runs against an embedded H2 database
+     */
+    static ProcessStatusManager create(String type) {
+        switch (StatusManagerType.fromString(type)) {
+            case IN_MEMORY:
+                return new InMemoryProcessStatusManager(InMemoryStoreConfig.fromSystemProperties());
+            case OFF_HEAP:
+                return new OffHeapProcessStatusManager(OffHeapStoreConfig.fromSystemProperties());
+            case COMPACT:
+                return new CompactProcessStatusManager(CompactStoreConfig.fromSystemProperties());
+            case DATABASE:
+                DatabaseStoreConfig config = DatabaseStoreConfig.fromSystemProperties();
+                config.setDataSource(h2DataSource());
+                return new DatabaseProcessStatusManager(config);
+            default:
+                throw new IllegalArgumentException("No benchmark store for type " + type);
+        }
+    }
+
+    /**
+     * Distinct process IDs shaped like real ones, created up front so that the
+     * measured code does not allocate them
+     */
+    static String[] keys(int count) {
+        String[] keys = new String[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = "order-" + (100000 + i);
+        }
+        return keys;
+    }
+
+    /**
+     * Start every key so that reads hit and writes replace existing entries
+     */
+    static void populate(ProcessStatusManager manager, String[] keys, long expiryTimeMillis) {
+        List<String> batch = new ArrayList<>(1000);
+        for (String key : keys) {
+            batch.add(key);
+            if (batch.size() == 1000) {
+                manager.startProcesses(batch, expiryTimeMillis, false, null);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            manager.startProcesses(batch, expiryTimeMillis, false, null);
+        }
+    }
+
+    private static JdbcDataSource h2DataSource() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:statetracker-benchmark-" + System.nanoTime() + ";DB_CLOSE_DELAY=-1");
+        try (InputStream in = BenchmarkStores.class.getResourceAsStream("/dbscripts/h2.sql");
+             Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            String script = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            for (String sql : script.split(";")) {
+                if (!sql.trim().isEmpty()) {
+                    statement.execute(sql);
+                }
+            }
+        } catch (IOException | SQLException e) {
+            throw new IllegalStateException("Cannot create the benchmark database", e);
+        }
+        return dataSource;
+    }
+}
@@ -0,0 +1,82 @@
+package com.ycr.wso2.mediator.statetracker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of a full process lifecycle: START_PROCESS, IS_PROCESS_RUNNING, STOP_PROCESS
+ *
+ * Unlike StatusManagerBenchmark, every invocation inserts and deletes, which is the
+ * write path of a database backed store and the slot reuse path of the off-heap
+ * table. Each invocation counts as three operations.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LifecycleBenchmark {
+
+    @Param({ "IN_MEMORY", "OFF_HEAP", "DATABASE" })
+    public String type;
+
+    @Param({ "100" })
+    public int keyCount;
+
+    private ProcessStatusManager manager;
+    private String[] keys;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        manager = BenchmarkStores.create(type);
+        keys = BenchmarkStores.keys(keyCount);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        manager.shutdown();
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        final SplittableRandom random = new SplittableRandom();
+    }
+
+    @Benchmark
+    @Threads(1)
+    @OperationsPerInvocation(3)
+    public boolean singleThread(ThreadState state) {
+        return lifecycle(state);
+    }
+
+    @Benchmark
+    @Threads(4)
+    @OperationsPerInvocation(3)
+    public boolean fourThreads(ThreadState state) {
+        return lifecycle(state);
+    }
+
+    private boolean lifecycle(ThreadState state) {
+        String key = keys[state.random.nextInt(keyCount)];
+        manager.startProcess(key, TimeUnit.MINUTES.toMillis(1), false, null);
+        boolean running = manager.isProcessRunning(key);
+        return manager.stopProcess(key) & running;
+    }
+}
@@ -0,0 +1,103 @@
+package com.ycr.wso2.mediator.statetracker;
+
+import org.apache.synapse.MessageContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of StateTrackerMediator.mediate, including property handling and the lock table
+ *
+ * The MessageContext is the test stub backed by a HashMap; its proxy dispatch adds a
+ * small constant cost and allocation per property access that is the same for every
+ * backend and locking change.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MediatorBenchmark {
+
+    @Param({ "IN_MEMORY", "DATABASE" })
+    public String type;
+
+    @Param({ "1", "1000000" })
+    public int keyCount;
+
+    @Param({ "100", "90", "50" })
+    public int readPercent;
+
+    private ProcessStatusManager manager;
+    private StateTrackerMediator mediator;
+    private String[] keys;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        manager = BenchmarkStores.create(type);
+        mediator = new StateTrackerMediator(manager);
+        keys = BenchmarkStores.keys(keyCount);
+        BenchmarkStores.populate(manager, keys, TimeUnit.HOURS.toMillis(1));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        manager.shutdown();
+    }
+
+    /**
+     * One message context per thread, reused for every call like a flow reuses its message
+     */
+    @State(Scope.Thread)
+    public static class ThreadState {
+        final SplittableRandom random = new SplittableRandom();
+        final MessageContext messageContext = MessageContextStub.create();
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            messageContext.setProperty(Contants.STATE_EXPIRY_TIME_PROPERTY, "3600");
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean singleThread(ThreadState state) {
+        return mediate(state);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean fourThreads(ThreadState state) {
+        return mediate(state);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public boolean allThreads(ThreadState state) {
+        return mediate(state);
+    }
+
+    private boolean mediate(ThreadState state) {
+        String key = keys[keyCount == 1 ? 0 : state.random.nextInt(keyCount)];
+        boolean read = state.random.nextInt(100) < readPercent;
+        state.messageContext.setProperty(Contants.STATE_TRACKER_OPERATION_PROPERTY,
+                read ? "IS_PROCESS_RUNNING" : "START_PROCESS");
+        state.messageContext.setProperty(Contants.PROCESS_IDENTIFIER_PROPERTY, key);
+        return mediator.mediate(state.messageContext);
+    }
+}
@@ -0,0 +1,100 @@
+package com.ycr.wso2.mediator.statetracker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Warm start time of the in-memory store from a ProcessSnapshot
+ *
+ * The snapshot is written once per trial with entryCount processes, expiredPercent
+ * of which have expired by the time it is loaded. load measures reading the file
+ * into the presized map; warmStart also includes building a store around it
+ * (expiry wheel scheduling and capacity accounting).
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = { "-Xms6g", "-Xmx6g" })
+@State(Scope.Benchmark)
+public class SnapshotBenchmark {
+
+    @Param({ "10000000" })
+    public int entryCount;
+
+    @Param({ "0", "50" })
+    public int expiredPercent;
+
+    private Path file;
+    private ProcessClock previousClock;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        file = Files.createTempFile("state-tracker-snapshot", ".bin");
+        long now = ProcessClocks.millis();
+        long hour = TimeUnit.HOURS.toMillis(1);
+        ProcessSnapshot snapshot = new ProcessSnapshot(file, 0);
+        // Generated on the fly so that the trial does not hold the entries twice
+        snapshot.open(() -> new Iterator<ProcessStateEntry>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < entryCount;
+            }
+
+            @Override
+            public ProcessStateEntry next() {
+                int i = next++;
+                // Expiring a minute after the write, before the loads run
+                long expiry = i % 100 < expiredPercent ? hour + TimeUnit.MINUTES.toMillis(1) : 2 * hour;
+                return new ProcessStateEntry("order-" + (100000 + i), now - hour, expiry);
+            }
+        });
+        snapshot.write();
+        previousClock = ProcessClocks.setClock(new ManualClock(now + TimeUnit.MINUTES.toMillis(2)));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        ProcessClocks.setClock(previousClock);
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public int load() throws IOException {
+        return new ProcessSnapshot(file, 0).load(ProcessClocks.millis()).size();
+    }
+
+    @Benchmark
+    public int warmStart() {
+        InMemoryStoreConfig config = InMemoryStoreConfig.fromSystemProperties();
+        config.setJournalDirectory(null);
+        config.setSnapshotFile(file.toString());
+        config.setSnapshotIntervalMillis(0);
+        InMemoryProcessStatusManager manager = new InMemoryProcessStatusManager(config);
+        int size = manager.size();
+        // Only stop the background threads, the final snapshot would overwrite the benchmark file
+        if (manager.getExpiryWheel() != null) {
+            manager.getExpiryWheel().shutdown();
+        }
+        return size;
+    }
+}
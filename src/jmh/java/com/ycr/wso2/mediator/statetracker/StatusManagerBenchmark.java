@@ -0,0 +1,95 @@
+package com.ycr.wso2.mediator.statetracker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the ProcessStatusManager implementations called directly
+ *
+ * Each operation picks a random key; readPercent of them are IS_PROCESS_RUNNING
+ * style queries and the rest restart the process. keyCount 1 measures a single hot
+ * key, larger counts measure a store that does not fit in the CPU caches.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StatusManagerBenchmark {
+
+    @Param({ "IN_MEMORY", "OFF_HEAP", "COMPACT", "DATABASE" })
+    public String type;
+
+    @Param({ "1", "1000000" })
+    public int keyCount;
+
+    @Param({ "100", "90", "50" })
+    public int readPercent;
+
+    private ProcessStatusManager manager;
+    private String[] keys;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        manager = BenchmarkStores.create(type);
+        keys = BenchmarkStores.keys(keyCount);
+        BenchmarkStores.populate(manager, keys, TimeUnit.HOURS.toMillis(1));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        manager.shutdown();
+    }
+
+    /**
+     * Per-thread random source and reusable query view
+     */
+    @State(Scope.Thread)
+    public static class ThreadState {
+        final SplittableRandom random = new SplittableRandom();
+        final ProcessStatusView view = new ProcessStatusView();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean singleThread(ThreadState state) {
+        return operation(state);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean fourThreads(ThreadState state) {
+        return operation(state);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public boolean allThreads(ThreadState state) {
+        return operation(state);
+    }
+
+    private boolean operation(ThreadState state) {
+        String key = keys[keyCount == 1 ? 0 : state.random.nextInt(keyCount)];
+        if (state.random.nextInt(100) < readPercent) {
+            return manager.queryProcess(key, state.view);
+        }
+        manager.startProcess(key, TimeUnit.HOURS.toMillis(1), false, null);
+        return true;
+    }
+}
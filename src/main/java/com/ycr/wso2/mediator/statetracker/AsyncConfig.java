@@ -0,0 +1,79 @@
+package com.ycr.wso2.mediator.statetracker;
+
+/**
+ * Settings for AsyncOperationExecutor
+ *
+ * Defaults can be overridden with JVM system properties prefixed with
+ * "statetracker.async.", see {@link #fromSystemProperties()}.
+ */
+public class AsyncConfig {
+
+    public static final int DEFAULT_THREADS = 64;
+    public static final int DEFAULT_MAX_PENDING = 10000;
+    public static final long DEFAULT_SHUTDOWN_TIMEOUT_MILLIS = 30000;
+
+    private boolean virtualThreads = true;
+    private int threads = DEFAULT_THREADS;
+    private int maxPending = DEFAULT_MAX_PENDING;
+    private long shutdownTimeoutMillis = DEFAULT_SHUTDOWN_TIMEOUT_MILLIS;
+
+    /**
+     * Read settings from system properties, falling back to the defaults
+     */
+    public static AsyncConfig fromSystemProperties() {
+        AsyncConfig config = new AsyncConfig();
+        config.setVirtualThreads(Boolean.parseBoolean(
+                System.getProperty("statetracker.async.virtualThreads", "true")));
+        config.setThreads(Integer.getInteger("statetracker.async.threads", DEFAULT_THREADS));
+        config.setMaxPending(Integer.getInteger("statetracker.async.maxPending", DEFAULT_MAX_PENDING));
+        config.setShutdownTimeoutMillis(Long.getLong("statetracker.async.shutdownTimeoutMillis",
+                DEFAULT_SHUTDOWN_TIMEOUT_MILLIS));
+        return config;
+    }
+
+    /**
+     * Run operations on virtual threads when the JVM supports them (Java 21+),
+     * otherwise on a pool of {@link #getThreads()} platform threads
+     */
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    public void setVirtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+    }
+
+    /**
+     * Size of the platform thread pool
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * Operations queued or running at once; beyond this the operation runs on the
+     * calling worker thread instead
+     */
+    public int getMaxPending() {
+        return maxPending;
+    }
+
+    public void setMaxPending(int maxPending) {
+        this.maxPending = maxPending;
+    }
+
+    /**
+     * How long shutdown waits for queued operations to finish
+     */
+    public long getShutdownTimeoutMillis() {
+        return shutdownTimeoutMillis;
+    }
+
+    public void setShutdownTimeoutMillis(long shutdownTimeoutMillis) {
+        this.shutdownTimeoutMillis = shutdownTimeoutMillis;
+    }
+}
@@ -0,0 +1,191 @@
+package com.ycr.wso2.mediator.statetracker;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs state tracker operations off the Synapse worker threads
+ *
+ * Operations on the same process ID run one after another in submission order:
+ * each ID with pending operations has a queue, and only the task that created the
+ * queue drains it. Operations without an ID (batches) run unordered. Nothing
+ * blocks a submitter; when maxPending operations are outstanding, submit returns
+ * false and the caller runs the operation itself. An operation for an ID that
+ * already has a queue is always queued, so it cannot overtake the ones before it.
+ */
+public class AsyncOperationExecutor {
+
+    private static final Log log = LogFactory.getLog(AsyncOperationExecutor.class);
+
+    private final ExecutorService executor;
+    private final AsyncConfig config;
+    private final boolean virtualThreads;
+
+    // Pending operations per process ID, only mutated inside compute calls
+    private final ConcurrentHashMap<String, ArrayDeque<Runnable>> queues = new ConcurrentHashMap<>();
+    private final AtomicInteger pending = new AtomicInteger();
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    public AsyncOperationExecutor(AsyncConfig config) {
+        if (config.getMaxPending() <= 0) {
+            throw new IllegalArgumentException("Max pending operations must be positive: " + config.getMaxPending());
+        }
+        this.config = config;
+        ExecutorService virtual = config.isVirtualThreads() ? newVirtualThreadExecutor() : null;
+        this.virtualThreads = virtual != null;
+        this.executor = virtual != null ? virtual : newThreadPool(config.getThreads());
+    }
+
+    /**
+     * Shared executor used by State Tracker Mediator instances in async mode
+     */
+    public static AsyncOperationExecutor getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Queue an operation behind the pending operations of the same process ID
+     *
+     * @param processId ordering key, null to run unordered
+     * @return false if too many operations are pending and the task was not queued
+     */
+    public boolean submit(String processId, Runnable task) {
+        if (processId != null) {
+            // Not counted against maxPending, running it on the caller would break the order
+            boolean[] appended = new boolean[1];
+            queues.computeIfPresent(processId, (key, queue) -> {
+                pending.incrementAndGet();
+                queue.add(task);
+                appended[0] = true;
+                return queue;
+            });
+            if (appended[0]) {
+                submitted.increment();
+                return true;
+            }
+        }
+
+        if (pending.incrementAndGet() > config.getMaxPending()) {
+            pending.decrementAndGet();
+            rejected.increment();
+            return false;
+        }
+        submitted.increment();
+
+        if (processId == null) {
+            executor.execute(() -> run(task));
+            return true;
+        }
+
+        boolean[] created = new boolean[1];
+        queues.compute(processId, (key, queue) -> {
+            if (queue == null) {
+                queue = new ArrayDeque<>(4);
+                created[0] = true;
+            }
+            queue.add(task);
+            return queue;
+        });
+        if (created[0]) {
+            executor.execute(() -> drain(processId));
+        }
+        return true;
+    }
+
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    public int getPendingCount() {
+        return pending.get();
+    }
+
+    public long getSubmittedCount() {
+        return submitted.sum();
+    }
+
+    /**
+     * Operations run by the caller because maxPending was reached
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(config.getShutdownTimeoutMillis(), TimeUnit.MILLISECONDS)) {
+                log.warn(pending.get() + " state tracker operations did not complete before shutdown");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void drain(String processId) {
+        Runnable[] next = new Runnable[1];
+        while (true) {
+            // The queue is removed when empty, so the next submit starts a new drain
+            queues.computeIfPresent(processId, (key, queue) -> {
+                next[0] = queue.poll();
+                return next[0] != null ? queue : null;
+            });
+            if (next[0] == null) {
+                return;
+            }
+            run(next[0]);
+        }
+    }
+
+    private void run(Runnable task) {
+        try {
+            task.run();
+        } catch (Throwable t) {
+            log.error("Error in asynchronous state tracker operation", t);
+        } finally {
+            pending.decrementAndGet();
+        }
+    }
+
+    /**
+     * Executors.newVirtualThreadPerTaskExecutor(), looked up reflectively so the
+     * mediator still runs on Java 17
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) java.util.concurrent.Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            log.debug("Virtual threads are not available, using a thread pool");
+            return null;
+        }
+    }
+
+    private static ExecutorService newThreadPool(int threads) {
+        AtomicInteger count = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    Thread thread = new Thread(r, "state-tracker-async-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    private static final class Holder {
+        private static final AsyncOperationExecutor INSTANCE =
+                new AsyncOperationExecutor(AsyncConfig.fromSystemProperties());
+    }
+}
@@ -0,0 +1,127 @@
+package com.ycr.wso2.mediator.statetracker;
+
+import org.apache.axiom.om.OMElement;
+import org.apache.axiom.soap.SOAPBody;
+import org.apache.axiom.soap.SOAPEnvelope;
+import org.apache.synapse.MessageContext;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Reads the process IDs of a batch operation
+ *
+ * The PROCESS_IDENTIFIERS property may hold a collection, an array, a comma or
+ * line separated string, or a JSON array string. Without the property, the text of
+ * every leaf element under the first element of the message body is used, which
+ * covers both XML lists and JSON arrays (e.g. {"ids":["a","b"]}). Duplicate and
+ * empty IDs are dropped, the order of first occurrence is kept.
+ */
+final class BatchProcessIds {
+
+    private BatchProcessIds() {
+    }
+
+    static List<String> read(MessageContext messageContext) {
+        Set<String> processIds = new LinkedHashSet<>();
+        Object property = messageContext.getProperty(Contants.PROCESS_IDENTIFIERS_PROPERTY);
+        if (property != null) {
+            addAll(processIds, property);
+        } else {
+            addFromPayload(processIds, messageContext.getEnvelope());
+        }
+        return new ArrayList<>(processIds);
+    }
+
+    private static void addAll(Set<String> processIds, Object value) {
+        if (value instanceof Collection) {
+            for (Object item : (Collection<?>) value) {
+                add(processIds, item);
+            }
+        } else if (value instanceof Object[]) {
+            for (Object item : (Object[]) value) {
+                add(processIds, item);
+            }
+        } else {
+            String text = value.toString().trim();
+            if (text.startsWith("[")) {
+                addJsonArray(processIds, text);
+            } else {
+                for (String item : text.split("[,\\r\\n]+")) {
+                    add(processIds, item);
+                }
+            }
+        }
+    }
+
+    private static void add(Set<String> processIds, Object item) {
+        if (item != null) {
+            String processId = item.toString().trim();
+            if (!processId.isEmpty()) {
+                processIds.add(processId);
+            }
+        }
+    }
+
+    /**
+     * Parse a flat JSON array of strings and numbers
+     */
+    private static void addJsonArray(Set<String> processIds, String json) {
+        int end = json.lastIndexOf(']');
+        if (end < 0) {
+            throw new IllegalArgumentException("Unterminated JSON array of process IDs");
+        }
+        StringBuilder item = new StringBuilder();
+        int i = 1;
+        while (i < end) {
+            char c = json.charAt(i++);
+            if (c == '"') {
+                while (i < end && (c = json.charAt(i++)) != '"') {
+                    if (c == '\\' && i < end) {
+                        c = json.charAt(i++);
+                        if (c == 'u' && i + 4 <= end) {
+                            c = (char) Integer.parseInt(json.substring(i, i + 4), 16);
+                            i += 4;
+                        } else if (c == 'n') {
+                            c = '\n';
+                        } else if (c == 't') {
+                            c = '\t';
+                        } else if (c == 'r') {
+                            c = '\r';
+                        }
+                    }
+                    item.append(c);
+                }
+            } else if (c == ',') {
+                add(processIds, item);
+                item.setLength(0);
+            } else if (!Character.isWhitespace(c)) {
+                item.append(c);
+            }
+        }
+        add(processIds, item);
+    }
+
+    private static void addFromPayload(Set<String> processIds, SOAPEnvelope envelope) {
+        SOAPBody body = envelope != null ? envelope.getBody() : null;
+        OMElement list = body != null ? body.getFirstElement() : null;
+        if (list != null) {
+            addLeafText(processIds, list);
+        }
+    }
+
+    private static void addLeafText(Set<String> processIds, OMElement element) {
+        Iterator<?> children = element.getChildElements();
+        if (!children.hasNext()) {
+            add(processIds, element.getText());
+            return;
+        }
+        while (children.hasNext()) {
+            addLeafText(processIds, (OMElement) children.next());
+        }
+    }
+}
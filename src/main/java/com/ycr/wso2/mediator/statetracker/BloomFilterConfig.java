@@ -0,0 +1,100 @@
+package com.ycr.wso2.mediator.statetracker;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Settings for BloomFilterProcessStatusManager
+ *
+ * The filter is off unless at least one backend type is listed. Defaults can be
+ * overridden with JVM system properties prefixed with "statetracker.bloom.", see
+ * {@link #fromSystemProperties()}.
+ */
+public class BloomFilterConfig {
+
+    public static final long DEFAULT_EXPECTED_ENTRIES = 1000000;
+    public static final double DEFAULT_FALSE_POSITIVE_RATE = 0.01;
+    public static final long DEFAULT_REBUILD_INTERVAL_MILLIS = 300000;
+
+    private Set<StatusManagerType> types = EnumSet.noneOf(StatusManagerType.class);
+    private long expectedEntries = DEFAULT_EXPECTED_ENTRIES;
+    private double falsePositiveRate = DEFAULT_FALSE_POSITIVE_RATE;
+    private long rebuildIntervalMillis = DEFAULT_REBUILD_INTERVAL_MILLIS;
+
+    /**
+     * Read settings from system properties, falling back to the defaults
+     *
+     * statetracker.bloom.types is a comma separated list, e.g. DATABASE,REGISTRY
+     */
+    public static BloomFilterConfig fromSystemProperties() {
+        BloomFilterConfig config = new BloomFilterConfig();
+        String types = System.getProperty("statetracker.bloom.types");
+        if (types != null) {
+            for (String type : types.split(",")) {
+                if (!type.trim().isEmpty()) {
+                    config.getTypes().add(StatusManagerType.fromString(type.trim()));
+                }
+            }
+        }
+        config.setExpectedEntries(Long.getLong("statetracker.bloom.expectedEntries", DEFAULT_EXPECTED_ENTRIES));
+        String falsePositiveRate = System.getProperty("statetracker.bloom.falsePositiveRate");
+        if (falsePositiveRate != null) {
+            config.setFalsePositiveRate(Double.parseDouble(falsePositiveRate.trim()));
+        }
+        config.setRebuildIntervalMillis(Long.getLong("statetracker.bloom.rebuildIntervalMillis",
+                DEFAULT_REBUILD_INTERVAL_MILLIS));
+        return config;
+    }
+
+    /**
+     * Backend types whose managers are fronted by a Bloom filter by the factory
+     */
+    public Set<StatusManagerType> getTypes() {
+        return types;
+    }
+
+    public void setTypes(Set<StatusManagerType> types) {
+        this.types = types;
+    }
+
+    public boolean isEnabledFor(StatusManagerType type) {
+        return types.contains(type);
+    }
+
+    /**
+     * Number of running processes the filter is sized for; a rebuild sizes the new
+     * filter for twice the tracked count if the store has outgrown this
+     */
+    public long getExpectedEntries() {
+        return expectedEntries;
+    }
+
+    public void setExpectedEntries(long expectedEntries) {
+        this.expectedEntries = expectedEntries;
+    }
+
+    /**
+     * Target false positive rate at the expected number of entries
+     */
+    public double getFalsePositiveRate() {
+        return falsePositiveRate;
+    }
+
+    public void setFalsePositiveRate(double falsePositiveRate) {
+        this.falsePositiveRate = falsePositiveRate;
+    }
+
+    /**
+     * Time between rebuilds of the filter from the store, 0 to rebuild only on demand
+     *
+     * A rebuild drops processes that expired without an event and picks up processes
+     * started by other nodes.
+     */
+    public long getRebuildIntervalMillis() {
+        return rebuildIntervalMillis;
+    }
+
+    public void setRebuildIntervalMillis(long rebuildIntervalMillis) {
+        this.rebuildIntervalMillis = rebuildIntervalMillis;
+    }
+}
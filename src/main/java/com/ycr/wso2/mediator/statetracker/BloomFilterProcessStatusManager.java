@@ -0,0 +1,465 @@
+package com.ycr.wso2.mediator.statetracker;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Bloom filter in front of a ProcessStatusManager, answering lookups of processes
+ * that were never started without going to the store
+ *
+ * Every start adds the ID to a counting Bloom filter and every successful stop
+ * removes it again; processes the store reports as expired through lifecycle events
+ * are removed too. The filter is filled from the store's running processes when the
+ * decorator is created and rebuilt periodically, which drops processes that expired
+ * without an event and picks up processes started by other nodes. Until then, a
+ * process started by another node may be reported as not running.
+ *
+ * A lookup that passes the filter goes to the store, so a false positive only costs
+ * the lookup the filter would have saved. The store must be able to list its running
+ * processes (forEachRunning), and a process must be listed once startProcess returns.
+ *
+ * While a rebuild runs, starts go into both the current and the new filter and
+ * removals only into the current one, so the new filter can only hold extra IDs.
+ * An expired process is only removed from a filter that was built before its
+ * deadline, i.e. one that certainly counted it.
+ */
+public class BloomFilterProcessStatusManager implements ProcessStatusManager {
+
+    private static final Log log = LogFactory.getLog(BloomFilterProcessStatusManager.class);
+
+    private final ProcessStatusManager delegate;
+    private final BloomFilterConfig config;
+
+    // Filter used for lookups, and the one being filled by a rebuild
+    private volatile ProcessBloomFilter filter;
+    private volatile ProcessBloomFilter rebuilding;
+
+    private final boolean expiryEvents;
+    private ScheduledExecutorService rebuilder;
+
+    private final LongAdder filtered = new LongAdder();
+    private final LongAdder passed = new LongAdder();
+    private final LongAdder falsePositives = new LongAdder();
+    private final LongAdder rebuilds = new LongAdder();
+    private volatile long lastRebuildEntries;
+    private volatile long lastRebuildNanos;
+
+    /**
+     * @throws IllegalArgumentException if the store cannot list its running processes, after shutting the store down
+     */
+    public BloomFilterProcessStatusManager(ProcessStatusManager delegate, BloomFilterConfig config) {
+        this.delegate = delegate;
+        this.config = config;
+        try {
+            rebuild();
+        } catch (UnsupportedOperationException e) {
+            delegate.shutdown();
+            throw new IllegalArgumentException("A Bloom filter needs a store that can list its processes, "
+                    + delegate.getClass().getSimpleName() + " cannot", e);
+        }
+
+        boolean events;
+        try {
+            delegate.addEventListener(this::onEvents);
+            events = true;
+        } catch (UnsupportedOperationException e) {
+            events = false;
+        }
+        this.expiryEvents = events;
+
+        if (config.getRebuildIntervalMillis() > 0) {
+            rebuilder = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "state-tracker-bloom");
+                thread.setDaemon(true);
+                return thread;
+            });
+            rebuilder.scheduleWithFixedDelay(this::rebuildQuietly, config.getRebuildIntervalMillis(),
+                    config.getRebuildIntervalMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void startProcess(String processId, long expiryTimeMillis) {
+        ProcessBloomFilter current = filter;
+        ProcessBloomFilter next = rebuilding;
+        add(processId, current, next);
+        delegate.startProcess(processId, expiryTimeMillis);
+        addIfRebuilt(processId, current, next);
+    }
+
+    @Override
+    public void startProcess(String processId, long expiryTimeMillis, boolean pinned, String ownerToken) {
+        ProcessBloomFilter current = filter;
+        ProcessBloomFilter next = rebuilding;
+        add(processId, current, next);
+        delegate.startProcess(processId, expiryTimeMillis, pinned, ownerToken);
+        addIfRebuilt(processId, current, next);
+    }
+
+    /**
+     * The ID is added before the store is asked, a rejected start leaves it in the filter until the next rebuild
+     */
+    @Override
+    public ConditionalOperationResult startProcessIfAbsent(String processId, long expiryTimeMillis,
+                                                           boolean pinned, String ownerToken) {
+        ProcessBloomFilter current = filter;
+        ProcessBloomFilter next = rebuilding;
+        add(processId, current, next);
+        ConditionalOperationResult result = delegate.startProcessIfAbsent(processId, expiryTimeMillis,
+                pinned, ownerToken);
+        addIfRebuilt(processId, current, next);
+        return result;
+    }
+
+    @Override
+    public ConditionalOperationResult replaceProcessIfExpired(String processId, long expiryTimeMillis,
+                                                              boolean pinned, String ownerToken) {
+        ProcessBloomFilter current = filter;
+        ProcessBloomFilter next = rebuilding;
+        add(processId, current, next);
+        ConditionalOperationResult result = delegate.replaceProcessIfExpired(processId, expiryTimeMillis,
+                pinned, ownerToken);
+        addIfRebuilt(processId, current, next);
+        return result;
+    }
+
+    @Override
+    public ConditionalOperationResult stopProcessIfOwner(String processId, String ownerToken) {
+        ProcessBloomFilter current = filter;
+        ConditionalOperationResult result = delegate.stopProcessIfOwner(processId, ownerToken);
+        if (result.isApplied()) {
+            current.remove(processId);
+        }
+        return result;
+    }
+
+    @Override
+    public ProcessStateEntry renewProcess(String processId, long leaseMillis) {
+        return delegate.renewProcess(processId, leaseMillis);
+    }
+
+    @Override
+    public long getDefaultExpiryTimeMillis() {
+        return delegate.getDefaultExpiryTimeMillis();
+    }
+
+    @Override
+    public void addEventListener(ProcessEventListener listener) {
+        delegate.addEventListener(listener);
+    }
+
+    @Override
+    public void removeEventListener(ProcessEventListener listener) {
+        delegate.removeEventListener(listener);
+    }
+
+    @Override
+    public PermitResult acquirePermit(String key, int limit, long expiryTimeMillis) {
+        return delegate.acquirePermit(key, limit, expiryTimeMillis);
+    }
+
+    @Override
+    public boolean releasePermit(String key, long permitId) {
+        return delegate.releasePermit(key, permitId);
+    }
+
+    @Override
+    public int getPermitCount(String key) {
+        return delegate.getPermitCount(key);
+    }
+
+    @Override
+    public boolean isProcessRunning(String processId) {
+        if (!mightBeRunning(processId)) {
+            return false;
+        }
+        return counted(delegate.isProcessRunning(processId));
+    }
+
+    @Override
+    public boolean stopProcess(String processId) {
+        // Read before the stop, a filter still being rebuilt may not have counted the ID
+        ProcessBloomFilter current = filter;
+        boolean stopped = delegate.stopProcess(processId);
+        if (stopped) {
+            current.remove(processId);
+        }
+        return stopped;
+    }
+
+    @Override
+    public ProcessStateEntry getProcessState(String processId) {
+        if (!mightBeRunning(processId)) {
+            return null;
+        }
+        ProcessStateEntry entry = delegate.getProcessState(processId);
+        counted(entry != null);
+        return entry;
+    }
+
+    @Override
+    public boolean queryProcess(String processId, ProcessStatusView view) {
+        if (!mightBeRunning(processId)) {
+            return view.set(null, ProcessClocks.millis());
+        }
+        return counted(delegate.queryProcess(processId, view));
+    }
+
+    @Override
+    public boolean[] startProcesses(List<String> processIds, long expiryTimeMillis,
+                                    boolean pinned, String ownerToken) {
+        ProcessBloomFilter current = filter;
+        ProcessBloomFilter next = rebuilding;
+        for (String processId : processIds) {
+            add(processId, current, next);
+        }
+        boolean[] started = delegate.startProcesses(processIds, expiryTimeMillis, pinned, ownerToken);
+        for (String processId : processIds) {
+            addIfRebuilt(processId, current, next);
+        }
+        return started;
+    }
+
+    @Override
+    public boolean[] stopProcesses(List<String> processIds) {
+        ProcessBloomFilter current = filter;
+        boolean[] stopped = delegate.stopProcesses(processIds);
+        for (int i = 0; i < stopped.length; i++) {
+            if (stopped[i]) {
+                current.remove(processIds.get(i));
+            }
+        }
+        return stopped;
+    }
+
+    @Override
+    public ProcessStateEntry[] getProcessStates(List<String> processIds) {
+        ProcessStateEntry[] entries = new ProcessStateEntry[processIds.size()];
+        List<String> candidateIds = new ArrayList<>();
+        List<Integer> candidateIndices = new ArrayList<>();
+        for (int i = 0; i < entries.length; i++) {
+            if (mightBeRunning(processIds.get(i))) {
+                candidateIds.add(processIds.get(i));
+                candidateIndices.add(i);
+            }
+        }
+        if (!candidateIds.isEmpty()) {
+            ProcessStateEntry[] loaded = delegate.getProcessStates(candidateIds);
+            for (int i = 0; i < loaded.length; i++) {
+                entries[candidateIndices.get(i)] = loaded[i];
+                counted(loaded[i] != null);
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Prefix queries are not filtered and always go to the store
+     */
+    @Override
+    public int forEachRunning(String prefix, String afterId, Predicate<ProcessStateEntry> visitor) {
+        return delegate.forEachRunning(prefix, afterId, visitor);
+    }
+
+    /**
+     * Refill the filter from the store's running processes
+     *
+     * The new filter is sized for the configured expected entries, or twice the
+     * tracked count if the store has grown past it, and replaces the current one
+     * once the store has been listed. Lookups use the current filter meanwhile.
+     */
+    public synchronized void rebuild() {
+        long startNanos = System.nanoTime();
+        long tracked = delegate.getTrackedCount();
+        ProcessBloomFilter next = new ProcessBloomFilter(Math.max(config.getExpectedEntries(), 2 * tracked),
+                config.getFalsePositiveRate());
+        rebuilding = next;
+        try {
+            long[] count = new long[1];
+            delegate.forEachRunning("", null, entry -> {
+                next.add(entry.getProjectId());
+                count[0]++;
+                return true;
+            });
+            next.setBuiltAt(ProcessClocks.millis());
+            filter = next;
+            lastRebuildEntries = count[0];
+        } finally {
+            rebuilding = null;
+        }
+        rebuilds.increment();
+        lastRebuildNanos = System.nanoTime() - startNanos;
+        if (log.isDebugEnabled()) {
+            log.debug("Rebuilt process Bloom filter with " + lastRebuildEntries + " processes in "
+                    + TimeUnit.NANOSECONDS.toMillis(lastRebuildNanos) + " ms");
+        }
+    }
+
+    @Override
+    public long getTrackedCount() {
+        return delegate.getTrackedCount();
+    }
+
+    public ProcessStatusManager getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * Whether expired processes are removed as the store reports them, rather than at the next rebuild
+     */
+    public boolean isExpiryTracked() {
+        return expiryEvents;
+    }
+
+    /**
+     * Lookups answered by the filter without going to the store
+     */
+    public long getFilteredCount() {
+        return filtered.sum();
+    }
+
+    /**
+     * Lookups passed to the store
+     */
+    public long getPassedCount() {
+        return passed.sum();
+    }
+
+    /**
+     * Lookups passed to the store for processes that were not running
+     */
+    public long getFalsePositiveCount() {
+        return falsePositives.sum();
+    }
+
+    /**
+     * Fraction of lookups answered by the filter, 0 before the first lookup
+     */
+    public double getHitRatio() {
+        long filteredCount = filtered.sum();
+        long total = filteredCount + passed.sum();
+        return total == 0 ? 0 : (double) filteredCount / total;
+    }
+
+    /**
+     * Fraction of lookups of processes that are not running which still went to the store
+     */
+    public double getObservedFalsePositiveRate() {
+        long falsePositiveCount = falsePositives.sum();
+        long negatives = filtered.sum() + falsePositiveCount;
+        return negatives == 0 ? 0 : (double) falsePositiveCount / negatives;
+    }
+
+    /**
+     * False positive rate implied by the current filter's fill, scans the filter
+     */
+    public double getEstimatedFalsePositiveRate() {
+        return filter.estimateFalsePositiveRate();
+    }
+
+    public long getFilterCellCount() {
+        return filter.getCellCount();
+    }
+
+    public long getRebuildCount() {
+        return rebuilds.sum();
+    }
+
+    public long getLastRebuildEntryCount() {
+        return lastRebuildEntries;
+    }
+
+    public long getLastRebuildNanos() {
+        return lastRebuildNanos;
+    }
+
+    /**
+     * Reset lookup statistics (counters are not reset atomically with respect to each other)
+     */
+    public void resetMetrics() {
+        filtered.reset();
+        passed.reset();
+        falsePositives.reset();
+    }
+
+    @Override
+    public void shutdown() {
+        if (rebuilder != null) {
+            rebuilder.shutdownNow();
+        }
+        delegate.shutdown();
+    }
+
+    private boolean mightBeRunning(String processId) {
+        if (processId != null && filter.mightContain(processId)) {
+            passed.increment();
+            return true;
+        }
+        filtered.increment();
+        return false;
+    }
+
+    private boolean counted(boolean running) {
+        if (!running) {
+            falsePositives.increment();
+        }
+        return running;
+    }
+
+    private static void add(String processId, ProcessBloomFilter current, ProcessBloomFilter next) {
+        if (processId == null) {
+            return;
+        }
+        current.add(processId);
+        if (next != null && next != current) {
+            next.add(processId);
+        }
+    }
+
+    /**
+     * Add the ID to filters published while the store was being changed
+     *
+     * A filter published after the ID was stored lists it anyway; adding it twice only
+     * leaves a count that the next rebuild drops.
+     */
+    private void addIfRebuilt(String processId, ProcessBloomFilter current, ProcessBloomFilter next) {
+        if (processId == null) {
+            return;
+        }
+        ProcessBloomFilter latest = filter;
+        ProcessBloomFilter latestNext = rebuilding;
+        if (latest != current && latest != next) {
+            latest.add(processId);
+        }
+        if (latestNext != null && latestNext != current && latestNext != next && latestNext != latest) {
+            latestNext.add(processId);
+        }
+    }
+
+    private void onEvents(List<ProcessEvent> events) {
+        ProcessBloomFilter current = filter;
+        for (ProcessEvent event : events) {
+            // Running from before the filter was built until after it, so the filter counted it
+            if (event.getType() == ProcessEvent.Type.EXPIRE
+                    && event.getStartTimestamp() + event.getExpiryTimeMillis() > current.getBuiltAt()) {
+                current.remove(event.getProcessId());
+            }
+        }
+    }
+
+    private void rebuildQuietly() {
+        try {
+            rebuild();
+        } catch (Throwable t) {
+            log.error("Error rebuilding process Bloom filter", t);
+        }
+    }
+}
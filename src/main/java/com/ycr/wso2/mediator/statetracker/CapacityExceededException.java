@@ -0,0 +1,13 @@
+package com.ycr.wso2.mediator.statetracker;
+
+/**
+ * Thrown when a process cannot be started because the store is full
+ */
+public class CapacityExceededException extends RuntimeException {
+    
+    private static final long serialVersionUID = 1L;
+    
+    public CapacityExceededException(String message) {
+        super(message);
+    }
+}
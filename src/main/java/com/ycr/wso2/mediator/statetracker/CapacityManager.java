@@ -0,0 +1,223 @@
+package com.ycr.wso2.mediator.statetracker;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+/**
+ * Enforces the entry count / estimated byte bound of an in-memory store
+ *
+ * The bound is soft: concurrent starts of new IDs may overshoot it by the number
+ * of racing threads. LRU eviction is approximated with a CLOCK queue: entries are
+ * queued on insert and get a second chance if they were read since the last pass.
+ * Pinned entries are never evicted. Expired entries found on the clock are removed
+ * as expired, not counted as evictions.
+ */
+public class CapacityManager {
+
+    private static final Log log = LogFactory.getLog(CapacityManager.class);
+
+    // Rough footprint of a CHM node, ProcessStateEntry and String header
+    static final int ENTRY_OVERHEAD_BYTES = 112;
+
+    private final long maxEntries;
+    private final long maxEstimatedBytes;
+    private final CapacityPolicy policy;
+    private final LongSupplier sizeSupplier;
+    private final Predicate<ProcessStateEntry> isCurrent;
+    private final Predicate<ProcessStateEntry> remover;
+    private final Predicate<ProcessStateEntry> expirer;
+
+    private final AtomicLong estimatedBytes = new AtomicLong();
+
+    // Only used by the evicting policies
+    private final ConcurrentLinkedQueue<ProcessStateEntry> clock = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger clockSize = new AtomicInteger();
+    private final FrequencySketch sketch;
+
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    /**
+     * @param sizeSupplier Current number of entries in the store
+     * @param isCurrent Whether an entry is still the mapped value for its ID
+     * @param remover Removes an entry if it is still current, returning true on success
+     * @param expirer Removes an expired entry if it is still current and expired, returning true on success
+     */
+    public CapacityManager(long maxEntries, long maxEstimatedBytes, CapacityPolicy policy,
+                           LongSupplier sizeSupplier, Predicate<ProcessStateEntry> isCurrent,
+                           Predicate<ProcessStateEntry> remover, Predicate<ProcessStateEntry> expirer) {
+        this.maxEntries = maxEntries;
+        this.maxEstimatedBytes = maxEstimatedBytes;
+        this.policy = policy != null ? policy : CapacityPolicy.REJECT;
+        this.sizeSupplier = sizeSupplier;
+        this.isCurrent = isCurrent;
+        this.remover = remover;
+        this.expirer = expirer;
+        this.sketch = this.policy == CapacityPolicy.EVICT_TINY_LFU
+                ? new FrequencySketch(maxEntries > 0 ? maxEntries : maxEstimatedBytes / ENTRY_OVERHEAD_BYTES)
+                : null;
+    }
+
+    static long estimateSize(String processId) {
+        return ENTRY_OVERHEAD_BYTES + 2L * processId.length();
+    }
+
+    /**
+     * Make room for a process ID that is not yet in the store
+     *
+     * @throws CapacityExceededException if the policy refuses the new entry
+     */
+    public void admit(String processId) {
+        if (sketch != null) {
+            sketch.increment(processId);
+        }
+        if (!isFull(processId)) {
+            return;
+        }
+        if (policy == CapacityPolicy.REJECT) {
+            reject(processId);
+        }
+
+        // Two passes over the clock give every accessed entry its second chance
+        int attempts = 2 * clockSize.get() + 1;
+        while (isFull(processId) && attempts-- > 0) {
+            ProcessStateEntry victim = clock.poll();
+            if (victim == null) {
+                break;
+            }
+            clockSize.decrementAndGet();
+            if (!isCurrent.test(victim)) {
+                continue;
+            }
+            if (victim.isExpired()) {
+                if (expirer.test(victim)) {
+                    expirations.increment();
+                }
+                continue;
+            }
+            if (victim.isPinned() || victim.clearAccessed()) {
+                requeue(victim);
+                continue;
+            }
+            if (sketch != null && sketch.frequency(processId) <= sketch.frequency(victim.getProjectId())) {
+                requeue(victim);
+                reject(processId);
+            }
+            if (remover.test(victim)) {
+                evictions.increment();
+                if (log.isDebugEnabled()) {
+                    log.debug("Evicted process " + victim.getProjectId() + " to admit " + processId);
+                }
+            }
+        }
+
+        if (isFull(processId)) {
+            reject(processId);
+        }
+    }
+
+    /**
+     * Record an entry that was put into the store, replacing previous (may be null)
+     */
+    public void onInserted(ProcessStateEntry entry, ProcessStateEntry previous) {
+        if (previous != null) {
+            onRemoved(previous);
+        }
+        estimatedBytes.addAndGet(estimateSize(entry.getProjectId()));
+        if (policy != CapacityPolicy.REJECT) {
+            requeue(entry);
+            if (clockSize.get() > 2 * sizeSupplier.getAsLong() + 1024) {
+                purgeClock();
+            }
+        }
+    }
+
+    /**
+     * Record an entry that was removed from the store
+     */
+    public void onRemoved(ProcessStateEntry entry) {
+        estimatedBytes.addAndGet(-estimateSize(entry.getProjectId()));
+    }
+
+    /**
+     * Record a read of an entry, used by the evicting policies
+     */
+    public void onAccess(ProcessStateEntry entry) {
+        if (policy != CapacityPolicy.REJECT) {
+            entry.markAccessed();
+            if (sketch != null) {
+                sketch.increment(entry.getProjectId());
+            }
+        }
+    }
+
+    private boolean isFull(String processId) {
+        return (maxEntries > 0 && sizeSupplier.getAsLong() >= maxEntries)
+                || (maxEstimatedBytes > 0 && estimatedBytes.get() + estimateSize(processId) > maxEstimatedBytes);
+    }
+
+    private void reject(String processId) {
+        rejections.increment();
+        throw new CapacityExceededException("Process state store is full, cannot start process: " + processId);
+    }
+
+    private void requeue(ProcessStateEntry entry) {
+        clock.offer(entry);
+        clockSize.incrementAndGet();
+    }
+
+    /**
+     * Drop stopped and replaced entries from the clock so it does not outgrow the store
+     */
+    private void purgeClock() {
+        for (int i = clockSize.get(); i > 0; i--) {
+            ProcessStateEntry entry = clock.poll();
+            if (entry == null) {
+                return;
+            }
+            clockSize.decrementAndGet();
+            if (isCurrent.test(entry)) {
+                requeue(entry);
+            }
+        }
+    }
+
+    public long getMaxEntries() {
+        return maxEntries;
+    }
+
+    public long getMaxEstimatedBytes() {
+        return maxEstimatedBytes;
+    }
+
+    public CapacityPolicy getPolicy() {
+        return policy;
+    }
+
+    public long getEstimatedBytes() {
+        return estimatedBytes.get();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * Expired entries removed while looking for a victim, not counted as evictions
+     */
+    public long getExpirationCount() {
+        return expirations.sum();
+    }
+
+    public long getRejectionCount() {
+        return rejections.sum();
+    }
+}
@@ -0,0 +1,36 @@
+package com.ycr.wso2.mediator.statetracker;
+
+/**
+ * What a capacity-bounded store does when a new process is started while full
+ */
+public enum CapacityPolicy {
+    /**
+     * Refuse the new process, START_PROCESS results in REJECTED
+     */
+    REJECT,
+    
+    /**
+     * Evict the least recently used entry that is not pinned (CLOCK approximation)
+     */
+    EVICT_LRU,
+    
+    /**
+     * Like EVICT_LRU, but only admit the new process if it is used more often than the victim
+     */
+    EVICT_TINY_LFU;
+    
+    public static CapacityPolicy fromString(String policy) {
+        if (policy == null || policy.trim().isEmpty()) {
+            return REJECT; // Default
+        }
+        
+        for (CapacityPolicy capacityPolicy : CapacityPolicy.values()) {
+            if (capacityPolicy.name().equalsIgnoreCase(policy.trim().replace("-", "_").replace(" ", "_"))) {
+                return capacityPolicy;
+            }
+        }
+        
+        throw new IllegalArgumentException("Unknown CapacityPolicy: " + policy +
+            ". Supported policies: REJECT, EVICT_LRU, EVICT_TINY_LFU");
+    }
+}
@@ -0,0 +1,58 @@
+package com.ycr.wso2.mediator.statetracker;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Clock returning a cached time that a ticker thread refreshes from a MonotonicClock
+ *
+ * Reading it is a single volatile load, at the cost of being up to tickMillis behind.
+ * Expiry checks may therefore see a process as running for up to one tick longer.
+ */
+public class CoarseClock implements ProcessClock {
+
+    public static final long DEFAULT_TICK_MILLIS = 1;
+
+    private final MonotonicClock source = new MonotonicClock();
+    private final long tickMillis;
+    private final Thread ticker;
+    private volatile long now;
+    private volatile boolean running = true;
+
+    public CoarseClock() {
+        this(DEFAULT_TICK_MILLIS);
+    }
+
+    public CoarseClock(long tickMillis) {
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("Tick must be positive: " + tickMillis);
+        }
+        this.tickMillis = tickMillis;
+        this.now = source.millis();
+        this.ticker = new Thread(this::tick, "state-tracker-clock-ticker");
+        this.ticker.setDaemon(true);
+        this.ticker.start();
+    }
+
+    @Override
+    public long millis() {
+        return now;
+    }
+
+    public long getTickMillis() {
+        return tickMillis;
+    }
+
+    @Override
+    public void shutdown() {
+        running = false;
+        ticker.interrupt();
+    }
+
+    private void tick() {
+        long tickNanos = tickMillis * 1000000L;
+        while (running) {
+            LockSupport.parkNanos(tickNanos);
+            now = source.millis();
+        }
+    }
+}
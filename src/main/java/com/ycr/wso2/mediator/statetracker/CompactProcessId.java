@@ -0,0 +1,93 @@
+package com.ycr.wso2.mediator.statetracker;
+
+/**
+ * Encodes short process IDs into unique long keys
+ *
+ * Digit-only IDs without a leading zero (up to 18 digits) map to the bitwise
+ * complement of their value, which is negative. IDs of up to 12 characters from
+ * [0-9a-z-] map to their bijective base-38 value, which is positive (38^12 - 1
+ * still fits in 63 bits, so the alphabet is kept this small). Both
+ * encodings are injective and never produce 0 or Long.MIN_VALUE, which the
+ * compact store reserves for empty and deleted slots.
+ */
+final class CompactProcessId {
+
+    static final long NOT_ENCODABLE = 0;
+
+    private static final int MAX_NUMERIC_DIGITS = 18;
+    private static final int MAX_PACKED_CHARS = 12;
+    private static final int RADIX = 38;
+
+    private CompactProcessId() {
+    }
+
+    /**
+     * @return the long key of the ID, or {@link #NOT_ENCODABLE}
+     */
+    static long encode(String processId) {
+        int length = processId.length();
+        if (length == 0) {
+            return NOT_ENCODABLE;
+        }
+
+        if (length <= MAX_NUMERIC_DIGITS && (processId.charAt(0) != '0' || length == 1)) {
+            long value = 0;
+            int i = 0;
+            for (; i < length; i++) {
+                char c = processId.charAt(i);
+                if (c < '0' || c > '9') {
+                    break;
+                }
+                value = value * 10 + (c - '0');
+            }
+            if (i == length) {
+                return ~value;
+            }
+        }
+
+        if (length > MAX_PACKED_CHARS) {
+            return NOT_ENCODABLE;
+        }
+        long key = 0;
+        for (int i = 0; i < length; i++) {
+            int digit = digitOf(processId.charAt(i));
+            if (digit == 0) {
+                return NOT_ENCODABLE;
+            }
+            key = key * RADIX + digit;
+        }
+        return key;
+    }
+
+    /**
+     * The ID a key was encoded from
+     */
+    static String decode(long key) {
+        if (key < 0) {
+            return Long.toString(~key);
+        }
+        char[] chars = new char[MAX_PACKED_CHARS];
+        int start = chars.length;
+        for (; key > 0; key /= RADIX) {
+            chars[--start] = charOf((int) (key % RADIX));
+        }
+        return new String(chars, start, chars.length - start);
+    }
+
+    private static int digitOf(char c) {
+        if (c >= '0' && c <= '9') {
+            return 1 + (c - '0');
+        }
+        if (c >= 'a' && c <= 'z') {
+            return 11 + (c - 'a');
+        }
+        return c == '-' ? 37 : 0;
+    }
+
+    private static char charOf(int digit) {
+        if (digit <= 10) {
+            return (char) ('0' + digit - 1);
+        }
+        return digit < 37 ? (char) ('a' + digit - 11) : '-';
+    }
+}
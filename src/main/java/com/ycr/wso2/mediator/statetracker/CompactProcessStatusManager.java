@@ -0,0 +1,636 @@
+package com.ycr.wso2.mediator.statetracker;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Predicate;
+
+/**
+ * On-heap ProcessStatusManager specialized for short process IDs
+ *
+ * IDs that {@link CompactProcessId} can encode (numeric or short lower-case ASCII,
+ * e.g. "order-12345") are keyed by a long; other IDs up to maxByteKeyLength UTF-8
+ * bytes are keyed by their byte array. Both are kept in open-addressing tables of
+ * parallel primitive arrays (key, start, expiry, flags), so a tracked process
+ * costs a few dozen bytes instead of a String, an entry and a map node. Longer IDs
+ * and processes started with an owner token are kept in a generic
+ * InMemoryProcessStatusManager.
+ *
+ * Each table is split into segments guarded by a StampedLock. Reads are optimistic
+ * and only take the read lock if a write to the same segment overlapped. A segment
+ * is rebuilt when live plus deleted slots exceed the load factor, doubling its
+ * capacity only if live slots exceed half of it; rebuilds also drop expired slots.
+ *
+ * Conditional operations use the interface defaults and are atomic under the
+ * mediator's per-key lock.
+ */
+public class CompactProcessStatusManager implements ProcessStatusManager {
+
+    private static final Log log = LogFactory.getLog(CompactProcessStatusManager.class);
+
+    private static final long EMPTY = 0;
+    private static final long DELETED = Long.MIN_VALUE;
+    private static final byte PINNED_FLAG = 1;
+
+    // Assumes compressed references, for getEstimatedBytes
+    private static final int ARRAY_HEADER_BYTES = 16;
+    private static final int REFERENCE_BYTES = 4;
+
+    private final PrimitiveTable longKeys;
+    private final PrimitiveTable byteKeys;
+    private final InMemoryProcessStatusManager generic;
+    private final int maxByteKeyLength;
+
+    private final ThreadLocal<SlotReader> readers = ThreadLocal.withInitial(SlotReader::new);
+    private final ScheduledExecutorService purgeExecutor;
+
+    public CompactProcessStatusManager() {
+        this(new CompactStoreConfig());
+    }
+
+    public CompactProcessStatusManager(CompactStoreConfig config) {
+        if (config.getMaxLoadFactor() <= 0 || config.getMaxLoadFactor() >= 1) {
+            throw new IllegalArgumentException("Max load factor must be between 0 and 1");
+        }
+        int segments = Math.max(1, Integer.highestOneBit(Math.max(1, config.getSegments() - 1)) << 1);
+        int segmentCapacity = Math.max(8, Integer.highestOneBit(Math.max(1, config.getInitialCapacity() / segments)));
+        this.longKeys = new PrimitiveTable(segments, segmentCapacity, config.getMaxLoadFactor(), false);
+        this.byteKeys = new PrimitiveTable(segments, 8, config.getMaxLoadFactor(), true);
+        this.maxByteKeyLength = config.getMaxByteKeyLength();
+
+        InMemoryStoreConfig genericConfig = new InMemoryStoreConfig();
+        genericConfig.setActiveExpiryEnabled(false);
+        this.generic = new InMemoryProcessStatusManager(genericConfig);
+
+        if (config.getPurgeIntervalMillis() > 0) {
+            this.purgeExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "state-tracker-compact-purge");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.purgeExecutor.scheduleWithFixedDelay(this::purgeSafely, config.getPurgeIntervalMillis(),
+                    config.getPurgeIntervalMillis(), TimeUnit.MILLISECONDS);
+        } else {
+            this.purgeExecutor = null;
+        }
+    }
+
+    @Override
+    public void startProcess(String processId, long expiryTimeMillis) {
+        startProcess(processId, expiryTimeMillis, false, null);
+    }
+
+    @Override
+    public void startProcess(String processId, long expiryTimeMillis, boolean pinned, String ownerToken) {
+        if (processId == null || processId.trim().isEmpty()) {
+            throw new IllegalArgumentException("Process ID cannot be null or empty");
+        }
+        SlotReader reader = route(processId);
+        if (reader.table == null || ownerToken != null) {
+            if (reader.table != null) {
+                reader.table.remove(reader.key, reader.bytes);
+            }
+            generic.startProcess(processId, expiryTimeMillis, pinned, ownerToken);
+            return;
+        }
+
+        reader.table.put(reader.key, reader.bytes, ProcessClocks.millis(), expiryTimeMillis,
+                pinned ? PINNED_FLAG : 0);
+        if (generic.size() > 0) {
+            generic.stopProcess(processId);
+        }
+    }
+
+    @Override
+    public boolean isProcessRunning(String processId) {
+        if (processId == null || processId.trim().isEmpty()) {
+            return false;
+        }
+        SlotReader reader = route(processId);
+        if (reader.table != null && reader.table.get(reader.key, reader.bytes, reader)) {
+            return !reader.isExpired(ProcessClocks.millis());
+        }
+        return generic.size() > 0 && generic.isProcessRunning(processId);
+    }
+
+    @Override
+    public boolean stopProcess(String processId) {
+        if (processId == null || processId.trim().isEmpty()) {
+            return false;
+        }
+        SlotReader reader = route(processId);
+        boolean removed = reader.table != null && reader.table.remove(reader.key, reader.bytes);
+        if (generic.size() > 0) {
+            removed |= generic.stopProcess(processId);
+        }
+        return removed;
+    }
+
+    @Override
+    public ProcessStateEntry getProcessState(String processId) {
+        if (processId == null || processId.trim().isEmpty()) {
+            return null;
+        }
+        SlotReader reader = route(processId);
+        if (reader.table != null && reader.table.get(reader.key, reader.bytes, reader)) {
+            return reader.isExpired(ProcessClocks.millis()) ? null
+                    : new ProcessStateEntry(processId, reader.startTimestamp, reader.expiryTimeMillis,
+                            (reader.flags & PINNED_FLAG) != 0);
+        }
+        return generic.size() > 0 ? generic.getProcessState(processId) : null;
+    }
+
+    @Override
+    public boolean queryProcess(String processId, ProcessStatusView view) {
+        long now = ProcessClocks.millis();
+        if (processId == null || processId.isEmpty()) {
+            return view.set(null, now);
+        }
+        SlotReader reader = route(processId);
+        if (reader.table != null && reader.table.get(reader.key, reader.bytes, reader)) {
+            if (reader.isExpired(now)) {
+                return view.set(null, now);
+            }
+            view.setRunning(reader.startTimestamp, reader.expiryTimeMillis, null, now);
+            return true;
+        }
+        return generic.size() > 0 ? generic.queryProcess(processId, view) : view.set(null, now);
+    }
+
+    /**
+     * Scans every segment under its write lock and the generic store, then sorts the matches
+     *
+     * Expired slots passed by the scan are deleted, so a process that was not visited
+     * cannot be stopped afterwards.
+     */
+    @Override
+    public int forEachRunning(String prefix, String afterId, Predicate<ProcessStateEntry> visitor) {
+        String from = afterId != null && afterId.compareTo(prefix) > 0 ? afterId : prefix;
+        boolean inclusive = !from.equals(afterId);
+        Predicate<String> inRange = processId -> {
+            int order = processId.compareTo(from);
+            return processId.startsWith(prefix) && (order > 0 || (order == 0 && inclusive));
+        };
+
+        List<ProcessStateEntry> matches = new ArrayList<>();
+        long now = ProcessClocks.millis();
+        longKeys.collectRunning(inRange, now, matches);
+        byteKeys.collectRunning(inRange, now, matches);
+        if (generic.size() > 0) {
+            generic.forEachRunning(prefix, afterId, matches::add);
+        }
+        matches.sort(Comparator.comparing(ProcessStateEntry::getProjectId));
+
+        int visited = 0;
+        for (ProcessStateEntry entry : matches) {
+            visited++;
+            if (!visitor.test(entry)) {
+                break;
+            }
+        }
+        return visited;
+    }
+
+    /**
+     * Delete all expired slots, one segment lock at a time
+     *
+     * @return number of slots deleted
+     */
+    public long purgeExpired() {
+        long now = ProcessClocks.millis();
+        return longKeys.purgeExpired(now) + byteKeys.purgeExpired(now);
+    }
+
+    /**
+     * Number of tracked processes, including expired ones not yet purged
+     */
+    public long size() {
+        return longKeys.size() + byteKeys.size() + generic.size();
+    }
+
+    @Override
+    public long getTrackedCount() {
+        return size();
+    }
+
+    public long getLongKeyCount() {
+        return longKeys.size();
+    }
+
+    public long getByteKeyCount() {
+        return byteKeys.size();
+    }
+
+    public long getGenericCount() {
+        return generic.size();
+    }
+
+    /**
+     * Estimated heap used by the slot arrays, the byte keys and the generic store
+     *
+     * Counts allocated slots, not just live ones, and scans the byte keys, so it is
+     * meant for monitoring rather than the mediation path.
+     */
+    public long getEstimatedBytes() {
+        return longKeys.estimatedBytes() + byteKeys.estimatedBytes()
+                + generic.size() * (long) CapacityManager.ENTRY_OVERHEAD_BYTES;
+    }
+
+    @Override
+    public void shutdown() {
+        if (purgeExecutor != null) {
+            purgeExecutor.shutdownNow();
+        }
+        generic.shutdown();
+    }
+
+    private void purgeSafely() {
+        try {
+            long purged = purgeExpired();
+            if (purged > 0 && log.isDebugEnabled()) {
+                log.debug("Purged " + purged + " expired processes from the compact store");
+            }
+        } catch (Throwable t) {
+            log.error("Error purging expired processes from the compact store", t);
+        }
+    }
+
+    /**
+     * Pick the table and key for an ID; table is null if the ID belongs to the generic map
+     */
+    private SlotReader route(String processId) {
+        SlotReader reader = readers.get();
+        long key = CompactProcessId.encode(processId);
+        if (key != CompactProcessId.NOT_ENCODABLE) {
+            reader.table = longKeys;
+            reader.key = key;
+            reader.bytes = null;
+            return reader;
+        }
+        byte[] bytes = processId.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length <= maxByteKeyLength) {
+            reader.table = byteKeys;
+            reader.key = hashBytes(bytes);
+            reader.bytes = bytes;
+            return reader;
+        }
+        reader.table = null;
+        reader.bytes = null;
+        return reader;
+    }
+
+    private static long hashBytes(byte[] bytes) {
+        // FNV-1a, kept clear of the EMPTY and DELETED markers
+        long h = 0xcbf29ce484222325L;
+        for (byte b : bytes) {
+            h = (h ^ (b & 0xff)) * 0x100000001b3L;
+        }
+        return h == EMPTY || h == DELETED ? 1 : h;
+    }
+
+    private static long mix(long key) {
+        // SplitMix64 finalizer
+        key = (key ^ (key >>> 30)) * 0xbf58476d1ce4e5b9L;
+        key = (key ^ (key >>> 27)) * 0x94d049bb133111ebL;
+        return key ^ (key >>> 31);
+    }
+
+    /**
+     * Per-thread routing result and the fields of the slot last read
+     */
+    private static final class SlotReader {
+        private PrimitiveTable table;
+        private long key;
+        private byte[] bytes;
+
+        private long startTimestamp;
+        private long expiryTimeMillis;
+        private byte flags;
+
+        boolean isExpired(long now) {
+            return expiryTimeMillis > 0 && now - startTimestamp > expiryTimeMillis;
+        }
+    }
+
+    /**
+     * Segmented open-addressing table of long keys, optionally backed by byte array keys
+     */
+    private static final class PrimitiveTable {
+        private final Segment[] segments;
+        private final int segmentShift;
+
+        PrimitiveTable(int segmentCount, int segmentCapacity, double maxLoadFactor, boolean withBytes) {
+            this.segments = new Segment[segmentCount];
+            this.segmentShift = 64 - Integer.numberOfTrailingZeros(segmentCount);
+            for (int i = 0; i < segmentCount; i++) {
+                segments[i] = new Segment(segmentCapacity, maxLoadFactor, withBytes);
+            }
+        }
+
+        private Segment segmentFor(long hash) {
+            return segmentShift == 64 ? segments[0] : segments[(int) (hash >>> segmentShift)];
+        }
+
+        boolean get(long key, byte[] bytes, SlotReader out) {
+            long hash = mix(key);
+            Segment segment = segmentFor(hash);
+            StampedLock lock = segment.lock;
+            long stamp = lock.tryOptimisticRead();
+            if (stamp != 0) {
+                boolean found = segment.slots.read(key, bytes, hash, out);
+                if (lock.validate(stamp)) {
+                    return found;
+                }
+            }
+            stamp = lock.readLock();
+            try {
+                return segment.slots.read(key, bytes, hash, out);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        void put(long key, byte[] bytes, long startTimestamp, long expiryTimeMillis, byte flags) {
+            long hash = mix(key);
+            Segment segment = segmentFor(hash);
+            long stamp = segment.lock.writeLock();
+            try {
+                segment.put(key, bytes, hash, startTimestamp, expiryTimeMillis, flags);
+            } finally {
+                segment.lock.unlockWrite(stamp);
+            }
+        }
+
+        boolean remove(long key, byte[] bytes) {
+            long hash = mix(key);
+            Segment segment = segmentFor(hash);
+            long stamp = segment.lock.writeLock();
+            try {
+                return segment.remove(key, bytes, hash);
+            } finally {
+                segment.lock.unlockWrite(stamp);
+            }
+        }
+
+        long purgeExpired(long now) {
+            long purged = 0;
+            for (Segment segment : segments) {
+                long stamp = segment.lock.writeLock();
+                try {
+                    purged += segment.purgeExpired(now);
+                } finally {
+                    segment.lock.unlockWrite(stamp);
+                }
+            }
+            return purged;
+        }
+
+        long size() {
+            long size = 0;
+            for (Segment segment : segments) {
+                size += segment.live;
+            }
+            return size;
+        }
+
+        void collectRunning(Predicate<String> inRange, long now, List<ProcessStateEntry> out) {
+            for (Segment segment : segments) {
+                long stamp = segment.lock.writeLock();
+                try {
+                    segment.collectRunning(inRange, now, out);
+                } finally {
+                    segment.lock.unlockWrite(stamp);
+                }
+            }
+        }
+
+        long estimatedBytes() {
+            long bytes = 0;
+            for (Segment segment : segments) {
+                bytes += segment.slots.estimatedBytes();
+            }
+            return bytes;
+        }
+    }
+
+    /**
+     * One lock's worth of slots; all mutations hold the write lock
+     */
+    private static final class Segment {
+        private final StampedLock lock = new StampedLock();
+        private final double maxLoadFactor;
+        private final boolean withBytes;
+
+        // Replaced as a whole on rebuild so optimistic readers see consistent arrays
+        private volatile Slots slots;
+        private volatile int live;
+        private int deleted;
+
+        Segment(int capacity, double maxLoadFactor, boolean withBytes) {
+            this.maxLoadFactor = maxLoadFactor;
+            this.withBytes = withBytes;
+            this.slots = new Slots(capacity, withBytes);
+        }
+
+        void put(long key, byte[] bytes, long hash, long startTimestamp, long expiryTimeMillis, byte flags) {
+            Slots current = slots;
+            int index = current.indexOf(key, bytes, hash);
+            if (index < 0) {
+                if (live + deleted + 1 > current.keys.length * maxLoadFactor) {
+                    current = rebuild(current);
+                    index = current.indexOf(key, bytes, hash);
+                }
+                index = -index - 1;
+                if (current.keys[index] == DELETED) {
+                    deleted--;
+                }
+                live++;
+            }
+            current.starts[index] = startTimestamp;
+            current.expiries[index] = expiryTimeMillis;
+            current.flags[index] = flags;
+            if (current.bytes != null) {
+                current.bytes[index] = bytes;
+            }
+            current.keys[index] = key;
+        }
+
+        boolean remove(long key, byte[] bytes, long hash) {
+            Slots current = slots;
+            int index = current.indexOf(key, bytes, hash);
+            if (index < 0) {
+                return false;
+            }
+            delete(current, index);
+            return true;
+        }
+
+        int purgeExpired(long now) {
+            Slots current = slots;
+            int purged = 0;
+            for (int i = 0; i < current.keys.length; i++) {
+                long key = current.keys[i];
+                if (key != EMPTY && key != DELETED && current.isExpired(i, now)) {
+                    delete(current, i);
+                    purged++;
+                }
+            }
+            return purged;
+        }
+
+        void collectRunning(Predicate<String> inRange, long now, List<ProcessStateEntry> out) {
+            Slots current = slots;
+            for (int i = 0; i < current.keys.length; i++) {
+                long key = current.keys[i];
+                if (key == EMPTY || key == DELETED) {
+                    continue;
+                }
+                String processId = current.bytes != null
+                        ? new String(current.bytes[i], StandardCharsets.UTF_8) : CompactProcessId.decode(key);
+                if (!inRange.test(processId)) {
+                    continue;
+                }
+                if (current.isExpired(i, now)) {
+                    delete(current, i);
+                } else {
+                    out.add(new ProcessStateEntry(processId, current.starts[i], current.expiries[i],
+                            (current.flags[i] & PINNED_FLAG) != 0));
+                }
+            }
+        }
+
+        private void delete(Slots current, int index) {
+            current.keys[index] = DELETED;
+            if (current.bytes != null) {
+                current.bytes[index] = null;
+            }
+            live--;
+            deleted++;
+        }
+
+        private Slots rebuild(Slots old) {
+            long limit = (long) (old.keys.length * maxLoadFactor);
+            int capacity = live + 1 > limit / 2 ? old.keys.length << 1 : old.keys.length;
+            Slots next = new Slots(capacity, withBytes);
+            long now = ProcessClocks.millis();
+            int count = 0;
+            for (int i = 0; i < old.keys.length; i++) {
+                long key = old.keys[i];
+                if (key == EMPTY || key == DELETED || old.isExpired(i, now)) {
+                    continue;
+                }
+                int to = (int) mix(key) & next.mask;
+                while (next.keys[to] != EMPTY) {
+                    to = (to + 1) & next.mask;
+                }
+                next.keys[to] = key;
+                next.starts[to] = old.starts[i];
+                next.expiries[to] = old.expiries[i];
+                next.flags[to] = old.flags[i];
+                if (next.bytes != null) {
+                    next.bytes[to] = old.bytes[i];
+                }
+                count++;
+            }
+            live = count;
+            deleted = 0;
+            slots = next;
+            return next;
+        }
+    }
+
+    /**
+     * Parallel slot arrays of one segment
+     */
+    private static final class Slots {
+        private final long[] keys;
+        private final long[] starts;
+        private final long[] expiries;
+        private final byte[] flags;
+        private final byte[][] bytes;
+        private final int mask;
+
+        Slots(int capacity, boolean withBytes) {
+            this.keys = new long[capacity];
+            this.starts = new long[capacity];
+            this.expiries = new long[capacity];
+            this.flags = new byte[capacity];
+            this.bytes = withBytes ? new byte[capacity][] : null;
+            this.mask = capacity - 1;
+        }
+
+        long estimatedBytes() {
+            long capacity = keys.length;
+            long total = 4 * ARRAY_HEADER_BYTES + capacity * (3 * Long.BYTES + 1);
+            if (bytes != null) {
+                total += ARRAY_HEADER_BYTES + capacity * REFERENCE_BYTES;
+                for (byte[] key : bytes) {
+                    if (key != null) {
+                        // Arrays are padded to 8 bytes
+                        total += (ARRAY_HEADER_BYTES + key.length + 7) & ~7L;
+                    }
+                }
+            }
+            return total;
+        }
+
+        /**
+         * @return index of the key, or -(index + 1) of the slot where it would be inserted
+         */
+        int indexOf(long key, byte[] keyBytes, long hash) {
+            int index = (int) hash & mask;
+            int firstDeleted = -1;
+            for (int probed = 0; probed < keys.length; probed++, index = (index + 1) & mask) {
+                long candidate = keys[index];
+                if (candidate == EMPTY) {
+                    return -((firstDeleted >= 0 ? firstDeleted : index) + 1);
+                }
+                if (candidate == DELETED) {
+                    if (firstDeleted < 0) {
+                        firstDeleted = index;
+                    }
+                } else if (candidate == key && (bytes == null || Arrays.equals(bytes[index], keyBytes))) {
+                    return index;
+                }
+            }
+            if (firstDeleted < 0) {
+                // Cannot happen while the load factor is below 1
+                throw new IllegalStateException("Compact process table segment is full");
+            }
+            return -(firstDeleted + 1);
+        }
+
+        /**
+         * Copy the fields of a key into out; may see a torn slot unless validated by the caller
+         */
+        boolean read(long key, byte[] keyBytes, long hash, SlotReader out) {
+            int index = (int) hash & mask;
+            for (int probed = 0; probed < keys.length; probed++, index = (index + 1) & mask) {
+                long candidate = keys[index];
+                if (candidate == EMPTY) {
+                    return false;
+                }
+                if (candidate == key && (bytes == null || Arrays.equals(bytes[index], keyBytes))) {
+                    out.startTimestamp = starts[index];
+                    out.expiryTimeMillis = expiries[index];
+                    out.flags = flags[index];
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        boolean isExpired(int index, long now) {
+            return expiries[index] > 0 && now - starts[index] > expiries[index];
+        }
+    }
+}
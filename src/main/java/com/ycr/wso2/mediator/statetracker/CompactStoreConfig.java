@@ -0,0 +1,91 @@
+package com.ycr.wso2.mediator.statetracker;
+
+/**
+ * Settings for CompactProcessStatusManager
+ *
+ * Defaults can be overridden with JVM system properties prefixed with
+ * "statetracker.compact.", see {@link #fromSystemProperties()}.
+ */
+public class CompactStoreConfig {
+
+    public static final int DEFAULT_SEGMENTS = 64;
+    public static final int DEFAULT_INITIAL_CAPACITY = 1 << 16;
+    public static final double DEFAULT_MAX_LOAD_FACTOR = 0.75;
+    public static final int DEFAULT_MAX_BYTE_KEY_LENGTH = 48;
+    public static final long DEFAULT_PURGE_INTERVAL_MILLIS = 60000;
+
+    private int segments = DEFAULT_SEGMENTS;
+    private int initialCapacity = DEFAULT_INITIAL_CAPACITY;
+    private double maxLoadFactor = DEFAULT_MAX_LOAD_FACTOR;
+    private int maxByteKeyLength = DEFAULT_MAX_BYTE_KEY_LENGTH;
+    private long purgeIntervalMillis = DEFAULT_PURGE_INTERVAL_MILLIS;
+
+    /**
+     * Read settings from system properties, falling back to the defaults
+     */
+    public static CompactStoreConfig fromSystemProperties() {
+        CompactStoreConfig config = new CompactStoreConfig();
+        config.setSegments(Integer.getInteger("statetracker.compact.segments", DEFAULT_SEGMENTS));
+        config.setInitialCapacity(Integer.getInteger("statetracker.compact.initialCapacity",
+                DEFAULT_INITIAL_CAPACITY));
+        config.setMaxLoadFactor(Double.parseDouble(System.getProperty("statetracker.compact.maxLoadFactor",
+                String.valueOf(DEFAULT_MAX_LOAD_FACTOR))));
+        config.setMaxByteKeyLength(Integer.getInteger("statetracker.compact.maxByteKeyLength",
+                DEFAULT_MAX_BYTE_KEY_LENGTH));
+        config.setPurgeIntervalMillis(Long.getLong("statetracker.compact.purgeIntervalMillis",
+                DEFAULT_PURGE_INTERVAL_MILLIS));
+        return config;
+    }
+
+    /**
+     * Number of independently locked table segments, rounded up to a power of two
+     */
+    public int getSegments() {
+        return segments;
+    }
+
+    public void setSegments(int segments) {
+        this.segments = segments;
+    }
+
+    /**
+     * Initial number of slots over all segments
+     */
+    public int getInitialCapacity() {
+        return initialCapacity;
+    }
+
+    public void setInitialCapacity(int initialCapacity) {
+        this.initialCapacity = initialCapacity;
+    }
+
+    public double getMaxLoadFactor() {
+        return maxLoadFactor;
+    }
+
+    public void setMaxLoadFactor(double maxLoadFactor) {
+        this.maxLoadFactor = maxLoadFactor;
+    }
+
+    /**
+     * Longest UTF-8 process ID kept as a byte array key; longer IDs use the generic map
+     */
+    public int getMaxByteKeyLength() {
+        return maxByteKeyLength;
+    }
+
+    public void setMaxByteKeyLength(int maxByteKeyLength) {
+        this.maxByteKeyLength = maxByteKeyLength;
+    }
+
+    /**
+     * Interval of the scan that deletes expired slots, 0 disables it
+     */
+    public long getPurgeIntervalMillis() {
+        return purgeIntervalMillis;
+    }
+
+    public void setPurgeIntervalMillis(long purgeIntervalMillis) {
+        this.purgeIntervalMillis = purgeIntervalMillis;
+    }
+}
@@ -0,0 +1,47 @@
+package com.ycr.wso2.mediator.statetracker;
+
+/**
+ * Outcome of a conditional ProcessStatusManager operation
+ * 
+ * Holds whether the operation was applied and the entry that won: the new entry
+ * when a start was applied, otherwise the entry that prevented it (null if none).
+ */
+public class ConditionalOperationResult {
+    
+    private static final ConditionalOperationResult NOT_FOUND = new ConditionalOperationResult(false, null);
+    
+    private final boolean applied;
+    private final ProcessStateEntry entry;
+    
+    private ConditionalOperationResult(boolean applied, ProcessStateEntry entry) {
+        this.applied = applied;
+        this.entry = entry;
+    }
+    
+    public static ConditionalOperationResult applied(ProcessStateEntry entry) {
+        return new ConditionalOperationResult(true, entry);
+    }
+    
+    public static ConditionalOperationResult rejected(ProcessStateEntry entry) {
+        return entry == null ? NOT_FOUND : new ConditionalOperationResult(false, entry);
+    }
+    
+    public boolean isApplied() {
+        return applied;
+    }
+    
+    /**
+     * The winning entry, or null if the process was not tracked
+     */
+    public ProcessStateEntry getEntry() {
+        return entry;
+    }
+    
+    @Override
+    public String toString() {
+        return "ConditionalOperationResult{" +
+                "applied=" + applied +
+                ", entry=" + entry +
+                '}';
+    }
+}
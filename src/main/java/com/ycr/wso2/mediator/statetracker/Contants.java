@@ -8,7 +8,18 @@ public class Contants {
     public static final String TYPE_PROPERTY = "TYPE";
     public static final String STATE_TRACKER_TYPE_PROPERTY = "STATE_TRACKER_TYPE";
     public static final String STATE_EXPIRY_TIME_PROPERTY = "PROCESS_STATE_EXPIRY_TIME";
+    public static final String PROCESS_PINNED_PROPERTY = "PROCESS_PINNED";
+    public static final String PROCESS_OWNER_TOKEN_PROPERTY = "PROCESS_OWNER_TOKEN";
     public static final String STATE_TRACKER_RESULT_PROPERTY = "STATE_TRACKER_RESULT";
     public static final String STATE_TRACKER_ERROR_PROPERTY = "STATE_TRACKER_ERROR";
+    public static final String PROCESS_IDENTIFIERS_PROPERTY = "PROCESS_IDENTIFIERS";
+    public static final String STATE_TRACKER_BATCH_RESULT_PROPERTY = "STATE_TRACKER_BATCH_RESULT";
+    public static final String PROCESS_IDENTIFIER_PREFIX_PROPERTY = "PROCESS_IDENTIFIER_PREFIX";
+    public static final String PROCESS_LIST_LIMIT_PROPERTY = "PROCESS_LIST_LIMIT";
+    public static final String PROCESS_LIST_AFTER_PROPERTY = "PROCESS_LIST_AFTER";
+    public static final String STATE_TRACKER_LIST_RESULT_PROPERTY = "STATE_TRACKER_LIST_RESULT";
+    public static final String PROCESS_PERMIT_LIMIT_PROPERTY = "PROCESS_PERMIT_LIMIT";
+    public static final String PROCESS_PERMIT_ID_PROPERTY = "PROCESS_PERMIT_ID";
+    public static final String STATE_TRACKER_NAMESPACE_PROPERTY = "STATE_TRACKER_NAMESPACE";
 
 }
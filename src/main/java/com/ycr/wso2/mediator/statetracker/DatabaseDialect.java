@@ -0,0 +1,106 @@
+package com.ycr.wso2.mediator.statetracker;
+
+/**
+ * SQL dialects supported by DatabaseProcessStatusManager for single-statement upserts and inserts
+ */
+public enum DatabaseDialect {
+    
+    H2("H2"),
+    
+    MYSQL("MySQL"),
+    
+    POSTGRESQL("PostgreSQL");
+    
+    static final String COLUMNS = "PROCESS_ID, START_TIMESTAMP, EXPIRY_TIME_MS, EXPIRES_AT, PINNED, OWNER_TOKEN";
+    static final String PLACEHOLDERS = "?, ?, ?, ?, ?, ?";
+    
+    private final String productName;
+    
+    DatabaseDialect(String productName) {
+        this.productName = productName;
+    }
+    
+    /**
+     * Insert-or-update statement taking the parameters in {@link #COLUMNS} order
+     */
+    public String upsertSql(String tableName) {
+        switch (this) {
+            case H2:
+                return "MERGE INTO " + tableName + " (" + COLUMNS + ") KEY (PROCESS_ID) VALUES (" + PLACEHOLDERS + ")";
+                
+            case MYSQL:
+                return "INSERT INTO " + tableName + " (" + COLUMNS + ") VALUES (" + PLACEHOLDERS + ")"
+                        + " ON DUPLICATE KEY UPDATE START_TIMESTAMP = VALUES(START_TIMESTAMP),"
+                        + " EXPIRY_TIME_MS = VALUES(EXPIRY_TIME_MS), EXPIRES_AT = VALUES(EXPIRES_AT),"
+                        + " PINNED = VALUES(PINNED), OWNER_TOKEN = VALUES(OWNER_TOKEN)";
+                
+            case POSTGRESQL:
+                return "INSERT INTO " + tableName + " (" + COLUMNS + ") VALUES (" + PLACEHOLDERS + ")"
+                        + " ON CONFLICT (PROCESS_ID) DO UPDATE SET START_TIMESTAMP = EXCLUDED.START_TIMESTAMP,"
+                        + " EXPIRY_TIME_MS = EXCLUDED.EXPIRY_TIME_MS, EXPIRES_AT = EXCLUDED.EXPIRES_AT,"
+                        + " PINNED = EXCLUDED.PINNED, OWNER_TOKEN = EXCLUDED.OWNER_TOKEN";
+                
+            default:
+                throw new IllegalStateException("No upsert statement for dialect: " + this);
+        }
+    }
+    
+    /**
+     * Insert statement taking the parameters in {@link #COLUMNS} order that inserts
+     * nothing when the process ID already has a row
+     *
+     * On H2 a concurrent insert of the same ID can still fail with a constraint violation.
+     */
+    public String insertIfAbsentSql(String tableName) {
+        switch (this) {
+            case H2:
+                return "MERGE INTO " + tableName + " T USING (SELECT CAST(? AS VARCHAR(255)) AS PROCESS_ID) S"
+                        + " ON (T.PROCESS_ID = S.PROCESS_ID) WHEN NOT MATCHED THEN INSERT (" + COLUMNS + ")"
+                        + " VALUES (S.PROCESS_ID, ?, ?, ?, ?, ?)";
+                
+            case MYSQL:
+                return "INSERT IGNORE INTO " + tableName + " (" + COLUMNS + ") VALUES (" + PLACEHOLDERS + ")";
+                
+            case POSTGRESQL:
+                return "INSERT INTO " + tableName + " (" + COLUMNS + ") VALUES (" + PLACEHOLDERS + ")"
+                        + " ON CONFLICT (PROCESS_ID) DO NOTHING";
+                
+            default:
+                throw new IllegalStateException("No conditional insert statement for dialect: " + this);
+        }
+    }
+    
+    /**
+     * Detect the dialect from JDBC DatabaseMetaData.getDatabaseProductName()
+     */
+    public static DatabaseDialect fromProductName(String productName) {
+        if (productName != null) {
+            for (DatabaseDialect dialect : DatabaseDialect.values()) {
+                if (productName.toLowerCase().contains(dialect.productName.toLowerCase())) {
+                    return dialect;
+                }
+            }
+            if (productName.toLowerCase().contains("mariadb")) {
+                return MYSQL;
+            }
+        }
+        
+        throw new IllegalArgumentException("Unsupported database: " + productName +
+            ". Supported databases: H2, MySQL, PostgreSQL");
+    }
+    
+    public static DatabaseDialect fromString(String dialect) {
+        if (dialect == null || dialect.trim().isEmpty()) {
+            return null; // Detect from connection
+        }
+        
+        for (DatabaseDialect databaseDialect : DatabaseDialect.values()) {
+            if (databaseDialect.name().equalsIgnoreCase(dialect.trim())) {
+                return databaseDialect;
+            }
+        }
+        
+        throw new IllegalArgumentException("Unknown DatabaseDialect: " + dialect +
+            ". Supported dialects: H2, MYSQL, POSTGRESQL");
+    }
+}
@@ -0,0 +1,889 @@
+package com.ycr.wso2.mediator.statetracker;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Database implementation of ProcessStatusManager
+ *
+ * START/STOP are queued and written by a single writer thread that group-commits
+ * concurrent writes: it waits up to maxBatchDelayMillis for more writes, coalesces
+ * writes to the same process ID and commits them as one JDBC batch of upserts and
+ * deletes. The writer keeps one connection and its prepared statements open.
+ *
+ * Reads see this node's not yet committed writes first, then a short-lived local
+ * cache of database rows, then the database. Expired rows are deleted in bulk by a
+ * range delete on the indexed EXPIRES_AT column.
+ *
+ * Bulk operations queue all their writes before waiting for any of them, so they
+ * are committed in one batch, and read cache misses with a single IN query.
+ *
+ * Prefix queries stream a LIKE range over the primary key in the database's own
+ * collation order; they see committed rows only.
+ *
+ * Conditional operations and renewals wait for this node's pending write to the same ID, then run
+ * as conditional statements on their own connection and decide the outcome from the
+ * affected row count, so they are atomic across nodes sharing the table.
+ */
+public class DatabaseProcessStatusManager implements ProcessStatusManager {
+
+    private static final Log log = LogFactory.getLog(DatabaseProcessStatusManager.class);
+
+    // Bind parameters per IN query, well below the limits of the supported databases
+    private static final int MAX_IN_LIST = 500;
+
+    // Rows fetched per round trip by prefix queries
+    private static final int PREFIX_FETCH_SIZE = 500;
+
+    // Statement rounds of a conditional operation before giving up on a row that keeps changing
+    private static final int MAX_CONDITIONAL_ATTEMPTS = 3;
+
+    private final DataSource dataSource;
+    private final DatabaseStoreConfig config;
+    private final DatabaseDialect dialect;
+
+    private final String upsertSql;
+    private final String deleteSql;
+    private final String selectSql;
+    private final String selectManySql;
+    private final String selectPrefixSql;
+    private final String purgeSql;
+    private final String insertIfAbsentSql;
+    private final String replaceExpiredSql;
+    private final String deleteIfOwnerSql;
+    private final String renewSql;
+
+    private final BlockingQueue<PendingWrite> writeQueue;
+
+    // Writes not yet committed, so that this node reads its own writes
+    private final ConcurrentHashMap<String, PendingWrite> pendingWrites = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, CachedRow> readCache = new ConcurrentHashMap<>();
+
+    private final Thread writerThread;
+    private final ScheduledExecutorService purgeExecutor;
+    private volatile boolean running = true;
+
+    // Only used by the writer thread
+    private Connection writerConnection;
+    private PreparedStatement upsertStatement;
+    private PreparedStatement deleteStatement;
+
+    private final LongAdder committedBatches = new LongAdder();
+    private final LongAdder committedWrites = new LongAdder();
+    private final LongAdder failedWrites = new LongAdder();
+    private final LongAdder purgedRows = new LongAdder();
+    private final LongAdder databaseReads = new LongAdder();
+
+    public DatabaseProcessStatusManager(DatabaseStoreConfig config) {
+        this.config = config;
+        this.dataSource = resolveDataSource(config);
+        this.dialect = config.getDialect() != null ? config.getDialect() : detectDialect(dataSource);
+
+        String table = config.getTableName();
+        this.upsertSql = dialect.upsertSql(table);
+        this.deleteSql = "DELETE FROM " + table + " WHERE PROCESS_ID = ?";
+        this.selectSql = "SELECT START_TIMESTAMP, EXPIRY_TIME_MS, PINNED, OWNER_TOKEN FROM " + table
+                + " WHERE PROCESS_ID = ?";
+        this.selectManySql = "SELECT PROCESS_ID, START_TIMESTAMP, EXPIRY_TIME_MS, PINNED, OWNER_TOKEN FROM " + table
+                + " WHERE PROCESS_ID IN (";
+        this.selectPrefixSql = "SELECT PROCESS_ID, START_TIMESTAMP, EXPIRY_TIME_MS, PINNED, OWNER_TOKEN FROM " + table
+                + " WHERE PROCESS_ID LIKE ? ESCAPE '!' AND PROCESS_ID > ? AND EXPIRES_AT >= ? ORDER BY PROCESS_ID";
+        this.purgeSql = "DELETE FROM " + table + " WHERE EXPIRES_AT < ?";
+        this.insertIfAbsentSql = dialect.insertIfAbsentSql(table);
+        this.replaceExpiredSql = "UPDATE " + table + " SET START_TIMESTAMP = ?, EXPIRY_TIME_MS = ?, EXPIRES_AT = ?,"
+                + " PINNED = ?, OWNER_TOKEN = ? WHERE PROCESS_ID = ? AND EXPIRES_AT < ?";
+        this.deleteIfOwnerSql = "DELETE FROM " + table
+                + " WHERE PROCESS_ID = ? AND OWNER_TOKEN = ? AND START_TIMESTAMP = ? AND EXPIRES_AT >= ?";
+        this.renewSql = "UPDATE " + table + " SET EXPIRY_TIME_MS = ?, EXPIRES_AT = ?"
+                + " WHERE PROCESS_ID = ? AND START_TIMESTAMP = ? AND EXPIRES_AT >= ?";
+
+        this.writeQueue = new ArrayBlockingQueue<>(config.getWriteQueueCapacity());
+        this.writerThread = new Thread(this::writeLoop, "state-tracker-db-writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+
+        if (config.getPurgeIntervalMillis() > 0) {
+            this.purgeExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "state-tracker-db-purge");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.purgeExecutor.scheduleWithFixedDelay(this::purgeSafely, config.getPurgeIntervalMillis(),
+                    config.getPurgeIntervalMillis(), TimeUnit.MILLISECONDS);
+        } else {
+            this.purgeExecutor = null;
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("Created DatabaseProcessStatusManager on table " + table + " with dialect " + dialect);
+        }
+    }
+
+    @Override
+    public void startProcess(String processId, long expiryTimeMillis) {
+        startProcess(processId, expiryTimeMillis, false, null);
+    }
+
+    @Override
+    public void startProcess(String processId, long expiryTimeMillis, boolean pinned, String ownerToken) {
+        if (processId == null || processId.trim().isEmpty()) {
+            throw new IllegalArgumentException("Process ID cannot be null or empty");
+        }
+
+        ProcessStateEntry entry = new ProcessStateEntry(processId, ProcessClocks.millis(),
+                expiryTimeMillis, pinned, ownerToken);
+        write(new PendingWrite(processId, entry));
+    }
+
+    /**
+     * Inserts the row if the ID has none, otherwise takes over the row if it has expired
+     */
+    @Override
+    public ConditionalOperationResult startProcessIfAbsent(String processId, long expiryTimeMillis,
+                                                           boolean pinned, String ownerToken) {
+        validateProcessId(processId);
+        awaitPendingWrite(processId);
+
+        long now = ProcessClocks.millis();
+        ProcessStateEntry candidate = new ProcessStateEntry(processId, now, expiryTimeMillis, pinned, ownerToken);
+        try (Connection connection = conditionalConnection()) {
+            for (int attempt = 0; attempt < MAX_CONDITIONAL_ATTEMPTS; attempt++) {
+                if (insertIfAbsent(connection, candidate) || replaceExpired(connection, candidate, now)) {
+                    cache(processId, candidate, now);
+                    return ConditionalOperationResult.applied(candidate);
+                }
+                ProcessStateEntry running = load(connection, processId);
+                if (running != null && !running.isExpired(now)) {
+                    cache(processId, running, now);
+                    return ConditionalOperationResult.rejected(running);
+                }
+                // Stopped or expired by another node since the statements ran
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to start process: " + processId, e);
+        }
+        throw new IllegalStateException("Process state kept changing while starting: " + processId);
+    }
+
+    @Override
+    public ConditionalOperationResult replaceProcessIfExpired(String processId, long expiryTimeMillis,
+                                                              boolean pinned, String ownerToken) {
+        validateProcessId(processId);
+        awaitPendingWrite(processId);
+
+        long now = ProcessClocks.millis();
+        ProcessStateEntry candidate = new ProcessStateEntry(processId, now, expiryTimeMillis, pinned, ownerToken);
+        try (Connection connection = conditionalConnection()) {
+            for (int attempt = 0; attempt < MAX_CONDITIONAL_ATTEMPTS; attempt++) {
+                if (replaceExpired(connection, candidate, now)) {
+                    cache(processId, candidate, now);
+                    return ConditionalOperationResult.applied(candidate);
+                }
+                ProcessStateEntry current = load(connection, processId);
+                if (current == null || !current.isExpired(now)) {
+                    cache(processId, current, now);
+                    return ConditionalOperationResult.rejected(current);
+                }
+                // Expired after the update was evaluated
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to replace process: " + processId, e);
+        }
+        throw new IllegalStateException("Process state kept changing while replacing: " + processId);
+    }
+
+    /**
+     * Deletes the row read for the owner check only if it is still the same, unexpired run
+     */
+    @Override
+    public ConditionalOperationResult stopProcessIfOwner(String processId, String ownerToken) {
+        if (processId == null || processId.trim().isEmpty()) {
+            return ConditionalOperationResult.rejected(null);
+        }
+        awaitPendingWrite(processId);
+
+        long now = ProcessClocks.millis();
+        try (Connection connection = conditionalConnection()) {
+            for (int attempt = 0; attempt < MAX_CONDITIONAL_ATTEMPTS; attempt++) {
+                ProcessStateEntry running = load(connection, processId);
+                if (running == null || running.isExpired(now)) {
+                    cache(processId, running, now);
+                    return ConditionalOperationResult.rejected(null);
+                }
+                if (!running.isOwnedBy(ownerToken)) {
+                    cache(processId, running, now);
+                    return ConditionalOperationResult.rejected(running);
+                }
+                if (deleteIfOwner(connection, running, now)) {
+                    cache(processId, null, now);
+                    return ConditionalOperationResult.applied(running);
+                }
+                // Restarted or stopped by another node since it was read
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to stop process: " + processId, e);
+        }
+        throw new IllegalStateException("Process state kept changing while stopping: " + processId);
+    }
+
+    /**
+     * Moves the expiry of the row read from the database, only if it is still the same,
+     * unexpired run, so a process stopped by another node is never written back. The
+     * renew count is not stored and is reported as 1.
+     */
+    @Override
+    public ProcessStateEntry renewProcess(String processId, long leaseMillis) {
+        if (processId == null || processId.trim().isEmpty()) {
+            return null;
+        }
+        awaitPendingWrite(processId);
+
+        long now = ProcessClocks.millis();
+        try (Connection connection = conditionalConnection()) {
+            ProcessStateEntry running = load(connection, processId);
+            if (running == null || running.isExpired(now)) {
+                cache(processId, running, now);
+                return null;
+            }
+            ProcessStateEntry renewed = running.renewedCopy(now, leaseMillis);
+            if (!renew(connection, renewed, now)) {
+                // Stopped or restarted since it was read
+                readCache.remove(processId);
+                return null;
+            }
+            cache(processId, renewed, now);
+            return renewed;
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to renew process: " + processId, e);
+        }
+    }
+
+    @Override
+    public boolean isProcessRunning(String processId) {
+        return getProcessState(processId) != null;
+    }
+
+    @Override
+    public boolean stopProcess(String processId) {
+        if (processId == null || processId.trim().isEmpty()) {
+            return false;
+        }
+
+        boolean wasRunning = getProcessState(processId) != null;
+        write(new PendingWrite(processId, null));
+        return wasRunning;
+    }
+
+    @Override
+    public ProcessStateEntry getProcessState(String processId) {
+        if (processId == null || processId.trim().isEmpty()) {
+            return null;
+        }
+
+        long now = ProcessClocks.millis();
+        ProcessStateEntry entry;
+
+        PendingWrite pending = pendingWrites.get(processId);
+        if (pending != null) {
+            entry = pending.entry;
+        } else {
+            CachedRow cached = readCache.get(processId);
+            if (cached != null && now - cached.loadedAt <= config.getReadCacheTtlMillis()) {
+                entry = cached.entry;
+            } else {
+                entry = load(processId);
+                cache(processId, entry, now);
+            }
+        }
+
+        // Expired rows are left to the bulk purge
+        return (entry != null && entry.isExpired(now)) ? null : entry;
+    }
+
+    @Override
+    public boolean[] startProcesses(List<String> processIds, long expiryTimeMillis,
+                                    boolean pinned, String ownerToken) {
+        for (String processId : processIds) {
+            if (processId == null || processId.trim().isEmpty()) {
+                throw new IllegalArgumentException("Process ID cannot be null or empty");
+            }
+        }
+
+        long now = ProcessClocks.millis();
+        List<PendingWrite> writes = new ArrayList<>(processIds.size());
+        for (String processId : processIds) {
+            PendingWrite write = new PendingWrite(processId,
+                    new ProcessStateEntry(processId, now, expiryTimeMillis, pinned, ownerToken));
+            enqueue(write);
+            writes.add(write);
+        }
+        awaitAll(writes);
+
+        boolean[] started = new boolean[processIds.size()];
+        Arrays.fill(started, true);
+        return started;
+    }
+
+    @Override
+    public boolean[] stopProcesses(List<String> processIds) {
+        ProcessStateEntry[] running = getProcessStates(processIds);
+        boolean[] stopped = new boolean[processIds.size()];
+        List<PendingWrite> writes = new ArrayList<>(processIds.size());
+        for (int i = 0; i < stopped.length; i++) {
+            String processId = processIds.get(i);
+            if (processId == null || processId.trim().isEmpty()) {
+                continue;
+            }
+            stopped[i] = running[i] != null;
+            PendingWrite write = new PendingWrite(processId, null);
+            enqueue(write);
+            writes.add(write);
+        }
+        awaitAll(writes);
+        return stopped;
+    }
+
+    @Override
+    public ProcessStateEntry[] getProcessStates(List<String> processIds) {
+        long now = ProcessClocks.millis();
+        ProcessStateEntry[] entries = new ProcessStateEntry[processIds.size()];
+        Map<String, List<Integer>> misses = new LinkedHashMap<>();
+
+        for (int i = 0; i < entries.length; i++) {
+            String processId = processIds.get(i);
+            if (processId == null || processId.trim().isEmpty()) {
+                continue;
+            }
+            PendingWrite pending = pendingWrites.get(processId);
+            CachedRow cached;
+            if (pending != null) {
+                entries[i] = pending.entry;
+            } else if ((cached = readCache.get(processId)) != null
+                    && now - cached.loadedAt <= config.getReadCacheTtlMillis()) {
+                entries[i] = cached.entry;
+            } else {
+                misses.computeIfAbsent(processId, k -> new ArrayList<>(1)).add(i);
+            }
+        }
+
+        if (!misses.isEmpty()) {
+            Map<String, ProcessStateEntry> loaded = loadAll(new ArrayList<>(misses.keySet()));
+            for (Map.Entry<String, List<Integer>> miss : misses.entrySet()) {
+                ProcessStateEntry entry = loaded.get(miss.getKey());
+                cache(miss.getKey(), entry, now);
+                for (int index : miss.getValue()) {
+                    entries[index] = entry;
+                }
+            }
+        }
+
+        for (int i = 0; i < entries.length; i++) {
+            if (entries[i] != null && entries[i].isExpired(now)) {
+                entries[i] = null;
+            }
+        }
+        return entries;
+    }
+
+    @Override
+    public int forEachRunning(String prefix, String afterId, Predicate<ProcessStateEntry> visitor) {
+        long now = ProcessClocks.millis();
+        int visited = 0;
+        databaseReads.increment();
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(selectPrefixSql)) {
+            statement.setFetchSize(PREFIX_FETCH_SIZE);
+            statement.setString(1, prefix.replace("!", "!!").replace("%", "!%").replace("_", "!_") + "%");
+            statement.setString(2, afterId != null ? afterId : "");
+            statement.setLong(3, now);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    ProcessStateEntry entry = new ProcessStateEntry(resultSet.getString(1), resultSet.getLong(2),
+                            resultSet.getLong(3), resultSet.getBoolean(4), resultSet.getString(5));
+                    visited++;
+                    if (!visitor.test(entry)) {
+                        break;
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to query processes with prefix: " + prefix, e);
+        }
+        return visited;
+    }
+
+    @Override
+    public void shutdown() {
+        running = false;
+        if (purgeExecutor != null) {
+            purgeExecutor.shutdownNow();
+        }
+        try {
+            // The writer drains the queue before it exits
+            writerThread.join(config.getWriteTimeoutMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writerThread.isAlive()) {
+            log.warn("State tracker database writer did not finish within " + config.getWriteTimeoutMillis() + " ms");
+        }
+    }
+
+    /**
+     * Delete all rows whose expiry has passed
+     *
+     * @return number of deleted rows
+     */
+    public int purgeExpired() throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(purgeSql)) {
+            statement.setLong(1, ProcessClocks.millis());
+            int deleted = statement.executeUpdate();
+            if (!connection.getAutoCommit()) {
+                connection.commit();
+            }
+            purgedRows.add(deleted);
+            return deleted;
+        }
+    }
+
+    public DatabaseDialect getDialect() {
+        return dialect;
+    }
+
+    public long getCommittedBatchCount() {
+        return committedBatches.sum();
+    }
+
+    public long getCommittedWriteCount() {
+        return committedWrites.sum();
+    }
+
+    public long getFailedWriteCount() {
+        return failedWrites.sum();
+    }
+
+    public long getPurgedRowCount() {
+        return purgedRows.sum();
+    }
+
+    public long getDatabaseReadCount() {
+        return databaseReads.sum();
+    }
+
+    public int getPendingWriteCount() {
+        return writeQueue.size();
+    }
+
+    private void write(PendingWrite write) {
+        enqueue(write);
+        if (config.isSynchronousWrites()) {
+            await(write);
+        }
+    }
+
+    private void awaitAll(List<PendingWrite> writes) {
+        if (config.isSynchronousWrites()) {
+            for (PendingWrite write : writes) {
+                await(write);
+            }
+        }
+    }
+
+    private void enqueue(PendingWrite write) {
+        checkRunning();
+
+        pendingWrites.put(write.processId, write);
+        readCache.remove(write.processId);
+        try {
+            if (!writeQueue.offer(write, config.getWriteTimeoutMillis(), TimeUnit.MILLISECONDS)) {
+                pendingWrites.remove(write.processId, write);
+                throw new IllegalStateException("State tracker write queue is full");
+            }
+        } catch (InterruptedException e) {
+            pendingWrites.remove(write.processId, write);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while queueing state tracker write", e);
+        }
+    }
+
+    private void checkRunning() {
+        if (!running) {
+            throw new IllegalStateException("DatabaseProcessStatusManager is shut down");
+        }
+    }
+
+    /**
+     * Let this node's queued write to the ID reach the database before a conditional statement reads it
+     */
+    private void awaitPendingWrite(String processId) {
+        checkRunning();
+        PendingWrite pending = pendingWrites.get(processId);
+        if (pending != null) {
+            await(pending);
+        }
+    }
+
+    private Connection conditionalConnection() throws SQLException {
+        Connection connection = dataSource.getConnection();
+        if (!connection.getAutoCommit()) {
+            connection.setAutoCommit(true);
+        }
+        return connection;
+    }
+
+    private boolean insertIfAbsent(Connection connection, ProcessStateEntry entry) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(insertIfAbsentSql)) {
+            statement.setString(1, entry.getProjectId());
+            bindEntry(statement, 2, entry);
+            return statement.executeUpdate() > 0;
+        } catch (SQLException e) {
+            // Integrity constraint violation: another node inserted the ID first
+            if (e.getSQLState() != null && e.getSQLState().startsWith("23")) {
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    private boolean replaceExpired(Connection connection, ProcessStateEntry entry, long now) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(replaceExpiredSql)) {
+            bindEntry(statement, 1, entry);
+            statement.setString(6, entry.getProjectId());
+            statement.setLong(7, now);
+            return statement.executeUpdate() > 0;
+        }
+    }
+
+    private boolean deleteIfOwner(Connection connection, ProcessStateEntry running, long now) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(deleteIfOwnerSql)) {
+            statement.setString(1, running.getProjectId());
+            statement.setString(2, running.getOwnerToken());
+            statement.setLong(3, running.getStartTimestamp());
+            statement.setLong(4, now);
+            return statement.executeUpdate() > 0;
+        }
+    }
+
+    private boolean renew(Connection connection, ProcessStateEntry renewed, long now) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(renewSql)) {
+            statement.setLong(1, renewed.getExpiryTimeMillis());
+            statement.setLong(2, renewed.getExpiryDeadline());
+            statement.setString(3, renewed.getProjectId());
+            statement.setLong(4, renewed.getStartTimestamp());
+            statement.setLong(5, now);
+            return statement.executeUpdate() > 0;
+        }
+    }
+
+    /**
+     * Bind the columns after PROCESS_ID in {@link DatabaseDialect#COLUMNS} order, starting at index
+     */
+    private static void bindEntry(PreparedStatement statement, int index, ProcessStateEntry entry)
+            throws SQLException {
+        statement.setLong(index, entry.getStartTimestamp());
+        statement.setLong(index + 1, entry.getExpiryTimeMillis());
+        statement.setLong(index + 2, entry.getExpiryDeadline());
+        statement.setBoolean(index + 3, entry.isPinned());
+        if (entry.getOwnerToken() != null) {
+            statement.setString(index + 4, entry.getOwnerToken());
+        } else {
+            statement.setNull(index + 4, Types.VARCHAR);
+        }
+    }
+
+    private void await(PendingWrite write) {
+        try {
+            write.done.get(config.getWriteTimeoutMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Failed to write process state: " + write.processId, e.getCause());
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("Timed out writing process state: " + write.processId, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while writing process state: " + write.processId, e);
+        }
+    }
+
+    private void writeLoop() {
+        List<PendingWrite> batch = new ArrayList<>(config.getBatchSize());
+        while (running || !writeQueue.isEmpty()) {
+            try {
+                PendingWrite first = writeQueue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+
+                // Give concurrent writers a chance to join this commit
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(config.getMaxBatchDelayMillis());
+                while (batch.size() < config.getBatchSize()) {
+                    writeQueue.drainTo(batch, config.getBatchSize() - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= config.getBatchSize() || remaining <= 0) {
+                        break;
+                    }
+                    PendingWrite next = writeQueue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                flush(batch);
+            } catch (InterruptedException e) {
+                // Keep draining until shut down
+                Thread.interrupted();
+            } catch (Throwable t) {
+                log.error("Unexpected error in state tracker database writer", t);
+            } finally {
+                batch.clear();
+            }
+        }
+        closeWriterConnection();
+    }
+
+    private void flush(List<PendingWrite> batch) {
+        // Only the last write per process ID matters
+        Map<String, PendingWrite> coalesced = new LinkedHashMap<>();
+        for (PendingWrite write : batch) {
+            coalesced.put(write.processId, write);
+        }
+
+        SQLException failure = null;
+        for (int attempt = 0; attempt < 2; attempt++) {
+            try {
+                executeBatch(coalesced.values());
+                failure = null;
+                break;
+            } catch (SQLException e) {
+                // Retry once on a fresh connection, the pooled one may have gone stale
+                failure = e;
+                closeWriterConnection();
+            }
+        }
+
+        if (failure != null) {
+            log.error("Failed to write " + batch.size() + " process state changes", failure);
+            failedWrites.add(batch.size());
+        } else {
+            committedBatches.increment();
+            committedWrites.add(batch.size());
+        }
+
+        for (PendingWrite write : batch) {
+            pendingWrites.remove(write.processId, write);
+            if (failure != null) {
+                write.done.completeExceptionally(failure);
+            } else {
+                write.done.complete(null);
+            }
+        }
+    }
+
+    private void executeBatch(Iterable<PendingWrite> writes) throws SQLException {
+        if (writerConnection == null) {
+            writerConnection = dataSource.getConnection();
+            writerConnection.setAutoCommit(false);
+            upsertStatement = writerConnection.prepareStatement(upsertSql);
+            deleteStatement = writerConnection.prepareStatement(deleteSql);
+        }
+
+        boolean hasUpserts = false;
+        boolean hasDeletes = false;
+        try {
+            for (PendingWrite write : writes) {
+                if (write.entry != null) {
+                    upsertStatement.setString(1, write.processId);
+                    bindEntry(upsertStatement, 2, write.entry);
+                    upsertStatement.addBatch();
+                    hasUpserts = true;
+                } else {
+                    deleteStatement.setString(1, write.processId);
+                    deleteStatement.addBatch();
+                    hasDeletes = true;
+                }
+            }
+            if (hasUpserts) {
+                upsertStatement.executeBatch();
+            }
+            if (hasDeletes) {
+                deleteStatement.executeBatch();
+            }
+            writerConnection.commit();
+        } catch (SQLException e) {
+            try {
+                writerConnection.rollback();
+            } catch (SQLException rollbackError) {
+                e.addSuppressed(rollbackError);
+            }
+            throw e;
+        }
+    }
+
+    private void closeWriterConnection() {
+        if (writerConnection != null) {
+            try {
+                writerConnection.close();
+            } catch (SQLException e) {
+                log.warn("Error closing state tracker database connection", e);
+            }
+        }
+        writerConnection = null;
+        upsertStatement = null;
+        deleteStatement = null;
+    }
+
+    private ProcessStateEntry load(String processId) {
+        try (Connection connection = dataSource.getConnection()) {
+            return load(connection, processId);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to read process state: " + processId, e);
+        }
+    }
+
+    private ProcessStateEntry load(Connection connection, String processId) throws SQLException {
+        databaseReads.increment();
+        try (PreparedStatement statement = connection.prepareStatement(selectSql)) {
+            statement.setString(1, processId);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                if (!resultSet.next()) {
+                    return null;
+                }
+                return new ProcessStateEntry(processId, resultSet.getLong(1), resultSet.getLong(2),
+                        resultSet.getBoolean(3), resultSet.getString(4));
+            }
+        }
+    }
+
+    private Map<String, ProcessStateEntry> loadAll(List<String> processIds) {
+        Map<String, ProcessStateEntry> loaded = new HashMap<>();
+        try (Connection connection = dataSource.getConnection()) {
+            for (int from = 0; from < processIds.size(); from += MAX_IN_LIST) {
+                List<String> chunk = processIds.subList(from, Math.min(processIds.size(), from + MAX_IN_LIST));
+                StringBuilder sql = new StringBuilder(selectManySql);
+                for (int i = 0; i < chunk.size(); i++) {
+                    sql.append(i == 0 ? "?" : ",?");
+                }
+                sql.append(')');
+
+                databaseReads.increment();
+                try (PreparedStatement statement = connection.prepareStatement(sql.toString())) {
+                    for (int i = 0; i < chunk.size(); i++) {
+                        statement.setString(i + 1, chunk.get(i));
+                    }
+                    try (ResultSet resultSet = statement.executeQuery()) {
+                        while (resultSet.next()) {
+                            String processId = resultSet.getString(1);
+                            loaded.put(processId, new ProcessStateEntry(processId, resultSet.getLong(2),
+                                    resultSet.getLong(3), resultSet.getBoolean(4), resultSet.getString(5)));
+                        }
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to read " + processIds.size() + " process states", e);
+        }
+        return loaded;
+    }
+
+    private void cache(String processId, ProcessStateEntry entry, long now) {
+        if (config.getReadCacheTtlMillis() <= 0) {
+            return;
+        }
+        if (readCache.size() >= config.getReadCacheMaxEntries()) {
+            readCache.clear();
+        }
+        readCache.put(processId, new CachedRow(entry, now));
+    }
+
+    private void purgeSafely() {
+        try {
+            int deleted = purgeExpired();
+            if (deleted > 0 && log.isDebugEnabled()) {
+                log.debug("Purged " + deleted + " expired process states");
+            }
+        } catch (Throwable t) {
+            log.error("Error purging expired process states", t);
+        }
+    }
+
+    private static void validateProcessId(String processId) {
+        if (processId == null || processId.trim().isEmpty()) {
+            throw new IllegalArgumentException("Process ID cannot be null or empty");
+        }
+    }
+
+    private static DataSource resolveDataSource(DatabaseStoreConfig config) {
+        if (config.getDataSource() != null) {
+            return config.getDataSource();
+        }
+        if (config.getDataSourceName() == null || config.getDataSourceName().trim().isEmpty()) {
+            throw new IllegalArgumentException("No DataSource configured for DatabaseProcessStatusManager. " +
+                "Set the statetracker.db.dataSource system property to a JNDI datasource name.");
+        }
+        try {
+            return (DataSource) new InitialContext().lookup(config.getDataSourceName().trim());
+        } catch (NamingException e) {
+            throw new IllegalArgumentException("Cannot find DataSource: " + config.getDataSourceName(), e);
+        }
+    }
+
+    private static DatabaseDialect detectDialect(DataSource dataSource) {
+        try (Connection connection = dataSource.getConnection()) {
+            return DatabaseDialect.fromProductName(connection.getMetaData().getDatabaseProductName());
+        } catch (SQLException e) {
+            throw new IllegalStateException("Cannot detect database dialect", e);
+        }
+    }
+
+    /**
+     * A queued START (entry set) or STOP (entry null)
+     */
+    private static final class PendingWrite {
+        private final String processId;
+        private final ProcessStateEntry entry;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        private PendingWrite(String processId, ProcessStateEntry entry) {
+            this.processId = processId;
+            this.entry = entry;
+        }
+    }
+
+    private static final class CachedRow {
+        private final ProcessStateEntry entry;
+        private final long loadedAt;
+
+        private CachedRow(ProcessStateEntry entry, long loadedAt) {
+            this.entry = entry;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
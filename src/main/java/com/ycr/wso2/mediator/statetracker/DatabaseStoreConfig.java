@@ -0,0 +1,173 @@
+package com.ycr.wso2.mediator.statetracker;
+
+import javax.sql.DataSource;
+
+/**
+ * Settings for DatabaseProcessStatusManager
+ *
+ * The DataSource is either given directly or looked up by JNDI name, normally a
+ * Carbon datasource (e.g. jdbc/WSO2StateTrackerDB) so that pooling is handled by
+ * the server. Defaults can be overridden with JVM system properties prefixed with
+ * "statetracker.db.", see {@link #fromSystemProperties()}.
+ */
+public class DatabaseStoreConfig {
+
+    public static final String DEFAULT_TABLE_NAME = "STATE_TRACKER_PROCESS";
+    public static final int DEFAULT_BATCH_SIZE = 500;
+    public static final long DEFAULT_MAX_BATCH_DELAY_MILLIS = 2;
+    public static final long DEFAULT_WRITE_TIMEOUT_MILLIS = 5000;
+    public static final int DEFAULT_WRITE_QUEUE_CAPACITY = 100000;
+    public static final long DEFAULT_READ_CACHE_TTL_MILLIS = 500;
+    public static final int DEFAULT_READ_CACHE_MAX_ENTRIES = 10000;
+    public static final long DEFAULT_PURGE_INTERVAL_MILLIS = 60000;
+
+    private DataSource dataSource;
+    private String dataSourceName;
+    private String tableName = DEFAULT_TABLE_NAME;
+    private DatabaseDialect dialect;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private long maxBatchDelayMillis = DEFAULT_MAX_BATCH_DELAY_MILLIS;
+    private boolean synchronousWrites = true;
+    private long writeTimeoutMillis = DEFAULT_WRITE_TIMEOUT_MILLIS;
+    private int writeQueueCapacity = DEFAULT_WRITE_QUEUE_CAPACITY;
+    private long readCacheTtlMillis = DEFAULT_READ_CACHE_TTL_MILLIS;
+    private int readCacheMaxEntries = DEFAULT_READ_CACHE_MAX_ENTRIES;
+    private long purgeIntervalMillis = DEFAULT_PURGE_INTERVAL_MILLIS;
+
+    /**
+     * Read settings from system properties, falling back to the defaults
+     */
+    public static DatabaseStoreConfig fromSystemProperties() {
+        DatabaseStoreConfig config = new DatabaseStoreConfig();
+        config.setDataSourceName(System.getProperty("statetracker.db.dataSource"));
+        config.setTableName(System.getProperty("statetracker.db.table", DEFAULT_TABLE_NAME));
+        config.setDialect(DatabaseDialect.fromString(System.getProperty("statetracker.db.dialect")));
+        config.setBatchSize(Integer.getInteger("statetracker.db.batchSize", DEFAULT_BATCH_SIZE));
+        config.setMaxBatchDelayMillis(Long.getLong("statetracker.db.maxBatchDelayMillis",
+                DEFAULT_MAX_BATCH_DELAY_MILLIS));
+        config.setSynchronousWrites(Boolean.parseBoolean(
+                System.getProperty("statetracker.db.synchronousWrites", "true")));
+        config.setWriteTimeoutMillis(Long.getLong("statetracker.db.writeTimeoutMillis",
+                DEFAULT_WRITE_TIMEOUT_MILLIS));
+        config.setWriteQueueCapacity(Integer.getInteger("statetracker.db.writeQueueCapacity",
+                DEFAULT_WRITE_QUEUE_CAPACITY));
+        config.setReadCacheTtlMillis(Long.getLong("statetracker.db.readCacheTtlMillis",
+                DEFAULT_READ_CACHE_TTL_MILLIS));
+        config.setReadCacheMaxEntries(Integer.getInteger("statetracker.db.readCacheMaxEntries",
+                DEFAULT_READ_CACHE_MAX_ENTRIES));
+        config.setPurgeIntervalMillis(Long.getLong("statetracker.db.purgeIntervalMillis",
+                DEFAULT_PURGE_INTERVAL_MILLIS));
+        return config;
+    }
+
+    public DataSource getDataSource() {
+        return dataSource;
+    }
+
+    public void setDataSource(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    public String getDataSourceName() {
+        return dataSourceName;
+    }
+
+    public void setDataSourceName(String dataSourceName) {
+        this.dataSourceName = dataSourceName;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public void setTableName(String tableName) {
+        this.tableName = tableName;
+    }
+
+    /**
+     * Dialect for upserts, null to detect it from the connection metadata
+     */
+    public DatabaseDialect getDialect() {
+        return dialect;
+    }
+
+    public void setDialect(DatabaseDialect dialect) {
+        this.dialect = dialect;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * How long the writer waits for more writes to join a batch before committing
+     */
+    public long getMaxBatchDelayMillis() {
+        return maxBatchDelayMillis;
+    }
+
+    public void setMaxBatchDelayMillis(long maxBatchDelayMillis) {
+        this.maxBatchDelayMillis = maxBatchDelayMillis;
+    }
+
+    /**
+     * Whether START/STOP wait for their batch to commit before returning
+     */
+    public boolean isSynchronousWrites() {
+        return synchronousWrites;
+    }
+
+    public void setSynchronousWrites(boolean synchronousWrites) {
+        this.synchronousWrites = synchronousWrites;
+    }
+
+    public long getWriteTimeoutMillis() {
+        return writeTimeoutMillis;
+    }
+
+    public void setWriteTimeoutMillis(long writeTimeoutMillis) {
+        this.writeTimeoutMillis = writeTimeoutMillis;
+    }
+
+    public int getWriteQueueCapacity() {
+        return writeQueueCapacity;
+    }
+
+    public void setWriteQueueCapacity(int writeQueueCapacity) {
+        this.writeQueueCapacity = writeQueueCapacity;
+    }
+
+    /**
+     * How long a row read from the database may be served from the local cache, 0 disables it
+     */
+    public long getReadCacheTtlMillis() {
+        return readCacheTtlMillis;
+    }
+
+    public void setReadCacheTtlMillis(long readCacheTtlMillis) {
+        this.readCacheTtlMillis = readCacheTtlMillis;
+    }
+
+    public int getReadCacheMaxEntries() {
+        return readCacheMaxEntries;
+    }
+
+    public void setReadCacheMaxEntries(int readCacheMaxEntries) {
+        this.readCacheMaxEntries = readCacheMaxEntries;
+    }
+
+    /**
+     * Interval of the bulk delete of expired rows, 0 disables it
+     */
+    public long getPurgeIntervalMillis() {
+        return purgeIntervalMillis;
+    }
+
+    public void setPurgeIntervalMillis(long purgeIntervalMillis) {
+        this.purgeIntervalMillis = purgeIntervalMillis;
+    }
+}
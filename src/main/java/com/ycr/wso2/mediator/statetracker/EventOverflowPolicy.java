@@ -0,0 +1,31 @@
+package com.ycr.wso2.mediator.statetracker;
+
+/**
+ * What a ProcessEventBus does when an event is published while its buffer is full
+ */
+public enum EventOverflowPolicy {
+    /**
+     * Discard the event and count it, the publishing thread never waits
+     */
+    DROP,
+    
+    /**
+     * Wait until the dispatcher frees a slot, no event is lost
+     */
+    BLOCK;
+    
+    public static EventOverflowPolicy fromString(String policy) {
+        if (policy == null || policy.trim().isEmpty()) {
+            return DROP; // Default
+        }
+        
+        for (EventOverflowPolicy overflowPolicy : EventOverflowPolicy.values()) {
+            if (overflowPolicy.name().equalsIgnoreCase(policy.trim())) {
+                return overflowPolicy;
+            }
+        }
+        
+        throw new IllegalArgumentException("Unknown EventOverflowPolicy: " + policy +
+            ". Supported policies: DROP, BLOCK");
+    }
+}
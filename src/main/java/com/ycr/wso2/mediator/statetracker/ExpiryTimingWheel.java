@@ -0,0 +1,273 @@
+package com.ycr.wso2.mediator.statetracker;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Hierarchical timing wheel that actively expires process state entries
+ *
+ * Scheduling only appends to a lock-free queue, so mediation threads never block.
+ * A single sweeper thread advances the wheel every tick; wheels of many small stores
+ * can share one scheduler instead, each sweeping as its own periodic task. Entries due beyond the
+ * range of the finest level are parked in a coarser level and cascaded down when
+ * their slot comes due, which keeps the work per entry constant regardless of
+ * how far in the future it expires.
+ *
+ * The wheel may still hold entries that were stopped or replaced; the expiry
+ * handler is expected to remove an entry only if it is still the current one.
+ * An entry scheduled while the sweeper is passing its slot is expired one wheel
+ * rotation late; lazy expiry on read is unaffected.
+ */
+public class ExpiryTimingWheel {
+
+    private static final Log log = LogFactory.getLog(ExpiryTimingWheel.class);
+
+    private static final int LEVELS = 3;
+
+    private final long tickMillis;
+    private final int wheelSize;
+    private final int wheelBits;
+    private final int mask;
+    private final int batchSize;
+    private final Predicate<ProcessStateEntry> expiryHandler;
+
+    // slots[level][slot]
+    private final ConcurrentLinkedQueue<ProcessStateEntry>[][] slots;
+    private final long startTime;
+
+    // Only advanced by the sweeper thread
+    private volatile long currentTick;
+
+    private final LongAdder scheduled = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+
+    // Null when the wheel owns its sweeper thread
+    private final ScheduledExecutorService scheduler;
+
+    private volatile ScheduledExecutorService sweeper;
+    private volatile ScheduledFuture<?> sweepTask;
+    private volatile boolean shutdown;
+
+    /**
+     * @param tickMillis Granularity of the wheel in milliseconds
+     * @param wheelSize Slots per level (rounded up to a power of two)
+     * @param batchSize Maximum entries processed per sweep, remaining work continues on the next tick
+     * @param expiryHandler Called with each due entry, returns true if the entry was removed
+     */
+    public ExpiryTimingWheel(long tickMillis, int wheelSize, int batchSize,
+                             Predicate<ProcessStateEntry> expiryHandler) {
+        this(tickMillis, wheelSize, batchSize, expiryHandler, null);
+    }
+
+    /**
+     * @param scheduler Runs the sweeps instead of a thread of the wheel's own, not shut down
+     *                  with the wheel; null to start a sweeper thread
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public ExpiryTimingWheel(long tickMillis, int wheelSize, int batchSize,
+                             Predicate<ProcessStateEntry> expiryHandler, ScheduledExecutorService scheduler) {
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("Tick must be positive: " + tickMillis);
+        }
+        if (wheelSize < 2 || wheelSize > (1 << 16)) {
+            throw new IllegalArgumentException("Wheel size must be between 2 and 65536: " + wheelSize);
+        }
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        this.tickMillis = tickMillis;
+        this.wheelBits = 32 - Integer.numberOfLeadingZeros(wheelSize - 1);
+        this.wheelSize = 1 << wheelBits;
+        this.mask = this.wheelSize - 1;
+        this.batchSize = batchSize;
+        this.expiryHandler = expiryHandler;
+        this.scheduler = scheduler;
+        this.slots = new ConcurrentLinkedQueue[LEVELS][this.wheelSize];
+        for (int level = 0; level < LEVELS; level++) {
+            for (int slot = 0; slot < this.wheelSize; slot++) {
+                slots[level][slot] = new ConcurrentLinkedQueue<>();
+            }
+        }
+        this.startTime = ProcessClocks.millis();
+    }
+
+    /**
+     * Schedule an entry for expiry, entries without expiry are ignored
+     *
+     * The sweeper thread is started on the first scheduled entry.
+     */
+    public void schedule(ProcessStateEntry entry) {
+        if (!entry.hasExpiry() || shutdown) {
+            return;
+        }
+        ensureStarted();
+        place(entry, currentTick + 1);
+        scheduled.increment();
+    }
+
+    /**
+     * Advance the wheel up to the current time, processing at most batchSize entries
+     *
+     * Called periodically by the sweeper thread, exposed for tests.
+     *
+     * @return number of entries removed by the expiry handler
+     */
+    public int sweep() {
+        return sweep(ProcessClocks.millis());
+    }
+
+    int sweep(long now) {
+        long targetTick = (now - startTime) / tickMillis;
+        int budget = batchSize;
+        int removed = 0;
+        List<ProcessStateEntry> pending = new ArrayList<>();
+
+        while (currentTick < targetTick && budget > 0) {
+            long tick = currentTick + 1;
+
+            // Cascade coarser levels whose slot boundary is reached at this tick
+            for (int level = LEVELS - 1; level > 0 && budget > 0; level--) {
+                if ((tick & ((1L << (wheelBits * level)) - 1)) == 0) {
+                    budget -= drain(slots[level][(int) (tick >>> (wheelBits * level)) & mask], budget, pending);
+                    for (ProcessStateEntry entry : pending) {
+                        place(entry, tick);
+                    }
+                    pending.clear();
+                }
+            }
+
+            if (budget > 0) {
+                budget -= drain(slots[0][(int) tick & mask], budget, pending);
+                for (ProcessStateEntry entry : pending) {
+                    if (entry.isExpired(now)) {
+                        if (expiryHandler.test(entry)) {
+                            removed++;
+                        }
+                    } else {
+                        // Scheduled late or its deadline moved, put it back
+                        place(entry, tick + 1);
+                    }
+                }
+                pending.clear();
+            }
+
+            if (budget > 0) {
+                // Slot fully processed, otherwise resume this tick on the next sweep
+                currentTick = tick;
+            }
+        }
+
+        if (removed > 0) {
+            expired.add(removed);
+        }
+        return removed;
+    }
+
+    private static int drain(ConcurrentLinkedQueue<ProcessStateEntry> queue, int max,
+                             List<ProcessStateEntry> target) {
+        int count = 0;
+        ProcessStateEntry entry;
+        while (count < max && (entry = queue.poll()) != null) {
+            target.add(entry);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Put an entry in the slot of the tick at which it is past its deadline
+     *
+     * @param baseTick Earliest tick the entry may be processed at
+     */
+    private void place(ProcessStateEntry entry, long baseTick) {
+        long deadline = entry.getExpiryDeadline();
+        long dueTick = Math.max(baseTick, (deadline - startTime) / tickMillis + 1);
+        long delta = dueTick - baseTick;
+
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= (1L << (wheelBits * (level + 1)))) {
+            level++;
+        }
+        // Entries beyond the coarsest level revisit their slot once per rotation
+        slots[level][(int) (dueTick >>> (wheelBits * level)) & mask].offer(entry);
+    }
+
+    private void ensureStarted() {
+        if (scheduler != null) {
+            if (sweepTask == null) {
+                synchronized (this) {
+                    if (sweepTask == null && !shutdown) {
+                        sweepTask = scheduler.scheduleWithFixedDelay(this::sweepSafely, tickMillis, tickMillis,
+                                TimeUnit.MILLISECONDS);
+                    }
+                }
+            }
+            return;
+        }
+        if (sweeper == null) {
+            synchronized (this) {
+                if (sweeper == null && !shutdown) {
+                    ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+                        Thread thread = new Thread(r, "state-tracker-expiry-sweeper");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    executor.scheduleWithFixedDelay(this::sweepSafely, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+                    sweeper = executor;
+                }
+            }
+        }
+    }
+
+    private void sweepSafely() {
+        try {
+            sweep();
+        } catch (Throwable t) {
+            log.error("Error while sweeping expired process states", t);
+        }
+    }
+
+    /**
+     * Stop the sweeper thread (or cancel the sweeps on a shared scheduler), scheduled
+     * entries are left to lazy expiry
+     */
+    public synchronized void shutdown() {
+        shutdown = true;
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+        }
+        if (sweepTask != null) {
+            sweepTask.cancel(false);
+        }
+    }
+
+    public long getTickMillis() {
+        return tickMillis;
+    }
+
+    public int getWheelSize() {
+        return wheelSize;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public long getScheduledCount() {
+        return scheduled.sum();
+    }
+
+    public long getExpiredCount() {
+        return expired.sum();
+    }
+}
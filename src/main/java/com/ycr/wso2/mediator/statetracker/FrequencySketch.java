@@ -0,0 +1,67 @@
+package com.ycr.wso2.mediator.statetracker;
+
+/**
+ * Approximate access frequency of keys (count-min sketch with 4-bit style saturating counters)
+ *
+ * Counters are halved periodically so that old popularity fades. Updates are not
+ * atomic; a lost increment under contention only makes the estimate slightly lower.
+ */
+class FrequencySketch {
+    
+    private static final int DEPTH = 4;
+    private static final int MAX_COUNT = 15;
+    private static final int[] SEEDS = { 0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F };
+    
+    private final byte[][] table;
+    private final int mask;
+    private final int sampleSize;
+    private int additions;
+    
+    FrequencySketch(long expectedEntries) {
+        int width = 16;
+        while (width < expectedEntries && width < (1 << 24)) {
+            width <<= 1;
+        }
+        this.table = new byte[DEPTH][width];
+        this.mask = width - 1;
+        this.sampleSize = 10 * width;
+    }
+    
+    void increment(String key) {
+        int hash = key.hashCode();
+        boolean added = false;
+        for (int row = 0; row < DEPTH; row++) {
+            int index = index(hash, row);
+            if (table[row][index] < MAX_COUNT) {
+                table[row][index]++;
+                added = true;
+            }
+        }
+        if (added && ++additions >= sampleSize) {
+            reset();
+        }
+    }
+    
+    int frequency(String key) {
+        int hash = key.hashCode();
+        int frequency = MAX_COUNT;
+        for (int row = 0; row < DEPTH; row++) {
+            frequency = Math.min(frequency, table[row][index(hash, row)]);
+        }
+        return frequency;
+    }
+    
+    private int index(int hash, int row) {
+        int h = hash * SEEDS[row];
+        return (h ^ (h >>> 16)) & mask;
+    }
+    
+    private void reset() {
+        additions = 0;
+        for (byte[] row : table) {
+            for (int i = 0; i < row.length; i++) {
+                row[i] = (byte) (row[i] >>> 1);
+            }
+        }
+    }
+}
@@ -1,30 +1,327 @@
 package com.ycr.wso2.mediator.statetracker;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 /**
  * In-memory implementation of ProcessStatusManager
  * 
  * Thread-safety is handled at the mediator level, so this class
  * doesn't need internal locks. Uses ConcurrentHashMap for safe concurrent access.
+ * Expired entries are removed only if they were not replaced in the meantime, since
+ * read-only operations may run concurrently under a shared lock.
+ * Conditional operations are a single atomic map operation and need no external lock.
+ * With a journal configured, every change is appended to it before the call returns
+ * and the state is recovered from it on construction. Without a journal, a snapshot
+ * file can be written periodically and on shutdown and loaded on construction instead.
+ * With the prefix index enabled, process IDs are also kept in a sorted set that prefix
+ * queries walk; IDs whose entry was removed or expired are skipped there lazily.
+ * Permits are kept in a separate map of per-key PermitPools, dropped once empty.
+ * Lifecycle events are only built once a listener is registered; until then
+ * publishing is a single null check.
  */
 public class InMemoryProcessStatusManager implements ProcessStatusManager {
     
+    private static final Log log = LogFactory.getLog(InMemoryProcessStatusManager.class);
+    
     private final ConcurrentHashMap<String, ProcessStateEntry> processMap;
     
+    // Null when active expiry is disabled, entries are then only expired on read
+    private final ExpiryTimingWheel expiryWheel;
+    
+    // Null when the store is unbounded
+    private final CapacityManager capacityManager;
+    
+    // Null when no journal directory is configured
+    private final ProcessJournal journal;
+    
+    // Null when no snapshot file is configured or the journal is used
+    private final ProcessSnapshot snapshot;
+    
+    // Null when the prefix index is disabled, prefix queries then scan the map
+    private final ConcurrentSkipListSet<String> prefixIndex;
+    
+    private final ConcurrentHashMap<String, PermitPool> permitPools = new ConcurrentHashMap<>();
+    
+    private final InMemoryStoreConfig config;
+    
+    // Created with the first event listener
+    private volatile ProcessEventBus eventBus;
+    
+    // Null unless set by a store that wraps this one, see setRemovalHook
+    private volatile Consumer<ProcessStateEntry> removalHook;
+    
     public InMemoryProcessStatusManager() {
-        this.processMap = new ConcurrentHashMap<>();
+        this(new InMemoryStoreConfig());
+    }
+    
+    public InMemoryProcessStatusManager(InMemoryStoreConfig config) {
+        this(config, null);
+    }
+    
+    /**
+     * @param scheduler Runs the expiry sweeps and snapshot writes, shared by namespace stores;
+     *                  null to start threads of this store's own
+     */
+    InMemoryProcessStatusManager(InMemoryStoreConfig config, ScheduledExecutorService scheduler) {
+        this.config = config;
+        if (config.isSnapshotEnabled() && config.isJournalEnabled()) {
+            log.warn("Process snapshot " + config.getSnapshotFile() + " is not used, the journal holds the state");
+        }
+        this.snapshot = config.isSnapshotEnabled() && !config.isJournalEnabled()
+                ? new ProcessSnapshot(Paths.get(config.getSnapshotFile()), config.getSnapshotIntervalMillis())
+                : null;
+        ConcurrentHashMap<String, ProcessStateEntry> loaded = snapshot != null ? loadSnapshot(config) : null;
+        this.processMap = loaded != null ? loaded : new ConcurrentHashMap<>();
+        this.prefixIndex = config.isPrefixIndexEnabled() ? new ConcurrentSkipListSet<>() : null;
+        this.expiryWheel = config.isActiveExpiryEnabled()
+                ? new ExpiryTimingWheel(config.getExpiryTickMillis(), config.getExpiryWheelSize(),
+                        config.getExpiryBatchSize(), this::expireIfCurrent, scheduler)
+                : null;
+        this.capacityManager = config.isBounded()
+                ? new CapacityManager(config.getMaxEntries(), config.getMaxEstimatedBytes(),
+                        config.getCapacityPolicy(), processMap::mappingCount,
+                        entry -> processMap.get(entry.getProjectId()) == entry, this::evictIfCurrent,
+                        this::expireIfCurrent)
+                : null;
+        this.journal = config.isJournalEnabled() ? openJournal(config) : null;
+        if (snapshot != null) {
+            if (loaded != null) {
+                for (ProcessStateEntry entry : loaded.values()) {
+                    onStarted(entry, null);
+                }
+            }
+            snapshot.open(() -> processMap.values().iterator(), scheduler);
+        }
     }
     
     @Override
     public void startProcess(String processId, long expiryTimeMillis) {
+        startProcess(processId, expiryTimeMillis, false, null);
+    }
+    
+    @Override
+    public void startProcess(String processId, long expiryTimeMillis, boolean pinned, String ownerToken) {
+        validateProcessId(processId);
+        
+        if (capacityManager != null && !processMap.containsKey(processId)) {
+            capacityManager.admit(processId);
+        }
+        
+        long startTimestamp = ProcessClocks.millis();
+        ProcessStateEntry entry = new ProcessStateEntry(processId, startTimestamp, expiryTimeMillis, pinned, ownerToken);
+        ProcessStateEntry previous = processMap.put(processId, entry);
+        onStarted(entry, previous);
+        if (journal != null) {
+            journal.appendStart(entry);
+        }
+        publish(ProcessEvent.Type.START, entry);
+    }
+    
+    @Override
+    public ConditionalOperationResult startProcessIfAbsent(String processId, long expiryTimeMillis,
+                                                           boolean pinned, String ownerToken) {
+        validateProcessId(processId);
+        
+        if (capacityManager != null && !processMap.containsKey(processId)) {
+            capacityManager.admit(processId);
+        }
+        
+        long now = ProcessClocks.millis();
+        ProcessStateEntry candidate = new ProcessStateEntry(processId, now, expiryTimeMillis, pinned, ownerToken);
+        ProcessStateEntry[] replaced = new ProcessStateEntry[1];
+        ProcessStateEntry winner = processMap.compute(processId, (id, existing) -> {
+            if (existing != null && !existing.isExpired(now)) {
+                return existing;
+            }
+            replaced[0] = existing;
+            return candidate;
+        });
+        
+        if (winner != candidate) {
+            if (capacityManager != null) {
+                capacityManager.onAccess(winner);
+            }
+            return ConditionalOperationResult.rejected(winner);
+        }
+        onStarted(candidate, replaced[0]);
+        if (journal != null) {
+            journal.appendStart(candidate);
+        }
+        if (replaced[0] != null) {
+            onExpired(replaced[0]);
+        }
+        publish(ProcessEvent.Type.START, candidate);
+        return ConditionalOperationResult.applied(candidate);
+    }
+    
+    @Override
+    public ConditionalOperationResult replaceProcessIfExpired(String processId, long expiryTimeMillis,
+                                                              boolean pinned, String ownerToken) {
+        validateProcessId(processId);
+        
+        long now = ProcessClocks.millis();
+        ProcessStateEntry candidate = new ProcessStateEntry(processId, now, expiryTimeMillis, pinned, ownerToken);
+        ProcessStateEntry[] replaced = new ProcessStateEntry[1];
+        ProcessStateEntry winner = processMap.computeIfPresent(processId, (id, existing) -> {
+            if (!existing.isExpired(now)) {
+                return existing;
+            }
+            replaced[0] = existing;
+            return candidate;
+        });
+        
+        if (winner != candidate) {
+            return ConditionalOperationResult.rejected(winner);
+        }
+        onStarted(candidate, replaced[0]);
+        if (journal != null) {
+            journal.appendStart(candidate);
+        }
+        onExpired(replaced[0]);
+        publish(ProcessEvent.Type.START, candidate);
+        return ConditionalOperationResult.applied(candidate);
+    }
+    
+    @Override
+    public ConditionalOperationResult stopProcessIfOwner(String processId, String ownerToken) {
         if (processId == null || processId.trim().isEmpty()) {
-            throw new IllegalArgumentException("Process ID cannot be null or empty");
+            return ConditionalOperationResult.rejected(null);
         }
         
-        long startTimestamp = System.currentTimeMillis();
-        ProcessStateEntry entry = new ProcessStateEntry(processId, startTimestamp, expiryTimeMillis);
-        processMap.put(processId, entry);
+        long now = ProcessClocks.millis();
+        ProcessStateEntry[] removed = new ProcessStateEntry[1];
+        ProcessStateEntry remaining = processMap.computeIfPresent(processId, (id, existing) -> {
+            // Expired entries are cleaned up whoever asks, but do not count as stopped
+            if (existing.isExpired(now) || existing.isOwnedBy(ownerToken)) {
+                removed[0] = existing;
+                return null;
+            }
+            return existing;
+        });
+        
+        if (removed[0] == null) {
+            return ConditionalOperationResult.rejected(remaining);
+        }
+        onRemoved(removed[0]);
+        if (removed[0].isExpired(now)) {
+            onExpired(removed[0]);
+            return ConditionalOperationResult.rejected(null);
+        }
+        if (journal != null) {
+            journal.appendStop(processId);
+        }
+        publish(ProcessEvent.Type.STOP, removed[0]);
+        return ConditionalOperationResult.applied(removed[0]);
+    }
+    
+    /**
+     * Renew in place within the map's per-key compute, so a renewal and the expiry of
+     * the same entry never interleave
+     */
+    @Override
+    public ProcessStateEntry renewProcess(String processId, long leaseMillis) {
+        if (processId == null || processId.trim().isEmpty()) {
+            return null;
+        }
+        
+        long now = ProcessClocks.millis();
+        ProcessStateEntry[] expired = new ProcessStateEntry[1];
+        boolean[] deadlineMovedUp = new boolean[1];
+        ProcessStateEntry renewed = processMap.computeIfPresent(processId, (id, existing) -> {
+            if (existing.isExpired(now)) {
+                expired[0] = existing;
+                return null;
+            }
+            long previousDeadline = existing.getExpiryDeadline();
+            existing.renew(now, leaseMillis);
+            deadlineMovedUp[0] = existing.getExpiryDeadline() < previousDeadline;
+            return existing;
+        });
+        
+        if (expired[0] != null) {
+            onRemoved(expired[0]);
+            onExpired(expired[0]);
+            return null;
+        }
+        if (renewed == null) {
+            return null;
+        }
+        // A later deadline is picked up when the entry's slot comes up, an earlier one needs a new slot
+        if (expiryWheel != null && deadlineMovedUp[0]) {
+            expiryWheel.schedule(renewed);
+        }
+        if (capacityManager != null) {
+            capacityManager.onAccess(renewed);
+        }
+        if (journal != null) {
+            journal.appendStart(renewed);
+        }
+        publish(ProcessEvent.Type.RENEW, renewed);
+        return renewed;
+    }
+    
+    @Override
+    public PermitResult acquirePermit(String key, int limit, long expiryTimeMillis) {
+        validateProcessId(key);
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Permit limit must be positive: " + limit);
+        }
+        
+        long now = ProcessClocks.millis();
+        long deadline = expiryTimeMillis > 0 ? now + expiryTimeMillis : Long.MAX_VALUE;
+        while (true) {
+            PermitPool pool = permitPools.get(key);
+            if (pool == null) {
+                pool = permitPools.computeIfAbsent(key, k -> new PermitPool());
+            }
+            long permitId = pool.tryAcquire(limit, deadline, now);
+            if (permitId == PermitPool.RETIRED) {
+                // Emptied and retired by a concurrent release
+                permitPools.remove(key, pool);
+                continue;
+            }
+            return permitId > 0
+                    ? PermitResult.acquired(permitId, pool.heldCount())
+                    : PermitResult.rejected(pool.heldCount());
+        }
+    }
+    
+    @Override
+    public boolean releasePermit(String key, long permitId) {
+        PermitPool pool = key != null ? permitPools.get(key) : null;
+        if (pool == null || !pool.release(permitId)) {
+            return false;
+        }
+        if (pool.tryRetire()) {
+            permitPools.remove(key, pool);
+        }
+        return true;
+    }
+    
+    @Override
+    public int getPermitCount(String key) {
+        PermitPool pool = key != null ? permitPools.get(key) : null;
+        if (pool == null) {
+            return 0;
+        }
+        int count = pool.count(ProcessClocks.millis());
+        if (count == 0 && pool.tryRetire()) {
+            permitPools.remove(key, pool);
+        }
+        return count;
     }
     
     @Override
@@ -40,10 +337,13 @@ public class InMemoryProcessStatusManager implements ProcessStatusManager {
         
         // Check if expired
         if (entry.isExpired()) {
-            processMap.remove(processId);
+            expireIfCurrent(entry);
             return false;
         }
         
+        if (capacityManager != null) {
+            capacityManager.onAccess(entry);
+        }
         return true;
     }
     
@@ -53,7 +353,16 @@ public class InMemoryProcessStatusManager implements ProcessStatusManager {
             return false;
         }
         
-        return processMap.remove(processId) != null;
+        ProcessStateEntry removed = processMap.remove(processId);
+        if (removed == null) {
+            return false;
+        }
+        onRemoved(removed);
+        if (journal != null) {
+            journal.appendStop(processId);
+        }
+        publish(ProcessEvent.Type.STOP, removed);
+        return true;
     }
     
     @Override
@@ -66,11 +375,332 @@ public class InMemoryProcessStatusManager implements ProcessStatusManager {
         
         // Auto-cleanup if expired
         if (entry != null && entry.isExpired()) {
-            processMap.remove(processId);
+            expireIfCurrent(entry);
             return null;
         }
         
+        if (entry != null && capacityManager != null) {
+            capacityManager.onAccess(entry);
+        }
         return entry;
     }
     
+    @Override
+    public boolean queryProcess(String processId, ProcessStatusView view) {
+        long now = ProcessClocks.millis();
+        ProcessStateEntry entry = processId != null ? processMap.get(processId) : null;
+        
+        if (entry != null && entry.isExpired(now)) {
+            expireIfCurrent(entry);
+            entry = null;
+        }
+        
+        if (entry != null && capacityManager != null) {
+            capacityManager.onAccess(entry);
+        }
+        return view.set(entry, now);
+    }
+    
+    @Override
+    public int forEachRunning(String prefix, String afterId, Predicate<ProcessStateEntry> visitor) {
+        String from = afterId != null && afterId.compareTo(prefix) > 0 ? afterId : prefix;
+        boolean inclusive = !from.equals(afterId);
+        long now = ProcessClocks.millis();
+        int visited = 0;
+        
+        if (prefixIndex != null) {
+            for (String processId : prefixIndex.tailSet(from, inclusive)) {
+                if (!processId.startsWith(prefix)) {
+                    break;
+                }
+                ProcessStateEntry entry = processMap.get(processId);
+                if (entry == null) {
+                    continue;
+                }
+                if (entry.isExpired(now)) {
+                    expireIfCurrent(entry);
+                    continue;
+                }
+                visited++;
+                if (!visitor.test(entry)) {
+                    break;
+                }
+            }
+            return visited;
+        }
+        
+        // No index, collect the matches and sort them
+        List<ProcessStateEntry> matches = new ArrayList<>();
+        for (ProcessStateEntry entry : processMap.values()) {
+            String processId = entry.getProjectId();
+            int order = processId.compareTo(from);
+            if (!processId.startsWith(prefix) || order < 0 || (order == 0 && !inclusive)) {
+                continue;
+            }
+            if (entry.isExpired(now)) {
+                expireIfCurrent(entry);
+                continue;
+            }
+            matches.add(entry);
+        }
+        matches.sort(Comparator.comparing(ProcessStateEntry::getProjectId));
+        for (ProcessStateEntry entry : matches) {
+            visited++;
+            if (!visitor.test(entry)) {
+                break;
+            }
+        }
+        return visited;
+    }
+    
+    /**
+     * Events are published from the calling thread into the buffer and delivered on its dispatcher thread
+     */
+    @Override
+    public void addEventListener(ProcessEventListener listener) {
+        ProcessEventBus bus = eventBus;
+        if (bus == null) {
+            synchronized (this) {
+                bus = eventBus;
+                if (bus == null) {
+                    bus = new ProcessEventBus(config.getEventBufferSize(), config.getEventBatchSize(),
+                            config.getEventOverflowPolicy());
+                    eventBus = bus;
+                }
+            }
+        }
+        bus.addListener(listener);
+    }
+    
+    @Override
+    public void removeEventListener(ProcessEventListener listener) {
+        ProcessEventBus bus = eventBus;
+        if (bus != null) {
+            bus.removeListener(listener);
+        }
+    }
+    
+    /**
+     * Called on the removing thread for every entry removed by expiry or eviction,
+     * unlike events, which are buffered and may be dropped
+     */
+    void setRemovalHook(Consumer<ProcessStateEntry> hook) {
+        this.removalHook = hook;
+    }
+    
+    /**
+     * Put an entry loaded from persistent storage, keeping its original start time
+     */
+    void restore(ProcessStateEntry entry) {
+        ProcessStateEntry previous = processMap.put(entry.getProjectId(), entry);
+        onStarted(entry, previous);
+    }
+    
+    /**
+     * Number of tracked entries, including expired ones not yet removed
+     */
+    public int size() {
+        return processMap.size();
+    }
+    
+    @Override
+    public long getTrackedCount() {
+        return size();
+    }
+    
+    @Override
+    public long getDefaultExpiryTimeMillis() {
+        return config.getDefaultExpiryTimeMillis();
+    }
+    
+    /**
+     * Active expiry engine, or null when disabled
+     */
+    public ExpiryTimingWheel getExpiryWheel() {
+        return expiryWheel;
+    }
+    
+    /**
+     * Processes removed as expired by the expiry sweeper or to make room for new ones
+     */
+    public long getExpiredCount() {
+        return (expiryWheel != null ? expiryWheel.getExpiredCount() : 0)
+                + (capacityManager != null ? capacityManager.getExpirationCount() : 0);
+    }
+    
+    /**
+     * Capacity bound, or null when the store is unbounded
+     */
+    public CapacityManager getCapacityManager() {
+        return capacityManager;
+    }
+    
+    /**
+     * Write-ahead journal, or null when state is kept in memory only
+     */
+    public ProcessJournal getJournal() {
+        return journal;
+    }
+    
+    /**
+     * Snapshot file writer, or null when no snapshot is kept
+     */
+    public ProcessSnapshot getSnapshot() {
+        return snapshot;
+    }
+    
+    /**
+     * Lifecycle event buffer, or null when no listener was ever registered
+     */
+    public ProcessEventBus getEventBus() {
+        return eventBus;
+    }
+    
+    @Override
+    public void shutdown() {
+        if (expiryWheel != null) {
+            expiryWheel.shutdown();
+        }
+        if (journal != null) {
+            journal.close();
+        }
+        if (snapshot != null) {
+            snapshot.close();
+        }
+        ProcessEventBus bus = eventBus;
+        if (bus != null) {
+            bus.shutdown();
+        }
+    }
+    
+    private static void validateProcessId(String processId) {
+        if (processId == null || processId.trim().isEmpty()) {
+            throw new IllegalArgumentException("Process ID cannot be null or empty");
+        }
+    }
+    
+    private void publish(ProcessEvent.Type type, ProcessStateEntry entry) {
+        ProcessEventBus bus = eventBus;
+        if (bus != null && bus.hasListeners()) {
+            bus.publish(new ProcessEvent(type, entry, ProcessClocks.millis()));
+        }
+    }
+    
+    private void onExpired(ProcessStateEntry entry) {
+        publish(ProcessEvent.Type.EXPIRE, entry);
+        notifyRemoval(entry);
+    }
+    
+    private void notifyRemoval(ProcessStateEntry entry) {
+        Consumer<ProcessStateEntry> hook = removalHook;
+        if (hook != null) {
+            hook.accept(entry);
+        }
+    }
+    
+    /**
+     * Account for a newly stored entry that replaced previous (may be null)
+     */
+    private void onStarted(ProcessStateEntry entry, ProcessStateEntry previous) {
+        if (capacityManager != null) {
+            capacityManager.onInserted(entry, previous);
+        }
+        if (expiryWheel != null) {
+            expiryWheel.schedule(entry);
+        }
+        // A replaced entry's ID is already indexed
+        if (prefixIndex != null && previous == null) {
+            prefixIndex.add(entry.getProjectId());
+        }
+    }
+    
+    /**
+     * Account for an entry removed from the map
+     */
+    private void onRemoved(ProcessStateEntry entry) {
+        if (capacityManager != null) {
+            capacityManager.onRemoved(entry);
+        }
+        if (prefixIndex != null) {
+            String processId = entry.getProjectId();
+            prefixIndex.remove(processId);
+            // Restarted between the map removal and the index removal
+            if (processMap.containsKey(processId)) {
+                prefixIndex.add(processId);
+            }
+        }
+    }
+    
+    /**
+     * Remove an expired entry unless it was replaced, stopped or renewed in the meantime
+     */
+    private boolean expireIfCurrent(ProcessStateEntry entry) {
+        boolean[] removed = new boolean[1];
+        processMap.computeIfPresent(entry.getProjectId(), (id, existing) -> {
+            if (existing == entry && existing.isExpired(ProcessClocks.millis())) {
+                removed[0] = true;
+                return null;
+            }
+            return existing;
+        });
+        if (removed[0]) {
+            onRemoved(entry);
+            onExpired(entry);
+        }
+        return removed[0];
+    }
+    
+    /**
+     * Remove an entry unless it was replaced or stopped in the meantime
+     */
+    private boolean removeIfCurrent(ProcessStateEntry entry) {
+        boolean removed = processMap.remove(entry.getProjectId(), entry);
+        if (removed) {
+            onRemoved(entry);
+        }
+        return removed;
+    }
+    
+    /**
+     * Evict an entry for capacity, journaling the removal so it stays evicted after a restart
+     */
+    private boolean evictIfCurrent(ProcessStateEntry entry) {
+        boolean removed = removeIfCurrent(entry);
+        if (removed && journal != null) {
+            journal.appendStop(entry.getProjectId());
+        }
+        if (removed) {
+            publish(ProcessEvent.Type.EVICT, entry);
+            notifyRemoval(entry);
+        }
+        return removed;
+    }
+    
+    private ConcurrentHashMap<String, ProcessStateEntry> loadSnapshot(InMemoryStoreConfig config) {
+        try {
+            return snapshot.load(ProcessClocks.millis());
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot load process snapshot " + config.getSnapshotFile(), e);
+        }
+    }
+    
+    /**
+     * Recover the journaled state into the map and start journaling new changes
+     */
+    private ProcessJournal openJournal(InMemoryStoreConfig config) {
+        ProcessJournal processJournal = new ProcessJournal(Paths.get(config.getJournalDirectory()),
+                config.getJournalSegmentBytes(), config.getJournalSyncIntervalMillis(),
+                config.isJournalWaitForSync(), config.getJournalCompactionThresholdBytes());
+        try {
+            for (Map.Entry<String, ProcessStateEntry> recovered
+                    : processJournal.recover(ProcessClocks.millis()).entrySet()) {
+                restore(recovered.getValue());
+            }
+            processJournal.open(() -> processMap.values().iterator());
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot open process journal in " + config.getJournalDirectory(), e);
+        }
+        return processJournal;
+    }
+    
 }
@@ -0,0 +1,298 @@
+package com.ycr.wso2.mediator.statetracker;
+
+import java.nio.file.Paths;
+
+/**
+ * Settings for InMemoryProcessStatusManager
+ *
+ * Defaults can be overridden with JVM system properties prefixed with "statetracker.",
+ * see {@link #fromSystemProperties()}.
+ */
+public class InMemoryStoreConfig {
+
+    public static final long DEFAULT_EXPIRY_TICK_MILLIS = 100;
+    public static final int DEFAULT_EXPIRY_WHEEL_SIZE = 512;
+    public static final int DEFAULT_EXPIRY_BATCH_SIZE = 10000;
+    public static final long DEFAULT_JOURNAL_SEGMENT_BYTES = 64L * 1024 * 1024;
+    public static final long DEFAULT_JOURNAL_SYNC_INTERVAL_MILLIS = 5;
+    public static final long DEFAULT_JOURNAL_COMPACTION_THRESHOLD_BYTES = 256L * 1024 * 1024;
+    public static final int DEFAULT_EVENT_BUFFER_SIZE = 8192;
+    public static final int DEFAULT_EVENT_BATCH_SIZE = 256;
+    public static final long DEFAULT_SNAPSHOT_INTERVAL_MILLIS = 60000;
+
+    private boolean activeExpiryEnabled = true;
+    private long expiryTickMillis = DEFAULT_EXPIRY_TICK_MILLIS;
+    private int expiryWheelSize = DEFAULT_EXPIRY_WHEEL_SIZE;
+    private int expiryBatchSize = DEFAULT_EXPIRY_BATCH_SIZE;
+    
+    // 0 means unbounded
+    private long maxEntries;
+    private long maxEstimatedBytes;
+    private CapacityPolicy capacityPolicy = CapacityPolicy.REJECT;
+    
+    // Null means no journal, state is lost on restart
+    private String journalDirectory;
+    private long journalSegmentBytes = DEFAULT_JOURNAL_SEGMENT_BYTES;
+    private long journalSyncIntervalMillis = DEFAULT_JOURNAL_SYNC_INTERVAL_MILLIS;
+    private boolean journalWaitForSync = true;
+    private long journalCompactionThresholdBytes = DEFAULT_JOURNAL_COMPACTION_THRESHOLD_BYTES;
+    
+    private boolean prefixIndexEnabled;
+    
+    // 0 means processes started without an expiry do not expire
+    private long defaultExpiryTimeMillis;
+    
+    // Null means no snapshot
+    private String snapshotFile;
+    private long snapshotIntervalMillis = DEFAULT_SNAPSHOT_INTERVAL_MILLIS;
+    
+    private int eventBufferSize = DEFAULT_EVENT_BUFFER_SIZE;
+    private int eventBatchSize = DEFAULT_EVENT_BATCH_SIZE;
+    private EventOverflowPolicy eventOverflowPolicy = EventOverflowPolicy.DROP;
+
+    /**
+     * Read settings from system properties, falling back to the defaults
+     */
+    public static InMemoryStoreConfig fromSystemProperties() {
+        InMemoryStoreConfig config = new InMemoryStoreConfig();
+        config.setActiveExpiryEnabled(Boolean.parseBoolean(
+                System.getProperty("statetracker.expiry.active", "true")));
+        config.setExpiryTickMillis(Long.getLong("statetracker.expiry.tickMillis", DEFAULT_EXPIRY_TICK_MILLIS));
+        config.setExpiryWheelSize(Integer.getInteger("statetracker.expiry.wheelSize", DEFAULT_EXPIRY_WHEEL_SIZE));
+        config.setExpiryBatchSize(Integer.getInteger("statetracker.expiry.batchSize", DEFAULT_EXPIRY_BATCH_SIZE));
+        config.setMaxEntries(Long.getLong("statetracker.capacity.maxEntries", 0));
+        config.setMaxEstimatedBytes(Long.getLong("statetracker.capacity.maxBytes", 0));
+        config.setCapacityPolicy(CapacityPolicy.fromString(System.getProperty("statetracker.capacity.policy")));
+        config.setJournalDirectory(System.getProperty("statetracker.journal.directory"));
+        config.setJournalSegmentBytes(Long.getLong("statetracker.journal.segmentBytes",
+                DEFAULT_JOURNAL_SEGMENT_BYTES));
+        config.setJournalSyncIntervalMillis(Long.getLong("statetracker.journal.syncIntervalMillis",
+                DEFAULT_JOURNAL_SYNC_INTERVAL_MILLIS));
+        config.setJournalWaitForSync(Boolean.parseBoolean(
+                System.getProperty("statetracker.journal.waitForSync", "true")));
+        config.setJournalCompactionThresholdBytes(Long.getLong("statetracker.journal.compactionThresholdBytes",
+                DEFAULT_JOURNAL_COMPACTION_THRESHOLD_BYTES));
+        config.setPrefixIndexEnabled(Boolean.parseBoolean(System.getProperty("statetracker.index.prefix", "false")));
+        config.setSnapshotFile(System.getProperty("statetracker.snapshot.file"));
+        config.setSnapshotIntervalMillis(Long.getLong("statetracker.snapshot.intervalMillis",
+                DEFAULT_SNAPSHOT_INTERVAL_MILLIS));
+        config.setEventBufferSize(Integer.getInteger("statetracker.events.bufferSize", DEFAULT_EVENT_BUFFER_SIZE));
+        config.setEventBatchSize(Integer.getInteger("statetracker.events.batchSize", DEFAULT_EVENT_BATCH_SIZE));
+        config.setEventOverflowPolicy(EventOverflowPolicy.fromString(System.getProperty("statetracker.events.overflow")));
+        return config;
+    }
+    
+    /**
+     * Settings of a namespace store: the shared settings, overridden by properties prefixed
+     * with "statetracker.namespace.NAME." (maxEntries, maxBytes, capacityPolicy, expirySeconds)
+     * 
+     * The journal directory and snapshot file get the namespace appended, so that
+     * namespaces never share files.
+     */
+    public static InMemoryStoreConfig fromSystemProperties(String namespace) {
+        InMemoryStoreConfig config = fromSystemProperties();
+        String prefix = "statetracker.namespace." + namespace + ".";
+        config.setMaxEntries(Long.getLong(prefix + "maxEntries", config.getMaxEntries()));
+        config.setMaxEstimatedBytes(Long.getLong(prefix + "maxBytes", config.getMaxEstimatedBytes()));
+        String policy = System.getProperty(prefix + "capacityPolicy");
+        if (policy != null) {
+            config.setCapacityPolicy(CapacityPolicy.fromString(policy));
+        }
+        config.setDefaultExpiryTimeMillis(Long.getLong(prefix + "expirySeconds", 0) * 1000);
+        if (config.isJournalEnabled()) {
+            config.setJournalDirectory(Paths.get(config.getJournalDirectory(), namespace).toString());
+        }
+        if (config.isSnapshotEnabled()) {
+            config.setSnapshotFile(config.getSnapshotFile() + "." + namespace);
+        }
+        return config;
+    }
+    
+    public boolean isBounded() {
+        return maxEntries > 0 || maxEstimatedBytes > 0;
+    }
+    
+    public boolean isJournalEnabled() {
+        return journalDirectory != null && !journalDirectory.trim().isEmpty();
+    }
+    
+    public boolean isSnapshotEnabled() {
+        return snapshotFile != null && !snapshotFile.trim().isEmpty();
+    }
+
+    public boolean isActiveExpiryEnabled() {
+        return activeExpiryEnabled;
+    }
+
+    public void setActiveExpiryEnabled(boolean activeExpiryEnabled) {
+        this.activeExpiryEnabled = activeExpiryEnabled;
+    }
+
+    public long getExpiryTickMillis() {
+        return expiryTickMillis;
+    }
+
+    public void setExpiryTickMillis(long expiryTickMillis) {
+        this.expiryTickMillis = expiryTickMillis;
+    }
+
+    public int getExpiryWheelSize() {
+        return expiryWheelSize;
+    }
+
+    public void setExpiryWheelSize(int expiryWheelSize) {
+        this.expiryWheelSize = expiryWheelSize;
+    }
+
+    public int getExpiryBatchSize() {
+        return expiryBatchSize;
+    }
+
+    public void setExpiryBatchSize(int expiryBatchSize) {
+        this.expiryBatchSize = expiryBatchSize;
+    }
+
+    public long getMaxEntries() {
+        return maxEntries;
+    }
+
+    public void setMaxEntries(long maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    public long getMaxEstimatedBytes() {
+        return maxEstimatedBytes;
+    }
+
+    public void setMaxEstimatedBytes(long maxEstimatedBytes) {
+        this.maxEstimatedBytes = maxEstimatedBytes;
+    }
+
+    public CapacityPolicy getCapacityPolicy() {
+        return capacityPolicy;
+    }
+
+    public void setCapacityPolicy(CapacityPolicy capacityPolicy) {
+        this.capacityPolicy = capacityPolicy;
+    }
+
+    /**
+     * Directory of the write-ahead journal, null to keep state in memory only
+     */
+    public String getJournalDirectory() {
+        return journalDirectory;
+    }
+
+    public void setJournalDirectory(String journalDirectory) {
+        this.journalDirectory = journalDirectory;
+    }
+
+    public long getJournalSegmentBytes() {
+        return journalSegmentBytes;
+    }
+
+    public void setJournalSegmentBytes(long journalSegmentBytes) {
+        this.journalSegmentBytes = journalSegmentBytes;
+    }
+
+    /**
+     * How long the journal writer collects records before one fsync, 0 syncs whatever is queued
+     */
+    public long getJournalSyncIntervalMillis() {
+        return journalSyncIntervalMillis;
+    }
+
+    public void setJournalSyncIntervalMillis(long journalSyncIntervalMillis) {
+        this.journalSyncIntervalMillis = journalSyncIntervalMillis;
+    }
+
+    /**
+     * Whether START/STOP wait until their journal record is fsynced before returning
+     */
+    public boolean isJournalWaitForSync() {
+        return journalWaitForSync;
+    }
+
+    public void setJournalWaitForSync(boolean journalWaitForSync) {
+        this.journalWaitForSync = journalWaitForSync;
+    }
+
+    public long getJournalCompactionThresholdBytes() {
+        return journalCompactionThresholdBytes;
+    }
+
+    public void setJournalCompactionThresholdBytes(long journalCompactionThresholdBytes) {
+        this.journalCompactionThresholdBytes = journalCompactionThresholdBytes;
+    }
+
+    /**
+     * Keep process IDs in an ordered index so that prefix queries do not scan the whole store
+     */
+    public boolean isPrefixIndexEnabled() {
+        return prefixIndexEnabled;
+    }
+
+    public void setPrefixIndexEnabled(boolean prefixIndexEnabled) {
+        this.prefixIndexEnabled = prefixIndexEnabled;
+    }
+
+    /**
+     * Expiry of processes started without PROCESS_STATE_EXPIRY_TIME, 0 means they do not expire
+     */
+    public long getDefaultExpiryTimeMillis() {
+        return defaultExpiryTimeMillis;
+    }
+
+    public void setDefaultExpiryTimeMillis(long defaultExpiryTimeMillis) {
+        this.defaultExpiryTimeMillis = defaultExpiryTimeMillis;
+    }
+
+    /**
+     * File the store is snapshotted to and warm started from, null to keep no snapshot
+     */
+    public String getSnapshotFile() {
+        return snapshotFile;
+    }
+
+    public void setSnapshotFile(String snapshotFile) {
+        this.snapshotFile = snapshotFile;
+    }
+
+    /**
+     * Time between periodic snapshots, 0 writes one only on shutdown
+     */
+    public long getSnapshotIntervalMillis() {
+        return snapshotIntervalMillis;
+    }
+
+    public void setSnapshotIntervalMillis(long snapshotIntervalMillis) {
+        this.snapshotIntervalMillis = snapshotIntervalMillis;
+    }
+
+    /**
+     * Lifecycle events buffered for listeners, the buffer is created with the first listener
+     */
+    public int getEventBufferSize() {
+        return eventBufferSize;
+    }
+
+    public void setEventBufferSize(int eventBufferSize) {
+        this.eventBufferSize = eventBufferSize;
+    }
+
+    public int getEventBatchSize() {
+        return eventBatchSize;
+    }
+
+    public void setEventBatchSize(int eventBatchSize) {
+        this.eventBatchSize = eventBatchSize;
+    }
+
+    public EventOverflowPolicy getEventOverflowPolicy() {
+        return eventOverflowPolicy;
+    }
+
+    public void setEventOverflowPolicy(EventOverflowPolicy eventOverflowPolicy) {
+        this.eventOverflowPolicy = eventOverflowPolicy;
+    }
+}
@@ -0,0 +1,44 @@
+package com.ycr.wso2.mediator.statetracker;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Clock that only moves when told to, for deterministic expiry tests
+ */
+public class ManualClock implements ProcessClock {
+
+    private volatile long now;
+
+    public ManualClock() {
+        this(System.currentTimeMillis());
+    }
+
+    public ManualClock(long startMillis) {
+        this.now = startMillis;
+    }
+
+    @Override
+    public long millis() {
+        return now;
+    }
+
+    /**
+     * Move the clock forward
+     */
+    public synchronized void advance(long amount, TimeUnit unit) {
+        if (amount < 0) {
+            throw new IllegalArgumentException("Clock cannot go backwards: " + amount);
+        }
+        now += unit.toMillis(amount);
+    }
+
+    /**
+     * Set the clock, which must not go backwards
+     */
+    public synchronized void set(long millis) {
+        if (millis < now) {
+            throw new IllegalArgumentException("Clock cannot go backwards: " + millis + " < " + now);
+        }
+        now = millis;
+    }
+}
@@ -0,0 +1,22 @@
+package com.ycr.wso2.mediator.statetracker;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Clock reading System.nanoTime() on every call, anchored to the epoch time at creation
+ */
+public class MonotonicClock implements ProcessClock {
+
+    private final long anchorMillis;
+    private final long anchorNanos;
+
+    public MonotonicClock() {
+        this.anchorMillis = System.currentTimeMillis();
+        this.anchorNanos = System.nanoTime();
+    }
+
+    @Override
+    public long millis() {
+        return anchorMillis + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - anchorNanos);
+    }
+}
@@ -0,0 +1,95 @@
+package com.ycr.wso2.mediator.statetracker;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Settings for NearCacheProcessStatusManager
+ *
+ * The near cache is off unless at least one backend type is listed. Defaults can be
+ * overridden with JVM system properties prefixed with "statetracker.nearcache.", see
+ * {@link #fromSystemProperties()}.
+ */
+public class NearCacheConfig {
+
+    public static final long DEFAULT_MAX_STALENESS_MILLIS = 1000;
+    public static final long DEFAULT_NEGATIVE_TTL_MILLIS = 100;
+    public static final int DEFAULT_MAX_ENTRIES = 100000;
+
+    private Set<StatusManagerType> types = EnumSet.noneOf(StatusManagerType.class);
+    private long maxStalenessMillis = DEFAULT_MAX_STALENESS_MILLIS;
+    private long negativeTtlMillis = DEFAULT_NEGATIVE_TTL_MILLIS;
+    private int maxEntries = DEFAULT_MAX_ENTRIES;
+
+    /**
+     * Read settings from system properties, falling back to the defaults
+     *
+     * statetracker.nearcache.types is a comma separated list, e.g. DATABASE,REGISTRY
+     */
+    public static NearCacheConfig fromSystemProperties() {
+        NearCacheConfig config = new NearCacheConfig();
+        String types = System.getProperty("statetracker.nearcache.types");
+        if (types != null) {
+            for (String type : types.split(",")) {
+                if (!type.trim().isEmpty()) {
+                    config.getTypes().add(StatusManagerType.fromString(type.trim()));
+                }
+            }
+        }
+        config.setMaxStalenessMillis(Long.getLong("statetracker.nearcache.maxStalenessMillis",
+                DEFAULT_MAX_STALENESS_MILLIS));
+        config.setNegativeTtlMillis(Long.getLong("statetracker.nearcache.negativeTtlMillis",
+                DEFAULT_NEGATIVE_TTL_MILLIS));
+        config.setMaxEntries(Integer.getInteger("statetracker.nearcache.maxEntries", DEFAULT_MAX_ENTRIES));
+        return config;
+    }
+
+    /**
+     * Backend types whose managers are wrapped in a near cache by the factory
+     */
+    public Set<StatusManagerType> getTypes() {
+        return types;
+    }
+
+    public void setTypes(Set<StatusManagerType> types) {
+        this.types = types;
+    }
+
+    public boolean isEnabledFor(StatusManagerType type) {
+        return types.contains(type);
+    }
+
+    /**
+     * Longest time a running process is served from the cache, changes made by other
+     * nodes may go unseen for this long
+     */
+    public long getMaxStalenessMillis() {
+        return maxStalenessMillis;
+    }
+
+    public void setMaxStalenessMillis(long maxStalenessMillis) {
+        this.maxStalenessMillis = maxStalenessMillis;
+    }
+
+    /**
+     * How long a process found not running is served from the cache, 0 disables negative caching
+     */
+    public long getNegativeTtlMillis() {
+        return negativeTtlMillis;
+    }
+
+    public void setNegativeTtlMillis(long negativeTtlMillis) {
+        this.negativeTtlMillis = negativeTtlMillis;
+    }
+
+    /**
+     * Number of cached IDs at which the cache is cleared
+     */
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+}
@@ -0,0 +1,340 @@
+package com.ycr.wso2.mediator.statetracker;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Read-through cache in front of a remote ProcessStatusManager
+ *
+ * Running processes are cached until their own expiry, but never longer than
+ * maxStalenessMillis; processes found not running are cached for negativeTtlMillis.
+ * Every change made through this node invalidates the cached ID, so only changes
+ * made by other nodes can be served stale. A load that raced with a change to an ID
+ * of the same invalidation stripe is returned but not cached.
+ */
+public class NearCacheProcessStatusManager implements ProcessStatusManager {
+
+    private static final int INVALIDATION_STRIPES = 64;
+
+    private final ProcessStatusManager delegate;
+    private final NearCacheConfig config;
+
+    private final ConcurrentHashMap<String, CachedState> cache = new ConcurrentHashMap<>();
+
+    // Bumped on every invalidation, a load is cached only if its stripe did not move
+    private final AtomicLongArray invalidationCounters = new AtomicLongArray(INVALIDATION_STRIPES);
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    public NearCacheProcessStatusManager(ProcessStatusManager delegate, NearCacheConfig config) {
+        this.delegate = delegate;
+        this.config = config;
+    }
+
+    @Override
+    public void startProcess(String processId, long expiryTimeMillis) {
+        try {
+            delegate.startProcess(processId, expiryTimeMillis);
+        } finally {
+            invalidate(processId);
+        }
+    }
+
+    @Override
+    public void startProcess(String processId, long expiryTimeMillis, boolean pinned, String ownerToken) {
+        try {
+            delegate.startProcess(processId, expiryTimeMillis, pinned, ownerToken);
+        } finally {
+            invalidate(processId);
+        }
+    }
+
+    @Override
+    public ConditionalOperationResult startProcessIfAbsent(String processId, long expiryTimeMillis,
+                                                           boolean pinned, String ownerToken) {
+        try {
+            return delegate.startProcessIfAbsent(processId, expiryTimeMillis, pinned, ownerToken);
+        } finally {
+            invalidate(processId);
+        }
+    }
+
+    @Override
+    public ConditionalOperationResult replaceProcessIfExpired(String processId, long expiryTimeMillis,
+                                                              boolean pinned, String ownerToken) {
+        try {
+            return delegate.replaceProcessIfExpired(processId, expiryTimeMillis, pinned, ownerToken);
+        } finally {
+            invalidate(processId);
+        }
+    }
+
+    @Override
+    public ConditionalOperationResult stopProcessIfOwner(String processId, String ownerToken) {
+        try {
+            return delegate.stopProcessIfOwner(processId, ownerToken);
+        } finally {
+            invalidate(processId);
+        }
+    }
+
+    @Override
+    public ProcessStateEntry renewProcess(String processId, long leaseMillis) {
+        try {
+            return delegate.renewProcess(processId, leaseMillis);
+        } finally {
+            invalidate(processId);
+        }
+    }
+
+    @Override
+    public long getDefaultExpiryTimeMillis() {
+        return delegate.getDefaultExpiryTimeMillis();
+    }
+
+    @Override
+    public void addEventListener(ProcessEventListener listener) {
+        delegate.addEventListener(listener);
+    }
+
+    @Override
+    public void removeEventListener(ProcessEventListener listener) {
+        delegate.removeEventListener(listener);
+    }
+
+    @Override
+    public PermitResult acquirePermit(String key, int limit, long expiryTimeMillis) {
+        return delegate.acquirePermit(key, limit, expiryTimeMillis);
+    }
+
+    @Override
+    public boolean releasePermit(String key, long permitId) {
+        return delegate.releasePermit(key, permitId);
+    }
+
+    @Override
+    public int getPermitCount(String key) {
+        return delegate.getPermitCount(key);
+    }
+
+    @Override
+    public boolean isProcessRunning(String processId) {
+        return getProcessState(processId) != null;
+    }
+
+    @Override
+    public boolean stopProcess(String processId) {
+        try {
+            return delegate.stopProcess(processId);
+        } finally {
+            invalidate(processId);
+        }
+    }
+
+    @Override
+    public ProcessStateEntry getProcessState(String processId) {
+        if (processId == null || processId.trim().isEmpty()) {
+            return null;
+        }
+
+        long now = ProcessClocks.millis();
+        CachedState cached = cache.get(processId);
+        if (cached != null && now < cached.validUntil) {
+            hits.increment();
+            return cached.entry;
+        }
+
+        misses.increment();
+        int stripe = stripeOf(processId);
+        long counter = invalidationCounters.get(stripe);
+        ProcessStateEntry entry = delegate.getProcessState(processId);
+        cache(processId, entry, now, stripe, counter);
+        return entry;
+    }
+
+    @Override
+    public boolean queryProcess(String processId, ProcessStatusView view) {
+        return view.set(getProcessState(processId), ProcessClocks.millis());
+    }
+
+    @Override
+    public boolean[] startProcesses(List<String> processIds, long expiryTimeMillis,
+                                    boolean pinned, String ownerToken) {
+        try {
+            return delegate.startProcesses(processIds, expiryTimeMillis, pinned, ownerToken);
+        } finally {
+            processIds.forEach(this::invalidate);
+        }
+    }
+
+    @Override
+    public boolean[] stopProcesses(List<String> processIds) {
+        try {
+            return delegate.stopProcesses(processIds);
+        } finally {
+            processIds.forEach(this::invalidate);
+        }
+    }
+
+    @Override
+    public ProcessStateEntry[] getProcessStates(List<String> processIds) {
+        long now = ProcessClocks.millis();
+        ProcessStateEntry[] entries = new ProcessStateEntry[processIds.size()];
+        List<String> missedIds = new ArrayList<>();
+        List<Integer> missedIndices = new ArrayList<>();
+
+        for (int i = 0; i < entries.length; i++) {
+            String processId = processIds.get(i);
+            CachedState cached = processId != null ? cache.get(processId) : null;
+            if (cached != null && now < cached.validUntil) {
+                hits.increment();
+                entries[i] = cached.entry;
+            } else if (processId != null && !processId.trim().isEmpty()) {
+                misses.increment();
+                missedIds.add(processId);
+                missedIndices.add(i);
+            }
+        }
+
+        if (!missedIds.isEmpty()) {
+            long[] counters = new long[missedIds.size()];
+            for (int i = 0; i < counters.length; i++) {
+                counters[i] = invalidationCounters.get(stripeOf(missedIds.get(i)));
+            }
+            ProcessStateEntry[] loaded = delegate.getProcessStates(missedIds);
+            for (int i = 0; i < loaded.length; i++) {
+                String processId = missedIds.get(i);
+                cache(processId, loaded[i], now, stripeOf(processId), counters[i]);
+                entries[missedIndices.get(i)] = loaded[i];
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Prefix queries are not cached and always go to the backend
+     */
+    @Override
+    public int forEachRunning(String prefix, String afterId, Predicate<ProcessStateEntry> visitor) {
+        return delegate.forEachRunning(prefix, afterId, visitor);
+    }
+
+    /**
+     * Drop the cached state of a process, e.g. after it was changed out of band
+     */
+    public void invalidate(String processId) {
+        if (processId == null) {
+            return;
+        }
+        invalidationCounters.incrementAndGet(stripeOf(processId));
+        if (cache.remove(processId) != null) {
+            invalidations.increment();
+        }
+    }
+
+    /**
+     * Drop all cached states
+     */
+    public void invalidateAll() {
+        for (int i = 0; i < INVALIDATION_STRIPES; i++) {
+            invalidationCounters.incrementAndGet(i);
+        }
+        cache.clear();
+    }
+
+    @Override
+    public long getTrackedCount() {
+        return delegate.getTrackedCount();
+    }
+
+    public ProcessStatusManager getDelegate() {
+        return delegate;
+    }
+
+    public int getCachedCount() {
+        return cache.size();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getInvalidationCount() {
+        return invalidations.sum();
+    }
+
+    /**
+     * Fraction of lookups served from the cache, 0 before the first lookup
+     */
+    public double getHitRatio() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    /**
+     * Reset hit/miss statistics (counters are not reset atomically with respect to each other)
+     */
+    public void resetMetrics() {
+        hits.reset();
+        misses.reset();
+        invalidations.reset();
+    }
+
+    @Override
+    public void shutdown() {
+        cache.clear();
+        delegate.shutdown();
+    }
+
+    private void cache(String processId, ProcessStateEntry entry, long now, int stripe, long counter) {
+        long validUntil;
+        if (entry != null) {
+            validUntil = now + config.getMaxStalenessMillis();
+            if (entry.hasExpiry()) {
+                // Still running at its deadline, expired right after it
+                validUntil = Math.min(validUntil, entry.getExpiryDeadline() + 1);
+            }
+        } else if (config.getNegativeTtlMillis() > 0) {
+            validUntil = now + config.getNegativeTtlMillis();
+        } else {
+            return;
+        }
+        if (validUntil <= now) {
+            return;
+        }
+        if (cache.size() >= config.getMaxEntries()) {
+            cache.clear();
+        }
+        cache.put(processId, new CachedState(entry, validUntil));
+        // A change that slipped in during the load must not be hidden by it
+        if (invalidationCounters.get(stripe) != counter) {
+            cache.remove(processId);
+        }
+    }
+
+    private static int stripeOf(String processId) {
+        int h = processId.hashCode();
+        return (h ^ (h >>> 16)) & (INVALIDATION_STRIPES - 1);
+    }
+
+    private static final class CachedState {
+        private final ProcessStateEntry entry;
+        private final long validUntil;
+
+        private CachedState(ProcessStateEntry entry, long validUntil) {
+            this.entry = entry;
+            this.validUntil = validUntil;
+        }
+    }
+}
@@ -0,0 +1,860 @@
+package com.ycr.wso2.mediator.statetracker;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+/**
+ * Off-heap implementation of ProcessStatusManager
+ *
+ * Processes are kept in an open-addressing hash table (linear probing) of fixed-size
+ * slots in direct memory or in a memory-mapped file, so tracked processes create no
+ * heap objects and, with a file, survive a restart. Slot layout (little endian):
+ *
+ * <pre>
+ *  0  long  sequence, odd while the slot is being written
+ *  8  int   state (EMPTY, LIVE, DELETED) and flags (pinned)
+ * 12  int   hash of the process ID
+ * 16  long  start timestamp
+ * 24  long  expiry time in milliseconds
+ * 32  int   process ID length
+ * 36  int   owner token length, -1 if none
+ * 40  ...   UTF-8 process ID followed by the owner token
+ * </pre>
+ *
+ * Writers are serialized by one lock; readers take no lock and validate every slot
+ * they read with its sequence number (seqlock), retrying if a write overlapped.
+ *
+ * Resize strategy: before a new ID is inserted, the table is rebuilt when live plus
+ * deleted slots would exceed maxLoadFactor. If the live slots alone are above half
+ * of that limit the capacity is doubled, otherwise the table is rebuilt at the same
+ * capacity, which only drops deleted and expired slots. The rebuilt table is written
+ * to a new file that atomically replaces the old one, then published to readers;
+ * readers still probing the old table finish on a consistent, if stale, copy.
+ *
+ * Expired slots are not removed by readers but by the rebuild and a periodic scan.
+ * Mapped pages are written back by the OS, so a process crash loses nothing but a
+ * host crash may lose writes not yet flushed; {@link #shutdown()} forces the file.
+ */
+public class OffHeapProcessStatusManager implements ProcessStatusManager {
+
+    private static final Log log = LogFactory.getLog(OffHeapProcessStatusManager.class);
+
+    private static final VarHandle LONG = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private static final long MAGIC = 0x3143415254535453L; // "STSTRAC1"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_BYTES = 4096;
+    private static final int MAX_CHUNK_BYTES = 1 << 30;
+
+    // Header layout
+    private static final int HEADER_MAGIC = 0;
+    private static final int HEADER_VERSION = 8;
+    private static final int HEADER_SLOT_BYTES = 12;
+    private static final int HEADER_CAPACITY = 16;
+
+    // Slot layout
+    private static final int SEQUENCE = 0;
+    private static final int STATE = 8;
+    private static final int HASH = 12;
+    private static final int START = 16;
+    private static final int EXPIRY = 24;
+    private static final int KEY_LENGTH = 32;
+    private static final int TOKEN_LENGTH = 36;
+    private static final int KEY = 40;
+
+    private static final int EMPTY = 0;
+    private static final int LIVE = 1;
+    private static final int DELETED = 2;
+    private static final int STATE_MASK = 0xff;
+    private static final int PINNED_FLAG = 1 << 8;
+
+    private static final int PURGE_BATCH_SLOTS = 4096;
+
+    // Null when the table lives in direct memory
+    private final Path file;
+    private final int slotBytes;
+    private final double maxLoadFactor;
+
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private volatile Table table;
+
+    // Written under writeLock
+    private volatile long liveCount;
+    private long deletedCount;
+    private volatile long resizeCount;
+
+    private final ThreadLocal<Probe> probes;
+    private final ScheduledExecutorService purgeExecutor;
+
+    public OffHeapProcessStatusManager() {
+        this(new OffHeapStoreConfig());
+    }
+
+    public OffHeapProcessStatusManager(OffHeapStoreConfig config) {
+        if (config.getSlotBytes() < KEY + 8 || config.getSlotBytes() % 8 != 0) {
+            throw new IllegalArgumentException("Slot size must be a multiple of 8 and at least " + (KEY + 8));
+        }
+        if (config.getMaxLoadFactor() <= 0 || config.getMaxLoadFactor() >= 1) {
+            throw new IllegalArgumentException("Max load factor must be between 0 and 1");
+        }
+        this.file = config.getFile() != null ? Paths.get(config.getFile()) : null;
+        this.slotBytes = config.getSlotBytes();
+        this.maxLoadFactor = config.getMaxLoadFactor();
+        this.probes = ThreadLocal.withInitial(() -> new Probe(slotBytes));
+
+        try {
+            this.table = openTable(Math.max(16, Long.highestOneBit(Math.max(1, config.getInitialCapacity() - 1)) << 1));
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot open off-heap process table " + file, e);
+        }
+
+        if (config.getPurgeIntervalMillis() > 0) {
+            this.purgeExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "state-tracker-offheap-purge");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.purgeExecutor.scheduleWithFixedDelay(this::purgeSafely, config.getPurgeIntervalMillis(),
+                    config.getPurgeIntervalMillis(), TimeUnit.MILLISECONDS);
+        } else {
+            this.purgeExecutor = null;
+        }
+    }
+
+    @Override
+    public void startProcess(String processId, long expiryTimeMillis) {
+        startProcess(processId, expiryTimeMillis, false, null);
+    }
+
+    @Override
+    public void startProcess(String processId, long expiryTimeMillis, boolean pinned, String ownerToken) {
+        Probe probe = encode(processId);
+        byte[] token = encodeToken(processId, probe, ownerToken);
+        long now = ProcessClocks.millis();
+
+        writeLock.lock();
+        try {
+            insert(probe, token, now, expiryTimeMillis, pinned);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public ConditionalOperationResult startProcessIfAbsent(String processId, long expiryTimeMillis,
+                                                           boolean pinned, String ownerToken) {
+        Probe probe = encode(processId);
+        byte[] token = encodeToken(processId, probe, ownerToken);
+        long now = ProcessClocks.millis();
+
+        writeLock.lock();
+        try {
+            long slot = find(table, probe);
+            if (slot >= 0 && !isExpired(table, slot, now)) {
+                return ConditionalOperationResult.rejected(toEntry(processId, table, slot));
+            }
+            insert(probe, token, now, expiryTimeMillis, pinned);
+        } finally {
+            writeLock.unlock();
+        }
+        return ConditionalOperationResult.applied(
+                new ProcessStateEntry(processId, now, expiryTimeMillis, pinned, ownerToken));
+    }
+
+    @Override
+    public ConditionalOperationResult replaceProcessIfExpired(String processId, long expiryTimeMillis,
+                                                              boolean pinned, String ownerToken) {
+        Probe probe = encode(processId);
+        byte[] token = encodeToken(processId, probe, ownerToken);
+        long now = ProcessClocks.millis();
+
+        writeLock.lock();
+        try {
+            long slot = find(table, probe);
+            if (slot < 0) {
+                return ConditionalOperationResult.rejected(null);
+            }
+            if (!isExpired(table, slot, now)) {
+                return ConditionalOperationResult.rejected(toEntry(processId, table, slot));
+            }
+            insert(probe, token, now, expiryTimeMillis, pinned);
+        } finally {
+            writeLock.unlock();
+        }
+        return ConditionalOperationResult.applied(
+                new ProcessStateEntry(processId, now, expiryTimeMillis, pinned, ownerToken));
+    }
+
+    @Override
+    public ConditionalOperationResult stopProcessIfOwner(String processId, String ownerToken) {
+        if (processId == null || processId.trim().isEmpty()) {
+            return ConditionalOperationResult.rejected(null);
+        }
+        Probe probe = encode(processId);
+        long now = ProcessClocks.millis();
+
+        writeLock.lock();
+        try {
+            Table current = table;
+            long slot = find(current, probe);
+            if (slot < 0) {
+                return ConditionalOperationResult.rejected(null);
+            }
+            ProcessStateEntry entry = toEntry(processId, current, slot);
+            // Expired entries are cleaned up whoever asks, but do not count as stopped
+            if (entry.isExpired(now)) {
+                delete(current, slot);
+                return ConditionalOperationResult.rejected(null);
+            }
+            if (!entry.isOwnedBy(ownerToken)) {
+                return ConditionalOperationResult.rejected(entry);
+            }
+            delete(current, slot);
+            return ConditionalOperationResult.applied(entry);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isProcessRunning(String processId) {
+        if (processId == null || processId.trim().isEmpty()) {
+            return false;
+        }
+        Probe probe = encode(processId);
+        return read(table, probe) && !probe.isExpired(ProcessClocks.millis());
+    }
+
+    @Override
+    public boolean stopProcess(String processId) {
+        if (processId == null || processId.trim().isEmpty()) {
+            return false;
+        }
+        Probe probe = encode(processId);
+
+        writeLock.lock();
+        try {
+            Table current = table;
+            long slot = find(current, probe);
+            if (slot < 0) {
+                return false;
+            }
+            delete(current, slot);
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public ProcessStateEntry getProcessState(String processId) {
+        if (processId == null || processId.trim().isEmpty()) {
+            return null;
+        }
+        Probe probe = encode(processId);
+        if (!read(table, probe) || probe.isExpired(ProcessClocks.millis())) {
+            return null;
+        }
+        return new ProcessStateEntry(processId, probe.startTimestamp, probe.expiryTimeMillis,
+                (probe.flags & PINNED_FLAG) != 0, probe.ownerToken());
+    }
+
+    @Override
+    public boolean queryProcess(String processId, ProcessStatusView view) {
+        long now = ProcessClocks.millis();
+        if (processId == null || processId.isEmpty()) {
+            return view.set(null, now);
+        }
+        Probe probe = encode(processId);
+        if (!read(table, probe) || probe.isExpired(now)) {
+            return view.set(null, now);
+        }
+        view.setRunning(probe.startTimestamp, probe.expiryTimeMillis, probe.ownerToken(), now);
+        return true;
+    }
+
+    /**
+     * Scans the whole table a batch of slots at a time under the write lock, then sorts the matches
+     *
+     * Expired slots passed by the scan are deleted, so a process that was not visited
+     * cannot be stopped afterwards. A rebuild during the scan restarts it on the new table.
+     */
+    @Override
+    public int forEachRunning(String prefix, String afterId, Predicate<ProcessStateEntry> visitor) {
+        String from = afterId != null && afterId.compareTo(prefix) > 0 ? afterId : prefix;
+        boolean inclusive = !from.equals(afterId);
+        List<ProcessStateEntry> matches = new ArrayList<>();
+        Table current = table;
+        long start = 0;
+        while (start < current.capacity) {
+            writeLock.lock();
+            try {
+                if (table != current) {
+                    current = table;
+                    matches.clear();
+                    start = 0;
+                    continue;
+                }
+                long now = ProcessClocks.millis();
+                long to = Math.min(current.capacity, start + PURGE_BATCH_SLOTS);
+                for (long slot = start; slot < to; slot++) {
+                    if (stateOf(current, slot) != LIVE) {
+                        continue;
+                    }
+                    String processId = keyOf(current, slot);
+                    int order = processId.compareTo(from);
+                    if (!processId.startsWith(prefix) || order < 0 || (order == 0 && !inclusive)) {
+                        continue;
+                    }
+                    if (isExpired(current, slot, now)) {
+                        delete(current, slot);
+                    } else {
+                        matches.add(toEntry(processId, current, slot));
+                    }
+                }
+                start = to;
+            } finally {
+                writeLock.unlock();
+            }
+        }
+        matches.sort(Comparator.comparing(ProcessStateEntry::getProjectId));
+
+        int visited = 0;
+        for (ProcessStateEntry entry : matches) {
+            visited++;
+            if (!visitor.test(entry)) {
+                break;
+            }
+        }
+        return visited;
+    }
+
+    /**
+     * Delete all expired slots, a batch of slots at a time so writers are not blocked for long
+     *
+     * @return number of slots deleted
+     */
+    public long purgeExpired() {
+        Table current = table;
+        long now = ProcessClocks.millis();
+        long purged = 0;
+        for (long from = 0; from < current.capacity; from += PURGE_BATCH_SLOTS) {
+            writeLock.lock();
+            try {
+                if (table != current) {
+                    // A rebuild already dropped the expired slots
+                    break;
+                }
+                long to = Math.min(current.capacity, from + PURGE_BATCH_SLOTS);
+                for (long slot = from; slot < to; slot++) {
+                    if (stateOf(current, slot) == LIVE && isExpired(current, slot, now)) {
+                        delete(current, slot);
+                        purged++;
+                    }
+                }
+            } finally {
+                writeLock.unlock();
+            }
+        }
+        return purged;
+    }
+
+    /**
+     * Number of live slots, including expired ones not yet purged
+     */
+    public long size() {
+        return liveCount;
+    }
+
+    @Override
+    public long getTrackedCount() {
+        return size();
+    }
+
+    public long getCapacity() {
+        return table.capacity;
+    }
+
+    public long getResizeCount() {
+        return resizeCount;
+    }
+
+    @Override
+    public void shutdown() {
+        if (purgeExecutor != null) {
+            purgeExecutor.shutdownNow();
+        }
+        if (file != null) {
+            writeLock.lock();
+            try {
+                table.force();
+            } finally {
+                writeLock.unlock();
+            }
+        }
+    }
+
+    private void purgeSafely() {
+        try {
+            long purged = purgeExpired();
+            if (purged > 0 && log.isDebugEnabled()) {
+                log.debug("Purged " + purged + " expired processes from the off-heap table");
+            }
+        } catch (Throwable t) {
+            log.error("Error purging expired processes from the off-heap table", t);
+        }
+    }
+
+    // --- Encoding ---
+
+    private Probe encode(String processId) {
+        if (processId == null || processId.trim().isEmpty()) {
+            throw new IllegalArgumentException("Process ID cannot be null or empty");
+        }
+        Probe probe = probes.get();
+        probe.setKey(processId);
+        return probe;
+    }
+
+    private byte[] encodeToken(String processId, Probe probe, String ownerToken) {
+        byte[] token = ownerToken != null ? ownerToken.getBytes(StandardCharsets.UTF_8) : null;
+        int length = probe.keyLength + (token != null ? token.length : 0);
+        if (length > slotBytes - KEY) {
+            throw new IllegalArgumentException("Process ID and owner token exceed the off-heap slot size of "
+                    + slotBytes + " bytes: " + processId);
+        }
+        return token;
+    }
+
+    private static int hash(byte[] key, int length) {
+        // FNV-1a followed by the murmur3 finalizer
+        int h = 0x811c9dc5;
+        for (int i = 0; i < length; i++) {
+            h = (h ^ (key[i] & 0xff)) * 0x01000193;
+        }
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    // --- Lock-free read path ---
+
+    /**
+     * Find the live slot of the probe's key and copy its fields into the probe
+     *
+     * @return false if the key is not in the table
+     */
+    private boolean read(Table t, Probe probe) {
+        long slot = probe.hash & t.mask;
+        for (long probed = 0; probed < t.capacity; probed++, slot = (slot + 1) & t.mask) {
+            ByteBuffer chunk = t.chunk(slot);
+            int base = t.offset(slot);
+            while (true) {
+                long sequence = (long) LONG.getAcquire(chunk, base + SEQUENCE);
+                if ((sequence & 1) != 0) {
+                    Thread.onSpinWait();
+                    continue;
+                }
+                int state = (int) INT.get(chunk, base + STATE);
+                boolean match = (state & STATE_MASK) == LIVE && (int) INT.get(chunk, base + HASH) == probe.hash
+                        && keyEquals(chunk, base, probe);
+                if (match) {
+                    probe.flags = state;
+                    probe.startTimestamp = (long) LONG.get(chunk, base + START);
+                    probe.expiryTimeMillis = (long) LONG.get(chunk, base + EXPIRY);
+                    int tokenLength = (int) INT.get(chunk, base + TOKEN_LENGTH);
+                    // A torn read may see any length, keep it in bounds until validated
+                    probe.tokenLength = tokenLength >= 0 && tokenLength <= slotBytes - KEY - probe.keyLength
+                            ? tokenLength : -1;
+                    if (probe.tokenLength > 0) {
+                        chunk.get(base + KEY + probe.keyLength, probe.tokenBytes, 0, probe.tokenLength);
+                    }
+                }
+                VarHandle.loadLoadFence();
+                if ((long) LONG.getVolatile(chunk, base + SEQUENCE) != sequence) {
+                    continue;
+                }
+                if ((state & STATE_MASK) == EMPTY) {
+                    return false;
+                }
+                if (match) {
+                    return true;
+                }
+                break;
+            }
+        }
+        return false;
+    }
+
+    private boolean keyEquals(ByteBuffer chunk, int base, Probe probe) {
+        if (probe.keyLength > slotBytes - KEY || (int) INT.get(chunk, base + KEY_LENGTH) != probe.keyLength) {
+            return false;
+        }
+        for (int i = 0; i < probe.keyLength; i++) {
+            if (chunk.get(base + KEY + i) != probe.key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // --- Write path, caller holds writeLock ---
+
+    /**
+     * @return slot of the live key, or -(slot + 1) of the slot where it would be inserted
+     */
+    private long find(Table t, Probe probe) {
+        long slot = probe.hash & t.mask;
+        long firstDeleted = -1;
+        for (long probed = 0; probed < t.capacity; probed++, slot = (slot + 1) & t.mask) {
+            ByteBuffer chunk = t.chunk(slot);
+            int base = t.offset(slot);
+            int state = (int) INT.get(chunk, base + STATE) & STATE_MASK;
+            if (state == EMPTY) {
+                return -((firstDeleted >= 0 ? firstDeleted : slot) + 1);
+            }
+            if (state == DELETED) {
+                if (firstDeleted < 0) {
+                    firstDeleted = slot;
+                }
+            } else if ((int) INT.get(chunk, base + HASH) == probe.hash && keyEquals(chunk, base, probe)) {
+                return slot;
+            }
+        }
+        if (firstDeleted < 0) {
+            // Cannot happen while the load factor is below 1
+            throw new IllegalStateException("Off-heap process table is full");
+        }
+        return -(firstDeleted + 1);
+    }
+
+    private void insert(Probe probe, byte[] token, long startTimestamp, long expiryTimeMillis, boolean pinned) {
+        Table current = table;
+        long slot = find(current, probe);
+        if (slot < 0) {
+            if (liveCount + deletedCount + 1 > current.capacity * maxLoadFactor) {
+                current = rebuild(current);
+                slot = find(current, probe);
+            }
+            slot = -slot - 1;
+            if (stateOf(current, slot) == DELETED) {
+                deletedCount--;
+            }
+            liveCount++;
+        }
+
+        ByteBuffer chunk = current.chunk(slot);
+        int base = current.offset(slot);
+        long sequence = beginWrite(chunk, base);
+        INT.set(chunk, base + STATE, LIVE | (pinned ? PINNED_FLAG : 0));
+        INT.set(chunk, base + HASH, probe.hash);
+        LONG.set(chunk, base + START, startTimestamp);
+        LONG.set(chunk, base + EXPIRY, expiryTimeMillis);
+        INT.set(chunk, base + KEY_LENGTH, probe.keyLength);
+        INT.set(chunk, base + TOKEN_LENGTH, token != null ? token.length : -1);
+        chunk.put(base + KEY, probe.key, 0, probe.keyLength);
+        if (token != null) {
+            chunk.put(base + KEY + probe.keyLength, token);
+        }
+        LONG.setRelease(chunk, base + SEQUENCE, sequence + 2);
+    }
+
+    private void delete(Table t, long slot) {
+        ByteBuffer chunk = t.chunk(slot);
+        int base = t.offset(slot);
+        long sequence = beginWrite(chunk, base);
+        INT.set(chunk, base + STATE, DELETED);
+        LONG.setRelease(chunk, base + SEQUENCE, sequence + 2);
+        liveCount--;
+        deletedCount++;
+    }
+
+    private static long beginWrite(ByteBuffer chunk, int base) {
+        long sequence = (long) LONG.get(chunk, base + SEQUENCE);
+        LONG.setOpaque(chunk, base + SEQUENCE, sequence + 1);
+        VarHandle.storeStoreFence();
+        return sequence;
+    }
+
+    private static int stateOf(Table t, long slot) {
+        return (int) INT.get(t.chunk(slot), t.offset(slot) + STATE) & STATE_MASK;
+    }
+
+    private static boolean isExpired(Table t, long slot, long now) {
+        ByteBuffer chunk = t.chunk(slot);
+        int base = t.offset(slot);
+        long expiry = (long) LONG.get(chunk, base + EXPIRY);
+        return expiry > 0 && now - (long) LONG.get(chunk, base + START) > expiry;
+    }
+
+    private static String keyOf(Table t, long slot) {
+        ByteBuffer chunk = t.chunk(slot);
+        int base = t.offset(slot);
+        byte[] key = new byte[(int) INT.get(chunk, base + KEY_LENGTH)];
+        chunk.get(base + KEY, key);
+        return new String(key, StandardCharsets.UTF_8);
+    }
+
+    private ProcessStateEntry toEntry(String processId, Table t, long slot) {
+        ByteBuffer chunk = t.chunk(slot);
+        int base = t.offset(slot);
+        int keyLength = (int) INT.get(chunk, base + KEY_LENGTH);
+        int tokenLength = (int) INT.get(chunk, base + TOKEN_LENGTH);
+        String ownerToken = null;
+        if (tokenLength >= 0) {
+            byte[] token = new byte[tokenLength];
+            chunk.get(base + KEY + keyLength, token);
+            ownerToken = new String(token, StandardCharsets.UTF_8);
+        }
+        return new ProcessStateEntry(processId, (long) LONG.get(chunk, base + START),
+                (long) LONG.get(chunk, base + EXPIRY), ((int) INT.get(chunk, base + STATE) & PINNED_FLAG) != 0,
+                ownerToken);
+    }
+
+    /**
+     * Copy the live, unexpired slots into a new table and publish it, see the class comment
+     */
+    private Table rebuild(Table old) {
+        long limit = (long) (old.capacity * maxLoadFactor);
+        long capacity = liveCount + 1 > limit / 2 ? old.capacity << 1 : old.capacity;
+        Path target = file != null ? file.resolveSibling(file.getFileName() + ".resize") : null;
+        long now = ProcessClocks.millis();
+
+        try {
+            if (target != null) {
+                Files.deleteIfExists(target);
+            }
+            Table next = Table.allocate(target, capacity, slotBytes);
+            long live = 0;
+            for (long slot = 0; slot < old.capacity; slot++) {
+                if (stateOf(old, slot) != LIVE || isExpired(old, slot, now)) {
+                    continue;
+                }
+                ByteBuffer chunk = old.chunk(slot);
+                int base = old.offset(slot);
+                long to = (int) INT.get(chunk, base + HASH) & next.mask;
+                while (stateOf(next, to) != EMPTY) {
+                    to = (to + 1) & next.mask;
+                }
+                next.chunk(to).put(next.offset(to), chunk, base, slotBytes);
+                LONG.set(next.chunk(to), next.offset(to) + SEQUENCE, 0L);
+                live++;
+            }
+            next.writeHeader(slotBytes);
+            if (target != null) {
+                next.force();
+                Files.move(target, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            liveCount = live;
+            deletedCount = 0;
+            resizeCount++;
+            table = next;
+            if (log.isDebugEnabled()) {
+                log.debug("Rebuilt off-heap process table with " + live + " live processes, capacity "
+                        + old.capacity + " -> " + capacity);
+            }
+            return next;
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot resize off-heap process table " + file, e);
+        }
+    }
+
+    /**
+     * Map an existing table file or create a new table, repairing slots torn by a crash
+     */
+    private Table openTable(long initialCapacity) throws IOException {
+        if (file == null || !Files.exists(file) || Files.size(file) < HEADER_BYTES) {
+            Table created = Table.allocate(file, initialCapacity, slotBytes);
+            created.writeHeader(slotBytes);
+            return created;
+        }
+
+        ByteBuffer header;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+        }
+        if ((long) LONG.get(header, HEADER_MAGIC) != MAGIC
+                || (int) INT.get(header, HEADER_VERSION) != FORMAT_VERSION) {
+            throw new IllegalStateException("Not an off-heap process table: " + file);
+        }
+        if ((int) INT.get(header, HEADER_SLOT_BYTES) != slotBytes) {
+            throw new IllegalStateException("Off-heap process table " + file + " was created with slot size "
+                    + INT.get(header, HEADER_SLOT_BYTES) + ", configured " + slotBytes);
+        }
+
+        Table existing = Table.allocate(file, (long) LONG.get(header, HEADER_CAPACITY), slotBytes);
+        long live = 0;
+        long deleted = 0;
+        for (long slot = 0; slot < existing.capacity; slot++) {
+            ByteBuffer chunk = existing.chunk(slot);
+            int base = existing.offset(slot);
+            long sequence = (long) LONG.get(chunk, base + SEQUENCE);
+            if ((sequence & 1) != 0) {
+                INT.set(chunk, base + STATE, DELETED);
+                LONG.set(chunk, base + SEQUENCE, sequence + 1);
+            }
+            int state = stateOf(existing, slot);
+            if (state == LIVE) {
+                live++;
+            } else if (state == DELETED) {
+                deleted++;
+            }
+        }
+        liveCount = live;
+        deletedCount = deleted;
+
+        if (log.isDebugEnabled()) {
+            log.debug("Opened off-heap process table " + file + " with " + live + " processes");
+        }
+        return existing;
+    }
+
+    /**
+     * Slot storage split into chunks of at most 1 GiB, each a direct or mapped buffer
+     */
+    private static final class Table {
+        private final ByteBuffer header;
+        private final ByteBuffer[] chunks;
+        private final long capacity;
+        private final long mask;
+        private final int chunkShift;
+        private final long chunkMask;
+        private final int slotBytes;
+
+        private Table(ByteBuffer header, ByteBuffer[] chunks, long capacity, long chunkSlots, int slotBytes) {
+            this.header = header;
+            this.chunks = chunks;
+            this.capacity = capacity;
+            this.mask = capacity - 1;
+            this.chunkShift = Long.numberOfTrailingZeros(chunkSlots);
+            this.chunkMask = chunkSlots - 1;
+            this.slotBytes = slotBytes;
+        }
+
+        static Table allocate(Path path, long capacity, int slotBytes) throws IOException {
+            long chunkSlots = Math.min(capacity, Long.highestOneBit(MAX_CHUNK_BYTES / slotBytes));
+            int chunkBytes = (int) (chunkSlots * slotBytes);
+            ByteBuffer[] chunks = new ByteBuffer[(int) (capacity / chunkSlots)];
+            ByteBuffer header;
+
+            if (path == null) {
+                header = ByteBuffer.allocateDirect(HEADER_BYTES);
+                for (int i = 0; i < chunks.length; i++) {
+                    chunks[i] = ByteBuffer.allocateDirect(chunkBytes);
+                }
+            } else {
+                // Mappings stay valid after the channel is closed
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                        StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                    header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+                    for (int i = 0; i < chunks.length; i++) {
+                        chunks[i] = channel.map(FileChannel.MapMode.READ_WRITE,
+                                HEADER_BYTES + (long) i * chunkBytes, chunkBytes);
+                    }
+                }
+            }
+            return new Table(header, chunks, capacity, chunkSlots, slotBytes);
+        }
+
+        ByteBuffer chunk(long slot) {
+            return chunks[(int) (slot >>> chunkShift)];
+        }
+
+        int offset(long slot) {
+            return (int) ((slot & chunkMask) * slotBytes);
+        }
+
+        void writeHeader(int slotBytes) {
+            LONG.set(header, HEADER_MAGIC, MAGIC);
+            INT.set(header, HEADER_VERSION, FORMAT_VERSION);
+            INT.set(header, HEADER_SLOT_BYTES, slotBytes);
+            LONG.set(header, HEADER_CAPACITY, capacity);
+        }
+
+        void force() {
+            if (header instanceof MappedByteBuffer) {
+                ((MappedByteBuffer) header).force();
+                for (ByteBuffer chunk : chunks) {
+                    ((MappedByteBuffer) chunk).force();
+                }
+            }
+        }
+    }
+
+    /**
+     * Per-thread scratch space: the encoded key and the fields of the slot last read
+     */
+    private static final class Probe {
+        private byte[] key = new byte[64];
+        private int keyLength;
+        private int hash;
+
+        private int flags;
+        private long startTimestamp;
+        private long expiryTimeMillis;
+        private final byte[] tokenBytes;
+        private int tokenLength;
+
+        private Probe(int slotBytes) {
+            this.tokenBytes = new byte[slotBytes - KEY];
+        }
+
+        void setKey(String processId) {
+            int length = processId.length();
+            if (length > key.length) {
+                key = new byte[Math.max(length, key.length * 2)];
+            }
+            // ASCII IDs are copied without allocating
+            for (int i = 0; i < length; i++) {
+                char c = processId.charAt(i);
+                if (c >= 0x80) {
+                    byte[] encoded = processId.getBytes(StandardCharsets.UTF_8);
+                    if (encoded.length > key.length) {
+                        key = new byte[encoded.length];
+                    }
+                    System.arraycopy(encoded, 0, key, 0, encoded.length);
+                    length = encoded.length;
+                    break;
+                }
+                key[i] = (byte) c;
+            }
+            keyLength = length;
+            hash = OffHeapProcessStatusManager.hash(key, length);
+        }
+
+        boolean isExpired(long now) {
+            return expiryTimeMillis > 0 && now - startTimestamp > expiryTimeMillis;
+        }
+
+        String ownerToken() {
+            return tokenLength >= 0 ? new String(tokenBytes, 0, tokenLength, StandardCharsets.UTF_8) : null;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.ycr.wso2.mediator.statetracker;
+
+/**
+ * Settings for OffHeapProcessStatusManager
+ *
+ * Defaults can be overridden with JVM system properties prefixed with
+ * "statetracker.offheap.", see {@link #fromSystemProperties()}.
+ */
+public class OffHeapStoreConfig {
+
+    public static final int DEFAULT_SLOT_BYTES = 64;
+    public static final long DEFAULT_INITIAL_CAPACITY = 1 << 20;
+    public static final double DEFAULT_MAX_LOAD_FACTOR = 0.7;
+    public static final long DEFAULT_PURGE_INTERVAL_MILLIS = 60000;
+
+    // Null means a direct buffer that does not survive a restart
+    private String file;
+    private int slotBytes = DEFAULT_SLOT_BYTES;
+    private long initialCapacity = DEFAULT_INITIAL_CAPACITY;
+    private double maxLoadFactor = DEFAULT_MAX_LOAD_FACTOR;
+    private long purgeIntervalMillis = DEFAULT_PURGE_INTERVAL_MILLIS;
+
+    /**
+     * Read settings from system properties, falling back to the defaults
+     */
+    public static OffHeapStoreConfig fromSystemProperties() {
+        OffHeapStoreConfig config = new OffHeapStoreConfig();
+        config.setFile(System.getProperty("statetracker.offheap.file"));
+        config.setSlotBytes(Integer.getInteger("statetracker.offheap.slotBytes", DEFAULT_SLOT_BYTES));
+        config.setInitialCapacity(Long.getLong("statetracker.offheap.initialCapacity", DEFAULT_INITIAL_CAPACITY));
+        config.setMaxLoadFactor(Double.parseDouble(System.getProperty("statetracker.offheap.maxLoadFactor",
+                String.valueOf(DEFAULT_MAX_LOAD_FACTOR))));
+        config.setPurgeIntervalMillis(Long.getLong("statetracker.offheap.purgeIntervalMillis",
+                DEFAULT_PURGE_INTERVAL_MILLIS));
+        return config;
+    }
+
+    /**
+     * Memory-mapped table file, null to keep the table in direct memory only
+     */
+    public String getFile() {
+        return file;
+    }
+
+    public void setFile(String file) {
+        this.file = file;
+    }
+
+    /**
+     * Bytes per slot, a multiple of 8; what is left after the 40 byte slot header
+     * holds the UTF-8 process ID and owner token
+     */
+    public int getSlotBytes() {
+        return slotBytes;
+    }
+
+    public void setSlotBytes(int slotBytes) {
+        this.slotBytes = slotBytes;
+    }
+
+    /**
+     * Initial number of slots, rounded up to a power of two
+     */
+    public long getInitialCapacity() {
+        return initialCapacity;
+    }
+
+    public void setInitialCapacity(long initialCapacity) {
+        this.initialCapacity = initialCapacity;
+    }
+
+    /**
+     * Fraction of used (live or deleted) slots at which the table is rebuilt
+     */
+    public double getMaxLoadFactor() {
+        return maxLoadFactor;
+    }
+
+    public void setMaxLoadFactor(double maxLoadFactor) {
+        this.maxLoadFactor = maxLoadFactor;
+    }
+
+    /**
+     * Interval of the scan that deletes expired slots, 0 disables it
+     */
+    public long getPurgeIntervalMillis() {
+        return purgeIntervalMillis;
+    }
+
+    public void setPurgeIntervalMillis(long purgeIntervalMillis) {
+        this.purgeIntervalMillis = purgeIntervalMillis;
+    }
+}
@@ -0,0 +1,148 @@
+package com.ycr.wso2.mediator.statetracker;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histogram of one mediator operation
+ *
+ * Latencies go into power-of-two nanosecond buckets, so recording is a few
+ * LongAdder increments and percentiles are accurate to within a factor of two.
+ */
+public class OperationMetrics implements OperationMetricsMXBean {
+
+    // Bucket 0 holds 0 ns, bucket 63 everything from 2^62 ns
+    private static final int BUCKETS = 64;
+
+    // Distinct result values kept, further ones are counted as OTHER
+    private static final int MAX_RESULTS = 32;
+
+    private final String operation;
+    private final LongAdder count = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+    private final LongAdder[] histogram = new LongAdder[BUCKETS];
+    private final ConcurrentHashMap<String, LongAdder> results = new ConcurrentHashMap<>();
+
+    OperationMetrics(String operation) {
+        this.operation = operation;
+        for (int i = 0; i < BUCKETS; i++) {
+            histogram[i] = new LongAdder();
+        }
+    }
+
+    void record(String result, long nanos) {
+        count.increment();
+        totalNanos.add(nanos);
+        // Bucket i holds latencies below 2^i ns
+        histogram[BUCKETS - Long.numberOfLeadingZeros(Math.max(nanos, 0))].increment();
+        long max;
+        while (nanos > (max = maxNanos.get())) {
+            if (maxNanos.compareAndSet(max, nanos)) {
+                break;
+            }
+        }
+
+        if (result == null) {
+            return;
+        }
+        if ("ERROR".equals(result)) {
+            errors.increment();
+        }
+        LongAdder resultCount = results.get(result);
+        if (resultCount == null) {
+            resultCount = results.size() < MAX_RESULTS
+                    ? results.computeIfAbsent(result, r -> new LongAdder())
+                    : results.computeIfAbsent("OTHER", r -> new LongAdder());
+        }
+        resultCount.increment();
+    }
+
+    @Override
+    public String getOperation() {
+        return operation;
+    }
+
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+
+    @Override
+    public long getErrorCount() {
+        return errors.sum();
+    }
+
+    @Override
+    public Map<String, Long> getResultCounts() {
+        Map<String, Long> counts = new TreeMap<>();
+        results.forEach((result, resultCount) -> counts.put(result, resultCount.sum()));
+        return counts;
+    }
+
+    @Override
+    public double getMeanLatencyMicros() {
+        long n = count.sum();
+        return n == 0 ? 0 : totalNanos.sum() / 1000.0 / n;
+    }
+
+    @Override
+    public long getMaxLatencyMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(maxNanos.get());
+    }
+
+    @Override
+    public long getP50LatencyMicros() {
+        return percentileMicros(0.5);
+    }
+
+    @Override
+    public long getP99LatencyMicros() {
+        return percentileMicros(0.99);
+    }
+
+    @Override
+    public long getP999LatencyMicros() {
+        return percentileMicros(0.999);
+    }
+
+    /**
+     * Upper bound of the bucket holding the given fraction of recorded latencies
+     */
+    long percentileMicros(double fraction) {
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = histogram[i].sum();
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(total * fraction);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return TimeUnit.NANOSECONDS.toMicros(i == BUCKETS - 1 ? Long.MAX_VALUE : 1L << i);
+            }
+        }
+        return getMaxLatencyMicros();
+    }
+
+    void reset() {
+        count.reset();
+        errors.reset();
+        totalNanos.reset();
+        maxNanos.set(0);
+        for (LongAdder bucket : histogram) {
+            bucket.reset();
+        }
+        results.clear();
+    }
+}
@@ -0,0 +1,33 @@
+package com.ycr.wso2.mediator.statetracker;
+
+import java.util.Map;
+
+/**
+ * JMX view of the metrics of one mediator operation
+ */
+public interface OperationMetricsMXBean {
+
+    String getOperation();
+
+    long getCount();
+
+    long getErrorCount();
+
+    /**
+     * Count per STATE_TRACKER_RESULT value (STARTED, NOT_FOUND, ERROR, ...)
+     */
+    Map<String, Long> getResultCounts();
+
+    double getMeanLatencyMicros();
+
+    long getMaxLatencyMicros();
+
+    /**
+     * Upper bound of the latency histogram bucket holding the median
+     */
+    long getP50LatencyMicros();
+
+    long getP99LatencyMicros();
+
+    long getP999LatencyMicros();
+}
@@ -0,0 +1,106 @@
+package com.ycr.wso2.mediator.statetracker;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counted permits of one key, for ACQUIRE_PERMIT / RELEASE_PERMIT
+ *
+ * The number of held permits is a CAS counter; acquiring below the limit is a
+ * single compareAndSet and never blocks. Each permit records its own deadline, and
+ * expired permits are reclaimed when the pool is full or counted, so a flow that
+ * never releases its permit only holds it until it expires.
+ *
+ * An empty pool can be retired (the counter is set to -1) so that its owner can
+ * drop it from the map; acquirers that find a retired pool must use a new one.
+ */
+final class PermitPool {
+
+    // Returned by tryAcquire when the pool was retired
+    static final long RETIRED = -1;
+
+    // Held count of a retired pool
+    private static final int RETIRED_COUNT = -1;
+
+    private static final AtomicLong permitIds = new AtomicLong();
+
+    private final AtomicInteger held = new AtomicInteger();
+
+    // Permit ID to its deadline, Long.MAX_VALUE if it does not expire
+    private final ConcurrentHashMap<Long, Long> deadlines = new ConcurrentHashMap<>();
+
+    /**
+     * Take a permit if fewer than limit are held
+     *
+     * @return the permit ID, 0 if all permits are held, or RETIRED
+     */
+    long tryAcquire(int limit, long deadline, long now) {
+        while (true) {
+            int current = held.get();
+            if (current < 0) {
+                return RETIRED;
+            }
+            if (current >= limit) {
+                if (reclaimExpired(now) == 0) {
+                    return 0;
+                }
+                continue;
+            }
+            if (held.compareAndSet(current, current + 1)) {
+                break;
+            }
+        }
+        long permitId = permitIds.incrementAndGet();
+        deadlines.put(permitId, deadline);
+        return permitId;
+    }
+
+    /**
+     * @return false if the permit is not held, e.g. it expired and was reclaimed
+     */
+    boolean release(long permitId) {
+        if (deadlines.remove(permitId) == null) {
+            return false;
+        }
+        held.decrementAndGet();
+        return true;
+    }
+
+    /**
+     * Held permits after reclaiming expired ones, 0 for a retired pool
+     */
+    int count(long now) {
+        reclaimExpired(now);
+        return Math.max(0, held.get());
+    }
+
+    /**
+     * Held permits without reclaiming, may include expired ones
+     */
+    int heldCount() {
+        return Math.max(0, held.get());
+    }
+
+    /**
+     * Retire the pool if no permit is held
+     */
+    boolean tryRetire() {
+        return held.compareAndSet(0, RETIRED_COUNT);
+    }
+
+    private int reclaimExpired(long now) {
+        int reclaimed = 0;
+        Iterator<Map.Entry<Long, Long>> iterator = deadlines.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Long, Long> permit = iterator.next();
+            if (permit.getValue() < now && deadlines.remove(permit.getKey(), permit.getValue())) {
+                held.decrementAndGet();
+                reclaimed++;
+            }
+        }
+        return reclaimed;
+    }
+}
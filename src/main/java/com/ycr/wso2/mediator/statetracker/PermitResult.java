@@ -0,0 +1,55 @@
+package com.ycr.wso2.mediator.statetracker;
+
+/**
+ * Outcome of ProcessStatusManager.acquirePermit
+ *
+ * Holds whether a permit was granted, its ID (0 if none) and the number of permits
+ * held on the key right after the attempt.
+ */
+public class PermitResult {
+
+    private final boolean acquired;
+    private final long permitId;
+    private final int permits;
+
+    private PermitResult(boolean acquired, long permitId, int permits) {
+        this.acquired = acquired;
+        this.permitId = permitId;
+        this.permits = permits;
+    }
+
+    public static PermitResult acquired(long permitId, int permits) {
+        return new PermitResult(true, permitId, permits);
+    }
+
+    public static PermitResult rejected(int permits) {
+        return new PermitResult(false, 0, permits);
+    }
+
+    public boolean isAcquired() {
+        return acquired;
+    }
+
+    /**
+     * ID to release the permit with, 0 if none was acquired
+     */
+    public long getPermitId() {
+        return permitId;
+    }
+
+    /**
+     * Permits held on the key, including the acquired one
+     */
+    public int getPermits() {
+        return permits;
+    }
+
+    @Override
+    public String toString() {
+        return "PermitResult{" +
+                "acquired=" + acquired +
+                ", permitId=" + permitId +
+                ", permits=" + permits +
+                '}';
+    }
+}
@@ -0,0 +1,141 @@
+package com.ycr.wso2.mediator.statetracker;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counting Bloom filter over process IDs with 4-bit counters, 16 per long
+ *
+ * Counters are updated with CAS so adds and removes from concurrent threads are
+ * not lost. A counter that reaches 15 sticks there, so an overflow can only cause
+ * false positives. Cells are chosen by double hashing a 64-bit hash of the ID.
+ */
+class ProcessBloomFilter {
+
+    private static final int MAX_COUNT = 15;
+    private static final int MAX_HASHES = 16;
+
+    private final AtomicLongArray words;
+    private final long cells;
+    private final int hashes;
+
+    // Clock time at which the filter was filled from the store, see BloomFilterProcessStatusManager
+    private volatile long builtAt;
+
+    /**
+     * @param expectedEntries Number of IDs the filter is sized for
+     * @param falsePositiveRate False positive rate at expectedEntries IDs
+     */
+    ProcessBloomFilter(long expectedEntries, double falsePositiveRate) {
+        long n = Math.max(1, expectedEntries);
+        double p = Math.min(Math.max(falsePositiveRate, 1e-9), 0.5);
+        long m = (long) Math.ceil(-n * Math.log(p) / (Math.log(2) * Math.log(2)));
+        m = Math.min(Math.max(m, 64), (long) (Integer.MAX_VALUE - 8) << 4);
+        this.words = new AtomicLongArray((int) ((m + 15) >>> 4));
+        this.cells = (long) words.length() << 4;
+        this.hashes = (int) Math.min(MAX_HASHES, Math.max(1, Math.round((double) cells / n * Math.log(2))));
+    }
+
+    void add(String processId) {
+        long hash = hash(processId);
+        for (int i = 0; i < hashes; i++) {
+            increment(cell(hash, i));
+        }
+    }
+
+    /**
+     * Undo one add of the ID, which must have been added before
+     */
+    void remove(String processId) {
+        long hash = hash(processId);
+        for (int i = 0; i < hashes; i++) {
+            decrement(cell(hash, i));
+        }
+    }
+
+    /**
+     * @return false if the ID was certainly not added (or was removed as often as added)
+     */
+    boolean mightContain(String processId) {
+        long hash = hash(processId);
+        for (int i = 0; i < hashes; i++) {
+            long cell = cell(hash, i);
+            if ((words.get((int) (cell >>> 4)) >>> ((cell & 15) << 2) & MAX_COUNT) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * False positive rate implied by the fraction of non-zero counters, scans the whole filter
+     */
+    double estimateFalsePositiveRate() {
+        long used = 0;
+        for (int i = 0; i < words.length(); i++) {
+            long word = words.get(i);
+            // One bit per non-zero nibble
+            long nonZero = (word | word >>> 1 | word >>> 2 | word >>> 3) & 0x1111111111111111L;
+            used += Long.bitCount(nonZero);
+        }
+        return Math.pow((double) used / cells, hashes);
+    }
+
+    long getCellCount() {
+        return cells;
+    }
+
+    int getHashCount() {
+        return hashes;
+    }
+
+    long getBuiltAt() {
+        return builtAt;
+    }
+
+    void setBuiltAt(long builtAt) {
+        this.builtAt = builtAt;
+    }
+
+    private void increment(long cell) {
+        int index = (int) (cell >>> 4);
+        int shift = (int) (cell & 15) << 2;
+        long word;
+        do {
+            word = words.get(index);
+            if ((word >>> shift & MAX_COUNT) == MAX_COUNT) {
+                return;
+            }
+        } while (!words.compareAndSet(index, word, word + (1L << shift)));
+    }
+
+    private void decrement(long cell) {
+        int index = (int) (cell >>> 4);
+        int shift = (int) (cell & 15) << 2;
+        long word;
+        do {
+            word = words.get(index);
+            long count = word >>> shift & MAX_COUNT;
+            if (count == 0 || count == MAX_COUNT) {
+                return;
+            }
+        } while (!words.compareAndSet(index, word, word - (1L << shift)));
+    }
+
+    private long cell(long hash, int i) {
+        // Kirsch-Mitzenmacher: h1 + i * h2 with h2 odd
+        return Math.floorMod(hash + i * (Long.rotateLeft(hash, 32) | 1), cells);
+    }
+
+    private static long hash(String processId) {
+        long h = 0x9E3779B97F4A7C15L;
+        for (int i = 0; i < processId.length(); i++) {
+            h = (h ^ processId.charAt(i)) * 0x100000001B3L;
+        }
+        // Final mix so that both halves depend on every character
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        return h ^ (h >>> 33);
+    }
+}
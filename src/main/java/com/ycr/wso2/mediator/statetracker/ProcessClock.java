@@ -0,0 +1,24 @@
+package com.ycr.wso2.mediator.statetracker;
+
+/**
+ * Time source for process start timestamps and expiry checks
+ *
+ * All implementations return epoch-based milliseconds that never go backwards:
+ * they are anchored to the wall clock once and then advance with System.nanoTime(),
+ * so NTP adjustments neither expire nor resurrect processes. A process is expired
+ * when millis() - startTimestamp exceeds its expiry time, both read from the same
+ * clock. The package-wide clock is held by {@link ProcessClocks}.
+ */
+public interface ProcessClock {
+
+    /**
+     * Current time in milliseconds, monotonic and close to the epoch time
+     */
+    long millis();
+
+    /**
+     * Release background resources held by the clock
+     */
+    default void shutdown() {
+    }
+}
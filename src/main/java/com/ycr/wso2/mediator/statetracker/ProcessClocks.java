@@ -0,0 +1,55 @@
+package com.ycr.wso2.mediator.statetracker;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Holds the clock used across the package
+ *
+ * The default is chosen with the system property "statetracker.clock": "monotonic"
+ * (default) or "coarse", whose tick is set with "statetracker.clock.tickMillis".
+ * Tests can install a {@link ManualClock} with {@link #setClock}.
+ */
+public final class ProcessClocks {
+
+    private static final Log log = LogFactory.getLog(ProcessClocks.class);
+
+    private static volatile ProcessClock clock = fromSystemProperties();
+
+    private ProcessClocks() {
+    }
+
+    public static ProcessClock getClock() {
+        return clock;
+    }
+
+    /**
+     * Replace the package-wide clock; the previous clock is returned and not shut down
+     */
+    public static ProcessClock setClock(ProcessClock newClock) {
+        if (newClock == null) {
+            throw new IllegalArgumentException("Clock cannot be null");
+        }
+        ProcessClock previous = clock;
+        clock = newClock;
+        return previous;
+    }
+
+    /**
+     * Current time of the package-wide clock
+     */
+    public static long millis() {
+        return clock.millis();
+    }
+
+    static ProcessClock fromSystemProperties() {
+        String type = System.getProperty("statetracker.clock", "monotonic").trim();
+        if ("coarse".equalsIgnoreCase(type)) {
+            return new CoarseClock(Long.getLong("statetracker.clock.tickMillis", CoarseClock.DEFAULT_TICK_MILLIS));
+        }
+        if (!"monotonic".equalsIgnoreCase(type)) {
+            log.warn("Unknown statetracker.clock " + type + ", using monotonic");
+        }
+        return new MonotonicClock();
+    }
+}
@@ -0,0 +1,69 @@
+package com.ycr.wso2.mediator.statetracker;
+
+/**
+ * A lifecycle transition of a tracked process, delivered to ProcessEventListeners
+ */
+public class ProcessEvent {
+
+    public enum Type {
+        START,
+        STOP,
+        RENEW,
+        /**
+         * Removed because it expired, found on read or by the expiry sweeper
+         */
+        EXPIRE,
+        /**
+         * Removed by a capacity-bounded store to make room
+         */
+        EVICT
+    }
+
+    private final Type type;
+    private final String processId;
+    private final long timestamp;
+    private final long startTimestamp;
+    private final long expiryTimeMillis;
+
+    ProcessEvent(Type type, ProcessStateEntry entry, long timestamp) {
+        this.type = type;
+        this.processId = entry.getProjectId();
+        this.timestamp = timestamp;
+        this.startTimestamp = entry.getStartTimestamp();
+        this.expiryTimeMillis = entry.getExpiryTimeMillis();
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getProcessId() {
+        return processId;
+    }
+
+    /**
+     * When the transition happened (milliseconds)
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public long getStartTimestamp() {
+        return startTimestamp;
+    }
+
+    public long getExpiryTimeMillis() {
+        return expiryTimeMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "ProcessEvent{" +
+                "type=" + type +
+                ", processId='" + processId + '\'' +
+                ", timestamp=" + timestamp +
+                ", startTimestamp=" + startTimestamp +
+                ", expiryTimeMillis=" + expiryTimeMillis +
+                '}';
+    }
+}
@@ -0,0 +1,224 @@
+package com.ycr.wso2.mediator.statetracker;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded lock-free ring buffer that hands process lifecycle events to listeners
+ *
+ * Publishers claim a slot with one CAS on the tail sequence, store the event and
+ * release the slot by advancing its sequence number (a multi-producer ring as in
+ * Vyukov's bounded queue); they never take a lock. A single dispatcher thread
+ * drains up to batchSize events at a time and passes each batch to every listener,
+ * so listener work never runs on a mediation thread.
+ *
+ * When the buffer is full an event is dropped and counted, or the publisher spins
+ * until a slot is free, depending on the EventOverflowPolicy.
+ */
+public class ProcessEventBus {
+
+    private static final Log log = LogFactory.getLog(ProcessEventBus.class);
+
+    // How long the dispatcher sleeps when the buffer is empty
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final int capacity;
+    private final int mask;
+    private final int batchSize;
+    private final EventOverflowPolicy overflowPolicy;
+
+    private final ProcessEvent[] slots;
+    // Sequence each slot is ready for: equal to a producer's claim when free, claim + 1 once filled
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    // Only read and advanced by the dispatcher thread
+    private long head;
+
+    private final CopyOnWriteArrayList<ProcessEventListener> listeners = new CopyOnWriteArrayList<>();
+    private volatile boolean hasListeners;
+    private volatile boolean running = true;
+    private final Thread dispatcher;
+
+    private final LongAdder published = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder listenerFailures = new LongAdder();
+
+    /**
+     * @param capacity Events the buffer holds (rounded up to a power of two)
+     * @param batchSize Maximum events passed to a listener at once
+     * @param overflowPolicy What publish does when the buffer is full
+     */
+    public ProcessEventBus(int capacity, int batchSize, EventOverflowPolicy overflowPolicy) {
+        if (capacity < 2 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("Event buffer size must be between 2 and 2^30: " + capacity);
+        }
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        this.capacity = 1 << (32 - Integer.numberOfLeadingZeros(capacity - 1));
+        this.mask = this.capacity - 1;
+        this.batchSize = batchSize;
+        this.overflowPolicy = overflowPolicy;
+        this.slots = new ProcessEvent[this.capacity];
+        this.sequences = new AtomicLongArray(this.capacity);
+        for (int i = 0; i < this.capacity; i++) {
+            sequences.set(i, i);
+        }
+        this.dispatcher = new Thread(this::dispatchLoop, "state-tracker-events");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    public void addListener(ProcessEventListener listener) {
+        listeners.add(listener);
+        hasListeners = true;
+    }
+
+    public void removeListener(ProcessEventListener listener) {
+        listeners.remove(listener);
+        hasListeners = !listeners.isEmpty();
+    }
+
+    /**
+     * Whether any listener is registered, publishers skip building events otherwise
+     */
+    public boolean hasListeners() {
+        return hasListeners;
+    }
+
+    /**
+     * Put an event into the buffer
+     *
+     * @return false if the event was dropped because the buffer was full or the bus is shut down
+     */
+    public boolean publish(ProcessEvent event) {
+        int spins = 0;
+        while (true) {
+            long sequence = tail.get();
+            int index = (int) sequence & mask;
+            long slotSequence = sequences.get(index);
+            if (slotSequence == sequence) {
+                if (tail.compareAndSet(sequence, sequence + 1)) {
+                    slots[index] = event;
+                    sequences.lazySet(index, sequence + 1);
+                    published.increment();
+                    return true;
+                }
+            } else if (slotSequence < sequence) {
+                // The slot still holds the event of the previous lap, the buffer is full
+                if (overflowPolicy == EventOverflowPolicy.DROP || !running) {
+                    dropped.increment();
+                    return false;
+                }
+                if (++spins < 100) {
+                    Thread.onSpinWait();
+                } else {
+                    LockSupport.parkNanos(10000);
+                }
+            }
+            // Otherwise another publisher claimed the sequence first, retry with the new tail
+        }
+    }
+
+    /**
+     * Stop the dispatcher after it delivered the events already in the buffer
+     */
+    public void shutdown() {
+        running = false;
+        LockSupport.unpark(dispatcher);
+        try {
+            dispatcher.join(10000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public EventOverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    public long getPublishedCount() {
+        return published.sum();
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    public long getDeliveredCount() {
+        return delivered.sum();
+    }
+
+    public long getBatchCount() {
+        return batches.sum();
+    }
+
+    public long getListenerFailureCount() {
+        return listenerFailures.sum();
+    }
+
+    /**
+     * Events published but not yet delivered, approximate while events are published
+     */
+    public long getPendingCount() {
+        return Math.max(0, published.sum() - delivered.sum());
+    }
+
+    private void dispatchLoop() {
+        List<ProcessEvent> batch = new ArrayList<>(batchSize);
+        while (true) {
+            drain(batch);
+            if (batch.isEmpty()) {
+                if (!running) {
+                    return;
+                }
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+                continue;
+            }
+            deliver(batch);
+            batch.clear();
+        }
+    }
+
+    private void drain(List<ProcessEvent> batch) {
+        while (batch.size() < batchSize) {
+            int index = (int) head & mask;
+            if (sequences.get(index) != head + 1) {
+                return;
+            }
+            batch.add(slots[index]);
+            slots[index] = null;
+            // Free the slot for the publisher one lap ahead
+            sequences.lazySet(index, head + capacity);
+            head++;
+        }
+    }
+
+    private void deliver(List<ProcessEvent> batch) {
+        for (ProcessEventListener listener : listeners) {
+            try {
+                listener.onEvents(batch);
+            } catch (Throwable t) {
+                listenerFailures.increment();
+                log.error("Process event listener failed on " + batch.size() + " events", t);
+            }
+        }
+        delivered.add(batch.size());
+        batches.increment();
+    }
+}
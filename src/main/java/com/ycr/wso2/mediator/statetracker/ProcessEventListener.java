@@ -0,0 +1,14 @@
+package com.ycr.wso2.mediator.statetracker;
+
+import java.util.List;
+
+/**
+ * Receives process lifecycle events from a ProcessEventBus
+ *
+ * Called on the bus's dispatcher thread, never on a mediation thread, with the events
+ * in the order they were published. The list is reused once the call returns.
+ */
+public interface ProcessEventListener {
+
+    void onEvents(List<ProcessEvent> events);
+}
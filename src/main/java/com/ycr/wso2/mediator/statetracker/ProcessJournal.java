@@ -0,0 +1,534 @@
+package com.ycr.wso2.mediator.statetracker;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only binary journal of START/STOP records for InMemoryProcessStatusManager
+ *
+ * Records are framed as [int length][int CRC32C][payload] and appended by a single
+ * writer thread. The writer collects all records queued within the sync interval
+ * and writes and fsyncs them together (group commit); appenders optionally wait
+ * until their record is durable.
+ *
+ * The journal is split into segments (journal-SEQ.log) that are rolled at a size
+ * limit. Compaction rolls to a new segment, writes the live entries to a snapshot
+ * (snapshot-SEQ.log, atomically renamed into place) and deletes all older files.
+ * Recovery loads the latest snapshot and replays the segments written after it;
+ * replaying a segment on top of a snapshot taken later is harmless because the
+ * last record per ID wins. A torn or corrupt record ends the replay of its segment.
+ *
+ * Callers must serialize appends per process ID (the mediator's per-key lock does),
+ * otherwise records of the same ID may be journaled out of order.
+ */
+public class ProcessJournal {
+
+    private static final Log log = LogFactory.getLog(ProcessJournal.class);
+
+    private static final byte RECORD_START = 1;
+    private static final byte RECORD_STOP = 2;
+    private static final int HEADER_BYTES = 8;
+    private static final int MAX_RECORD_BYTES = 1 << 20;
+
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SUFFIX = ".log";
+
+    private final Path directory;
+    private final long segmentMaxBytes;
+    private final long syncIntervalMillis;
+    private final boolean waitForSync;
+    private final long compactionThresholdBytes;
+
+    private final BlockingQueue<JournalRecord> queue = new LinkedBlockingQueue<>();
+    private final ReentrantLock channelLock = new ReentrantLock();
+    private final AtomicLong bytesSinceSnapshot = new AtomicLong();
+
+    // Guarded by channelLock
+    private FileChannel channel;
+    private long segmentSequence;
+
+    private Supplier<Iterator<ProcessStateEntry>> liveEntries;
+    private Thread writerThread;
+    private ScheduledExecutorService compactionExecutor;
+    private volatile boolean running;
+
+    private final LongAdder appendedRecords = new LongAdder();
+    private final LongAdder syncs = new LongAdder();
+    private final LongAdder compactions = new LongAdder();
+
+    /**
+     * @param directory Directory holding the journal segments and snapshots
+     * @param segmentMaxBytes Size at which a new segment is started
+     * @param syncIntervalMillis How long the writer collects records before one fsync
+     * @param waitForSync Whether appends block until their record is fsynced
+     * @param compactionThresholdBytes Journal bytes written since the last snapshot that trigger compaction
+     */
+    public ProcessJournal(Path directory, long segmentMaxBytes, long syncIntervalMillis, boolean waitForSync,
+                          long compactionThresholdBytes) {
+        this.directory = directory;
+        this.segmentMaxBytes = segmentMaxBytes;
+        this.syncIntervalMillis = syncIntervalMillis;
+        this.waitForSync = waitForSync;
+        this.compactionThresholdBytes = compactionThresholdBytes;
+    }
+
+    /**
+     * Rebuild the tracked state from the latest snapshot and the segments after it
+     *
+     * Must be called before {@link #open}.
+     *
+     * @param now Entries expired at this time are skipped
+     * @return live entries by process ID
+     */
+    public Map<String, ProcessStateEntry> recover(long now) throws IOException {
+        Files.createDirectories(directory);
+
+        TreeMap<Long, Path> snapshots = listFiles(SNAPSHOT_PREFIX);
+        TreeMap<Long, Path> segments = listFiles(SEGMENT_PREFIX);
+
+        Map<String, ProcessStateEntry> state = new HashMap<>();
+        long fromSequence = 0;
+        if (!snapshots.isEmpty()) {
+            Map.Entry<Long, Path> latest = snapshots.lastEntry();
+            fromSequence = latest.getKey();
+            replayFile(latest.getValue(), state);
+        }
+
+        long replayedBytes = 0;
+        for (Map.Entry<Long, Path> segment : segments.tailMap(fromSequence, true).entrySet()) {
+            replayedBytes += replayFile(segment.getValue(), state);
+        }
+        bytesSinceSnapshot.set(replayedBytes);
+
+        state.values().removeIf(entry -> entry.isExpired(now));
+
+        long lastSequence = Math.max(segments.isEmpty() ? 0 : segments.lastKey(),
+                snapshots.isEmpty() ? 0 : snapshots.lastKey());
+        segmentSequence = lastSequence;
+
+        if (log.isDebugEnabled()) {
+            log.debug("Recovered " + state.size() + " process states from journal " + directory);
+        }
+        return state;
+    }
+
+    /**
+     * Start a new segment and the writer and compaction threads
+     *
+     * @param liveEntries Iterator over the current in-memory entries, used for compaction
+     */
+    public void open(Supplier<Iterator<ProcessStateEntry>> liveEntries) throws IOException {
+        this.liveEntries = liveEntries;
+        channelLock.lock();
+        try {
+            rollSegment();
+        } finally {
+            channelLock.unlock();
+        }
+
+        running = true;
+        writerThread = new Thread(this::writeLoop, "state-tracker-journal-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+
+        compactionExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "state-tracker-journal-compaction");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long checkInterval = Math.max(1000, syncIntervalMillis * 100);
+        compactionExecutor.scheduleWithFixedDelay(this::compactIfNeeded, 0, checkInterval, TimeUnit.MILLISECONDS);
+    }
+
+    public void appendStart(ProcessStateEntry entry) {
+        append(new JournalRecord(RECORD_START, entry.getProjectId(), entry));
+    }
+
+    public void appendStop(String processId) {
+        append(new JournalRecord(RECORD_STOP, processId, null));
+    }
+
+    /**
+     * Snapshot the live entries and delete the segments they supersede
+     */
+    public synchronized void compact() throws IOException {
+        long snapshotSequence;
+        channelLock.lock();
+        try {
+            // Everything journaled before this point is covered by the snapshot
+            rollSegment();
+            snapshotSequence = segmentSequence;
+            bytesSinceSnapshot.set(0);
+        } finally {
+            channelLock.unlock();
+        }
+
+        Path snapshot = directory.resolve(fileName(SNAPSHOT_PREFIX, snapshotSequence));
+        Path temp = directory.resolve(fileName(SNAPSHOT_PREFIX, snapshotSequence) + ".tmp");
+        int count = 0;
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+            CRC32C crc = new CRC32C();
+            Iterator<ProcessStateEntry> entries = liveEntries.get();
+            while (entries.hasNext()) {
+                ProcessStateEntry entry = entries.next();
+                buffer = encode(new JournalRecord(RECORD_START, entry.getProjectId(), entry), buffer, crc, out);
+                count++;
+            }
+            writeFully(out, buffer);
+            out.force(true);
+        }
+        Files.move(temp, snapshot, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+        for (Map.Entry<Long, Path> old : listFiles(SEGMENT_PREFIX).headMap(snapshotSequence, false).entrySet()) {
+            Files.deleteIfExists(old.getValue());
+        }
+        for (Map.Entry<Long, Path> old : listFiles(SNAPSHOT_PREFIX).headMap(snapshotSequence, false).entrySet()) {
+            Files.deleteIfExists(old.getValue());
+        }
+        compactions.increment();
+
+        if (log.isDebugEnabled()) {
+            log.debug("Compacted process journal into snapshot of " + count + " entries");
+        }
+    }
+
+    /**
+     * Flush pending records and stop the background threads
+     */
+    public void close() {
+        running = false;
+        if (compactionExecutor != null) {
+            compactionExecutor.shutdownNow();
+        }
+        if (writerThread != null) {
+            try {
+                writerThread.join(10000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        channelLock.lock();
+        try {
+            if (channel != null) {
+                channel.close();
+                channel = null;
+            }
+        } catch (IOException e) {
+            log.warn("Error closing process journal", e);
+        } finally {
+            channelLock.unlock();
+        }
+    }
+
+    public long getAppendedRecordCount() {
+        return appendedRecords.sum();
+    }
+
+    public long getSyncCount() {
+        return syncs.sum();
+    }
+
+    public long getCompactionCount() {
+        return compactions.sum();
+    }
+
+    public long getBytesSinceSnapshot() {
+        return bytesSinceSnapshot.get();
+    }
+
+    private void append(JournalRecord record) {
+        if (!running) {
+            throw new IllegalStateException("Process journal is closed");
+        }
+        queue.add(record);
+        if (waitForSync) {
+            try {
+                record.synced.get(Math.max(10000, syncIntervalMillis * 10), TimeUnit.MILLISECONDS);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Failed to journal process: " + record.processId, e.getCause());
+            } catch (TimeoutException e) {
+                throw new IllegalStateException("Timed out journaling process: " + record.processId, e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while journaling process: " + record.processId, e);
+            }
+        }
+    }
+
+    private void writeLoop() {
+        List<JournalRecord> batch = new ArrayList<>();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+        CRC32C crc = new CRC32C();
+
+        while (running || !queue.isEmpty()) {
+            try {
+                JournalRecord first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                if (syncIntervalMillis > 0) {
+                    // Let concurrent appenders join this fsync
+                    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(syncIntervalMillis);
+                    long remaining;
+                    while ((remaining = deadline - System.nanoTime()) > 0) {
+                        JournalRecord next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                        if (next == null) {
+                            break;
+                        }
+                        batch.add(next);
+                    }
+                }
+                queue.drainTo(batch);
+
+                IOException failure = null;
+                channelLock.lock();
+                try {
+                    long start = channel.position();
+                    for (JournalRecord record : batch) {
+                        buffer = encode(record, buffer, crc, channel);
+                    }
+                    writeFully(channel, buffer);
+                    channel.force(false);
+                    syncs.increment();
+                    // Only journaled records count towards compaction, not the snapshots it writes
+                    bytesSinceSnapshot.addAndGet(channel.position() - start);
+                    if (channel.position() >= segmentMaxBytes) {
+                        rollSegment();
+                    }
+                } catch (IOException e) {
+                    failure = e;
+                    buffer.clear();
+                    log.error("Failed to write " + batch.size() + " process journal records", e);
+                } finally {
+                    channelLock.unlock();
+                }
+
+                for (JournalRecord record : batch) {
+                    if (failure != null) {
+                        record.synced.completeExceptionally(failure);
+                    } else {
+                        record.synced.complete(null);
+                    }
+                }
+                if (failure == null) {
+                    appendedRecords.add(batch.size());
+                }
+            } catch (InterruptedException e) {
+                // Keep draining until closed
+                Thread.interrupted();
+            } catch (Throwable t) {
+                log.error("Unexpected error in process journal writer", t);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void compactIfNeeded() {
+        try {
+            if (bytesSinceSnapshot.get() >= compactionThresholdBytes) {
+                compact();
+            }
+        } catch (Throwable t) {
+            log.error("Error compacting process journal", t);
+        }
+    }
+
+    // Caller holds channelLock
+    private void rollSegment() throws IOException {
+        if (channel != null) {
+            channel.force(true);
+            channel.close();
+        }
+        segmentSequence++;
+        channel = FileChannel.open(directory.resolve(fileName(SEGMENT_PREFIX, segmentSequence)),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Encode a record into the buffer, writing the buffer out first if it is full
+     */
+    private ByteBuffer encode(JournalRecord record, ByteBuffer buffer, CRC32C crc, FileChannel out)
+            throws IOException {
+        byte[] id = record.processId.getBytes(StandardCharsets.UTF_8);
+        byte[] token = (record.entry != null && record.entry.getOwnerToken() != null)
+                ? record.entry.getOwnerToken().getBytes(StandardCharsets.UTF_8) : null;
+        int payloadLength = 1 + 4 + id.length
+                + (record.type == RECORD_START ? 8 + 8 + 1 + 4 + (token != null ? token.length : 0) : 0);
+        int recordLength = HEADER_BYTES + payloadLength;
+        if (payloadLength > MAX_RECORD_BYTES) {
+            throw new IOException("Process journal record too large for process: " + record.processId);
+        }
+
+        if (buffer.remaining() < recordLength) {
+            writeFully(out, buffer);
+            if (buffer.capacity() < recordLength) {
+                buffer = ByteBuffer.allocateDirect(recordLength);
+            }
+        }
+
+        int start = buffer.position();
+        buffer.putInt(payloadLength);
+        buffer.putInt(0); // CRC placeholder
+        buffer.put(record.type);
+        buffer.putInt(id.length);
+        buffer.put(id);
+        if (record.type == RECORD_START) {
+            ProcessStateEntry entry = record.entry;
+            buffer.putLong(entry.getStartTimestamp());
+            buffer.putLong(entry.getExpiryTimeMillis());
+            buffer.put((byte) (entry.isPinned() ? 1 : 0));
+            buffer.putInt(token != null ? token.length : -1);
+            if (token != null) {
+                buffer.put(token);
+            }
+        }
+
+        ByteBuffer payload = buffer.duplicate();
+        payload.position(start + HEADER_BYTES).limit(start + recordLength);
+        crc.reset();
+        crc.update(payload);
+        buffer.putInt(start + 4, (int) crc.getValue());
+        return buffer;
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Apply the records of one file to state, stopping at the first invalid record
+     *
+     * @return number of valid bytes read
+     */
+    private static long replayFile(Path file, Map<String, ProcessStateEntry> state) throws IOException {
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = in.size();
+            if (size == 0) {
+                return 0;
+            }
+            MappedByteBuffer buffer = in.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            CRC32C crc = new CRC32C();
+
+            while (buffer.remaining() >= HEADER_BYTES) {
+                int start = buffer.position();
+                int payloadLength = buffer.getInt();
+                int checksum = buffer.getInt();
+                if (payloadLength <= 0 || payloadLength > MAX_RECORD_BYTES || payloadLength > buffer.remaining()) {
+                    warnCorrupt(file, start);
+                    return start;
+                }
+                ByteBuffer payload = buffer.slice();
+                payload.limit(payloadLength);
+                crc.reset();
+                crc.update(payload.duplicate());
+                if ((int) crc.getValue() != checksum) {
+                    warnCorrupt(file, start);
+                    return start;
+                }
+                applyRecord(payload, state);
+                buffer.position(start + HEADER_BYTES + payloadLength);
+            }
+            return buffer.position();
+        } catch (RuntimeException e) {
+            throw new IOException("Cannot replay process journal file " + file, e);
+        }
+    }
+
+    private static void applyRecord(ByteBuffer payload, Map<String, ProcessStateEntry> state) {
+        byte type = payload.get();
+        byte[] id = new byte[payload.getInt()];
+        payload.get(id);
+        String processId = new String(id, StandardCharsets.UTF_8);
+
+        if (type == RECORD_STOP) {
+            state.remove(processId);
+            return;
+        }
+        long startTimestamp = payload.getLong();
+        long expiryTimeMillis = payload.getLong();
+        boolean pinned = payload.get() != 0;
+        int tokenLength = payload.getInt();
+        String ownerToken = null;
+        if (tokenLength >= 0) {
+            byte[] token = new byte[tokenLength];
+            payload.get(token);
+            ownerToken = new String(token, StandardCharsets.UTF_8);
+        }
+        state.put(processId, new ProcessStateEntry(processId, startTimestamp, expiryTimeMillis, pinned, ownerToken));
+    }
+
+    private static void warnCorrupt(Path file, int position) {
+        log.warn("Ignoring torn or corrupt process journal record in " + file + " at offset " + position);
+    }
+
+    private TreeMap<Long, Path> listFiles(String prefix) throws IOException {
+        TreeMap<Long, Path> files = new TreeMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, prefix + "*" + SUFFIX)) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                try {
+                    files.put(Long.parseLong(name.substring(prefix.length(), name.length() - SUFFIX.length())), file);
+                } catch (NumberFormatException e) {
+                    log.warn("Ignoring unexpected file in process journal directory: " + file);
+                }
+            }
+        }
+        return files;
+    }
+
+    private static String fileName(String prefix, long sequence) {
+        return String.format("%s%020d%s", prefix, sequence, SUFFIX);
+    }
+
+    private static final class JournalRecord {
+        private final byte type;
+        private final String processId;
+        private final ProcessStateEntry entry;
+        private final CompletableFuture<Void> synced = new CompletableFuture<>();
+
+        private JournalRecord(byte type, String processId, ProcessStateEntry entry) {
+            this.type = type;
+            this.processId = processId;
+            this.entry = entry;
+        }
+    }
+}
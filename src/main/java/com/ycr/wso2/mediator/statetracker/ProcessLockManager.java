@@ -0,0 +1,210 @@
+package com.ycr.wso2.mediator.statetracker;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Bounded striped lock table used to serialize operations on the same process ID
+ *
+ * Replaces locking on interned process ID strings. The number of stripes is fixed at
+ * construction time (rounded up to a power of two), so memory use does not grow with
+ * the number of distinct process IDs. Two IDs may share a stripe, which only costs
+ * some extra contention, never correctness.
+ *
+ * When read/write separation is enabled, read-only operations (IS_PROCESS_RUNNING)
+ * take the shared lock of the stripe and do not serialize each other. A reader
+ * still waits behind a queued writer, so readers cannot starve START/STOP.
+ *
+ * Batch operations lock several stripes at once. They always take the stripes in
+ * ascending index order, so two batches with overlapping IDs cannot deadlock.
+ */
+public class ProcessLockManager {
+
+    public static final int DEFAULT_STRIPES = 1024;
+    public static final int MAX_STRIPES = 1 << 20;
+
+    private final ReentrantReadWriteLock[] stripes;
+    private final int mask;
+    private final boolean readWriteSeparation;
+
+    // Lock metrics, only updated when StateTrackerMetrics.ENABLED; wait times only
+    // for locks that could not be taken immediately
+    private final LongAdder acquisitions = new LongAdder();
+    private final LongAdder contendedAcquisitions = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    public ProcessLockManager() {
+        this(DEFAULT_STRIPES, true);
+    }
+
+    public ProcessLockManager(int stripeCount, boolean readWriteSeparation) {
+        if (stripeCount <= 0) {
+            throw new IllegalArgumentException("Stripe count must be positive: " + stripeCount);
+        }
+        int size = stripeCount >= MAX_STRIPES ? MAX_STRIPES : tableSizeFor(stripeCount);
+        this.stripes = new ReentrantReadWriteLock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantReadWriteLock();
+        }
+        this.mask = size - 1;
+        this.readWriteSeparation = readWriteSeparation;
+    }
+
+    /**
+     * Create a lock manager sized from system properties
+     * (statetracker.lock.stripes, statetracker.lock.readWriteSeparation)
+     */
+    public static ProcessLockManager fromSystemProperties() {
+        int stripeCount = Integer.getInteger("statetracker.lock.stripes", DEFAULT_STRIPES);
+        boolean rwSeparation = Boolean.parseBoolean(
+                System.getProperty("statetracker.lock.readWriteSeparation", "true"));
+        return new ProcessLockManager(stripeCount, rwSeparation);
+    }
+
+    /**
+     * Acquire the lock guarding the given process ID
+     *
+     * @param processId The unique identifier for the process
+     * @param readOnly true for operations that do not change the tracked state
+     * @return the acquired lock, which the caller must unlock in a finally block
+     */
+    public Lock lock(String processId, boolean readOnly) {
+        ReentrantReadWriteLock stripe = stripes[stripeIndex(processId)];
+        Lock lock = (readOnly && readWriteSeparation) ? stripe.readLock() : stripe.writeLock();
+        acquire(stripe, lock);
+        return lock;
+    }
+
+    /**
+     * Acquire the locks guarding all given process IDs, each stripe once and in ascending order
+     *
+     * @param processIds The unique identifiers of the processes
+     * @param readOnly true for operations that do not change the tracked state
+     * @return the acquired locks, which the caller must release with {@link #unlockAll(List)}
+     */
+    public List<Lock> lockAll(Collection<String> processIds, boolean readOnly) {
+        int[] indices = new int[processIds.size()];
+        int count = 0;
+        for (String processId : processIds) {
+            indices[count++] = stripeIndex(processId);
+        }
+        Arrays.sort(indices, 0, count);
+
+        List<Lock> locks = new ArrayList<>(count);
+        try {
+            for (int i = 0; i < count; i++) {
+                if (i > 0 && indices[i] == indices[i - 1]) {
+                    continue;
+                }
+                ReentrantReadWriteLock stripe = stripes[indices[i]];
+                Lock lock = (readOnly && readWriteSeparation) ? stripe.readLock() : stripe.writeLock();
+                acquire(stripe, lock);
+                locks.add(lock);
+            }
+        } catch (RuntimeException | Error e) {
+            unlockAll(locks);
+            throw e;
+        }
+        return locks;
+    }
+
+    /**
+     * Release locks taken by {@link #lockAll(Collection, boolean)} in reverse order
+     */
+    public void unlockAll(List<Lock> locks) {
+        for (int i = locks.size() - 1; i >= 0; i--) {
+            locks.get(i).unlock();
+        }
+    }
+
+    /**
+     * Get the (not yet acquired) lock guarding the given process ID
+     */
+    public Lock lockFor(String processId, boolean readOnly) {
+        ReentrantReadWriteLock stripe = stripes[stripeIndex(processId)];
+        return (readOnly && readWriteSeparation) ? stripe.readLock() : stripe.writeLock();
+    }
+
+    /**
+     * Acquire one of the stripe's locks, recording wait time
+     */
+    private void acquire(ReentrantReadWriteLock stripe, Lock lock) {
+        if (!StateTrackerMetrics.ENABLED) {
+            lock.lock();
+            return;
+        }
+        acquisitions.increment();
+        // ReadLock.tryLock() barges past queued writers, lock() waits behind them
+        if ((lock == stripe.writeLock() || !stripe.hasQueuedThreads()) && lock.tryLock()) {
+            return;
+        }
+        long waitStart = System.nanoTime();
+        lock.lock();
+        long waited = System.nanoTime() - waitStart;
+        contendedAcquisitions.increment();
+        totalWaitNanos.add(waited);
+        long max;
+        while (waited > (max = maxWaitNanos.get())) {
+            if (maxWaitNanos.compareAndSet(max, waited)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Stripe index of a process ID, stable for the lifetime of this manager
+     */
+    public int stripeIndex(String processId) {
+        int h = processId.hashCode();
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    public int getStripeCount() {
+        return stripes.length;
+    }
+
+    public boolean isReadWriteSeparation() {
+        return readWriteSeparation;
+    }
+
+    public long getAcquisitionCount() {
+        return acquisitions.sum();
+    }
+
+    public long getContendedAcquisitionCount() {
+        return contendedAcquisitions.sum();
+    }
+
+    public long getTotalWaitNanos() {
+        return totalWaitNanos.sum();
+    }
+
+    public long getMaxWaitNanos() {
+        return maxWaitNanos.get();
+    }
+
+    /**
+     * Reset wait metrics (counters are not reset atomically with respect to each other)
+     */
+    public void resetMetrics() {
+        acquisitions.reset();
+        contendedAcquisitions.reset();
+        totalWaitNanos.reset();
+        maxWaitNanos.set(0);
+    }
+
+    private static int tableSizeFor(int n) {
+        int size = 1;
+        while (size < n) {
+            size <<= 1;
+        }
+        return size;
+    }
+}
@@ -0,0 +1,110 @@
+package com.ycr.wso2.mediator.statetracker;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An isolated in-memory store of one namespace (e.g. a tenant or an API)
+ *
+ * Each namespace has its own map, entry quota, default expiry and metrics, so the
+ * cardinality of one namespace does not affect lookups in another. Namespaces are
+ * created by ProcessStatusManagerFactory.getNamespace on first use, and the store
+ * itself (which may load a snapshot or journal) on the first getManager call, so
+ * that no file I/O happens while the factory's map is locked. Expiry sweeps and
+ * snapshot writes of all namespaces run on one scheduler shared by the factory.
+ */
+public class ProcessNamespace implements ProcessNamespaceMXBean {
+
+    private final String name;
+    private final InMemoryStoreConfig config;
+    private final ScheduledExecutorService scheduler;
+    private final LongAdder operations = new LongAdder();
+
+    // Created by the first getManager call
+    private volatile InMemoryProcessStatusManager manager;
+
+    ProcessNamespace(String name, InMemoryStoreConfig config, ScheduledExecutorService scheduler) {
+        this.name = name;
+        this.config = config;
+        this.scheduler = scheduler;
+    }
+
+    public InMemoryProcessStatusManager getManager() {
+        InMemoryProcessStatusManager current = manager;
+        if (current == null) {
+            synchronized (this) {
+                current = manager;
+                if (current == null) {
+                    current = new InMemoryProcessStatusManager(config, scheduler);
+                    manager = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * The store, or null if it was not created yet
+     */
+    InMemoryProcessStatusManager getManagerIfCreated() {
+        return manager;
+    }
+
+    InMemoryStoreConfig getConfig() {
+        return config;
+    }
+
+    void recordOperation() {
+        operations.increment();
+    }
+
+    @Override
+    public String getNamespace() {
+        return name;
+    }
+
+    @Override
+    public long getOperationCount() {
+        return operations.sum();
+    }
+
+    @Override
+    public long getTrackedProcessCount() {
+        InMemoryProcessStatusManager current = manager;
+        return current != null ? current.getTrackedCount() : 0;
+    }
+
+    @Override
+    public long getMaxEntries() {
+        return config.getMaxEntries();
+    }
+
+    @Override
+    public long getRejectedCount() {
+        CapacityManager capacity = capacityManager();
+        return capacity != null ? capacity.getRejectionCount() : 0;
+    }
+
+    @Override
+    public long getEvictedCount() {
+        CapacityManager capacity = capacityManager();
+        return capacity != null ? capacity.getEvictionCount() : 0;
+    }
+
+    @Override
+    public long getExpiredProcessCount() {
+        InMemoryProcessStatusManager current = manager;
+        return current != null ? current.getExpiredCount() : 0;
+    }
+
+    @Override
+    public long getDefaultExpirySeconds() {
+        return TimeUnit.MILLISECONDS.toSeconds(config.getDefaultExpiryTimeMillis());
+    }
+
+    private CapacityManager capacityManager() {
+        InMemoryProcessStatusManager current = manager;
+        return current != null ? current.getCapacityManager() : null;
+    }
+}
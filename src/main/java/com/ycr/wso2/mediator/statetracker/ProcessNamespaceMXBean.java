@@ -0,0 +1,33 @@
+package com.ycr.wso2.mediator.statetracker;
+
+/**
+ * JMX view of one namespace, registered as
+ * com.ycr.wso2.mediator.statetracker:type=StateTracker,name=Namespace,namespace="..."
+ */
+public interface ProcessNamespaceMXBean {
+
+    String getNamespace();
+
+    /**
+     * Mediations that used this namespace
+     */
+    long getOperationCount();
+
+    long getTrackedProcessCount();
+
+    /**
+     * Entry quota of the namespace, 0 if unbounded
+     */
+    long getMaxEntries();
+
+    /**
+     * Starts refused because the namespace was at its quota
+     */
+    long getRejectedCount();
+
+    long getEvictedCount();
+
+    long getExpiredProcessCount();
+
+    long getDefaultExpirySeconds();
+}
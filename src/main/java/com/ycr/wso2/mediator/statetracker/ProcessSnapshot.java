@@ -0,0 +1,375 @@
+package com.ycr.wso2.mediator.statetracker;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.zip.CRC32C;
+
+/**
+ * Binary point-in-time copy of an InMemoryProcessStatusManager, for a warm start
+ *
+ * The file is a 32 byte header [int magic][int version][long entry count]
+ * [long written at][int CRC32C of the records][int reserved] followed by one record
+ * per process: [unsigned short ID length][ID][long start][long expiry][byte flags]
+ * and, if the owner flag is set, [unsigned short token length][token].
+ *
+ * Writing iterates the live map, which is weakly consistent, so writers are never
+ * paused; a process changed during the write may be captured in either state. The
+ * file is written to a temporary file and renamed into place. Loading maps the file,
+ * verifies the checksum and inserts the unexpired entries into a map presized from
+ * the header's entry count. A snapshot with a bad checksum is ignored.
+ */
+public class ProcessSnapshot {
+
+    private static final Log log = LogFactory.getLog(ProcessSnapshot.class);
+
+    private static final int MAGIC = 0x53545350; // "STSP"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 32;
+    private static final int FIXED_RECORD_BYTES = 2 + 8 + 8 + 1;
+    private static final int MAX_STRING_BYTES = 0xFFFF;
+    private static final byte FLAG_PINNED = 1;
+    private static final byte FLAG_OWNER = 2;
+
+    // Mapped at most this much of the file at once
+    private static final long MAP_WINDOW_BYTES = 256L * 1024 * 1024;
+
+    private final Path file;
+    private final long intervalMillis;
+
+    private Supplier<Iterator<ProcessStateEntry>> liveEntries;
+    private ScheduledExecutorService writer;
+
+    // Periodic write on a shared scheduler, instead of the writer thread
+    private ScheduledFuture<?> writeTask;
+
+    private final LongAdder written = new LongAdder();
+    private final LongAdder skippedOnWrite = new LongAdder();
+    private volatile long lastWrittenEntries;
+    private volatile long lastWriteNanos;
+    private volatile long loadedEntries;
+    private volatile long expiredOnLoad;
+    private volatile long lastLoadNanos;
+
+    /**
+     * @param file Snapshot file, replaced on every write
+     * @param intervalMillis Time between periodic snapshots, 0 to write only on close
+     */
+    public ProcessSnapshot(Path file, long intervalMillis) {
+        this.file = file;
+        this.intervalMillis = intervalMillis;
+    }
+
+    /**
+     * Read the snapshot file
+     *
+     * @param now Entries expired at this time are skipped
+     * @return the unexpired entries, or null if there is no usable snapshot
+     */
+    public ConcurrentHashMap<String, ProcessStateEntry> load(long now) throws IOException {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        long startNanos = System.nanoTime();
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = in.size();
+            if (size < HEADER_BYTES) {
+                log.warn("Ignoring truncated process snapshot " + file);
+                return null;
+            }
+            ByteBuffer header = in.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                log.warn("Ignoring process snapshot of unknown format " + file);
+                return null;
+            }
+            long count = header.getLong();
+            header.getLong(); // written at
+            int checksum = header.getInt();
+            if (count < 0 || checksum(in, size) != checksum) {
+                log.warn("Ignoring corrupt process snapshot " + file);
+                return null;
+            }
+
+            ConcurrentHashMap<String, ProcessStateEntry> state =
+                    new ConcurrentHashMap<>((int) Math.min(count, Integer.MAX_VALUE - 8));
+            MappedReader reader = new MappedReader(in, HEADER_BYTES, size);
+            long expired = 0;
+            for (long i = 0; i < count; i++) {
+                reader.ensure(2);
+                int idLength = reader.buffer.getShort() & 0xFFFF;
+                reader.ensure(idLength + FIXED_RECORD_BYTES - 2);
+                String processId = reader.readString(idLength);
+                long startTimestamp = reader.buffer.getLong();
+                long expiryTimeMillis = reader.buffer.getLong();
+                byte flags = reader.buffer.get();
+                String ownerToken = null;
+                if ((flags & FLAG_OWNER) != 0) {
+                    reader.ensure(2);
+                    int tokenLength = reader.buffer.getShort() & 0xFFFF;
+                    reader.ensure(tokenLength);
+                    ownerToken = reader.readString(tokenLength);
+                }
+                ProcessStateEntry entry = new ProcessStateEntry(processId, startTimestamp, expiryTimeMillis,
+                        (flags & FLAG_PINNED) != 0, ownerToken);
+                if (entry.isExpired(now)) {
+                    expired++;
+                    continue;
+                }
+                state.put(processId, entry);
+            }
+
+            loadedEntries = state.size();
+            expiredOnLoad = expired;
+            lastLoadNanos = System.nanoTime() - startNanos;
+            if (log.isDebugEnabled()) {
+                log.debug("Loaded " + state.size() + " process states from snapshot " + file + ", skipped "
+                        + expired + " expired, in " + TimeUnit.NANOSECONDS.toMillis(lastLoadNanos) + " ms");
+            }
+            return state;
+        }
+    }
+
+    /**
+     * Start writing snapshots periodically
+     *
+     * @param liveEntries Iterator over the current in-memory entries
+     */
+    public void open(Supplier<Iterator<ProcessStateEntry>> liveEntries) {
+        open(liveEntries, null);
+    }
+
+    /**
+     * @param scheduler Runs the periodic writes instead of a thread of the snapshot's own,
+     *                  not shut down on close; null to start a writer thread
+     */
+    public void open(Supplier<Iterator<ProcessStateEntry>> liveEntries, ScheduledExecutorService scheduler) {
+        this.liveEntries = liveEntries;
+        if (intervalMillis <= 0) {
+            return;
+        }
+        if (scheduler != null) {
+            writeTask = scheduler.scheduleWithFixedDelay(this::writeQuietly, intervalMillis, intervalMillis,
+                    TimeUnit.MILLISECONDS);
+            return;
+        }
+        writer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "state-tracker-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        writer.scheduleWithFixedDelay(this::writeQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Write the live entries to the snapshot file, skipping expired ones
+     *
+     * @return number of entries written
+     */
+    public synchronized long write() throws IOException {
+        long startNanos = System.nanoTime();
+        long now = ProcessClocks.millis();
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+
+        long count = 0;
+        CRC32C crc = new CRC32C();
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            out.position(HEADER_BYTES);
+            ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+            Iterator<ProcessStateEntry> entries = liveEntries.get();
+            while (entries.hasNext()) {
+                ProcessStateEntry entry = entries.next();
+                if (entry.isExpired(now)) {
+                    continue;
+                }
+                byte[] id = entry.getProjectId().getBytes(StandardCharsets.UTF_8);
+                byte[] token = entry.getOwnerToken() != null
+                        ? entry.getOwnerToken().getBytes(StandardCharsets.UTF_8) : null;
+                if (id.length > MAX_STRING_BYTES || (token != null && token.length > MAX_STRING_BYTES)) {
+                    skippedOnWrite.increment();
+                    log.warn("Process ID or owner token too long for the snapshot: " + entry.getProjectId());
+                    continue;
+                }
+                int recordLength = FIXED_RECORD_BYTES + id.length + (token != null ? 2 + token.length : 0);
+                if (buffer.remaining() < recordLength) {
+                    writeFully(out, buffer, crc);
+                    if (buffer.capacity() < recordLength) {
+                        buffer = ByteBuffer.allocateDirect(recordLength);
+                    }
+                }
+                buffer.putShort((short) id.length);
+                buffer.put(id);
+                buffer.putLong(entry.getStartTimestamp());
+                buffer.putLong(entry.getExpiryTimeMillis());
+                buffer.put((byte) ((entry.isPinned() ? FLAG_PINNED : 0) | (token != null ? FLAG_OWNER : 0)));
+                if (token != null) {
+                    buffer.putShort((short) token.length);
+                    buffer.put(token);
+                }
+                count++;
+            }
+            writeFully(out, buffer, crc);
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).putInt(VERSION).putLong(count).putLong(now).putInt((int) crc.getValue()).putInt(0);
+            header.flip();
+            while (header.hasRemaining()) {
+                out.write(header, header.position());
+            }
+            out.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+        written.increment();
+        lastWrittenEntries = count;
+        lastWriteNanos = System.nanoTime() - startNanos;
+        if (log.isDebugEnabled()) {
+            log.debug("Wrote process snapshot of " + count + " entries to " + file);
+        }
+        return count;
+    }
+
+    /**
+     * Stop the periodic writer and write a final snapshot
+     */
+    public void close() {
+        if (writeTask != null) {
+            // A write in progress holds the lock that the final write below waits for
+            writeTask.cancel(false);
+        }
+        if (writer != null) {
+            writer.shutdownNow();
+            try {
+                writer.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (liveEntries != null) {
+            writeQuietly();
+        }
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public long getWrittenCount() {
+        return written.sum();
+    }
+
+    public long getLastWrittenEntryCount() {
+        return lastWrittenEntries;
+    }
+
+    public long getLastWriteNanos() {
+        return lastWriteNanos;
+    }
+
+    /**
+     * Entries left out of written snapshots because their ID or owner token was too long
+     */
+    public long getSkippedOnWriteCount() {
+        return skippedOnWrite.sum();
+    }
+
+    public long getLoadedEntryCount() {
+        return loadedEntries;
+    }
+
+    public long getExpiredOnLoadCount() {
+        return expiredOnLoad;
+    }
+
+    public long getLastLoadNanos() {
+        return lastLoadNanos;
+    }
+
+    private void writeQuietly() {
+        try {
+            write();
+        } catch (Throwable t) {
+            log.error("Error writing process snapshot " + file, t);
+        }
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer buffer, CRC32C crc) throws IOException {
+        buffer.flip();
+        crc.update(buffer.duplicate());
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static int checksum(FileChannel in, long size) throws IOException {
+        CRC32C crc = new CRC32C();
+        for (long position = HEADER_BYTES; position < size; position += MAP_WINDOW_BYTES) {
+            crc.update(in.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAP_WINDOW_BYTES, size - position)));
+        }
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Reads a file through a sliding mapped window, so files over 2 GB can be read
+     */
+    private static final class MappedReader {
+
+        private final FileChannel channel;
+        private final long size;
+        private long base;
+        private MappedByteBuffer buffer;
+        // Strings are at most MAX_STRING_BYTES long
+        private final byte[] scratch = new byte[MAX_STRING_BYTES];
+
+        MappedReader(FileChannel channel, long position, long size) throws IOException {
+            this.channel = channel;
+            this.size = size;
+            map(position);
+        }
+
+        /**
+         * Make sure the next n bytes are in the window
+         */
+        void ensure(int n) throws IOException {
+            if (buffer.remaining() >= n) {
+                return;
+            }
+            long position = base + buffer.position();
+            if (position + n > size) {
+                throw new IOException("Process snapshot ends inside a record at " + position);
+            }
+            map(position);
+        }
+
+        String readString(int length) {
+            buffer.get(scratch, 0, length);
+            return new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+
+        private void map(long position) throws IOException {
+            base = position;
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAP_WINDOW_BYTES, size - position));
+        }
+    }
+}
@@ -2,16 +2,37 @@ package com.ycr.wso2.mediator.statetracker;
 
 /**
  * Represents a process state entry with timestamp and expiry
+ * 
+ * The expiry is the only mutable state: a renewal extends it in place, keeping the
+ * start time, see {@link #renew(long, long)}.
  */
 public class ProcessStateEntry {
     private final String projectId;
     private final long startTimestamp;
-    private final long expiryTimeMillis;
+    private volatile long expiryTimeMillis;
+    private final boolean pinned;
+    private final String ownerToken;
+    private volatile int renewCount;
+    private volatile long lastRenewTimestamp;
+    
+    // Reference bit for CLOCK eviction, racy updates are harmless
+    private boolean accessed;
     
     public ProcessStateEntry(String projectId, long startTimestamp, long expiryTimeMillis) {
+        this(projectId, startTimestamp, expiryTimeMillis, false);
+    }
+    
+    public ProcessStateEntry(String projectId, long startTimestamp, long expiryTimeMillis, boolean pinned) {
+        this(projectId, startTimestamp, expiryTimeMillis, pinned, null);
+    }
+    
+    public ProcessStateEntry(String projectId, long startTimestamp, long expiryTimeMillis, boolean pinned,
+                             String ownerToken) {
         this.projectId = projectId;
         this.startTimestamp = startTimestamp;
         this.expiryTimeMillis = expiryTimeMillis;
+        this.pinned = pinned;
+        this.ownerToken = ownerToken;
     }
     
     public String getProjectId() {
@@ -26,11 +47,110 @@ public class ProcessStateEntry {
         return expiryTimeMillis;
     }
     
+    /**
+     * Pinned entries are never evicted from a capacity-bounded store
+     */
+    public boolean isPinned() {
+        return pinned;
+    }
+    
+    /**
+     * Token of the flow that started the process, or null if none was given
+     */
+    public String getOwnerToken() {
+        return ownerToken;
+    }
+    
+    /**
+     * Number of times the expiry was extended by a renewal
+     */
+    public int getRenewCount() {
+        return renewCount;
+    }
+    
+    /**
+     * Time of the last renewal, or 0 if the process was never renewed
+     */
+    public long getLastRenewTimestamp() {
+        return lastRenewTimestamp;
+    }
+    
+    /**
+     * Length of the current lease: from the last renewal (or start) to the deadline, 0 if no expiry is set
+     */
+    public long getLeaseMillis() {
+        if (!hasExpiry()) {
+            return 0;
+        }
+        return getExpiryDeadline() - (lastRenewTimestamp > 0 ? lastRenewTimestamp : startTimestamp);
+    }
+    
+    /**
+     * Move the deadline to now + leaseMillis, keeping the start time
+     * 
+     * Renewals of an entry must be serialized by the store (e.g. in a map compute);
+     * a concurrent reader may see the new expiry before the new renew count.
+     * 
+     * @param leaseMillis new lease length, 0 or negative keeps the current lease length
+     */
+    void renew(long now, long leaseMillis) {
+        long lease = leaseMillis > 0 ? leaseMillis : getLeaseMillis();
+        if (lease > 0) {
+            expiryTimeMillis = now - startTimestamp + lease;
+        }
+        lastRenewTimestamp = now;
+        renewCount = renewCount + 1;
+    }
+    
+    /**
+     * Copy of this entry renewed at now, for stores that do not update entries in place
+     */
+    ProcessStateEntry renewedCopy(long now, long leaseMillis) {
+        ProcessStateEntry copy = new ProcessStateEntry(projectId, startTimestamp, expiryTimeMillis, pinned, ownerToken);
+        copy.renewCount = renewCount;
+        copy.lastRenewTimestamp = lastRenewTimestamp;
+        copy.renew(now, leaseMillis);
+        return copy;
+    }
+    
+    public boolean isOwnedBy(String token) {
+        return ownerToken != null && ownerToken.equals(token);
+    }
+    
+    void markAccessed() {
+        if (!accessed) {
+            accessed = true;
+        }
+    }
+    
+    /**
+     * Clear the reference bit, returning whether it was set
+     */
+    boolean clearAccessed() {
+        boolean wasAccessed = accessed;
+        accessed = false;
+        return wasAccessed;
+    }
+    
+    public boolean hasExpiry() {
+        return expiryTimeMillis > 0;
+    }
+    
+    /**
+     * Time after which the entry is expired, or Long.MAX_VALUE if no expiry is set
+     */
+    public long getExpiryDeadline() {
+        return hasExpiry() ? startTimestamp + expiryTimeMillis : Long.MAX_VALUE;
+    }
+    
     public boolean isExpired() {
+        return isExpired(ProcessClocks.millis());
+    }
+    
+    public boolean isExpired(long currentTime) {
         if (expiryTimeMillis <= 0) {
             return false; // No expiry set
         }
-        long currentTime = System.currentTimeMillis();
         return (currentTime - startTimestamp) > expiryTimeMillis;
     }
     
@@ -44,6 +164,9 @@ public class ProcessStateEntry {
                 "projectId='" + projectId + '\'' +
                 ", startTimestamp=" + startTimestamp +
                 ", expiryTimeMillis=" + expiryTimeMillis +
+                ", pinned=" + pinned +
+                ", ownerToken='" + ownerToken + '\'' +
+                ", renewCount=" + renewCount +
                 ", isRunning=" + isRunning() +
                 '}';
     }
@@ -1,5 +1,9 @@
 package com.ycr.wso2.mediator.statetracker;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
 /**
  * StatusManager interface for process tracking
  */
@@ -13,6 +17,146 @@ public interface ProcessStatusManager {
      */
     void startProcess(String processId, long expiryTimeMillis);
     
+    /**
+     * Start a process, optionally pinned so that a capacity-bounded store never evicts it
+     * 
+     * @param processId The unique identifier for the process
+     * @param expiryTimeMillis Expiry time in milliseconds (0 or negative means no expiry)
+     * @param pinned true to exclude the process from eviction
+     * @throws CapacityExceededException if the store is full and refuses the process
+     */
+    default void startProcess(String processId, long expiryTimeMillis, boolean pinned) {
+        startProcess(processId, expiryTimeMillis, pinned, null);
+    }
+    
+    /**
+     * Start a process on behalf of an owner, whose token is required by {@link #stopProcessIfOwner}
+     * 
+     * @param processId The unique identifier for the process
+     * @param expiryTimeMillis Expiry time in milliseconds (0 or negative means no expiry)
+     * @param pinned true to exclude the process from eviction
+     * @param ownerToken Token identifying the starter, may be null
+     */
+    default void startProcess(String processId, long expiryTimeMillis, boolean pinned, String ownerToken) {
+        startProcess(processId, expiryTimeMillis);
+    }
+    
+    /**
+     * Start a process only if it is not running (absent or expired)
+     * 
+     * The default implementation is only atomic under the mediator's per-key lock;
+     * implementations should override it with a single atomic store operation.
+     * 
+     * @return applied with the new entry, or not applied with the running entry
+     */
+    default ConditionalOperationResult startProcessIfAbsent(String processId, long expiryTimeMillis,
+                                                            boolean pinned, String ownerToken) {
+        ProcessStateEntry running = getProcessState(processId);
+        if (running != null) {
+            return ConditionalOperationResult.rejected(running);
+        }
+        startProcess(processId, expiryTimeMillis, pinned, ownerToken);
+        return ConditionalOperationResult.applied(getProcessState(processId));
+    }
+    
+    /**
+     * Stop a process only if it was started with the given owner token
+     * 
+     * The default implementation is only atomic under the mediator's per-key lock.
+     * 
+     * @return applied with the stopped entry, or not applied with the entry held by
+     *         another owner (null if the process is not running)
+     */
+    default ConditionalOperationResult stopProcessIfOwner(String processId, String ownerToken) {
+        ProcessStateEntry running = getProcessState(processId);
+        if (running == null || !running.isOwnedBy(ownerToken)) {
+            return ConditionalOperationResult.rejected(running);
+        }
+        stopProcess(processId);
+        return ConditionalOperationResult.applied(running);
+    }
+    
+    /**
+     * Replace a tracked process only if it has expired, taking over a run that was never stopped
+     * 
+     * Processes that are not tracked at all are not started. With active expiry, an
+     * expired process is only replaceable until it is removed by the sweeper.
+     * The default implementation cannot see expired entries and never applies.
+     * 
+     * @return applied with the new entry, or not applied with the running entry
+     *         (null if the process is not tracked)
+     */
+    default ConditionalOperationResult replaceProcessIfExpired(String processId, long expiryTimeMillis,
+                                                               boolean pinned, String ownerToken) {
+        return ConditionalOperationResult.rejected(getProcessState(processId));
+    }
+    
+    /**
+     * Extend the lease of a running process to leaseMillis from now, keeping its start time
+     * 
+     * The default implementation does not support renewals.
+     * 
+     * @param leaseMillis new lease length, 0 or negative to keep the current lease length
+     * @return the renewed entry, or null if the process is not running
+     * @throws UnsupportedOperationException if the store cannot renew processes
+     */
+    default ProcessStateEntry renewProcess(String processId, long leaseMillis) {
+        throw new UnsupportedOperationException("Renewal is not supported by " + getClass().getSimpleName());
+    }
+    
+    /**
+     * Expiry used when a flow does not set one, 0 means processes do not expire
+     */
+    default long getDefaultExpiryTimeMillis() {
+        return 0;
+    }
+    
+    /**
+     * Take one of at most limit concurrent permits on a key
+     * 
+     * Permits are counted separately from processes, a key can have permits and a
+     * running process at the same time. The default implementation does not support permits.
+     * 
+     * @param limit maximum permits held on the key at once
+     * @param expiryTimeMillis lifetime of the permit (0 or negative means no expiry)
+     * @throws UnsupportedOperationException if the store does not support permits
+     */
+    default PermitResult acquirePermit(String key, int limit, long expiryTimeMillis) {
+        throw new UnsupportedOperationException("Permits are not supported by " + getClass().getSimpleName());
+    }
+    
+    /**
+     * Return a permit taken with acquirePermit
+     * 
+     * @return false if the permit is not held, e.g. it expired
+     */
+    default boolean releasePermit(String key, long permitId) {
+        throw new UnsupportedOperationException("Permits are not supported by " + getClass().getSimpleName());
+    }
+    
+    /**
+     * Number of unexpired permits held on a key
+     */
+    default int getPermitCount(String key) {
+        throw new UnsupportedOperationException("Permits are not supported by " + getClass().getSimpleName());
+    }
+    
+    /**
+     * Register a listener for START, STOP, RENEW, EXPIRE and EVICT events of this store
+     * 
+     * Events are handed over through a bounded buffer and delivered in batches on a
+     * separate thread. The default implementation does not publish events.
+     * 
+     * @throws UnsupportedOperationException if the store does not publish events
+     */
+    default void addEventListener(ProcessEventListener listener) {
+        throw new UnsupportedOperationException("Events are not supported by " + getClass().getSimpleName());
+    }
+    
+    default void removeEventListener(ProcessEventListener listener) {
+        throw new UnsupportedOperationException("Events are not supported by " + getClass().getSimpleName());
+    }
+    
     /**
      * Check if a process is running (started and not expired)
      * 
@@ -37,4 +181,128 @@ public interface ProcessStatusManager {
      */
     ProcessStateEntry getProcessState(String processId);
     
+    /**
+     * Check a process and read its details with a single lookup
+     * 
+     * @param processId The unique identifier for the process
+     * @param view Reusable view that receives the running flag, start time and expiry
+     * @return true if process is running, false otherwise
+     */
+    default boolean queryProcess(String processId, ProcessStatusView view) {
+        return view.set(getProcessState(processId), ProcessClocks.millis());
+    }
+    
+    /**
+     * Start several processes with the same expiry, pin and owner settings
+     * 
+     * The default implementation starts them one by one; remote backends should
+     * override it to write all of them in a single round trip.
+     * 
+     * @param processIds The unique identifiers of the processes
+     * @return for each ID, true if it was started or false if the store refused it
+     */
+    default boolean[] startProcesses(List<String> processIds, long expiryTimeMillis,
+                                     boolean pinned, String ownerToken) {
+        boolean[] started = new boolean[processIds.size()];
+        for (int i = 0; i < started.length; i++) {
+            try {
+                startProcess(processIds.get(i), expiryTimeMillis, pinned, ownerToken);
+                started[i] = true;
+            } catch (CapacityExceededException e) {
+                started[i] = false;
+            }
+        }
+        return started;
+    }
+    
+    /**
+     * Stop several processes
+     * 
+     * @param processIds The unique identifiers of the processes
+     * @return for each ID, true if it was found and stopped
+     */
+    default boolean[] stopProcesses(List<String> processIds) {
+        boolean[] stopped = new boolean[processIds.size()];
+        for (int i = 0; i < stopped.length; i++) {
+            stopped[i] = stopProcess(processIds.get(i));
+        }
+        return stopped;
+    }
+    
+    /**
+     * Get the state of several processes
+     * 
+     * @param processIds The unique identifiers of the processes
+     * @return for each ID, the running entry or null if it is not running
+     */
+    default ProcessStateEntry[] getProcessStates(List<String> processIds) {
+        ProcessStateEntry[] entries = new ProcessStateEntry[processIds.size()];
+        for (int i = 0; i < entries.length; i++) {
+            entries[i] = getProcessState(processIds.get(i));
+        }
+        return entries;
+    }
+    
+    /**
+     * Visit the running processes whose ID starts with prefix, in ID order
+     * 
+     * The visit is weakly consistent: processes started or stopped meanwhile may or
+     * may not be seen. The default implementation does not support prefix queries.
+     * 
+     * @param prefix ID prefix, empty for all processes
+     * @param afterId only visit IDs after this one (for paging), null to start at the prefix
+     * @param visitor called per running process, returns false to stop
+     * @return number of processes passed to the visitor
+     * @throws UnsupportedOperationException if the store cannot query by prefix
+     */
+    default int forEachRunning(String prefix, String afterId, Predicate<ProcessStateEntry> visitor) {
+        throw new UnsupportedOperationException("Prefix queries are not supported by " + getClass().getSimpleName());
+    }
+    
+    /**
+     * Check if any process whose ID starts with prefix is running
+     */
+    default boolean isAnyRunning(String prefix) {
+        return forEachRunning(prefix, null, entry -> false) > 0;
+    }
+    
+    /**
+     * Count the running processes whose ID starts with prefix
+     */
+    default int countRunning(String prefix) {
+        return forEachRunning(prefix, null, entry -> true);
+    }
+    
+    /**
+     * One page of the running processes whose ID starts with prefix, in ID order
+     * 
+     * @param afterId ID of the last process of the previous page, null for the first page
+     * @param limit maximum number of processes to return
+     */
+    default List<ProcessStateEntry> listRunning(String prefix, String afterId, int limit) {
+        List<ProcessStateEntry> page = new ArrayList<>(Math.min(limit, 256));
+        if (limit > 0) {
+            forEachRunning(prefix, afterId, entry -> {
+                page.add(entry);
+                return page.size() < limit;
+            });
+        }
+        return page;
+    }
+    
+    /**
+     * Number of tracked processes for monitoring, including expired ones not yet removed
+     * 
+     * @return the count, or -1 if the store cannot tell it cheaply
+     */
+    default long getTrackedCount() {
+        return -1;
+    }
+    
+    /**
+     * Release background resources held by the manager
+     */
+    default void shutdown() {
+    }
+    
 }
@@ -2,9 +2,27 @@ package com.ycr.wso2.mediator.statetracker;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.synapse.config.SynapseConfiguration;
+
+import javax.management.ObjectName;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
 
 /**
  * Factory for creating ProcessStatusManager instances
+ * 
+ * Besides one manager per type, it keeps one isolated in-memory store per namespace.
+ * Namespaces are looked up without the factory lock and created on first use. Their
+ * expiry sweeps and snapshot writes share one scheduler, so the number of threads
+ * does not grow with the number of namespaces.
  */
 public class ProcessStatusManagerFactory {
     
@@ -13,11 +31,228 @@ public class ProcessStatusManagerFactory {
     // Singleton instances for each manager type
     private static volatile ProcessStatusManager inMemoryInstance;
     private static volatile ProcessStatusManager databaseInstance;
+    private static volatile ProcessStatusManager offHeapInstance;
+    private static volatile ProcessStatusManager compactInstance;
     private static volatile ProcessStatusManager registryInstance;
     
+    // Settings used when the in-memory instance is created, null means system properties
+    private static volatile InMemoryStoreConfig inMemoryConfig;
+    private static volatile DatabaseStoreConfig databaseConfig;
+    private static volatile OffHeapStoreConfig offHeapConfig;
+    private static volatile CompactStoreConfig compactConfig;
+    private static volatile RegistryStoreConfig registryConfig;
+    private static volatile NearCacheConfig nearCacheConfig;
+    private static volatile BloomFilterConfig bloomFilterConfig;
+    
+    // Namespace stores, and settings for namespaces not created yet
+    private static final ConcurrentHashMap<String, ProcessNamespace> namespaces = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, InMemoryStoreConfig> namespaceConfigs = new ConcurrentHashMap<>();
+    
+    // Namespaces may come from message properties, so their names and number are bounded
+    private static final Pattern NAMESPACE_PATTERN = Pattern.compile("[A-Za-z0-9_.-]{1,64}");
+    private static final int MAX_NAMESPACES = Integer.getInteger("statetracker.namespace.max", 1000);
+    private static final int NAMESPACE_SCHEDULER_THREADS =
+            Integer.getInteger("statetracker.namespace.schedulerThreads", 2);
+    
+    // Created with the first namespace
+    private static volatile ScheduledExecutorService namespaceScheduler;
+    
     private ProcessStatusManagerFactory() {
     }
     
+    /**
+     * Set the configuration of the IN_MEMORY manager (entry bound, capacity policy, expiry)
+     * 
+     * Must be called before the IN_MEMORY manager is first requested.
+     */
+    public static void setInMemoryConfig(InMemoryStoreConfig config) {
+        synchronized (ProcessStatusManagerFactory.class) {
+            if (inMemoryInstance != null) {
+                throw new IllegalStateException("InMemoryProcessStatusManager is already initialized");
+            }
+            inMemoryConfig = config;
+        }
+    }
+    
+    /**
+     * Set the configuration of the DATABASE manager (DataSource, table, batching)
+     * 
+     * Must be called before the DATABASE manager is first requested.
+     */
+    public static void setDatabaseConfig(DatabaseStoreConfig config) {
+        synchronized (ProcessStatusManagerFactory.class) {
+            if (databaseInstance != null) {
+                throw new IllegalStateException("DatabaseProcessStatusManager is already initialized");
+            }
+            databaseConfig = config;
+        }
+    }
+    
+    /**
+     * Set the configuration of the OFF_HEAP manager (table file, slot size, capacity)
+     * 
+     * Must be called before the OFF_HEAP manager is first requested.
+     */
+    public static void setOffHeapConfig(OffHeapStoreConfig config) {
+        synchronized (ProcessStatusManagerFactory.class) {
+            if (offHeapInstance != null) {
+                throw new IllegalStateException("OffHeapProcessStatusManager is already initialized");
+            }
+            offHeapConfig = config;
+        }
+    }
+    
+    /**
+     * Set the configuration of the COMPACT manager (segments, capacity, byte key length)
+     * 
+     * Must be called before the COMPACT manager is first requested.
+     */
+    public static void setCompactConfig(CompactStoreConfig config) {
+        synchronized (ProcessStatusManagerFactory.class) {
+            if (compactInstance != null) {
+                throw new IllegalStateException("CompactProcessStatusManager is already initialized");
+            }
+            compactConfig = config;
+        }
+    }
+    
+    /**
+     * Set the configuration of the REGISTRY manager (registry, root path, flush window)
+     * 
+     * Must be called before the REGISTRY manager is first requested.
+     */
+    public static void setRegistryConfig(RegistryStoreConfig config) {
+        synchronized (ProcessStatusManagerFactory.class) {
+            if (registryInstance != null) {
+                throw new IllegalStateException("RegistryProcessStatusManager is already initialized");
+            }
+            registryConfig = config;
+        }
+    }
+    
+    /**
+     * Set which manager types are wrapped in a near cache, and its staleness bound and TTLs
+     * 
+     * Must be called before any manager is first requested.
+     */
+    public static void setNearCacheConfig(NearCacheConfig config) {
+        synchronized (ProcessStatusManagerFactory.class) {
+            if (inMemoryInstance != null || databaseInstance != null || offHeapInstance != null
+                    || compactInstance != null || registryInstance != null) {
+                throw new IllegalStateException("A ProcessStatusManager is already initialized");
+            }
+            nearCacheConfig = config;
+        }
+    }
+    
+    /**
+     * Set which manager types are fronted by a Bloom filter, and its size and rebuild interval
+     * 
+     * Must be called before any manager is first requested.
+     */
+    public static void setBloomFilterConfig(BloomFilterConfig config) {
+        synchronized (ProcessStatusManagerFactory.class) {
+            if (inMemoryInstance != null || databaseInstance != null || offHeapInstance != null
+                    || compactInstance != null || registryInstance != null) {
+                throw new IllegalStateException("A ProcessStatusManager is already initialized");
+            }
+            bloomFilterConfig = config;
+        }
+    }
+    
+    /**
+     * Set the configuration of a namespace store (entry quota, default expiry, capacity policy)
+     * 
+     * Must be called before the namespace is first used.
+     */
+    public static void setNamespaceConfig(String namespace, InMemoryStoreConfig config) {
+        validateNamespace(namespace);
+        synchronized (ProcessStatusManagerFactory.class) {
+            if (namespaces.containsKey(namespace)) {
+                throw new IllegalStateException("Namespace " + namespace + " is already initialized");
+            }
+            namespaceConfigs.put(namespace, config);
+        }
+    }
+    
+    /**
+     * Get the store of a namespace, creating it on first use
+     * 
+     * @throws IllegalArgumentException if the name is not 1-64 letters, digits, '_', '.' or '-'
+     * @throws IllegalStateException if statetracker.namespace.max namespaces already exist
+     */
+    public static ProcessNamespace getNamespace(String namespace) {
+        ProcessNamespace existing = namespaces.get(namespace);
+        if (existing != null) {
+            return existing;
+        }
+        validateNamespace(namespace);
+        // Only a holder is created under the map bin lock, the store on its first use
+        ProcessNamespace[] created = new ProcessNamespace[1];
+        ProcessNamespace resolved = namespaces.computeIfAbsent(namespace,
+                name -> created[0] = newNamespace(name));
+        if (created[0] != null) {
+            if (StateTrackerMetrics.ENABLED) {
+                StateTrackerMetrics.register(created[0], StateTrackerMetrics.DOMAIN
+                        + ":type=StateTracker,name=Namespace,namespace=" + ObjectName.quote(namespace));
+            }
+            if (log.isDebugEnabled()) {
+                log.debug("Created namespace " + namespace + " with max entries "
+                        + created[0].getConfig().getMaxEntries());
+            }
+        }
+        return resolved;
+    }
+    
+    /**
+     * Namespaces created so far
+     */
+    public static Collection<ProcessNamespace> getNamespaces() {
+        return Collections.unmodifiableCollection(namespaces.values());
+    }
+    
+    private static ProcessNamespace newNamespace(String namespace) {
+        if (namespaces.size() >= MAX_NAMESPACES) {
+            throw new IllegalStateException("Too many namespaces (" + MAX_NAMESPACES
+                    + "), see statetracker.namespace.max");
+        }
+        InMemoryStoreConfig config = namespaceConfigs.get(namespace);
+        if (config == null) {
+            config = InMemoryStoreConfig.fromSystemProperties(namespace);
+        }
+        return new ProcessNamespace(namespace, config, getNamespaceScheduler());
+    }
+    
+    /**
+     * Scheduler of the expiry sweeps and snapshot writes of all namespace stores
+     */
+    static ScheduledExecutorService getNamespaceScheduler() {
+        if (namespaceScheduler == null) {
+            synchronized (ProcessStatusManagerFactory.class) {
+                if (namespaceScheduler == null) {
+                    AtomicInteger threadCount = new AtomicInteger();
+                    ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(
+                            Math.max(1, NAMESPACE_SCHEDULER_THREADS), r -> {
+                                Thread thread = new Thread(r,
+                                        "state-tracker-namespace-scheduler-" + threadCount.incrementAndGet());
+                                thread.setDaemon(true);
+                                return thread;
+                            });
+                    // Cancelled sweeps of shut down stores are dropped right away
+                    scheduler.setRemoveOnCancelPolicy(true);
+                    namespaceScheduler = scheduler;
+                }
+            }
+        }
+        return namespaceScheduler;
+    }
+    
+    private static void validateNamespace(String namespace) {
+        if (namespace == null || !NAMESPACE_PATTERN.matcher(namespace).matches()) {
+            throw new IllegalArgumentException("Invalid namespace: " + namespace);
+        }
+    }
+    
     /**
      * Get ProcessStatusManager instance based on type
      */
@@ -33,19 +268,48 @@ public class ProcessStatusManagerFactory {
             case DATABASE:
                 return getDatabaseInstance();
                 
+            case OFF_HEAP:
+                return getOffHeapInstance();
+                
+            case COMPACT:
+                return getCompactInstance();
+                
             case REGISTRY:
-                return getRegistryInstance();
+                return getRegistryInstance(null);
                 
             default:
                 throw new IllegalArgumentException("Unknown StatusManagerType: " + type);
         }
     }
     
+    /**
+     * Managers created so far, including namespace stores, for monitoring
+     */
+    public static List<ProcessStatusManager> getInitializedManagers() {
+        List<ProcessStatusManager> managers = new ArrayList<>(5 + namespaces.size());
+        for (ProcessStatusManager manager : new ProcessStatusManager[] {
+                inMemoryInstance, databaseInstance, offHeapInstance, compactInstance, registryInstance }) {
+            if (manager != null) {
+                managers.add(manager);
+            }
+        }
+        for (ProcessNamespace namespace : namespaces.values()) {
+            ProcessStatusManager manager = namespace.getManagerIfCreated();
+            if (manager != null) {
+                managers.add(manager);
+            }
+        }
+        return managers;
+    }
+    
     private static ProcessStatusManager getInMemoryInstance() {
         if (inMemoryInstance == null) {
             synchronized (ProcessStatusManagerFactory.class) {
                 if (inMemoryInstance == null) {
-                    inMemoryInstance = new InMemoryProcessStatusManager();
+                    InMemoryStoreConfig config = inMemoryConfig != null
+                            ? inMemoryConfig : InMemoryStoreConfig.fromSystemProperties();
+                    inMemoryInstance = withNearCache(StatusManagerType.IN_MEMORY,
+                            withBloomFilter(StatusManagerType.IN_MEMORY, new InMemoryProcessStatusManager(config)));
                     if (log.isDebugEnabled()) {
                         log.debug("Created new InMemoryProcessStatusManager instance");
                     }
@@ -56,16 +320,111 @@ public class ProcessStatusManagerFactory {
     }
     
     private static ProcessStatusManager getDatabaseInstance() {
-        throw new UnsupportedOperationException(
-            "DatabaseProcessStatusManager is not yet implemented. " +
-            "Please use IN_MEMORY type for now."
-        );
+        if (databaseInstance == null) {
+            synchronized (ProcessStatusManagerFactory.class) {
+                if (databaseInstance == null) {
+                    DatabaseStoreConfig config = databaseConfig != null
+                            ? databaseConfig : DatabaseStoreConfig.fromSystemProperties();
+                    databaseInstance = withNearCache(StatusManagerType.DATABASE,
+                            withBloomFilter(StatusManagerType.DATABASE, new DatabaseProcessStatusManager(config)));
+                    if (log.isDebugEnabled()) {
+                        log.debug("Created new DatabaseProcessStatusManager instance");
+                    }
+                }
+            }
+        }
+        return databaseInstance;
     }
     
-    private static ProcessStatusManager getRegistryInstance() {
-        throw new UnsupportedOperationException(
-            "RegistryProcessStatusManager is not yet implemented. " +
-            "Please use IN_MEMORY type for now."
-        );
+    private static ProcessStatusManager getOffHeapInstance() {
+        if (offHeapInstance == null) {
+            synchronized (ProcessStatusManagerFactory.class) {
+                if (offHeapInstance == null) {
+                    OffHeapStoreConfig config = offHeapConfig != null
+                            ? offHeapConfig : OffHeapStoreConfig.fromSystemProperties();
+                    offHeapInstance = withNearCache(StatusManagerType.OFF_HEAP,
+                            withBloomFilter(StatusManagerType.OFF_HEAP, new OffHeapProcessStatusManager(config)));
+                    if (log.isDebugEnabled()) {
+                        log.debug("Created new OffHeapProcessStatusManager instance");
+                    }
+                }
+            }
+        }
+        return offHeapInstance;
+    }
+    
+    private static ProcessStatusManager getCompactInstance() {
+        if (compactInstance == null) {
+            synchronized (ProcessStatusManagerFactory.class) {
+                if (compactInstance == null) {
+                    CompactStoreConfig config = compactConfig != null
+                            ? compactConfig : CompactStoreConfig.fromSystemProperties();
+                    compactInstance = withNearCache(StatusManagerType.COMPACT,
+                            withBloomFilter(StatusManagerType.COMPACT, new CompactProcessStatusManager(config)));
+                    if (log.isDebugEnabled()) {
+                        log.debug("Created new CompactProcessStatusManager instance");
+                    }
+                }
+            }
+        }
+        return compactInstance;
+    }
+    
+    /**
+     * Get the REGISTRY manager, using the registry of the given Synapse configuration
+     * unless one was set with {@link #setRegistryConfig(RegistryStoreConfig)}
+     */
+    public static ProcessStatusManager getRegistryInstance(SynapseConfiguration synapseConfiguration) {
+        if (registryInstance == null) {
+            synchronized (ProcessStatusManagerFactory.class) {
+                if (registryInstance == null) {
+                    RegistryStoreConfig config = registryConfig != null
+                            ? registryConfig : RegistryStoreConfig.fromSystemProperties();
+                    if (config.getRegistry() == null && synapseConfiguration != null) {
+                        config.setRegistry(synapseConfiguration.getRegistry());
+                    }
+                    if (config.getRegistry() == null) {
+                        throw new IllegalStateException("No registry available for RegistryProcessStatusManager");
+                    }
+                    registryInstance = withNearCache(StatusManagerType.REGISTRY,
+                            withBloomFilter(StatusManagerType.REGISTRY, new RegistryProcessStatusManager(config)));
+                    if (log.isDebugEnabled()) {
+                        log.debug("Created new RegistryProcessStatusManager instance");
+                    }
+                }
+            }
+        }
+        return registryInstance;
+    }
+    
+    /**
+     * Put a Bloom filter in front of a newly created manager if configured for its type
+     * 
+     * The filter sits below the near cache, so it only sees lookups the near cache misses.
+     */
+    private static ProcessStatusManager withBloomFilter(StatusManagerType type, ProcessStatusManager manager) {
+        BloomFilterConfig config = bloomFilterConfig != null
+                ? bloomFilterConfig : BloomFilterConfig.fromSystemProperties();
+        if (!config.isEnabledFor(type)) {
+            return manager;
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Using Bloom filter for " + type + " sized for " + config.getExpectedEntries() + " processes");
+        }
+        return new BloomFilterProcessStatusManager(manager, config);
+    }
+    
+    /**
+     * Wrap a newly created manager in a near cache if configured for its type
+     */
+    private static ProcessStatusManager withNearCache(StatusManagerType type, ProcessStatusManager manager) {
+        NearCacheConfig config = nearCacheConfig != null ? nearCacheConfig : NearCacheConfig.fromSystemProperties();
+        if (!config.isEnabledFor(type)) {
+            return manager;
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Using near cache for " + type + " with max staleness " + config.getMaxStalenessMillis() + " ms");
+        }
+        return new NearCacheProcessStatusManager(manager, config);
     }
 }
@@ -0,0 +1,73 @@
+package com.ycr.wso2.mediator.statetracker;
+
+/**
+ * Outcome of START_PROCESS, IS_PROCESS_RUNNING or STOP_PROCESS as a single message property
+ *
+ * Written by the mediator to its resultProperty instead of the separate PROCESS_*
+ * output properties, so a message carries one object rather than several boxed values.
+ */
+public class ProcessStatusResult {
+
+    private final String result;
+    private final boolean running;
+    private final long startTimestamp;
+    private final long expiryTimeMillis;
+    private final long elapsedTimeMillis;
+
+    ProcessStatusResult(String result, boolean running, long startTimestamp, long expiryTimeMillis,
+                        long elapsedTimeMillis) {
+        this.result = result;
+        this.running = running;
+        this.startTimestamp = startTimestamp;
+        this.expiryTimeMillis = expiryTimeMillis;
+        this.elapsedTimeMillis = elapsedTimeMillis;
+    }
+
+    static ProcessStatusResult of(String result, ProcessStatusView view) {
+        return new ProcessStatusResult(result, view.isRunning(), view.getStartTimestamp(),
+                view.getExpiryTimeMillis(), view.getElapsedTimeMillis());
+    }
+
+    /**
+     * Same value as STATE_TRACKER_RESULT, e.g. RUNNING or STOPPED
+     */
+    public String getResult() {
+        return result;
+    }
+
+    /**
+     * Whether the process is running after the operation
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * When the process started (milliseconds), 0 if it is not running
+     */
+    public long getStartTimestamp() {
+        return startTimestamp;
+    }
+
+    /**
+     * Lease of the process, 0 if it does not expire or is not running
+     */
+    public long getExpiryTimeMillis() {
+        return expiryTimeMillis;
+    }
+
+    public long getElapsedTimeMillis() {
+        return elapsedTimeMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "ProcessStatusResult{" +
+                "result=" + result +
+                ", running=" + running +
+                ", startTimestamp=" + startTimestamp +
+                ", expiryTimeMillis=" + expiryTimeMillis +
+                ", elapsedTimeMillis=" + elapsedTimeMillis +
+                '}';
+    }
+}
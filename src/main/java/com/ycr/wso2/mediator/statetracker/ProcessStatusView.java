@@ -0,0 +1,85 @@
+package com.ycr.wso2.mediator.statetracker;
+
+/**
+ * Reusable snapshot of a process status, filled by {@link ProcessStatusManager#queryProcess}
+ * 
+ * Lets a query read the running flag, start time and expiry from a single lookup
+ * without allocating. Instances are not thread-safe and are meant to be reused by
+ * one thread at a time.
+ */
+public final class ProcessStatusView {
+    
+    private boolean running;
+    private long startTimestamp;
+    private long expiryTimeMillis;
+    private long queryTimestamp;
+    private String ownerToken;
+    
+    /**
+     * Fill the view from an entry, or mark the process as not running if entry is null
+     * 
+     * @param entry The running entry, or null
+     * @param queryTimestamp Time at which the entry was checked
+     * @return whether the process is running
+     */
+    public boolean set(ProcessStateEntry entry, long queryTimestamp) {
+        this.queryTimestamp = queryTimestamp;
+        if (entry == null) {
+            running = false;
+            startTimestamp = 0;
+            expiryTimeMillis = 0;
+            ownerToken = null;
+            return false;
+        }
+        running = true;
+        startTimestamp = entry.getStartTimestamp();
+        expiryTimeMillis = entry.getExpiryTimeMillis();
+        ownerToken = entry.getOwnerToken();
+        return true;
+    }
+    
+    /**
+     * Fill the view with a running process read field by field, for stores without entry objects
+     */
+    void setRunning(long startTimestamp, long expiryTimeMillis, String ownerToken, long queryTimestamp) {
+        this.queryTimestamp = queryTimestamp;
+        this.running = true;
+        this.startTimestamp = startTimestamp;
+        this.expiryTimeMillis = expiryTimeMillis;
+        this.ownerToken = ownerToken;
+    }
+    
+    public boolean isRunning() {
+        return running;
+    }
+    
+    public long getStartTimestamp() {
+        return startTimestamp;
+    }
+    
+    public long getExpiryTimeMillis() {
+        return expiryTimeMillis;
+    }
+    
+    public long getQueryTimestamp() {
+        return queryTimestamp;
+    }
+    
+    public long getElapsedTimeMillis() {
+        return running ? queryTimestamp - startTimestamp : 0;
+    }
+    
+    public String getOwnerToken() {
+        return ownerToken;
+    }
+    
+    @Override
+    public String toString() {
+        return "ProcessStatusView{" +
+                "running=" + running +
+                ", startTimestamp=" + startTimestamp +
+                ", expiryTimeMillis=" + expiryTimeMillis +
+                ", queryTimestamp=" + queryTimestamp +
+                '}';
+    }
+}
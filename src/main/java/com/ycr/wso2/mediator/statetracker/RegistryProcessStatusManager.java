@@ -0,0 +1,438 @@
+package com.ycr.wso2.mediator.statetracker;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.synapse.registry.Registry;
+import org.apache.synapse.registry.RegistryEntry;
+
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Registry-backed implementation of ProcessStatusManager
+ *
+ * A local in-memory store is authoritative for all reads and conditional
+ * operations; the registry only persists it, with one resource per process. A
+ * change only marks its process ID dirty. A background thread flushes dirty IDs
+ * every flushIntervalMillis by writing whatever the local state is at that moment,
+ * so any number of START/STOP calls on the same ID within one window cost a
+ * single registry write.
+ *
+ * Processes removed from the local store by expiry are marked dirty as well, so
+ * their resources are deleted by the next flush. Resources of processes that
+ * expired while no node was running are deleted when the state is loaded.
+ */
+public class RegistryProcessStatusManager implements ProcessStatusManager {
+
+    private static final Log log = LogFactory.getLog(RegistryProcessStatusManager.class);
+
+    // Resource property holding the serialized state
+    static final String STATE_PROPERTY = "statetracker.state";
+
+    private final Registry registry;
+    private final RegistryStoreConfig config;
+    private final InMemoryProcessStatusManager local;
+
+    // Process IDs changed since they were last written
+    private final ConcurrentHashMap<String, Boolean> dirty = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService flushExecutor;
+    private volatile boolean running = true;
+
+    private final LongAdder changes = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder writes = new LongAdder();
+    private final LongAdder failedWrites = new LongAdder();
+    private final LongAdder totalFlushNanos = new LongAdder();
+    private final AtomicLong maxFlushNanos = new AtomicLong();
+
+    public RegistryProcessStatusManager(RegistryStoreConfig config) {
+        if (config.getRegistry() == null) {
+            throw new IllegalArgumentException("No Registry configured for RegistryProcessStatusManager");
+        }
+        if (config.getFlushIntervalMillis() <= 0) {
+            throw new IllegalArgumentException("Flush interval must be positive: " + config.getFlushIntervalMillis());
+        }
+        if (config.getFlushBatchSize() <= 0) {
+            throw new IllegalArgumentException("Flush batch size must be positive: " + config.getFlushBatchSize());
+        }
+        this.registry = config.getRegistry();
+        this.config = config;
+        InMemoryStoreConfig localConfig = new InMemoryStoreConfig();
+        localConfig.setPrefixIndexEnabled(config.isPrefixIndexEnabled());
+        this.local = new InMemoryProcessStatusManager(localConfig);
+        this.local.setRemovalHook(entry -> {
+            // Expiries during shutdown are left to the next startup's load
+            if (running) {
+                dirty.put(entry.getProjectId(), Boolean.TRUE);
+            }
+        });
+
+        if (config.isLoadOnStartup()) {
+            load();
+        }
+
+        this.flushExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "state-tracker-registry-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.flushExecutor.scheduleWithFixedDelay(this::flushSafely, config.getFlushIntervalMillis(),
+                config.getFlushIntervalMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void startProcess(String processId, long expiryTimeMillis) {
+        startProcess(processId, expiryTimeMillis, false, null);
+    }
+
+    @Override
+    public void startProcess(String processId, long expiryTimeMillis, boolean pinned, String ownerToken) {
+        checkRunning();
+        local.startProcess(processId, expiryTimeMillis, pinned, ownerToken);
+        markDirty(processId);
+    }
+
+    @Override
+    public ConditionalOperationResult startProcessIfAbsent(String processId, long expiryTimeMillis,
+                                                           boolean pinned, String ownerToken) {
+        checkRunning();
+        return markIfApplied(processId,
+                local.startProcessIfAbsent(processId, expiryTimeMillis, pinned, ownerToken));
+    }
+
+    @Override
+    public ConditionalOperationResult replaceProcessIfExpired(String processId, long expiryTimeMillis,
+                                                              boolean pinned, String ownerToken) {
+        checkRunning();
+        return markIfApplied(processId,
+                local.replaceProcessIfExpired(processId, expiryTimeMillis, pinned, ownerToken));
+    }
+
+    @Override
+    public ConditionalOperationResult stopProcessIfOwner(String processId, String ownerToken) {
+        checkRunning();
+        return markIfApplied(processId, local.stopProcessIfOwner(processId, ownerToken));
+    }
+
+    @Override
+    public ProcessStateEntry renewProcess(String processId, long leaseMillis) {
+        checkRunning();
+        ProcessStateEntry renewed = local.renewProcess(processId, leaseMillis);
+        if (renewed != null) {
+            markDirty(processId);
+        }
+        return renewed;
+    }
+
+    /**
+     * Events are published for changes made through this node
+     */
+    @Override
+    public void addEventListener(ProcessEventListener listener) {
+        local.addEventListener(listener);
+    }
+
+    @Override
+    public void removeEventListener(ProcessEventListener listener) {
+        local.removeEventListener(listener);
+    }
+
+    /**
+     * Permits are node-local and not written to the registry
+     */
+    @Override
+    public PermitResult acquirePermit(String key, int limit, long expiryTimeMillis) {
+        return local.acquirePermit(key, limit, expiryTimeMillis);
+    }
+
+    @Override
+    public boolean releasePermit(String key, long permitId) {
+        return local.releasePermit(key, permitId);
+    }
+
+    @Override
+    public int getPermitCount(String key) {
+        return local.getPermitCount(key);
+    }
+
+    @Override
+    public boolean isProcessRunning(String processId) {
+        return local.isProcessRunning(processId);
+    }
+
+    @Override
+    public boolean stopProcess(String processId) {
+        checkRunning();
+        boolean stopped = local.stopProcess(processId);
+        if (stopped) {
+            markDirty(processId);
+        }
+        return stopped;
+    }
+
+    @Override
+    public ProcessStateEntry getProcessState(String processId) {
+        return local.getProcessState(processId);
+    }
+
+    @Override
+    public boolean queryProcess(String processId, ProcessStatusView view) {
+        return local.queryProcess(processId, view);
+    }
+
+    @Override
+    public boolean[] startProcesses(List<String> processIds, long expiryTimeMillis,
+                                    boolean pinned, String ownerToken) {
+        checkRunning();
+        boolean[] started = local.startProcesses(processIds, expiryTimeMillis, pinned, ownerToken);
+        for (int i = 0; i < started.length; i++) {
+            if (started[i]) {
+                markDirty(processIds.get(i));
+            }
+        }
+        return started;
+    }
+
+    @Override
+    public boolean[] stopProcesses(List<String> processIds) {
+        checkRunning();
+        boolean[] stopped = local.stopProcesses(processIds);
+        for (int i = 0; i < stopped.length; i++) {
+            if (stopped[i]) {
+                markDirty(processIds.get(i));
+            }
+        }
+        return stopped;
+    }
+
+    @Override
+    public int forEachRunning(String prefix, String afterId, Predicate<ProcessStateEntry> visitor) {
+        return local.forEachRunning(prefix, afterId, visitor);
+    }
+
+    /**
+     * Write up to flushBatchSize dirty processes to the registry
+     *
+     * Called periodically by the flush thread, exposed for tests.
+     *
+     * @return number of registry writes
+     */
+    public synchronized int flush() {
+        if (dirty.isEmpty()) {
+            return 0;
+        }
+        long start = System.nanoTime();
+        int written = 0;
+        Iterator<String> iterator = dirty.keySet().iterator();
+        while (iterator.hasNext() && written < config.getFlushBatchSize()) {
+            String processId = iterator.next();
+            // Cleared before reading the state, so a concurrent change marks it again
+            iterator.remove();
+            try {
+                write(processId, local.getProcessState(processId));
+                written++;
+            } catch (RuntimeException e) {
+                dirty.put(processId, Boolean.TRUE);
+                failedWrites.increment();
+                log.error("Failed to write process state to the registry: " + processId, e);
+                break;
+            }
+        }
+
+        long elapsed = System.nanoTime() - start;
+        flushes.increment();
+        writes.add(written);
+        totalFlushNanos.add(elapsed);
+        long max;
+        while (elapsed > (max = maxFlushNanos.get())) {
+            if (maxFlushNanos.compareAndSet(max, elapsed)) {
+                break;
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Number of tracked entries, including expired ones not yet removed
+     */
+    public int size() {
+        return local.size();
+    }
+
+    @Override
+    public long getTrackedCount() {
+        return size();
+    }
+
+    public long getChangeCount() {
+        return changes.sum();
+    }
+
+    public long getFlushCount() {
+        return flushes.sum();
+    }
+
+    public long getWriteCount() {
+        return writes.sum();
+    }
+
+    public long getFailedWriteCount() {
+        return failedWrites.sum();
+    }
+
+    public long getTotalFlushNanos() {
+        return totalFlushNanos.sum();
+    }
+
+    public long getMaxFlushNanos() {
+        return maxFlushNanos.get();
+    }
+
+    public int getPendingWriteCount() {
+        return dirty.size();
+    }
+
+    @Override
+    public void shutdown() {
+        running = false;
+        flushExecutor.shutdown();
+        try {
+            flushExecutor.awaitTermination(config.getShutdownTimeoutMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // Drain whatever the flush thread did not get to
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(config.getShutdownTimeoutMillis());
+        while (!dirty.isEmpty() && System.nanoTime() < deadline) {
+            if (flush() == 0 && !dirty.isEmpty()) {
+                break;
+            }
+        }
+        if (!dirty.isEmpty()) {
+            log.warn(dirty.size() + " process state changes were not written to the registry");
+        }
+        local.shutdown();
+    }
+
+    /**
+     * Checked before the local store is changed, so a rejected call leaves no trace
+     */
+    private void checkRunning() {
+        if (!running) {
+            throw new IllegalStateException("RegistryProcessStatusManager is shut down");
+        }
+    }
+
+    private void markDirty(String processId) {
+        changes.increment();
+        dirty.put(processId, Boolean.TRUE);
+    }
+
+    private ConditionalOperationResult markIfApplied(String processId, ConditionalOperationResult result) {
+        if (result.isApplied()) {
+            markDirty(processId);
+        }
+        return result;
+    }
+
+    private void write(String processId, ProcessStateEntry entry) {
+        String key = resourceKey(processId);
+        if (entry != null) {
+            registry.newNonEmptyResource(key, false, "text/plain", serialize(entry), STATE_PROPERTY);
+        } else {
+            registry.delete(key);
+        }
+    }
+
+    private void flushSafely() {
+        try {
+            // Keep flushing while full batches are pending
+            while (flush() >= config.getFlushBatchSize()) {
+                if (Thread.currentThread().isInterrupted()) {
+                    break;
+                }
+            }
+        } catch (Throwable t) {
+            log.error("Error flushing process states to the registry", t);
+        }
+    }
+
+    /**
+     * Load the stored processes into the local store, deleting expired ones
+     */
+    private void load() {
+        RegistryEntry root = registry.getRegistryEntry(config.getRootPath());
+        if (root == null) {
+            return;
+        }
+        RegistryEntry[] children = registry.getChildren(root);
+        if (children == null) {
+            return;
+        }
+
+        long now = ProcessClocks.millis();
+        int loaded = 0;
+        for (RegistryEntry child : children) {
+            String key = child.getKey();
+            String processId = URLDecoder.decode(key.substring(key.lastIndexOf('/') + 1), StandardCharsets.UTF_8);
+            Properties properties = registry.getResourceProperties(key);
+            String state = properties != null ? properties.getProperty(STATE_PROPERTY) : null;
+            ProcessStateEntry entry = state != null ? deserialize(processId, state) : null;
+            if (entry == null || entry.isExpired(now)) {
+                registry.delete(key);
+            } else {
+                local.restore(entry);
+                loaded++;
+            }
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Loaded " + loaded + " process states from registry path " + config.getRootPath());
+        }
+    }
+
+    private String resourceKey(String processId) {
+        return config.getRootPath() + "/" + URLEncoder.encode(processId, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * start,expiry,pinned[,owner] - the owner token is last so that it may contain commas
+     */
+    static String serialize(ProcessStateEntry entry) {
+        StringBuilder state = new StringBuilder(48)
+                .append(entry.getStartTimestamp()).append(',')
+                .append(entry.getExpiryTimeMillis()).append(',')
+                .append(entry.isPinned());
+        if (entry.getOwnerToken() != null) {
+            state.append(',').append(entry.getOwnerToken());
+        }
+        return state.toString();
+    }
+
+    static ProcessStateEntry deserialize(String processId, String state) {
+        String[] fields = state.split(",", 4);
+        if (fields.length < 3) {
+            log.warn("Ignoring malformed registry state of process " + processId + ": " + state);
+            return null;
+        }
+        try {
+            return new ProcessStateEntry(processId, Long.parseLong(fields[0]), Long.parseLong(fields[1]),
+                    Boolean.parseBoolean(fields[2]), fields.length > 3 ? fields[3] : null);
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring malformed registry state of process " + processId + ": " + state);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.ycr.wso2.mediator.statetracker;
+
+import org.apache.synapse.registry.Registry;
+
+/**
+ * Settings for RegistryProcessStatusManager
+ *
+ * The Registry is either given directly or taken from the Synapse configuration of
+ * the first message that uses the REGISTRY type. Defaults can be overridden with JVM
+ * system properties prefixed with "statetracker.registry.", see
+ * {@link #fromSystemProperties()}.
+ */
+public class RegistryStoreConfig {
+
+    public static final String DEFAULT_ROOT_PATH = "conf:/statetracker/processes";
+    public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 200;
+    public static final int DEFAULT_FLUSH_BATCH_SIZE = 1000;
+    public static final long DEFAULT_SHUTDOWN_TIMEOUT_MILLIS = 30000;
+
+    private Registry registry;
+    private String rootPath = DEFAULT_ROOT_PATH;
+    private long flushIntervalMillis = DEFAULT_FLUSH_INTERVAL_MILLIS;
+    private int flushBatchSize = DEFAULT_FLUSH_BATCH_SIZE;
+    private long shutdownTimeoutMillis = DEFAULT_SHUTDOWN_TIMEOUT_MILLIS;
+    private boolean loadOnStartup = true;
+    private boolean prefixIndexEnabled;
+
+    /**
+     * Read settings from system properties, falling back to the defaults
+     */
+    public static RegistryStoreConfig fromSystemProperties() {
+        RegistryStoreConfig config = new RegistryStoreConfig();
+        config.setRootPath(System.getProperty("statetracker.registry.rootPath", DEFAULT_ROOT_PATH));
+        config.setFlushIntervalMillis(Long.getLong("statetracker.registry.flushIntervalMillis",
+                DEFAULT_FLUSH_INTERVAL_MILLIS));
+        config.setFlushBatchSize(Integer.getInteger("statetracker.registry.flushBatchSize",
+                DEFAULT_FLUSH_BATCH_SIZE));
+        config.setShutdownTimeoutMillis(Long.getLong("statetracker.registry.shutdownTimeoutMillis",
+                DEFAULT_SHUTDOWN_TIMEOUT_MILLIS));
+        config.setLoadOnStartup(Boolean.parseBoolean(
+                System.getProperty("statetracker.registry.loadOnStartup", "true")));
+        config.setPrefixIndexEnabled(Boolean.parseBoolean(System.getProperty("statetracker.index.prefix", "false")));
+        return config;
+    }
+
+    public Registry getRegistry() {
+        return registry;
+    }
+
+    public void setRegistry(Registry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Registry collection holding one resource per running process
+     */
+    public String getRootPath() {
+        return rootPath;
+    }
+
+    public void setRootPath(String rootPath) {
+        this.rootPath = rootPath;
+    }
+
+    /**
+     * Window in which changes to the same process ID are coalesced into one registry write
+     */
+    public long getFlushIntervalMillis() {
+        return flushIntervalMillis;
+    }
+
+    public void setFlushIntervalMillis(long flushIntervalMillis) {
+        this.flushIntervalMillis = flushIntervalMillis;
+    }
+
+    /**
+     * Maximum registry writes per flush, the rest is written by the next flush
+     */
+    public int getFlushBatchSize() {
+        return flushBatchSize;
+    }
+
+    public void setFlushBatchSize(int flushBatchSize) {
+        this.flushBatchSize = flushBatchSize;
+    }
+
+    /**
+     * How long shutdown keeps flushing pending writes before giving up
+     */
+    public long getShutdownTimeoutMillis() {
+        return shutdownTimeoutMillis;
+    }
+
+    public void setShutdownTimeoutMillis(long shutdownTimeoutMillis) {
+        this.shutdownTimeoutMillis = shutdownTimeoutMillis;
+    }
+
+    /**
+     * Read the processes stored in the registry when the manager is created
+     */
+    public boolean isLoadOnStartup() {
+        return loadOnStartup;
+    }
+
+    public void setLoadOnStartup(boolean loadOnStartup) {
+        this.loadOnStartup = loadOnStartup;
+    }
+
+    /**
+     * Keep an ordered index of the local store for prefix queries, see InMemoryStoreConfig
+     */
+    public boolean isPrefixIndexEnabled() {
+        return prefixIndexEnabled;
+    }
+
+    public void setPrefixIndexEnabled(boolean prefixIndexEnabled) {
+        this.prefixIndexEnabled = prefixIndexEnabled;
+    }
+}
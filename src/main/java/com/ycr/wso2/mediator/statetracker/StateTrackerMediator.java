@@ -1,75 +1,436 @@
 package com.ycr.wso2.mediator.statetracker;
 
+import org.apache.synapse.Mediator;
 import org.apache.synapse.MessageContext;
 import org.apache.synapse.mediators.AbstractMediator;
+import org.apache.synapse.mediators.base.SequenceMediator;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+
 /**
  * State Tracker Mediator - Tracks process status 
+ * 
+ * The operation, storage type, default expiry and output properties can be fixed per
+ * mediator instance with class mediator properties, which are resolved once when the
+ * mediator is created:
+ * <pre>
+ * &lt;class name="com.ycr.wso2.mediator.statetracker.StateTrackerMediator"&gt;
+ *     &lt;property name="operation" value="IS_PROCESS_RUNNING"/&gt;
+ *     &lt;property name="stateTrackerType" value="IN_MEMORY"/&gt;
+ * &lt;/class&gt;
+ * </pre>
+ * Message context properties still take precedence when they are set.
+ * 
+ * With resultProperty set, START_PROCESS, IS_PROCESS_RUNNING and STOP_PROCESS write one
+ * ProcessStatusResult to that property instead of the separate PROCESS_* properties.
+ * 
+ * With a namespace (the namespace property or STATE_TRACKER_NAMESPACE) the operation
+ * runs on that namespace's own in-memory store instead of the store of the storage type.
+ * 
+ * With async="true" the operation runs on the AsyncOperationExecutor so that a slow
+ * backend does not hold the Synapse worker thread; the mediator returns false and
+ * the message continues in continuationSequence once the operation completes.
  */
 public class StateTrackerMediator extends AbstractMediator {
 
     private static final Log log = LogFactory.getLog(StateTrackerMediator.class);
     
+    // Shared by all mediator instances so that every flow locks the same stripes
+    private static final ProcessLockManager lockManager = ProcessLockManager.fromSystemProperties();
+    
+    // Operation counters and latencies, see StateTrackerMetrics.ENABLED
+    private static final StateTrackerMetrics metrics = StateTrackerMetrics.getInstance();
+    
+    // Page size of LIST_RUNNING when PROCESS_LIST_LIMIT is not set, and its upper bound
+    private static final int DEFAULT_LIST_LIMIT = 100;
+    private static final int MAX_LIST_LIMIT = 10000;
+    
+    // Per-thread query view so that IS_PROCESS_RUNNING does not allocate a result holder
+    private static final ThreadLocal<ProcessStatusView> queryView = ThreadLocal.withInitial(ProcessStatusView::new);
+    
+    // Per-thread operation and result of the current message, recorded in the metrics
+    private static final ThreadLocal<Outcome> outcomes = ThreadLocal.withInitial(Outcome::new);
+    
+    // Fixed manager for tests, null means resolve through ProcessStatusManagerFactory
+    private final ProcessStatusManager fixedManager;
+    
+    // Static configuration from class mediator properties, null when not set
+    private String operationName;
+    private TrackerOperation operation;
+    private String stateTrackerType;
+    private StatusManagerType managerType;
+    private String expiryTime;
+    private long defaultExpiryTimeMillis;
+    private String outputProperties;
+    private Set<String> outputPropertySet;
+    private String resultProperty;
+    private String namespace;
+    
+    // Manager of the static type and the static namespace, resolved on the first message
+    private volatile ProcessStatusManager staticManager;
+    private volatile ProcessNamespace staticNamespace;
+    
+    // Async mode, see setAsync
+    private boolean async;
+    private String continuationSequence;
+    private AsyncOperationExecutor asyncExecutor;
+    
+    public StateTrackerMediator() {
+        this(null);
+    }
+    
+    StateTrackerMediator(ProcessStatusManager fixedManager) {
+        this.fixedManager = fixedManager;
+    }
+    
     @Override
     public boolean mediate(MessageContext messageContext) {
+        if (async) {
+            return mediateAsync(messageContext);
+        }
+        return trackAndRecord(messageContext);
+    }
+    
+    private boolean trackAndRecord(MessageContext messageContext) {
+        if (!StateTrackerMetrics.ENABLED) {
+            return track(messageContext, null);
+        }
+        
+        Outcome outcome = outcomes.get();
+        outcome.operation = null;
+        outcome.result = null;
+        long startNanos = System.nanoTime();
+        try {
+            return track(messageContext, outcome);
+        } finally {
+            metrics.record(outcome.operation, outcome.result, System.nanoTime() - startNanos);
+        }
+    }
+    
+    /**
+     * Operation used when STATE_TRACKER_OPERATION is not set
+     * 
+     * @throws IllegalArgumentException if the operation is unknown
+     */
+    public void setOperation(String operation) {
+        TrackerOperation resolved = TrackerOperation.fromString(operation);
+        if (resolved == null) {
+            throw new IllegalArgumentException("Unsupported operation: " + operation);
+        }
+        this.operationName = resolved.name();
+        this.operation = resolved;
+    }
+    
+    public String getOperation() {
+        return operationName;
+    }
+    
+    /**
+     * Storage type used when STATE_TRACKER_TYPE is not set
+     */
+    public void setStateTrackerType(String stateTrackerType) {
+        this.managerType = StatusManagerType.fromString(stateTrackerType);
+        this.stateTrackerType = stateTrackerType;
+        this.staticManager = null;
+    }
+    
+    public String getStateTrackerType() {
+        return stateTrackerType;
+    }
+    
+    /**
+     * Expiry in seconds used when PROCESS_STATE_EXPIRY_TIME is not set
+     */
+    public void setExpiryTime(String expiryTime) {
+        long expiryTimeSeconds = Long.parseLong(expiryTime.trim());
+        this.defaultExpiryTimeMillis = expiryTimeSeconds > 0 ? expiryTimeSeconds * 1000 : 0;
+        this.expiryTime = expiryTime;
+    }
+    
+    public String getExpiryTime() {
+        return expiryTime;
+    }
+    
+    /**
+     * Comma separated output properties to write besides STATE_TRACKER_RESULT and
+     * STATE_TRACKER_ERROR, e.g. PROCESS_IS_RUNNING; all are written when not set
+     */
+    public void setOutputProperties(String outputProperties) {
+        Set<String> names = new HashSet<>();
+        for (String name : outputProperties.split(",")) {
+            if (!name.trim().isEmpty()) {
+                names.add(name.trim());
+            }
+        }
+        this.outputPropertySet = Collections.unmodifiableSet(names);
+        this.outputProperties = outputProperties;
+    }
+    
+    public String getOutputProperties() {
+        return outputProperties;
+    }
+    
+    /**
+     * Property that receives a ProcessStatusResult instead of the separate output
+     * properties of START_PROCESS, IS_PROCESS_RUNNING and STOP_PROCESS
+     */
+    public void setResultProperty(String resultProperty) {
+        this.resultProperty = resultProperty.trim().isEmpty() ? null : resultProperty.trim();
+    }
+    
+    public String getResultProperty() {
+        return resultProperty;
+    }
+    
+    /**
+     * Namespace used when STATE_TRACKER_NAMESPACE is not set
+     */
+    public void setNamespace(String namespace) {
+        this.namespace = namespace.trim();
+        this.staticNamespace = null;
+    }
+    
+    public String getNamespace() {
+        return namespace;
+    }
+    
+    /**
+     * Run operations off the worker thread and continue in continuationSequence
+     */
+    public void setAsync(String async) {
+        this.async = Boolean.parseBoolean(async.trim());
+    }
+    
+    public String getAsync() {
+        return String.valueOf(async);
+    }
+    
+    /**
+     * Sequence that receives the message after an asynchronous operation
+     */
+    public void setContinuationSequence(String continuationSequence) {
+        this.continuationSequence = continuationSequence.trim();
+    }
+    
+    public String getContinuationSequence() {
+        return continuationSequence;
+    }
+    
+    void setAsyncExecutor(AsyncOperationExecutor asyncExecutor) {
+        this.asyncExecutor = asyncExecutor;
+    }
+    
+    /**
+     * Queue the operation behind the pending operations of its process ID and release
+     * the worker thread; when too many operations are pending it runs right here, and
+     * the message still continues in continuationSequence
+     */
+    private boolean mediateAsync(MessageContext messageContext) {
+        if (continuationSequence == null || continuationSequence.isEmpty()) {
+            handleError("continuationSequence is required in async mode", null);
+            setResult(messageContext, "ERROR");
+            messageContext.setProperty("STATE_TRACKER_ERROR", "Continuation sequence not specified");
+            return false;
+        }
         
-        log.debug("State Tracker Mediator :: mediate()");
+        AsyncOperationExecutor executor = asyncExecutor != null ? asyncExecutor : AsyncOperationExecutor.getInstance();
+        String processId = getStringProperty(messageContext, Contants.PROCESS_IDENTIFIER_PROPERTY);
+        boolean queued = executor.submit(processId, () -> {
+            if (trackAndRecord(messageContext)) {
+                resume(messageContext);
+            }
+        });
+        if (queued) {
+            return false;
+        }
+        
+        if (log.isDebugEnabled()) {
+            log.debug("Too many pending state tracker operations, running on the worker thread");
+        }
+        if (trackAndRecord(messageContext)) {
+            resume(messageContext);
+        }
+        return false;
+    }
+    
+    private void resume(MessageContext messageContext) {
+        Mediator sequence = messageContext.getSequence(continuationSequence);
+        if (!(sequence instanceof SequenceMediator)) {
+            handleError("Continuation sequence not found: " + continuationSequence, null);
+            return;
+        }
+        messageContext.getEnvironment().injectAsync(messageContext, (SequenceMediator) sequence);
+    }
+    
+    /**
+     * @param outcome Receives the resolved operation, null when metrics are disabled
+     */
+    private boolean track(MessageContext messageContext, Outcome outcome) {
+        
+        if (log.isDebugEnabled()) {
+            log.debug("State Tracker Mediator :: mediate()");
+        }
   
         try {
-            // Read operation
-            String operation = getStringProperty(messageContext, Contants.STATE_TRACKER_OPERATION_PROPERTY);
-            if (operation == null || operation.trim().isEmpty()) {
+            // Read operation, the message property overrides the configured one
+            TrackerOperation operation = this.operation;
+            Object operationProperty = messageContext.getProperty(Contants.STATE_TRACKER_OPERATION_PROPERTY);
+            if (operationProperty != null && !operationProperty.toString().trim().isEmpty()) {
+                operation = TrackerOperation.fromString(operationProperty.toString());
+                if (operation == null) {
+                    handleError("Unsupported operation: " + operationProperty, null);
+                    setResult(messageContext, "ERROR");
+                    messageContext.setProperty(Contants.STATE_TRACKER_ERROR_PROPERTY,
+                            "Unsupported operation: " + operationProperty);
+                    return false;
+                }
+            }
+            if (outcome != null) {
+                outcome.operation = operation;
+            }
+            if (operation == null) {
                 handleError("STATE_TRACKER_OPERATION property is required", null);
-                messageContext.setProperty(Contants.STATE_TRACKER_RESULT_PROPERTY, "ERROR");
+                setResult(messageContext, "ERROR");
                 messageContext.setProperty(Contants.STATE_TRACKER_ERROR_PROPERTY, "Operation not specified");
                 return false;
             }
             
+            if (operation.isBatch()) {
+                return mediateBatch(messageContext, operation);
+            }
+            if (operation.isPrefixQuery()) {
+                return performPrefixQuery(messageContext, getOrInitManager(messageContext), operation);
+            }
+            
             // Read process ID
             String processId = getStringProperty(messageContext, Contants.PROCESS_IDENTIFIER_PROPERTY);
             if (processId == null || processId.trim().isEmpty()) {
                 handleError("PROCESS_IDENTIFIER property is required", null);
-                messageContext.setProperty("STATE_TRACKER_RESULT", "ERROR");
+                setResult(messageContext, "ERROR");
                 messageContext.setProperty("STATE_TRACKER_ERROR", "Process ID not specified");
                 return false;
             }
             
-            synchronized (processId.intern()) {
+            Lock lock = lockManager.lock(processId, operation.isReadOnly());
+            try {
                 
-                log.debug("Acquired lock for process: " + processId);
+                if (log.isDebugEnabled()) {
+                    log.debug("Acquired lock for process: " + processId);
+                }
                 
-                ProcessStatusManager manager = getOrInitManager();
+                ProcessStatusManager manager = getOrInitManager(messageContext);
                 boolean result = performOperation(messageContext, manager, processId, operation);
                 
-                log.debug("Operation " + operation + " completed for process: " + processId);
+                if (log.isDebugEnabled()) {
+                    log.debug("Operation " + operation + " completed for process: " + processId);
+                }
 
                 return result;
+            } finally {
+                lock.unlock();
             }
             
         } catch (Exception e) {
             handleError("Error in State Tracker Mediator", e);
-            messageContext.setProperty("STATE_TRACKER_RESULT", "ERROR");
+            setResult(messageContext, "ERROR");
             messageContext.setProperty("STATE_TRACKER_ERROR", e.getMessage());
             return false;
         }
     }
 
     /**
-     * Get or initialize ProcessStatusManager based on TYPE
+     * Run a batch operation holding the locks of all its process IDs
      */
-    private ProcessStatusManager getOrInitManager() {
+    private boolean mediateBatch(MessageContext messageContext, TrackerOperation operation) {
+        List<String> processIds = BatchProcessIds.read(messageContext);
+        if (processIds.isEmpty()) {
+            handleError("PROCESS_IDENTIFIERS property or a payload list is required", null);
+            setResult(messageContext, "ERROR");
+            messageContext.setProperty("STATE_TRACKER_ERROR", "Process IDs not specified");
+            return false;
+        }
+        
+        List<Lock> locks = lockManager.lockAll(processIds, operation.isReadOnly());
+        try {
+            ProcessStatusManager manager = getOrInitManager(messageContext);
+            boolean result = performBatchOperation(messageContext, manager, processIds, operation);
+            
+            if (log.isDebugEnabled()) {
+                log.debug("Operation " + operation + " completed for " + processIds.size() + " processes");
+            }
+            
+            return result;
+        } finally {
+            lockManager.unlockAll(locks);
+        }
+    }
 
-        // Initial impl only supports IN_MEMORY so harcoding the type
-        String managerTypeStr = "IN_MEMORY";
+    /**
+     * Get the lock table shared by all State Tracker Mediator instances
+     */
+    public static ProcessLockManager getLockManager() {
+        return lockManager;
+    }
 
-        // Get manager
-        StatusManagerType managerType = StatusManagerType.fromString(managerTypeStr);
-        ProcessStatusManager manager = ProcessStatusManagerFactory.getManager(managerType);
+    /**
+     * Get or initialize ProcessStatusManager based on STATE_TRACKER_NAMESPACE or the
+     * configured namespace, then STATE_TRACKER_TYPE and the configured type (default IN_MEMORY)
+     */
+    private ProcessStatusManager getOrInitManager(MessageContext messageContext) {
+        if (fixedManager != null) {
+            return fixedManager;
+        }
+        
+        Object namespaceProperty = messageContext.getProperty(Contants.STATE_TRACKER_NAMESPACE_PROPERTY);
+        if (namespaceProperty != null || namespace != null) {
+            return resolveNamespace(namespaceProperty).getManager();
+        }
+
+        Object managerTypeProperty = messageContext.getProperty(Contants.STATE_TRACKER_TYPE_PROPERTY);
+        if (managerTypeProperty == null) {
+            ProcessStatusManager manager = staticManager;
+            if (manager == null) {
+                manager = resolveManager(messageContext, managerType);
+                staticManager = manager;
+            }
+            return manager;
+        }
+        return resolveManager(messageContext, StatusManagerType.fromString(managerTypeProperty.toString().trim()));
+    }
+    
+    private ProcessNamespace resolveNamespace(Object namespaceProperty) {
+        ProcessNamespace resolved;
+        if (namespaceProperty == null) {
+            resolved = staticNamespace;
+            if (resolved == null) {
+                resolved = ProcessStatusManagerFactory.getNamespace(namespace);
+                staticNamespace = resolved;
+            }
+        } else {
+            resolved = ProcessStatusManagerFactory.getNamespace(namespaceProperty.toString().trim());
+        }
+        if (StateTrackerMetrics.ENABLED) {
+            resolved.recordOperation();
+        }
+        return resolved;
+    }
+    
+    private ProcessStatusManager resolveManager(MessageContext messageContext, StatusManagerType type) {
+        if (type == null) {
+            type = StatusManagerType.IN_MEMORY;
+        }
+        ProcessStatusManager manager = type == StatusManagerType.REGISTRY
+                ? ProcessStatusManagerFactory.getRegistryInstance(messageContext.getConfiguration())
+                : ProcessStatusManagerFactory.getManager(type);
         
         if (log.isDebugEnabled()) {
-            log.debug("Using ProcessStatusManager type: " + managerType);
+            log.debug("Using ProcessStatusManager type: " + type);
         }
         
         return manager;
@@ -79,21 +440,39 @@ public class StateTrackerMediator extends AbstractMediator {
      * Perform the requested operation
      */
     private boolean performOperation(MessageContext messageContext, ProcessStatusManager manager, 
-                                     String processId, String operation) {
+                                     String processId, TrackerOperation operation) {
         
-        switch (operation.toUpperCase()) {
-            case "START_PROCESS":
+        switch (operation) {
+            case START_PROCESS:
                 return performStartProcess(messageContext, manager, processId);
                 
-            case "IS_PROCESS_RUNNING":
+            case IS_PROCESS_RUNNING:
                 return performIsProcessRunning(messageContext, manager, processId);
                 
-            case "STOP_PROCESS":
+            case STOP_PROCESS:
                 return performStopProcess(messageContext, manager, processId);
+                
+            case START_IF_NOT_RUNNING:
+                return performStartIfNotRunning(messageContext, manager, processId);
+                
+            case REPLACE_IF_EXPIRED:
+                return performReplaceIfExpired(messageContext, manager, processId);
+                
+            case STOP_IF_OWNER:
+                return performStopIfOwner(messageContext, manager, processId);
+                
+            case RENEW_PROCESS:
+                return performRenewProcess(messageContext, manager, processId);
+                
+            case ACQUIRE_PERMIT:
+                return performAcquirePermit(messageContext, manager, processId);
+                
+            case RELEASE_PERMIT:
+                return performReleasePermit(messageContext, manager, processId);
 
             default:
                 handleError("Unsupported operation: " + operation, null);
-                messageContext.setProperty("STATE_TRACKER_RESULT", "ERROR");
+                setResult(messageContext, "ERROR");
                 messageContext.setProperty("STATE_TRACKER_ERROR", "Unsupported operation: " + operation);
                 return false;
         }
@@ -102,26 +481,40 @@ public class StateTrackerMediator extends AbstractMediator {
     private boolean performStartProcess(MessageContext messageContext, ProcessStatusManager manager, String processId) {
         try {
 
-            long expiryTimeSeconds = getLongProperty(messageContext, Contants.STATE_EXPIRY_TIME_PROPERTY, 0);
-            long expiryTimeMillis = expiryTimeSeconds > 0 ? expiryTimeSeconds * 1000 : 0;
+            long expiryTimeMillis = getExpiryTimeMillis(messageContext, manager);
+            boolean pinned = Boolean.parseBoolean(getStringProperty(messageContext, Contants.PROCESS_PINNED_PROPERTY));
+            String ownerToken = getStringProperty(messageContext, Contants.PROCESS_OWNER_TOKEN_PROPERTY);
             
             // Start the process
-            manager.startProcess(processId, expiryTimeMillis);
+            manager.startProcess(processId, expiryTimeMillis, pinned, ownerToken);
             
             // Store result in message context
-            messageContext.setProperty("STATE_TRACKER_RESULT", "STARTED");
-            messageContext.setProperty("PROCESS_START_TIMESTAMP", System.currentTimeMillis());
-            if (expiryTimeMillis > 0) {
-                messageContext.setProperty("PROCESS_EXPIRY_TIME_MS", expiryTimeMillis);
+            setResult(messageContext, "STARTED");
+            if (resultProperty != null) {
+                messageContext.setProperty(resultProperty,
+                        new ProcessStatusResult("STARTED", true, ProcessClocks.millis(), expiryTimeMillis, 0));
+            } else {
+                setOutputProperty(messageContext, "PROCESS_START_TIMESTAMP", ProcessClocks.millis());
+                if (expiryTimeMillis > 0) {
+                    setOutputProperty(messageContext, "PROCESS_EXPIRY_TIME_MS", expiryTimeMillis);
+                }
             }
 
-            log.debug("Started process: " + processId + " with expiry: " + expiryTimeSeconds + " seconds");
+            if (log.isDebugEnabled()) {
+                log.debug("Started process: " + processId + " with expiry: " + expiryTimeMillis / 1000 + " seconds");
+            }
 
             return true;
             
+        } catch (CapacityExceededException e) {
+            log.warn(e.getMessage());
+            setResult(messageContext, "REJECTED");
+            messageContext.setProperty("STATE_TRACKER_ERROR", e.getMessage());
+            return true;
+            
         } catch (Exception e) {
             handleError("Error starting process: " + processId, e);
-            messageContext.setProperty("STATE_TRACKER_RESULT", "ERROR");
+            setResult(messageContext, "ERROR");
             messageContext.setProperty("STATE_TRACKER_ERROR", e.getMessage());
             return false;
         }
@@ -129,22 +522,21 @@ public class StateTrackerMediator extends AbstractMediator {
 
     private boolean performIsProcessRunning(MessageContext messageContext, ProcessStatusManager manager, String projectId) {
         try {
-            boolean isRunning = manager.isProcessRunning(projectId);
-            
-            ProcessStateEntry entry = null;
-            if (isRunning) {
-                entry = manager.getProcessState(projectId);
-            }
+            ProcessStatusView view = queryView.get();
+            boolean isRunning = manager.queryProcess(projectId, view);
             
             // Store result in message context
-            messageContext.setProperty("STATE_TRACKER_RESULT", isRunning ? "RUNNING" : "NOT_RUNNING");
-            messageContext.setProperty("PROCESS_IS_RUNNING", isRunning);
-            
-            if (entry != null) {
-                messageContext.setProperty("PROCESS_START_TIMESTAMP", entry.getStartTimestamp());
-                messageContext.setProperty("PROCESS_EXPIRY_TIME_MS", entry.getExpiryTimeMillis());
-                long elapsedTime = System.currentTimeMillis() - entry.getStartTimestamp();
-                messageContext.setProperty("PROCESS_ELAPSED_TIME_MS", elapsedTime);
+            String result = isRunning ? "RUNNING" : "NOT_RUNNING";
+            setResult(messageContext, result);
+            if (resultProperty != null) {
+                messageContext.setProperty(resultProperty, ProcessStatusResult.of(result, view));
+            } else {
+                setOutputProperty(messageContext, "PROCESS_IS_RUNNING", isRunning);
+                if (isRunning) {
+                    setOutputProperty(messageContext, "PROCESS_START_TIMESTAMP", view.getStartTimestamp());
+                    setOutputProperty(messageContext, "PROCESS_EXPIRY_TIME_MS", view.getExpiryTimeMillis());
+                    setOutputProperty(messageContext, "PROCESS_ELAPSED_TIME_MS", view.getElapsedTimeMillis());
+                }
             }
             
             if (log.isDebugEnabled()) {
@@ -155,7 +547,7 @@ public class StateTrackerMediator extends AbstractMediator {
             
         } catch (Exception e) {
             handleError("Error checking process: " + projectId, e);
-            messageContext.setProperty("STATE_TRACKER_RESULT", "ERROR");
+            setResult(messageContext, "ERROR");
             messageContext.setProperty("STATE_TRACKER_ERROR", e.getMessage());
             return false;
         }
@@ -166,8 +558,13 @@ public class StateTrackerMediator extends AbstractMediator {
             boolean stopped = manager.stopProcess(projectId);
             
             // Store result in message context
-            messageContext.setProperty("STATE_TRACKER_RESULT", stopped ? "STOPPED" : "NOT_FOUND");
-            messageContext.setProperty("PROCESS_STOPPED", stopped);
+            String result = stopped ? "STOPPED" : "NOT_FOUND";
+            setResult(messageContext, result);
+            if (resultProperty != null) {
+                messageContext.setProperty(resultProperty, new ProcessStatusResult(result, false, 0, 0, 0));
+            } else {
+                setOutputProperty(messageContext, "PROCESS_STOPPED", stopped);
+            }
             
             if (log.isDebugEnabled()) {
                 log.debug("Stop process " + projectId + ": " + (stopped ? "SUCCESS" : "NOT_FOUND"));
@@ -177,12 +574,400 @@ public class StateTrackerMediator extends AbstractMediator {
             
         } catch (Exception e) {
             handleError("Error stopping process: " + projectId, e);
-            messageContext.setProperty("STATE_TRACKER_RESULT", "ERROR");
+            setResult(messageContext, "ERROR");
             messageContext.setProperty("STATE_TRACKER_ERROR", e.getMessage());
             return false;
         }
     }
     
+    private boolean performStartIfNotRunning(MessageContext messageContext, ProcessStatusManager manager,
+                                             String processId) {
+        try {
+            ConditionalOperationResult result = manager.startProcessIfAbsent(processId,
+                    getExpiryTimeMillis(messageContext, manager),
+                    Boolean.parseBoolean(getStringProperty(messageContext, Contants.PROCESS_PINNED_PROPERTY)),
+                    getStringProperty(messageContext, Contants.PROCESS_OWNER_TOKEN_PROPERTY));
+            
+            setResult(messageContext, result.isApplied() ? "STARTED" : "RUNNING");
+            setOutputProperty(messageContext, "PROCESS_STARTED", result.isApplied());
+            setWinningEntryProperties(messageContext, result.getEntry());
+            
+            if (log.isDebugEnabled()) {
+                log.debug("Start if not running " + processId + ": " + (result.isApplied() ? "STARTED" : "RUNNING"));
+            }
+            
+            return true;
+            
+        } catch (CapacityExceededException e) {
+            log.warn(e.getMessage());
+            setResult(messageContext, "REJECTED");
+            messageContext.setProperty("STATE_TRACKER_ERROR", e.getMessage());
+            return true;
+            
+        } catch (Exception e) {
+            handleError("Error starting process: " + processId, e);
+            setResult(messageContext, "ERROR");
+            messageContext.setProperty("STATE_TRACKER_ERROR", e.getMessage());
+            return false;
+        }
+    }
+    
+    private boolean performReplaceIfExpired(MessageContext messageContext, ProcessStatusManager manager,
+                                            String processId) {
+        try {
+            ConditionalOperationResult result = manager.replaceProcessIfExpired(processId,
+                    getExpiryTimeMillis(messageContext, manager),
+                    Boolean.parseBoolean(getStringProperty(messageContext, Contants.PROCESS_PINNED_PROPERTY)),
+                    getStringProperty(messageContext, Contants.PROCESS_OWNER_TOKEN_PROPERTY));
+            
+            String outcome = result.isApplied() ? "REPLACED" : (result.getEntry() != null ? "RUNNING" : "NOT_FOUND");
+            setResult(messageContext, outcome);
+            setOutputProperty(messageContext, "PROCESS_STARTED", result.isApplied());
+            setWinningEntryProperties(messageContext, result.getEntry());
+            
+            if (log.isDebugEnabled()) {
+                log.debug("Replace if expired " + processId + ": " + outcome);
+            }
+            
+            return true;
+            
+        } catch (Exception e) {
+            handleError("Error replacing process: " + processId, e);
+            setResult(messageContext, "ERROR");
+            messageContext.setProperty("STATE_TRACKER_ERROR", e.getMessage());
+            return false;
+        }
+    }
+    
+    private boolean performStopIfOwner(MessageContext messageContext, ProcessStatusManager manager,
+                                       String processId) {
+        try {
+            String ownerToken = getStringProperty(messageContext, Contants.PROCESS_OWNER_TOKEN_PROPERTY);
+            ConditionalOperationResult result = manager.stopProcessIfOwner(processId, ownerToken);
+            
+            String outcome = result.isApplied() ? "STOPPED" : (result.getEntry() != null ? "NOT_OWNER" : "NOT_FOUND");
+            setResult(messageContext, outcome);
+            setOutputProperty(messageContext, "PROCESS_STOPPED", result.isApplied());
+            if (!result.isApplied()) {
+                setWinningEntryProperties(messageContext, result.getEntry());
+            }
+            
+            if (log.isDebugEnabled()) {
+                log.debug("Stop if owner " + processId + ": " + outcome);
+            }
+            
+            return true;
+            
+        } catch (Exception e) {
+            handleError("Error stopping process: " + processId, e);
+            setResult(messageContext, "ERROR");
+            messageContext.setProperty("STATE_TRACKER_ERROR", e.getMessage());
+            return false;
+        }
+    }
+    
+    private boolean performRenewProcess(MessageContext messageContext, ProcessStatusManager manager,
+                                        String processId) {
+        try {
+            // Without an expiry or a default the current lease length is kept
+            long leaseMillis = getExpiryTimeMillis(messageContext, manager);
+            ProcessStateEntry renewed = manager.renewProcess(processId, leaseMillis);
+            if (renewed == null) {
+                setResult(messageContext, "NOT_FOUND");
+                setOutputProperty(messageContext, "PROCESS_RENEWED", false);
+                return true;
+            }
+            
+            setResult(messageContext, "RENEWED");
+            setOutputProperty(messageContext, "PROCESS_RENEWED", true);
+            setOutputProperty(messageContext, "PROCESS_START_TIMESTAMP", renewed.getStartTimestamp());
+            setOutputProperty(messageContext, "PROCESS_EXPIRY_TIME_MS", renewed.getExpiryTimeMillis());
+            setOutputProperty(messageContext, "PROCESS_RENEW_COUNT", renewed.getRenewCount());
+            setOutputProperty(messageContext, "PROCESS_LAST_RENEW_TIMESTAMP", renewed.getLastRenewTimestamp());
+            
+            if (log.isDebugEnabled()) {
+                log.debug("Renewed process: " + processId + " until " + renewed.getExpiryDeadline());
+            }
+            return true;
+            
+        } catch (Exception e) {
+            handleError("Error renewing process: " + processId, e);
+            setResult(messageContext, "ERROR");
+            messageContext.setProperty("STATE_TRACKER_ERROR", e.getMessage());
+            return false;
+        }
+    }
+    
+    private boolean performAcquirePermit(MessageContext messageContext, ProcessStatusManager manager,
+                                         String processId) {
+        try {
+            long limit = getLongProperty(messageContext, Contants.PROCESS_PERMIT_LIMIT_PROPERTY, 0);
+            if (limit <= 0 || limit > Integer.MAX_VALUE) {
+                handleError("PROCESS_PERMIT_LIMIT property must be a positive number", null);
+                setResult(messageContext, "ERROR");
+                messageContext.setProperty("STATE_TRACKER_ERROR", "Permit limit not specified");
+                return false;
+            }
+            
+            PermitResult result = manager.acquirePermit(processId, (int) limit,
+                    getExpiryTimeMillis(messageContext, manager));
+            setResult(messageContext, result.isAcquired() ? "ACQUIRED" : "REJECTED");
+            if (result.isAcquired()) {
+                setOutputProperty(messageContext, Contants.PROCESS_PERMIT_ID_PROPERTY, result.getPermitId());
+            }
+            setOutputProperty(messageContext, "PROCESS_PERMITS", result.getPermits());
+            
+            if (log.isDebugEnabled()) {
+                log.debug("Acquire permit " + processId + ": " + result);
+            }
+            return true;
+            
+        } catch (Exception e) {
+            handleError("Error acquiring permit: " + processId, e);
+            setResult(messageContext, "ERROR");
+            messageContext.setProperty("STATE_TRACKER_ERROR", e.getMessage());
+            return false;
+        }
+    }
+    
+    private boolean performReleasePermit(MessageContext messageContext, ProcessStatusManager manager,
+                                         String processId) {
+        try {
+            long permitId = getLongProperty(messageContext, Contants.PROCESS_PERMIT_ID_PROPERTY, 0);
+            if (permitId <= 0) {
+                handleError("PROCESS_PERMIT_ID property is required", null);
+                setResult(messageContext, "ERROR");
+                messageContext.setProperty("STATE_TRACKER_ERROR", "Permit ID not specified");
+                return false;
+            }
+            
+            boolean released = manager.releasePermit(processId, permitId);
+            setResult(messageContext, released ? "RELEASED" : "NOT_FOUND");
+            setOutputProperty(messageContext, "PROCESS_PERMITS", manager.getPermitCount(processId));
+            
+            if (log.isDebugEnabled()) {
+                log.debug("Release permit " + permitId + " of " + processId + ": " + released);
+            }
+            return true;
+            
+        } catch (Exception e) {
+            handleError("Error releasing permit: " + processId, e);
+            setResult(messageContext, "ERROR");
+            messageContext.setProperty("STATE_TRACKER_ERROR", e.getMessage());
+            return false;
+        }
+    }
+    
+    /**
+     * Perform the requested batch operation, per-ID outcomes go to STATE_TRACKER_BATCH_RESULT as a JSON object
+     */
+    private boolean performBatchOperation(MessageContext messageContext, ProcessStatusManager manager,
+                                          List<String> processIds, TrackerOperation operation) {
+        StringBuilder json = new StringBuilder(processIds.size() * 32).append('{');
+        int count = 0;
+        String countProperty;
+        
+        switch (operation) {
+            case BATCH_START: {
+                boolean[] started = manager.startProcesses(processIds, getExpiryTimeMillis(messageContext, manager),
+                        Boolean.parseBoolean(getStringProperty(messageContext, Contants.PROCESS_PINNED_PROPERTY)),
+                        getStringProperty(messageContext, Contants.PROCESS_OWNER_TOKEN_PROPERTY));
+                for (int i = 0; i < started.length; i++) {
+                    appendBatchResult(json, processIds.get(i), started[i] ? "STARTED" : "REJECTED", null);
+                    count += started[i] ? 1 : 0;
+                }
+                countProperty = "PROCESS_STARTED_COUNT";
+                break;
+            }
+                
+            case BATCH_STOP: {
+                boolean[] stopped = manager.stopProcesses(processIds);
+                for (int i = 0; i < stopped.length; i++) {
+                    appendBatchResult(json, processIds.get(i), stopped[i] ? "STOPPED" : "NOT_FOUND", null);
+                    count += stopped[i] ? 1 : 0;
+                }
+                countProperty = "PROCESS_STOPPED_COUNT";
+                break;
+            }
+                
+            case BATCH_QUERY: {
+                ProcessStateEntry[] entries = manager.getProcessStates(processIds);
+                for (int i = 0; i < entries.length; i++) {
+                    appendBatchResult(json, processIds.get(i), entries[i] != null ? "RUNNING" : "NOT_RUNNING",
+                            entries[i]);
+                    count += entries[i] != null ? 1 : 0;
+                }
+                countProperty = "PROCESS_RUNNING_COUNT";
+                break;
+            }
+                
+            default:
+                handleError("Unsupported operation: " + operation, null);
+                setResult(messageContext, "ERROR");
+                messageContext.setProperty("STATE_TRACKER_ERROR", "Unsupported operation: " + operation);
+                return false;
+        }
+        
+        setResult(messageContext, "COMPLETED");
+        setOutputProperty(messageContext, Contants.STATE_TRACKER_BATCH_RESULT_PROPERTY, json.append('}').toString());
+        setOutputProperty(messageContext, countProperty, count);
+        return true;
+    }
+    
+    /**
+     * Perform a query over all processes whose ID starts with PROCESS_IDENTIFIER_PREFIX
+     * 
+     * No per-key lock is taken, the result is a weakly consistent view.
+     */
+    private boolean performPrefixQuery(MessageContext messageContext, ProcessStatusManager manager,
+                                       TrackerOperation operation) {
+        String prefix = getStringProperty(messageContext, Contants.PROCESS_IDENTIFIER_PREFIX_PROPERTY);
+        if (prefix == null) {
+            handleError("PROCESS_IDENTIFIER_PREFIX property is required", null);
+            setResult(messageContext, "ERROR");
+            messageContext.setProperty("STATE_TRACKER_ERROR", "Process ID prefix not specified");
+            return false;
+        }
+        
+        switch (operation) {
+            case IS_ANY_RUNNING: {
+                boolean running = manager.isAnyRunning(prefix);
+                setResult(messageContext, running ? "RUNNING" : "NOT_RUNNING");
+                setOutputProperty(messageContext, "PROCESS_IS_RUNNING", running);
+                return true;
+            }
+                
+            case COUNT_RUNNING: {
+                setResult(messageContext, "COMPLETED");
+                setOutputProperty(messageContext, "PROCESS_RUNNING_COUNT", manager.countRunning(prefix));
+                return true;
+            }
+                
+            case LIST_RUNNING: {
+                int limit = (int) Math.max(1, Math.min(MAX_LIST_LIMIT,
+                        getLongProperty(messageContext, Contants.PROCESS_LIST_LIMIT_PROPERTY, DEFAULT_LIST_LIMIT)));
+                String afterId = getStringProperty(messageContext, Contants.PROCESS_LIST_AFTER_PROPERTY);
+                
+                // One more than the page to tell whether there is a next page
+                List<ProcessStateEntry> page = manager.listRunning(prefix, afterId, limit + 1);
+                int count = Math.min(limit, page.size());
+                StringBuilder json = new StringBuilder(count * 64 + 2).append('[');
+                for (int i = 0; i < count; i++) {
+                    ProcessStateEntry entry = page.get(i);
+                    json.append(i == 0 ? "{\"id\":" : ",{\"id\":");
+                    appendJsonString(json, entry.getProjectId());
+                    json.append(",\"startTimestamp\":").append(entry.getStartTimestamp());
+                    json.append(",\"expiryTimeMs\":").append(entry.getExpiryTimeMillis()).append('}');
+                }
+                
+                setResult(messageContext, "COMPLETED");
+                setOutputProperty(messageContext, Contants.STATE_TRACKER_LIST_RESULT_PROPERTY, json.append(']').toString());
+                setOutputProperty(messageContext, "PROCESS_RUNNING_COUNT", count);
+                if (page.size() > limit) {
+                    setOutputProperty(messageContext, "PROCESS_LIST_NEXT", page.get(limit - 1).getProjectId());
+                }
+                return true;
+            }
+                
+            default:
+                handleError("Unsupported operation: " + operation, null);
+                setResult(messageContext, "ERROR");
+                messageContext.setProperty("STATE_TRACKER_ERROR", "Unsupported operation: " + operation);
+                return false;
+        }
+    }
+    
+    private static void appendBatchResult(StringBuilder json, String processId, String outcome,
+                                          ProcessStateEntry entry) {
+        if (json.length() > 1) {
+            json.append(',');
+        }
+        appendJsonString(json, processId);
+        json.append(":{\"result\":\"").append(outcome).append('"');
+        if (entry != null) {
+            json.append(",\"startTimestamp\":").append(entry.getStartTimestamp());
+            json.append(",\"expiryTimeMs\":").append(entry.getExpiryTimeMillis());
+        }
+        json.append('}');
+    }
+    
+    private static void appendJsonString(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }
+    
+    /**
+     * Expose the entry that won a conditional operation
+     */
+    private void setWinningEntryProperties(MessageContext messageContext, ProcessStateEntry entry) {
+        if (entry == null) {
+            return;
+        }
+        setOutputProperty(messageContext, "PROCESS_START_TIMESTAMP", entry.getStartTimestamp());
+        setOutputProperty(messageContext, "PROCESS_EXPIRY_TIME_MS", entry.getExpiryTimeMillis());
+        if (entry.getOwnerToken() != null) {
+            // Not written to PROCESS_OWNER_TOKEN, which holds the caller's own token
+            setOutputProperty(messageContext, "PROCESS_OWNER", entry.getOwnerToken());
+        }
+    }
+    
+    /**
+     * Expiry of the message, else the configured expiryTime, else the store's default
+     */
+    private long getExpiryTimeMillis(MessageContext messageContext, ProcessStatusManager manager) {
+        if (messageContext.getProperty(Contants.STATE_EXPIRY_TIME_PROPERTY) == null) {
+            return expiryTime != null ? defaultExpiryTimeMillis : manager.getDefaultExpiryTimeMillis();
+        }
+        long expiryTimeSeconds = getLongProperty(messageContext, Contants.STATE_EXPIRY_TIME_PROPERTY, 0);
+        return expiryTimeSeconds > 0 ? expiryTimeSeconds * 1000 : 0;
+    }
+    
+    /**
+     * Set STATE_TRACKER_RESULT, keeping it for the metrics as well
+     */
+    private void setResult(MessageContext messageContext, String result) {
+        messageContext.setProperty(Contants.STATE_TRACKER_RESULT_PROPERTY, result);
+        if (StateTrackerMetrics.ENABLED) {
+            outcomes.get().result = result;
+        }
+    }
+    
+    /**
+     * Set an output property unless the configured output properties exclude it
+     */
+    private void setOutputProperty(MessageContext messageContext, String name, Object value) {
+        if (isOutputProperty(name)) {
+            messageContext.setProperty(name, value);
+        }
+    }
+    
+    // Primitive overloads box the value only if it is written
+    private void setOutputProperty(MessageContext messageContext, String name, long value) {
+        if (isOutputProperty(name)) {
+            messageContext.setProperty(name, value);
+        }
+    }
+    
+    private void setOutputProperty(MessageContext messageContext, String name, int value) {
+        if (isOutputProperty(name)) {
+            messageContext.setProperty(name, value);
+        }
+    }
+    
+    private boolean isOutputProperty(String name) {
+        return outputPropertySet == null || outputPropertySet.contains(name);
+    }
+    
     /**
      * Get string property from message context
      */
@@ -212,4 +997,12 @@ public class StateTrackerMediator extends AbstractMediator {
             log.error(message);
         }
     }
+    
+    /**
+     * Operation and result of one mediation, passed from track() to the metrics
+     */
+    private static final class Outcome {
+        TrackerOperation operation;
+        String result;
+    }
 }
@@ -0,0 +1,173 @@
+package com.ycr.wso2.mediator.statetracker;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Operation metrics of the State Tracker Mediator, exposed over JMX
+ *
+ * Metrics are on unless the JVM is started with -Dstatetracker.metrics.enabled=false.
+ * The flag is a static final constant, so when it is off the JIT removes the timing
+ * and recording code from the mediation path entirely.
+ *
+ * MBeans are registered in the platform MBean server under the domain
+ * com.ycr.wso2.mediator.statetracker: one for the totals and store gauges, and one
+ * per TrackerOperation (type=StateTracker,name=Operation,operation=START_PROCESS).
+ * Aliases such as HEARTBEAT count towards the operation they resolve to; a missing or
+ * unknown operation counts as UNKNOWN.
+ */
+public final class StateTrackerMetrics implements StateTrackerMetricsMXBean {
+
+    private static final Log log = LogFactory.getLog(StateTrackerMetrics.class);
+
+    public static final boolean ENABLED = Boolean.parseBoolean(
+            System.getProperty("statetracker.metrics.enabled", "true"));
+
+    public static final String DOMAIN = "com.ycr.wso2.mediator.statetracker";
+
+    private static final TrackerOperation[] OPERATIONS = TrackerOperation.values();
+
+    private static final StateTrackerMetrics instance = new StateTrackerMetrics();
+
+    // Indexed by ordinal, the last slot is UNKNOWN
+    private final OperationMetrics[] operations = new OperationMetrics[OPERATIONS.length + 1];
+
+    private StateTrackerMetrics() {
+        for (TrackerOperation operation : OPERATIONS) {
+            operations[operation.ordinal()] = newOperationMetrics(operation.name());
+        }
+        operations[OPERATIONS.length] = newOperationMetrics("UNKNOWN");
+        if (ENABLED) {
+            register(this, DOMAIN + ":type=StateTracker,name=Metrics");
+        }
+    }
+
+    public static StateTrackerMetrics getInstance() {
+        return instance;
+    }
+
+    /**
+     * Record one mediation
+     *
+     * @param operation Resolved operation, null if it was missing or unknown
+     * @param result Value of STATE_TRACKER_RESULT, may be null
+     * @param nanos Time spent in the mediator
+     */
+    public void record(TrackerOperation operation, String result, long nanos) {
+        operationMetrics(operation).record(result, nanos);
+    }
+
+    /**
+     * Metrics of an operation, those of UNKNOWN for null
+     */
+    public OperationMetrics operationMetrics(TrackerOperation operation) {
+        return operations[operation != null ? operation.ordinal() : OPERATIONS.length];
+    }
+
+    private OperationMetrics newOperationMetrics(String operation) {
+        OperationMetrics metrics = new OperationMetrics(operation);
+        if (ENABLED) {
+            register(metrics, DOMAIN + ":type=StateTracker,name=Operation,operation=" + ObjectName.quote(operation));
+        }
+        return metrics;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return ENABLED;
+    }
+
+    @Override
+    public long getOperationCount() {
+        long total = 0;
+        for (OperationMetrics operation : operations) {
+            total += operation.getCount();
+        }
+        return total;
+    }
+
+    @Override
+    public long getErrorCount() {
+        long total = 0;
+        for (OperationMetrics operation : operations) {
+            total += operation.getErrorCount();
+        }
+        return total;
+    }
+
+    @Override
+    public long getTrackedProcessCount() {
+        long total = 0;
+        for (ProcessStatusManager manager : ProcessStatusManagerFactory.getInitializedManagers()) {
+            total += Math.max(0, manager.getTrackedCount());
+        }
+        return total;
+    }
+
+    @Override
+    public long getExpiredProcessCount() {
+        long total = 0;
+        for (ProcessStatusManager manager : ProcessStatusManagerFactory.getInitializedManagers()) {
+            if (manager instanceof NearCacheProcessStatusManager) {
+                manager = ((NearCacheProcessStatusManager) manager).getDelegate();
+            }
+            if (manager instanceof BloomFilterProcessStatusManager) {
+                manager = ((BloomFilterProcessStatusManager) manager).getDelegate();
+            }
+            if (manager instanceof InMemoryProcessStatusManager) {
+                total += ((InMemoryProcessStatusManager) manager).getExpiredCount();
+            }
+        }
+        return total;
+    }
+
+    @Override
+    public long getLockAcquisitionCount() {
+        return StateTrackerMediator.getLockManager().getAcquisitionCount();
+    }
+
+    @Override
+    public long getContendedLockAcquisitionCount() {
+        return StateTrackerMediator.getLockManager().getContendedAcquisitionCount();
+    }
+
+    @Override
+    public long getTotalLockWaitMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(StateTrackerMediator.getLockManager().getTotalWaitNanos());
+    }
+
+    @Override
+    public long getMaxLockWaitMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(StateTrackerMediator.getLockManager().getMaxWaitNanos());
+    }
+
+    /**
+     * Reset operation and lock metrics (counters are not reset atomically with respect to each other)
+     */
+    @Override
+    public void resetMetrics() {
+        for (OperationMetrics operation : operations) {
+            operation.reset();
+        }
+        StateTrackerMediator.getLockManager().resetMetrics();
+    }
+
+    static void register(Object mbean, String name) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(name);
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+            server.registerMBean(mbean, objectName);
+        } catch (JMException | RuntimeException e) {
+            log.warn("Could not register state tracker MBean " + name, e);
+        }
+    }
+}
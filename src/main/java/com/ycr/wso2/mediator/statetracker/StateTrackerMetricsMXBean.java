@@ -0,0 +1,34 @@
+package com.ycr.wso2.mediator.statetracker;
+
+/**
+ * JMX view of the state tracker, registered as
+ * com.ycr.wso2.mediator.statetracker:type=StateTracker,name=Metrics
+ */
+public interface StateTrackerMetricsMXBean {
+
+    boolean isEnabled();
+
+    long getOperationCount();
+
+    long getErrorCount();
+
+    /**
+     * Processes tracked by all initialized stores that can count them cheaply
+     */
+    long getTrackedProcessCount();
+
+    /**
+     * Processes removed as expired by active expiry or to make room in the in-memory store
+     */
+    long getExpiredProcessCount();
+
+    long getLockAcquisitionCount();
+
+    long getContendedLockAcquisitionCount();
+
+    long getTotalLockWaitMicros();
+
+    long getMaxLockWaitMicros();
+
+    void resetMetrics();
+}
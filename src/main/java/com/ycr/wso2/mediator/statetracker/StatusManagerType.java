@@ -6,10 +6,24 @@ public enum StatusManagerType {
      */
     IN_MEMORY("InMemory"),
     
-    // Not implemented yet
+    /**
+     * JDBC storage shared between nodes, see DatabaseProcessStatusManager
+     */
     DATABASE("Database"),
     
-    // Not implemented yet
+    /**
+     * Off-heap hash table, optionally memory-mapped, see OffHeapProcessStatusManager
+     */
+    OFF_HEAP("OffHeap"),
+    
+    /**
+     * On-heap primitive arrays keyed by encoded short IDs, see CompactProcessStatusManager
+     */
+    COMPACT("Compact"),
+    
+    /**
+     * Local store persisted to the Synapse registry in coalesced batches, see RegistryProcessStatusManager
+     */
     REGISTRY("Registry");
     
     private final String typeName;
@@ -34,7 +48,7 @@ public enum StatusManagerType {
         }
         
         throw new IllegalArgumentException("Unknown StatusManagerType: " + type + 
-            ". Supported types: IN_MEMORY, DATABASE, REGISTRY");
+            ". Supported types: IN_MEMORY, DATABASE, OFF_HEAP, COMPACT, REGISTRY");
     }
     
     @Override
@@ -0,0 +1,84 @@
+package com.ycr.wso2.mediator.statetracker;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Operations of the State Tracker Mediator, selected by STATE_TRACKER_OPERATION
+ * or the mediator's operation setter
+ */
+public enum TrackerOperation {
+    
+    START_PROCESS(false, false, false),
+    IS_PROCESS_RUNNING(true, false, false),
+    STOP_PROCESS(false, false, false),
+    START_IF_NOT_RUNNING(false, false, false),
+    REPLACE_IF_EXPIRED(false, false, false),
+    STOP_IF_OWNER(false, false, false),
+    RENEW_PROCESS(false, false, false),
+    ACQUIRE_PERMIT(false, false, false),
+    RELEASE_PERMIT(false, false, false),
+    BATCH_START(false, true, false),
+    BATCH_STOP(false, true, false),
+    BATCH_QUERY(true, true, false),
+    IS_ANY_RUNNING(true, false, true),
+    COUNT_RUNNING(true, false, true),
+    LIST_RUNNING(true, false, true);
+    
+    private static final Map<String, TrackerOperation> byName = new HashMap<>();
+    
+    static {
+        for (TrackerOperation operation : values()) {
+            byName.put(operation.name(), operation);
+        }
+        byName.put("RENEW", RENEW_PROCESS);
+        byName.put("HEARTBEAT", RENEW_PROCESS);
+        byName.put("ACQUIRE", ACQUIRE_PERMIT);
+        byName.put("RELEASE", RELEASE_PERMIT);
+    }
+    
+    private final boolean readOnly;
+    private final boolean batch;
+    private final boolean prefixQuery;
+    
+    TrackerOperation(boolean readOnly, boolean batch, boolean prefixQuery) {
+        this.readOnly = readOnly;
+        this.batch = batch;
+        this.prefixQuery = prefixQuery;
+    }
+    
+    /**
+     * Operations that do not modify tracked state can share the per-key lock
+     */
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+    
+    /**
+     * Operations on a list of process IDs (PROCESS_IDENTIFIERS)
+     */
+    public boolean isBatch() {
+        return batch;
+    }
+    
+    /**
+     * Operations on all processes whose ID starts with PROCESS_IDENTIFIER_PREFIX
+     */
+    public boolean isPrefixQuery() {
+        return prefixQuery;
+    }
+    
+    /**
+     * Resolve an operation name, case-insensitive and ignoring surrounding whitespace
+     * 
+     * @return the operation, or null if the name is unknown
+     */
+    public static TrackerOperation fromString(String name) {
+        if (name == null) {
+            return null;
+        }
+        // Exact names are found without normalizing the string
+        TrackerOperation operation = byName.get(name);
+        return operation != null ? operation : byName.get(name.trim().toUpperCase());
+    }
+}
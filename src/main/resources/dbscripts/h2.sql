@@ -0,0 +1,11 @@
+CREATE TABLE IF NOT EXISTS STATE_TRACKER_PROCESS (
+    PROCESS_ID VARCHAR(255) NOT NULL,
+    START_TIMESTAMP BIGINT NOT NULL,
+    EXPIRY_TIME_MS BIGINT NOT NULL,
+    EXPIRES_AT BIGINT NOT NULL,
+    PINNED BOOLEAN DEFAULT FALSE NOT NULL,
+    OWNER_TOKEN VARCHAR(255),
+    PRIMARY KEY (PROCESS_ID)
+);
+
+CREATE INDEX IF NOT EXISTS IDX_STATE_TRACKER_EXPIRES_AT ON STATE_TRACKER_PROCESS (EXPIRES_AT);
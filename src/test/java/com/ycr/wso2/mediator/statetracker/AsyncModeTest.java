@@ -0,0 +1,192 @@
+package com.ycr.wso2.mediator.statetracker;
+
+import org.apache.synapse.MessageContext;
+import org.apache.synapse.core.SynapseEnvironment;
+import org.apache.synapse.mediators.base.SequenceMediator;
+import org.junit.After;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests for the async mode of the mediator and AsyncOperationExecutor
+ */
+public class AsyncModeTest {
+
+    private static final String CONTINUATION = "stateTrackerContinue";
+
+    private AsyncOperationExecutor executor;
+
+    @After
+    public void tearDown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    private static AsyncOperationExecutor newExecutor(boolean virtualThreads, int maxPending) {
+        AsyncConfig config = new AsyncConfig();
+        config.setVirtualThreads(virtualThreads);
+        config.setThreads(4);
+        config.setMaxPending(maxPending);
+        return new AsyncOperationExecutor(config);
+    }
+
+    /**
+     * Manager whose starts take a while, like a remote backend
+     */
+    private static InMemoryProcessStatusManager slowManager(long delayMillis) {
+        InMemoryStoreConfig config = new InMemoryStoreConfig();
+        config.setActiveExpiryEnabled(false);
+        return new InMemoryProcessStatusManager(config) {
+            @Override
+            public void startProcess(String processId, long expiryTimeMillis, boolean pinned, String ownerToken) {
+                try {
+                    Thread.sleep(delayMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.startProcess(processId, expiryTimeMillis, pinned, ownerToken);
+            }
+        };
+    }
+
+    private static SynapseEnvironment environment(List<MessageContext> resumed, CountDownLatch latch) {
+        return (SynapseEnvironment) Proxy.newProxyInstance(SynapseEnvironment.class.getClassLoader(),
+                new Class<?>[] { SynapseEnvironment.class }, (proxy, method, args) -> {
+                    if ("injectAsync".equals(method.getName())) {
+                        synchronized (resumed) {
+                            resumed.add((MessageContext) args[0]);
+                        }
+                        latch.countDown();
+                        return null;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    private static MessageContext message(SynapseEnvironment environment, String operation, String processId) {
+        MessageContext messageContext = MessageContextStub.create(null, environment,
+                Collections.singletonMap(CONTINUATION, new SequenceMediator()));
+        messageContext.setProperty(Contants.STATE_TRACKER_OPERATION_PROPERTY, operation);
+        messageContext.setProperty(Contants.PROCESS_IDENTIFIER_PROPERTY, processId);
+        return messageContext;
+    }
+
+    private StateTrackerMediator asyncMediator(ProcessStatusManager manager) {
+        StateTrackerMediator mediator = new StateTrackerMediator(manager);
+        mediator.setAsync("true");
+        mediator.setContinuationSequence(CONTINUATION);
+        mediator.setAsyncExecutor(executor);
+        return mediator;
+    }
+
+    @Test
+    public void testWorkerIsReleasedAndMessageResumed() throws InterruptedException {
+        executor = newExecutor(true, 1000);
+        InMemoryProcessStatusManager manager = slowManager(50);
+        StateTrackerMediator mediator = asyncMediator(manager);
+        List<MessageContext> resumed = new ArrayList<>();
+        CountDownLatch latch = new CountDownLatch(10);
+        SynapseEnvironment environment = environment(resumed, latch);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 10; i++) {
+            assertFalse(mediator.mediate(message(environment, "START_PROCESS", "async-" + i)));
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        // Running the starts on the caller would take 500 ms
+        assertTrue("Worker was held for " + elapsedMillis + " ms", elapsedMillis < 250);
+
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertEquals(10, manager.size());
+        for (MessageContext messageContext : resumed) {
+            assertEquals("STARTED", messageContext.getProperty("STATE_TRACKER_RESULT"));
+        }
+    }
+
+    @Test
+    public void testOperationsOnOneProcessRunInOrder() throws InterruptedException {
+        executor = newExecutor(false, 10000);
+        int keys = 8;
+        int perKey = 200;
+        List<List<Integer>> seen = new ArrayList<>();
+        AtomicInteger[] running = new AtomicInteger[keys];
+        AtomicInteger overlaps = new AtomicInteger();
+        for (int k = 0; k < keys; k++) {
+            seen.add(Collections.synchronizedList(new ArrayList<>()));
+            running[k] = new AtomicInteger();
+        }
+        CountDownLatch latch = new CountDownLatch(keys * perKey);
+
+        for (int i = 0; i < perKey; i++) {
+            for (int k = 0; k < keys; k++) {
+                final int key = k;
+                final int sequence = i;
+                assertTrue(executor.submit("order-" + k, () -> {
+                    if (running[key].incrementAndGet() > 1) {
+                        overlaps.incrementAndGet();
+                    }
+                    seen.get(key).add(sequence);
+                    running[key].decrementAndGet();
+                    latch.countDown();
+                }));
+            }
+        }
+
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertEquals(0, overlaps.get());
+        for (List<Integer> values : seen) {
+            assertEquals(perKey, values.size());
+            for (int i = 0; i < perKey; i++) {
+                assertEquals(i, (int) values.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void testSaturatedExecutorRunsOnCallerAndResumes() throws InterruptedException {
+        executor = newExecutor(false, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        assertTrue(executor.submit("busy", () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+
+        InMemoryProcessStatusManager manager = slowManager(0);
+        StateTrackerMediator mediator = asyncMediator(manager);
+        List<MessageContext> resumed = new ArrayList<>();
+        SynapseEnvironment environment = environment(resumed, new CountDownLatch(2));
+        MessageContext messageContext = message(environment, "START_PROCESS", "inline-1");
+
+        // Run here, but the flow still goes on in the continuation sequence
+        assertFalse(mediator.mediate(messageContext));
+        assertEquals("STARTED", messageContext.getProperty("STATE_TRACKER_RESULT"));
+        assertEquals(1, executor.getRejectedCount());
+        assertEquals(Collections.singletonList(messageContext), resumed);
+
+        // Queued behind the busy operation on the same ID instead of overtaking it
+        manager.startProcess("busy", 0);
+        MessageContext stop = message(environment, "STOP_PROCESS", "busy");
+        assertFalse(mediator.mediate(stop));
+        assertEquals(1, executor.getRejectedCount());
+        assertTrue(manager.isProcessRunning("busy"));
+        assertNull(stop.getProperty("STATE_TRACKER_RESULT"));
+
+        release.countDown();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (manager.isProcessRunning("busy") && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertFalse(manager.isProcessRunning("busy"));
+    }
+}
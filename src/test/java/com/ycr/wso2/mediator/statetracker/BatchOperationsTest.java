@@ -0,0 +1,186 @@
+package com.ycr.wso2.mediator.statetracker;
+
+import org.apache.axiom.om.OMElement;
+import org.apache.axiom.soap.SOAPBody;
+import org.apache.axiom.soap.SOAPEnvelope;
+import org.apache.synapse.MessageContext;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Tests for BATCH_START, BATCH_STOP and BATCH_QUERY
+ */
+public class BatchOperationsTest {
+
+    private static InMemoryProcessStatusManager newManager() {
+        InMemoryStoreConfig config = new InMemoryStoreConfig();
+        config.setActiveExpiryEnabled(false);
+        return new InMemoryProcessStatusManager(config);
+    }
+
+    private static MessageContext batch(String operation, Object processIds) {
+        MessageContext messageContext = MessageContextStub.create();
+        messageContext.setProperty(Contants.STATE_TRACKER_OPERATION_PROPERTY, operation);
+        messageContext.setProperty(Contants.PROCESS_IDENTIFIERS_PROPERTY, processIds);
+        return messageContext;
+    }
+
+    @Test
+    public void testBatchStartQueryStop() {
+        InMemoryProcessStatusManager manager = newManager();
+        StateTrackerMediator mediator = new StateTrackerMediator(manager);
+
+        MessageContext start = batch("BATCH_START", "batch-1, batch-2\nbatch-3");
+        assertTrue(mediator.mediate(start));
+        assertEquals("COMPLETED", start.getProperty("STATE_TRACKER_RESULT"));
+        assertEquals(3, start.getProperty("PROCESS_STARTED_COUNT"));
+        assertEquals("{\"batch-1\":{\"result\":\"STARTED\"},\"batch-2\":{\"result\":\"STARTED\"},"
+                + "\"batch-3\":{\"result\":\"STARTED\"}}",
+                start.getProperty(Contants.STATE_TRACKER_BATCH_RESULT_PROPERTY));
+        assertEquals(3, manager.size());
+
+        MessageContext stop = batch("BATCH_STOP", "batch-2,batch-4");
+        assertTrue(mediator.mediate(stop));
+        assertEquals(1, stop.getProperty("PROCESS_STOPPED_COUNT"));
+        assertEquals("{\"batch-2\":{\"result\":\"STOPPED\"},\"batch-4\":{\"result\":\"NOT_FOUND\"}}",
+                stop.getProperty(Contants.STATE_TRACKER_BATCH_RESULT_PROPERTY));
+
+        MessageContext query = batch("BATCH_QUERY", "[\"batch-1\", \"batch-2\"]");
+        assertTrue(mediator.mediate(query));
+        assertEquals(1, query.getProperty("PROCESS_RUNNING_COUNT"));
+        String result = (String) query.getProperty(Contants.STATE_TRACKER_BATCH_RESULT_PROPERTY);
+        assertTrue(result, result.startsWith("{\"batch-1\":{\"result\":\"RUNNING\",\"startTimestamp\":"
+                + manager.getProcessState("batch-1").getStartTimestamp() + ",\"expiryTimeMs\":0}"));
+        assertTrue(result, result.endsWith(",\"batch-2\":{\"result\":\"NOT_RUNNING\"}}"));
+    }
+
+    @Test
+    public void testInputFormsAreDeduplicated() {
+        InMemoryProcessStatusManager manager = newManager();
+        StateTrackerMediator mediator = new StateTrackerMediator(manager);
+
+        assertTrue(mediator.mediate(batch("BATCH_START", Arrays.asList("list-1", "list-2", "list-1"))));
+        assertTrue(mediator.mediate(batch("BATCH_START", new String[] { "array-1", " ", "array-2" })));
+        MessageContext json = batch("BATCH_START", "[\"json-\\\"1\", 42, \"json-2\"]");
+        assertTrue(mediator.mediate(json));
+
+        assertEquals(7, manager.size());
+        assertTrue(manager.isProcessRunning("json-\"1"));
+        assertTrue(manager.isProcessRunning("42"));
+        assertTrue(((String) json.getProperty(Contants.STATE_TRACKER_BATCH_RESULT_PROPERTY))
+                .startsWith("{\"json-\\\"1\":"));
+    }
+
+    @Test
+    public void testIdsFromPayload() {
+        InMemoryProcessStatusManager manager = newManager();
+        StateTrackerMediator mediator = new StateTrackerMediator(manager);
+
+        // <ids><id>payload-1</id><id>payload-2</id></ids>
+        OMElement ids = element(null, element("payload-1"), element("payload-2"));
+        MessageContext messageContext = MessageContextStub.create(envelope(ids));
+        messageContext.setProperty(Contants.STATE_TRACKER_OPERATION_PROPERTY, "BATCH_START");
+
+        assertTrue(mediator.mediate(messageContext));
+        assertEquals(2, messageContext.getProperty("PROCESS_STARTED_COUNT"));
+        assertTrue(manager.isProcessRunning("payload-1"));
+        assertTrue(manager.isProcessRunning("payload-2"));
+    }
+
+    @Test
+    public void testMissingIdsIsAnError() {
+        StateTrackerMediator mediator = new StateTrackerMediator(newManager());
+        MessageContext messageContext = batch("BATCH_QUERY", " , ");
+
+        assertFalse(mediator.mediate(messageContext));
+        assertEquals("ERROR", messageContext.getProperty("STATE_TRACKER_RESULT"));
+    }
+
+    @Test
+    public void testBatchStartReportsRejectedProcesses() {
+        InMemoryStoreConfig config = new InMemoryStoreConfig();
+        config.setActiveExpiryEnabled(false);
+        config.setMaxEntries(2);
+        config.setCapacityPolicy(CapacityPolicy.REJECT);
+        StateTrackerMediator mediator = new StateTrackerMediator(new InMemoryProcessStatusManager(config));
+
+        MessageContext messageContext = batch("BATCH_START", "cap-1,cap-2,cap-3");
+        assertTrue(mediator.mediate(messageContext));
+        assertEquals(2, messageContext.getProperty("PROCESS_STARTED_COUNT"));
+        assertTrue(((String) messageContext.getProperty(Contants.STATE_TRACKER_BATCH_RESULT_PROPERTY))
+                .endsWith("\"cap-3\":{\"result\":\"REJECTED\"}}"));
+    }
+
+    @Test
+    public void testOverlappingBatchesDoNotDeadlock() throws InterruptedException {
+        ProcessLockManager lockManager = new ProcessLockManager(8, true);
+        List<String> forward = Arrays.asList("a", "b", "c", "d", "e", "f", "g", "h", "i", "j");
+        List<String> backward = new java.util.ArrayList<>(forward);
+        Collections.reverse(backward);
+
+        int threadCount = 8;
+        CountDownLatch startLatch = new CountDownLatch(1);
+        CountDownLatch completeLatch = new CountDownLatch(threadCount);
+        AtomicInteger completed = new AtomicInteger();
+        for (int t = 0; t < threadCount; t++) {
+            final List<String> ids = (t % 2 == 0) ? forward : backward;
+            new Thread(() -> {
+                try {
+                    startLatch.await();
+                    for (int i = 0; i < 2000; i++) {
+                        List<Lock> locks = lockManager.lockAll(ids, false);
+                        lockManager.unlockAll(locks);
+                    }
+                    completed.incrementAndGet();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    completeLatch.countDown();
+                }
+            }).start();
+        }
+
+        startLatch.countDown();
+        assertTrue("Batches deadlocked", completeLatch.await(30, TimeUnit.SECONDS));
+        assertEquals(threadCount, completed.get());
+    }
+
+    private static SOAPEnvelope envelope(OMElement firstElement) {
+        SOAPBody body = (SOAPBody) Proxy.newProxyInstance(SOAPBody.class.getClassLoader(),
+                new Class<?>[] { SOAPBody.class }, (proxy, method, args) -> {
+                    if ("getFirstElement".equals(method.getName())) {
+                        return firstElement;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+        return (SOAPEnvelope) Proxy.newProxyInstance(SOAPEnvelope.class.getClassLoader(),
+                new Class<?>[] { SOAPEnvelope.class }, (proxy, method, args) -> {
+                    if ("getBody".equals(method.getName())) {
+                        return body;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    private static OMElement element(String text, OMElement... children) {
+        return (OMElement) Proxy.newProxyInstance(OMElement.class.getClassLoader(),
+                new Class<?>[] { OMElement.class }, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getText":
+                            return text;
+                        case "getChildElements":
+                            return Arrays.asList(children).iterator();
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+}
@@ -0,0 +1,214 @@
+package com.ycr.wso2.mediator.statetracker;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests for the Bloom filter decorator
+ */
+public class BloomFilterProcessStatusManagerTest {
+
+    private ManualClock clock;
+    private ProcessClock previous;
+    private AtomicInteger storeReads;
+    private InMemoryProcessStatusManager store;
+
+    @Before
+    public void setUp() {
+        clock = new ManualClock(1000000);
+        previous = ProcessClocks.setClock(clock);
+
+        InMemoryStoreConfig storeConfig = new InMemoryStoreConfig();
+        storeConfig.setActiveExpiryEnabled(false);
+        storeReads = new AtomicInteger();
+        // Stands in for a remote backend, counting the round trips
+        store = new InMemoryProcessStatusManager(storeConfig) {
+            @Override
+            public boolean isProcessRunning(String processId) {
+                storeReads.incrementAndGet();
+                return super.isProcessRunning(processId);
+            }
+        };
+    }
+
+    @After
+    public void tearDown() {
+        store.shutdown();
+        ProcessClocks.setClock(previous);
+    }
+
+    private static BloomFilterConfig config(long expectedEntries) {
+        BloomFilterConfig config = new BloomFilterConfig();
+        config.setExpectedEntries(expectedEntries);
+        config.setFalsePositiveRate(0.01);
+        config.setRebuildIntervalMillis(0);
+        return config;
+    }
+
+    @Test
+    public void testMissesDoNotReachTheStore() {
+        BloomFilterProcessStatusManager manager = new BloomFilterProcessStatusManager(store, config(1000));
+        for (int i = 0; i < 1000; i++) {
+            manager.startProcess("order-" + i, 0);
+        }
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(manager.isProcessRunning("order-" + i));
+        }
+        storeReads.set(0);
+        for (int i = 0; i < 10000; i++) {
+            assertFalse(manager.isProcessRunning("duplicate-" + i));
+        }
+
+        assertEquals(1000, manager.getPassedCount() - manager.getFalsePositiveCount());
+        assertEquals(storeReads.get(), manager.getFalsePositiveCount());
+        assertTrue("False positive rate " + manager.getObservedFalsePositiveRate(),
+                manager.getObservedFalsePositiveRate() < 0.03);
+        assertTrue(manager.getEstimatedFalsePositiveRate() < 0.03);
+        assertTrue(manager.getHitRatio() > 0.88);
+
+        // Stopped processes leave the filter
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(manager.stopProcess("order-" + i));
+        }
+        manager.resetMetrics();
+        for (int i = 0; i < 1000; i++) {
+            assertFalse(manager.isProcessRunning("order-" + i));
+        }
+        assertEquals(1000, manager.getFilteredCount());
+        assertEquals(0, manager.getEstimatedFalsePositiveRate(), 0);
+    }
+
+    @Test
+    public void testTableStoresCanBeFiltered() {
+        OffHeapProcessStatusManager offHeap = new OffHeapProcessStatusManager(new OffHeapStoreConfig());
+        offHeap.startProcess("before-1", 0);
+        offHeap.startProcess("expired-1", 1000);
+        clock.advance(2, TimeUnit.SECONDS);
+        BloomFilterProcessStatusManager manager = new BloomFilterProcessStatusManager(offHeap, config(100));
+        try {
+            assertEquals(1, manager.getLastRebuildEntryCount());
+            assertTrue(manager.isProcessRunning("before-1"));
+            manager.startProcess("after-1", 0);
+            assertTrue(manager.isProcessRunning("after-1"));
+            // Deleted by the rebuild scan, so it cannot be stopped out of the filter
+            assertFalse(manager.stopProcess("expired-1"));
+            assertFalse(manager.isProcessRunning("missing-1"));
+            assertEquals(1, manager.getFilteredCount());
+        } finally {
+            manager.shutdown();
+        }
+
+        CompactProcessStatusManager compact = new CompactProcessStatusManager();
+        compact.startProcess("12345", 0);
+        compact.startProcess("order-7", 0);
+        compact.startProcess("Order #8", 0);
+        manager = new BloomFilterProcessStatusManager(compact, config(100));
+        try {
+            assertEquals(3, manager.getLastRebuildEntryCount());
+            assertTrue(manager.isProcessRunning("12345"));
+            assertTrue(manager.isProcessRunning("order-7"));
+            assertTrue(manager.isProcessRunning("Order #8"));
+            assertEquals(1, compact.countRunning("order-"));
+        } finally {
+            manager.shutdown();
+        }
+    }
+
+    @Test
+    public void testStoreIsShutDownWhenItCannotBeFiltered() {
+        AtomicBoolean shutDown = new AtomicBoolean();
+        ProcessStatusManager unlisted = new ProcessStatusManager() {
+            @Override
+            public void startProcess(String processId, long expiryTimeMillis) {
+            }
+
+            @Override
+            public boolean isProcessRunning(String processId) {
+                return false;
+            }
+
+            @Override
+            public boolean stopProcess(String processId) {
+                return false;
+            }
+
+            @Override
+            public ProcessStateEntry getProcessState(String processId) {
+                return null;
+            }
+
+            @Override
+            public void shutdown() {
+                shutDown.set(true);
+            }
+        };
+        try {
+            new BloomFilterProcessStatusManager(unlisted, config(10));
+            fail("Store without prefix queries accepted");
+        } catch (IllegalArgumentException expected) {
+            // The filter could not be filled with the store's processes
+        }
+        assertTrue("Store left running", shutDown.get());
+    }
+
+    @Test
+    public void testRebuildKeepsEveryStartedProcess() throws InterruptedException {
+        store.startProcess("before-1", 0);
+        BloomFilterProcessStatusManager manager = new BloomFilterProcessStatusManager(store, config(100));
+        assertTrue(manager.isProcessRunning("before-1"));
+
+        // Started behind the filter's back, e.g. by another node, seen after a rebuild
+        store.startProcess("other-node-1", 0);
+        assertFalse(manager.isProcessRunning("other-node-1"));
+        manager.rebuild();
+        assertTrue(manager.isProcessRunning("other-node-1"));
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread rebuilder = new Thread(() -> {
+            while (running.get()) {
+                manager.rebuild();
+            }
+        });
+        rebuilder.start();
+        for (int i = 0; i < 20000; i++) {
+            manager.startProcess("concurrent-" + i, 0);
+            if (i % 2 == 0) {
+                assertTrue(manager.stopProcess("concurrent-" + i));
+            }
+        }
+        running.set(false);
+        rebuilder.join();
+
+        assertTrue(manager.getRebuildCount() > 2);
+        for (int i = 1; i < 20000; i += 2) {
+            assertTrue("Lost concurrent-" + i, manager.isProcessRunning("concurrent-" + i));
+        }
+        manager.rebuild();
+        assertEquals(10002, manager.getLastRebuildEntryCount());
+    }
+
+    @Test
+    public void testExpiredProcessesLeaveTheFilter() throws InterruptedException {
+        BloomFilterProcessStatusManager manager = new BloomFilterProcessStatusManager(store, config(100));
+        assertTrue(manager.isExpiryTracked());
+        manager.startProcess("short-1", 1000);
+        manager.startProcess("long-1", 60000);
+        clock.advance(2, TimeUnit.SECONDS);
+
+        // Found expired by the store, which publishes the EXPIRE event
+        assertFalse(manager.isProcessRunning("short-1"));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        manager.resetMetrics();
+        while (manager.getFilteredCount() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+            manager.isProcessRunning("short-1");
+        }
+        assertTrue("Expired process still in the filter", manager.getFilteredCount() > 0);
+        assertTrue(manager.isProcessRunning("long-1"));
+    }
+}
@@ -0,0 +1,150 @@
+package com.ycr.wso2.mediator.statetracker;
+
+import org.apache.synapse.MessageContext;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the capacity-bounded mode of InMemoryProcessStatusManager
+ */
+public class CapacityManagerTest {
+
+    private static InMemoryProcessStatusManager boundedManager(long maxEntries, CapacityPolicy policy) {
+        InMemoryStoreConfig config = new InMemoryStoreConfig();
+        config.setActiveExpiryEnabled(false);
+        config.setMaxEntries(maxEntries);
+        config.setCapacityPolicy(policy);
+        return new InMemoryProcessStatusManager(config);
+    }
+
+    @Test
+    public void testRejectWhenFull() {
+        InMemoryProcessStatusManager manager = boundedManager(3, CapacityPolicy.REJECT);
+        manager.startProcess("p1", 0);
+        manager.startProcess("p2", 0);
+        manager.startProcess("p3", 0);
+
+        try {
+            manager.startProcess("p4", 0);
+            fail("Expected CapacityExceededException");
+        } catch (CapacityExceededException e) {
+            // expected
+        }
+
+        // Restarting a tracked process does not need extra capacity
+        manager.startProcess("p1", 0);
+        assertEquals(3, manager.size());
+        assertEquals(1, manager.getCapacityManager().getRejectionCount());
+
+        manager.stopProcess("p2");
+        manager.startProcess("p4", 0);
+        assertTrue(manager.isProcessRunning("p4"));
+    }
+
+    @Test
+    public void testLruEvictsUnaccessedEntry() {
+        InMemoryProcessStatusManager manager = boundedManager(3, CapacityPolicy.EVICT_LRU);
+        manager.startProcess("p1", 0);
+        manager.startProcess("p2", 0);
+        manager.startProcess("p3", 0);
+
+        // p1 and p3 are recently used, p2 is the victim
+        manager.isProcessRunning("p1");
+        manager.isProcessRunning("p3");
+        manager.startProcess("p4", 0);
+
+        assertEquals(3, manager.size());
+        assertFalse(manager.isProcessRunning("p2"));
+        assertTrue(manager.isProcessRunning("p1"));
+        assertTrue(manager.isProcessRunning("p3"));
+        assertTrue(manager.isProcessRunning("p4"));
+        assertEquals(1, manager.getCapacityManager().getEvictionCount());
+    }
+
+    @Test
+    public void testPinnedEntriesAreNotEvicted() {
+        InMemoryProcessStatusManager manager = boundedManager(2, CapacityPolicy.EVICT_LRU);
+        manager.startProcess("pinned-1", 0, true);
+        manager.startProcess("pinned-2", 0, true);
+
+        try {
+            manager.startProcess("p3", 0);
+            fail("Expected CapacityExceededException");
+        } catch (CapacityExceededException e) {
+            // expected
+        }
+        assertTrue(manager.isProcessRunning("pinned-1"));
+        assertTrue(manager.isProcessRunning("pinned-2"));
+        assertEquals(0, manager.getCapacityManager().getEvictionCount());
+        assertEquals(1, manager.getCapacityManager().getRejectionCount());
+    }
+
+    @Test
+    public void testExpiredEntriesAreReclaimedFirst() throws InterruptedException {
+        InMemoryProcessStatusManager manager = boundedManager(2, CapacityPolicy.EVICT_LRU);
+        manager.startProcess("short-lived", 1);
+        manager.startProcess("long-lived", 0);
+        manager.isProcessRunning("long-lived");
+        Thread.sleep(5);
+
+        manager.startProcess("new", 0);
+        assertTrue(manager.isProcessRunning("long-lived"));
+        assertTrue(manager.isProcessRunning("new"));
+        assertEquals(0, manager.getCapacityManager().getEvictionCount());
+    }
+
+    @Test
+    public void testTinyLfuRejectsColdCandidate() {
+        InMemoryProcessStatusManager manager = boundedManager(2, CapacityPolicy.EVICT_TINY_LFU);
+        manager.startProcess("hot-1", 0);
+        manager.startProcess("hot-2", 0);
+        for (int i = 0; i < 5; i++) {
+            manager.getProcessState("hot-1");
+            manager.getProcessState("hot-2");
+        }
+
+        try {
+            manager.startProcess("cold", 0);
+            fail("Expected CapacityExceededException");
+        } catch (CapacityExceededException e) {
+            // expected
+        }
+        assertTrue(manager.isProcessRunning("hot-1"));
+        assertTrue(manager.isProcessRunning("hot-2"));
+    }
+
+    @Test
+    public void testByteBound() {
+        InMemoryStoreConfig config = new InMemoryStoreConfig();
+        config.setActiveExpiryEnabled(false);
+        config.setMaxEstimatedBytes(3 * CapacityManager.estimateSize("order-1"));
+        InMemoryProcessStatusManager manager = new InMemoryProcessStatusManager(config);
+
+        manager.startProcess("order-1", 0);
+        manager.startProcess("order-2", 0);
+        manager.startProcess("order-3", 0);
+        assertEquals(3 * CapacityManager.estimateSize("order-1"), manager.getCapacityManager().getEstimatedBytes());
+
+        try {
+            manager.startProcess("order-4", 0);
+            fail("Expected CapacityExceededException");
+        } catch (CapacityExceededException e) {
+            // expected
+        }
+
+        manager.stopProcess("order-1");
+        assertEquals(2 * CapacityManager.estimateSize("order-1"), manager.getCapacityManager().getEstimatedBytes());
+    }
+
+    @Test
+    public void testMediatorReportsRejected() {
+        InMemoryProcessStatusManager manager = boundedManager(1, CapacityPolicy.REJECT);
+        manager.startProcess("taken", 0);
+
+        MessageContext messageContext = MessageContextStub.create("START_PROCESS", "refused");
+        StateTrackerMediator mediator = new StateTrackerMediator(manager);
+        assertTrue(mediator.mediate(messageContext));
+        assertEquals("REJECTED", messageContext.getProperty("STATE_TRACKER_RESULT"));
+        assertNotNull(messageContext.getProperty("STATE_TRACKER_ERROR"));
+    }
+}
@@ -0,0 +1,159 @@
+package com.ycr.wso2.mediator.statetracker;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Tests for the primitive-specialized compact store
+ */
+public class CompactProcessStatusManagerTest {
+
+    private static CompactStoreConfig smallConfig() {
+        CompactStoreConfig config = new CompactStoreConfig();
+        config.setSegments(4);
+        config.setInitialCapacity(32);
+        config.setPurgeIntervalMillis(0);
+        return config;
+    }
+
+    @Test
+    public void testEncodingIsInjective() {
+        Set<Long> keys = new HashSet<>();
+        String[] ids = {"0", "1", "01", "001", "10", "a", "aa", "order-12345", "order-1234", "order-12346",
+                "999999999999999999", "------------", "zzzzzzzzzzzz", "12345678901234567"};
+        for (String id : ids) {
+            long key = CompactProcessId.encode(id);
+            assertTrue(id, key != CompactProcessId.NOT_ENCODABLE);
+            assertTrue(id, key != Long.MIN_VALUE);
+            assertTrue("Duplicate key for " + id, keys.add(key));
+        }
+        assertEquals(CompactProcessId.NOT_ENCODABLE, CompactProcessId.encode("Order-12345"));
+        assertEquals(CompactProcessId.NOT_ENCODABLE, CompactProcessId.encode("order-1234567"));
+        assertEquals(CompactProcessId.NOT_ENCODABLE, CompactProcessId.encode("1234567890123456789"));
+    }
+
+    @Test
+    public void testIdsAreRoutedToTheSmallestTier() {
+        CompactProcessStatusManager manager = new CompactProcessStatusManager(smallConfig());
+        manager.startProcess("order-12345", 60000);
+        manager.startProcess("4711", 60000, true);
+        manager.startProcess("Order-With-Upper-Case", 60000);
+        manager.startProcess("an-identifier-that-is-longer-than-the-byte-key-limit-of-48", 60000);
+        manager.startProcess("owned-1", 60000, false, "owner-1");
+
+        assertEquals(2, manager.getLongKeyCount());
+        assertEquals(1, manager.getByteKeyCount());
+        assertEquals(2, manager.getGenericCount());
+
+        assertTrue(manager.isProcessRunning("order-12345"));
+        assertTrue(manager.getProcessState("4711").isPinned());
+        assertTrue(manager.isProcessRunning("Order-With-Upper-Case"));
+        assertTrue(manager.isProcessRunning("an-identifier-that-is-longer-than-the-byte-key-limit-of-48"));
+        assertEquals("owner-1", manager.getProcessState("owned-1").getOwnerToken());
+        assertFalse(manager.isProcessRunning("order-12346"));
+
+        // Restarting without a token moves the process out of the generic map
+        manager.startProcess("owned-1", 60000);
+        assertEquals(1, manager.getGenericCount());
+        assertNull(manager.getProcessState("owned-1").getOwnerToken());
+
+        assertTrue(manager.stopProcess("order-12345"));
+        assertTrue(manager.stopProcess("Order-With-Upper-Case"));
+        assertFalse(manager.isProcessRunning("order-12345"));
+        assertFalse(manager.stopProcess("order-12345"));
+        manager.shutdown();
+    }
+
+    @Test
+    public void testGrowthChurnAndExpiry() throws InterruptedException {
+        CompactProcessStatusManager manager = new CompactProcessStatusManager(smallConfig());
+        for (int i = 0; i < 10000; i++) {
+            manager.startProcess(String.valueOf(i), 60000);
+            manager.startProcess("X-" + i, 60000);
+        }
+        for (int i = 0; i < 10000; i++) {
+            assertTrue(manager.isProcessRunning(String.valueOf(i)));
+            assertTrue(manager.isProcessRunning("X-" + i));
+        }
+        for (int i = 0; i < 10000; i += 2) {
+            manager.stopProcess(String.valueOf(i));
+        }
+        assertEquals(15000, manager.size());
+
+        manager.startProcess("short-lived", 50);
+        Thread.sleep(100);
+        ProcessStatusView view = new ProcessStatusView();
+        assertFalse(manager.queryProcess("short-lived", view));
+        assertEquals(1, manager.purgeExpired());
+        assertTrue(manager.queryProcess("1", view));
+        manager.shutdown();
+    }
+
+    @Test
+    public void testConcurrentWritersAndReaders() throws InterruptedException {
+        CompactProcessStatusManager manager = new CompactProcessStatusManager(smallConfig());
+        Thread[] threads = new Thread[4];
+        boolean[] failed = new boolean[threads.length];
+        for (int t = 0; t < threads.length; t++) {
+            int thread = t;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 20000; i++) {
+                    String processId = "t" + thread + "-" + i;
+                    manager.startProcess(processId, 60000);
+                    if (!manager.isProcessRunning(processId)) {
+                        failed[thread] = true;
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (boolean f : failed) {
+            assertFalse(f);
+        }
+        assertEquals(80000, manager.getLongKeyCount());
+        manager.shutdown();
+    }
+
+    @Test
+    public void testMemoryComparedToInMemory() {
+        int processes = 200000;
+        CompactStoreConfig config = new CompactStoreConfig();
+        config.setPurgeIntervalMillis(0);
+        InMemoryStoreConfig inMemoryConfig = new InMemoryStoreConfig();
+        inMemoryConfig.setActiveExpiryEnabled(false);
+        // Bounded only so that the store keeps its size estimate
+        inMemoryConfig.setMaxEstimatedBytes(Long.MAX_VALUE);
+
+        InMemoryProcessStatusManager inMemory = new InMemoryProcessStatusManager(inMemoryConfig);
+        fill(inMemory, processes);
+        long inMemoryBytes = inMemory.getCapacityManager().getEstimatedBytes();
+        assertEquals(processes, inMemory.size());
+        inMemory.shutdown();
+
+        CompactProcessStatusManager compact = new CompactProcessStatusManager(config);
+        fill(compact, processes);
+        long compactBytes = compact.getEstimatedBytes();
+        assertEquals(processes, compact.getLongKeyCount());
+        // Slot arrays never use less than the live slots' fields
+        assertTrue(compactBytes >= processes * (3L * Long.BYTES + 1));
+
+        // An owner token moves the process to the generic store
+        compact.startProcess("order-owned", 60000, false, "owner-1");
+        assertEquals(compactBytes + CapacityManager.ENTRY_OVERHEAD_BYTES, compact.getEstimatedBytes());
+        compact.shutdown();
+
+        assertTrue("Compact store estimated at " + compactBytes + " bytes, in-memory at " + inMemoryBytes,
+                compactBytes * 2 < inMemoryBytes);
+    }
+
+    private static void fill(ProcessStatusManager target, int processes) {
+        for (int i = 0; i < processes; i++) {
+            target.startProcess("order-" + i, 60000);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.ycr.wso2.mediator.statetracker;
+
+import org.apache.synapse.MessageContext;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests for the atomic conditional operations of ProcessStatusManager
+ */
+public class ConditionalOperationsTest {
+
+    private static InMemoryProcessStatusManager newManager() {
+        InMemoryStoreConfig config = new InMemoryStoreConfig();
+        config.setActiveExpiryEnabled(false);
+        return new InMemoryProcessStatusManager(config);
+    }
+
+    @Test
+    public void testStartIfAbsentReturnsWinner() {
+        InMemoryProcessStatusManager manager = newManager();
+
+        ConditionalOperationResult first = manager.startProcessIfAbsent("cond-1", 0, false, "owner-a");
+        assertTrue(first.isApplied());
+        assertEquals("owner-a", first.getEntry().getOwnerToken());
+
+        ConditionalOperationResult second = manager.startProcessIfAbsent("cond-1", 0, false, "owner-b");
+        assertFalse(second.isApplied());
+        assertSame(first.getEntry(), second.getEntry());
+    }
+
+    @Test
+    public void testStartIfAbsentReplacesExpiredEntry() throws InterruptedException {
+        InMemoryProcessStatusManager manager = newManager();
+        manager.startProcess("cond-2", 1, false, "owner-a");
+        Thread.sleep(5);
+
+        ConditionalOperationResult result = manager.startProcessIfAbsent("cond-2", 0, false, "owner-b");
+        assertTrue(result.isApplied());
+        assertEquals("owner-b", manager.getProcessState("cond-2").getOwnerToken());
+    }
+
+    @Test
+    public void testOnlyOneConcurrentStartWins() throws InterruptedException {
+        InMemoryProcessStatusManager manager = newManager();
+        int threadCount = 16;
+        CountDownLatch startLatch = new CountDownLatch(1);
+        CountDownLatch completeLatch = new CountDownLatch(threadCount);
+        AtomicInteger winners = new AtomicInteger();
+
+        for (int i = 0; i < threadCount; i++) {
+            final String token = "owner-" + i;
+            new Thread(() -> {
+                try {
+                    startLatch.await();
+                    if (manager.startProcessIfAbsent("cond-race", 0, false, token).isApplied()) {
+                        winners.incrementAndGet();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    completeLatch.countDown();
+                }
+            }).start();
+        }
+
+        startLatch.countDown();
+        assertTrue(completeLatch.await(10, TimeUnit.SECONDS));
+        assertEquals(1, winners.get());
+    }
+
+    @Test
+    public void testStopIfOwner() {
+        InMemoryProcessStatusManager manager = newManager();
+        manager.startProcess("cond-3", 0, false, "owner-a");
+
+        ConditionalOperationResult wrongOwner = manager.stopProcessIfOwner("cond-3", "owner-b");
+        assertFalse(wrongOwner.isApplied());
+        assertEquals("owner-a", wrongOwner.getEntry().getOwnerToken());
+        assertTrue(manager.isProcessRunning("cond-3"));
+
+        ConditionalOperationResult noToken = manager.stopProcessIfOwner("cond-3", null);
+        assertFalse(noToken.isApplied());
+
+        ConditionalOperationResult owner = manager.stopProcessIfOwner("cond-3", "owner-a");
+        assertTrue(owner.isApplied());
+        assertFalse(manager.isProcessRunning("cond-3"));
+
+        ConditionalOperationResult missing = manager.stopProcessIfOwner("cond-3", "owner-a");
+        assertFalse(missing.isApplied());
+        assertNull(missing.getEntry());
+    }
+
+    @Test
+    public void testReplaceIfExpired() throws InterruptedException {
+        InMemoryProcessStatusManager manager = newManager();
+
+        assertNull(manager.replaceProcessIfExpired("cond-4", 0, false, "owner-b").getEntry());
+        assertFalse(manager.isProcessRunning("cond-4"));
+
+        manager.startProcess("cond-4", 60000, false, "owner-a");
+        ConditionalOperationResult running = manager.replaceProcessIfExpired("cond-4", 0, false, "owner-b");
+        assertFalse(running.isApplied());
+        assertEquals("owner-a", running.getEntry().getOwnerToken());
+
+        manager.startProcess("cond-4", 1, false, "owner-a");
+        Thread.sleep(5);
+        ConditionalOperationResult replaced = manager.replaceProcessIfExpired("cond-4", 0, false, "owner-b");
+        assertTrue(replaced.isApplied());
+        assertEquals("owner-b", manager.getProcessState("cond-4").getOwnerToken());
+    }
+
+    @Test
+    public void testMediatorConditionalOperations() {
+        InMemoryProcessStatusManager manager = newManager();
+        StateTrackerMediator mediator = new StateTrackerMediator(manager);
+
+        MessageContext first = MessageContextStub.create("START_IF_NOT_RUNNING", "cond-5");
+        first.setProperty(Contants.PROCESS_OWNER_TOKEN_PROPERTY, "owner-a");
+        assertTrue(mediator.mediate(first));
+        assertEquals("STARTED", first.getProperty("STATE_TRACKER_RESULT"));
+        assertEquals(Boolean.TRUE, first.getProperty("PROCESS_STARTED"));
+
+        MessageContext second = MessageContextStub.create("start_if_not_running", "cond-5");
+        second.setProperty(Contants.PROCESS_OWNER_TOKEN_PROPERTY, "owner-b");
+        assertTrue(mediator.mediate(second));
+        assertEquals("RUNNING", second.getProperty("STATE_TRACKER_RESULT"));
+        assertEquals("owner-a", second.getProperty("PROCESS_OWNER"));
+        assertEquals(first.getProperty("PROCESS_START_TIMESTAMP"), second.getProperty("PROCESS_START_TIMESTAMP"));
+
+        MessageContext stopWrongOwner = MessageContextStub.create("STOP_IF_OWNER", "cond-5");
+        stopWrongOwner.setProperty(Contants.PROCESS_OWNER_TOKEN_PROPERTY, "owner-b");
+        assertTrue(mediator.mediate(stopWrongOwner));
+        assertEquals("NOT_OWNER", stopWrongOwner.getProperty("STATE_TRACKER_RESULT"));
+        assertEquals("owner-b", stopWrongOwner.getProperty(Contants.PROCESS_OWNER_TOKEN_PROPERTY));
+
+        MessageContext stop = MessageContextStub.create("STOP_IF_OWNER", "cond-5");
+        stop.setProperty(Contants.PROCESS_OWNER_TOKEN_PROPERTY, "owner-a");
+        assertTrue(mediator.mediate(stop));
+        assertEquals("STOPPED", stop.getProperty("STATE_TRACKER_RESULT"));
+
+        MessageContext replace = MessageContextStub.create("REPLACE_IF_EXPIRED", "cond-5");
+        assertTrue(mediator.mediate(replace));
+        assertEquals("NOT_FOUND", replace.getProperty("STATE_TRACKER_RESULT"));
+    }
+}
@@ -0,0 +1,307 @@
+package com.ycr.wso2.mediator.statetracker;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Tests for DatabaseProcessStatusManager against an embedded H2 database
+ */
+public class DatabaseProcessStatusManagerTest {
+
+    private static final AtomicInteger databaseCounter = new AtomicInteger();
+
+    private JdbcDataSource dataSource;
+    private DatabaseProcessStatusManager manager;
+
+    @Before
+    public void setUp() throws Exception {
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:statetracker" + databaseCounter.incrementAndGet() + ";DB_CLOSE_DELAY=-1");
+
+        String script;
+        try (InputStream in = getClass().getResourceAsStream("/dbscripts/h2.sql")) {
+            script = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            for (String sql : script.split(";")) {
+                if (!sql.trim().isEmpty()) {
+                    statement.execute(sql);
+                }
+            }
+        }
+
+        manager = new DatabaseProcessStatusManager(newConfig());
+    }
+
+    @After
+    public void tearDown() {
+        if (manager != null) {
+            manager.shutdown();
+        }
+    }
+
+    private DatabaseStoreConfig newConfig() {
+        DatabaseStoreConfig config = new DatabaseStoreConfig();
+        config.setDataSource(dataSource);
+        config.setPurgeIntervalMillis(0);
+        return config;
+    }
+
+    @Test
+    public void testDialectDetected() {
+        assertEquals(DatabaseDialect.H2, manager.getDialect());
+    }
+
+    @Test
+    public void testStartStopVisibleToOtherNode() {
+        DatabaseStoreConfig uncached = newConfig();
+        uncached.setReadCacheTtlMillis(0);
+        DatabaseProcessStatusManager otherNode = new DatabaseProcessStatusManager(uncached);
+        try {
+            manager.startProcess("db-1", 60000, true, "owner-a");
+            assertTrue(manager.isProcessRunning("db-1"));
+
+            ProcessStateEntry entry = otherNode.getProcessState("db-1");
+            assertNotNull(entry);
+            assertEquals(60000, entry.getExpiryTimeMillis());
+            assertTrue(entry.isPinned());
+            assertEquals("owner-a", entry.getOwnerToken());
+
+            // Restart is an upsert, not a duplicate key
+            manager.startProcess("db-1", 0);
+            assertEquals(0, otherNode.getProcessState("db-1").getExpiryTimeMillis());
+
+            assertTrue(manager.stopProcess("db-1"));
+            assertFalse(otherNode.isProcessRunning("db-1"));
+            assertFalse(manager.stopProcess("db-1"));
+        } finally {
+            otherNode.shutdown();
+        }
+    }
+
+    @Test
+    public void testConcurrentWritesAreGroupCommitted() throws Exception {
+        DatabaseStoreConfig config = newConfig();
+        config.setMaxBatchDelayMillis(20);
+        manager.shutdown();
+        manager = new DatabaseProcessStatusManager(config);
+
+        int threadCount = 20;
+        int perThread = 50;
+        CountDownLatch startLatch = new CountDownLatch(1);
+        CountDownLatch completeLatch = new CountDownLatch(threadCount);
+        AtomicInteger errors = new AtomicInteger();
+
+        for (int t = 0; t < threadCount; t++) {
+            final int threadNum = t;
+            new Thread(() -> {
+                try {
+                    startLatch.await();
+                    for (int i = 0; i < perThread; i++) {
+                        manager.startProcess("group-" + threadNum + "-" + i, 0);
+                    }
+                } catch (Exception e) {
+                    errors.incrementAndGet();
+                } finally {
+                    completeLatch.countDown();
+                }
+            }).start();
+        }
+
+        startLatch.countDown();
+        assertTrue(completeLatch.await(60, TimeUnit.SECONDS));
+        assertEquals(0, errors.get());
+        assertEquals(threadCount * perThread, manager.getCommittedWriteCount());
+        assertTrue("Writes were not batched: " + manager.getCommittedBatchCount() + " batches",
+                manager.getCommittedBatchCount() < threadCount * perThread);
+        assertEquals(threadCount * perThread, countRows());
+    }
+
+    @Test
+    public void testPurgeDeletesOnlyExpiredRows() throws Exception {
+        manager.startProcess("expiring", 1);
+        manager.startProcess("forever", 0);
+        Thread.sleep(5);
+
+        assertFalse(manager.isProcessRunning("expiring"));
+        assertEquals(1, manager.purgeExpired());
+        assertEquals(1, countRows());
+        assertTrue(manager.isProcessRunning("forever"));
+    }
+
+    @Test
+    public void testAsynchronousWritesReadOwnWrites() {
+        DatabaseStoreConfig config = newConfig();
+        config.setSynchronousWrites(false);
+        config.setMaxBatchDelayMillis(50);
+        manager.shutdown();
+        manager = new DatabaseProcessStatusManager(config);
+
+        manager.startProcess("async-1", 0);
+        assertTrue(manager.isProcessRunning("async-1"));
+        manager.stopProcess("async-1");
+        assertFalse(manager.isProcessRunning("async-1"));
+    }
+
+    @Test
+    public void testBulkOperationsUseOneRoundTrip() throws Exception {
+        DatabaseStoreConfig config = newConfig();
+        config.setMaxBatchDelayMillis(50);
+        manager.shutdown();
+        manager = new DatabaseProcessStatusManager(config);
+
+        List<String> processIds = Arrays.asList("bulk-1", "bulk-2", "bulk-3");
+        boolean[] started = manager.startProcesses(processIds, 60000, false, null);
+        assertTrue(started[0] && started[1] && started[2]);
+        assertEquals(1, manager.getCommittedBatchCount());
+        assertEquals(3, countRows());
+
+        DatabaseStoreConfig uncached = newConfig();
+        uncached.setReadCacheTtlMillis(0);
+        DatabaseProcessStatusManager otherNode = new DatabaseProcessStatusManager(uncached);
+        try {
+            ProcessStateEntry[] entries = otherNode.getProcessStates(Arrays.asList("bulk-1", "bulk-4", "bulk-3"));
+            assertEquals(1, otherNode.getDatabaseReadCount());
+            assertEquals("bulk-1", entries[0].getProjectId());
+            assertNull(entries[1]);
+            assertEquals(60000, entries[2].getExpiryTimeMillis());
+        } finally {
+            otherNode.shutdown();
+        }
+
+        boolean[] stopped = manager.stopProcesses(Arrays.asList("bulk-2", "bulk-4"));
+        assertTrue(stopped[0]);
+        assertFalse(stopped[1]);
+        assertEquals(2, countRows());
+    }
+
+    @Test
+    public void testConditionalOperationsAreAtomicAcrossNodes() throws Exception {
+        // Both nodes keep their read caches, which must not decide the outcome
+        DatabaseProcessStatusManager otherNode = new DatabaseProcessStatusManager(newConfig());
+        DatabaseProcessStatusManager[] nodes = { manager, otherNode };
+        try {
+            int threadCount = 8;
+            int processCount = 50;
+            AtomicIntegerArray winners = new AtomicIntegerArray(processCount);
+            CountDownLatch startLatch = new CountDownLatch(1);
+            CountDownLatch completeLatch = new CountDownLatch(threadCount);
+            AtomicInteger errors = new AtomicInteger();
+            for (int t = 0; t < threadCount; t++) {
+                DatabaseProcessStatusManager node = nodes[t % 2];
+                new Thread(() -> {
+                    try {
+                        startLatch.await();
+                        for (int i = 0; i < processCount; i++) {
+                            if (node.startProcessIfAbsent("race-" + i, 0, false, null).isApplied()) {
+                                winners.incrementAndGet(i);
+                            }
+                        }
+                    } catch (Exception e) {
+                        errors.incrementAndGet();
+                    } finally {
+                        completeLatch.countDown();
+                    }
+                }).start();
+            }
+            startLatch.countDown();
+            assertTrue(completeLatch.await(60, TimeUnit.SECONDS));
+            assertEquals(0, errors.get());
+            for (int i = 0; i < processCount; i++) {
+                assertEquals("Winners of race-" + i, 1, winners.get(i));
+            }
+
+            manager.startProcess("owned-1", 0, false, "owner-a");
+            assertTrue(otherNode.isProcessRunning("owned-1"));
+            assertTrue(manager.stopProcessIfOwner("owned-1", "owner-a").isApplied());
+            // The other node still has the row cached as running
+            assertFalse(otherNode.stopProcessIfOwner("owned-1", "owner-a").isApplied());
+            assertTrue(otherNode.startProcessIfAbsent("owned-1", 0, false, "owner-b").isApplied());
+            ConditionalOperationResult notOwner = manager.stopProcessIfOwner("owned-1", "owner-a");
+            assertFalse(notOwner.isApplied());
+            assertEquals("owner-b", notOwner.getEntry().getOwnerToken());
+        } finally {
+            otherNode.shutdown();
+        }
+    }
+
+    @Test
+    public void testExpiredRowIsTakenOverByOneNode() {
+        ManualClock clock = new ManualClock(1000000);
+        ProcessClock previous = ProcessClocks.setClock(clock);
+        DatabaseProcessStatusManager otherNode = new DatabaseProcessStatusManager(newConfig());
+        try {
+            manager.startProcess("lease-1", 1000, false, "owner-a");
+            assertTrue(otherNode.isProcessRunning("lease-1"));
+            assertFalse(otherNode.replaceProcessIfExpired("lease-1", 0, false, "owner-b").isApplied());
+            clock.advance(2, TimeUnit.SECONDS);
+
+            assertTrue(otherNode.replaceProcessIfExpired("lease-1", 0, false, "owner-b").isApplied());
+            ConditionalOperationResult replaced = manager.replaceProcessIfExpired("lease-1", 0, false, "owner-c");
+            assertFalse(replaced.isApplied());
+            assertEquals("owner-b", replaced.getEntry().getOwnerToken());
+            assertFalse(manager.startProcessIfAbsent("lease-1", 0, false, "owner-c").isApplied());
+            assertNull(manager.replaceProcessIfExpired("never-started", 0, false, null).getEntry());
+
+            manager.startProcess("lease-2", 1000, false, null);
+            clock.advance(2, TimeUnit.SECONDS);
+            assertTrue(otherNode.startProcessIfAbsent("lease-2", 0, false, "owner-b").isApplied());
+            assertEquals("owner-b", manager.getProcessState("lease-2").getOwnerToken());
+        } finally {
+            otherNode.shutdown();
+            ProcessClocks.setClock(previous);
+        }
+    }
+
+    @Test
+    public void testRenewNeverRestoresAStoppedProcess() throws Exception {
+        ManualClock clock = new ManualClock(1000000);
+        ProcessClock previous = ProcessClocks.setClock(clock);
+        DatabaseProcessStatusManager otherNode = new DatabaseProcessStatusManager(newConfig());
+        try {
+            manager.startProcess("renew-1", 1000, false, null);
+            clock.advance(500, TimeUnit.MILLISECONDS);
+            ProcessStateEntry renewed = otherNode.renewProcess("renew-1", 1000);
+            assertNotNull(renewed);
+            clock.advance(800, TimeUnit.MILLISECONDS);
+            assertTrue("Renewal not seen by the starting node", manager.isProcessRunning("renew-1"));
+
+            // Stopped by one node while the other still has it cached as running
+            assertTrue(otherNode.isProcessRunning("renew-1"));
+            assertTrue(manager.stopProcess("renew-1"));
+            assertNull(otherNode.renewProcess("renew-1", 1000));
+            assertEquals(0, countRows());
+
+            manager.startProcess("renew-2", 1000, false, null);
+            clock.advance(2, TimeUnit.SECONDS);
+            assertNull(otherNode.renewProcess("renew-2", 1000));
+            assertFalse(manager.isProcessRunning("renew-2"));
+        } finally {
+            otherNode.shutdown();
+            ProcessClocks.setClock(previous);
+        }
+    }
+
+    private int countRows() throws Exception {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM STATE_TRACKER_PROCESS")) {
+            resultSet.next();
+            return resultSet.getInt(1);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.ycr.wso2.mediator.statetracker;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for the active expiry engine
+ */
+public class ExpiryTimingWheelTest {
+
+    @Test
+    public void testEntryExpiresAfterDeadline() {
+        List<ProcessStateEntry> expired = new ArrayList<>();
+        ExpiryTimingWheel wheel = new ExpiryTimingWheel(10, 16, 1000, expired::add);
+        long now = System.currentTimeMillis();
+
+        ProcessStateEntry entry = new ProcessStateEntry("wheel-1", now, 500);
+        wheel.schedule(entry);
+        wheel.shutdown();
+
+        assertEquals(0, wheel.sweep(now + 400));
+        assertTrue(expired.isEmpty());
+        assertEquals(1, wheel.sweep(now + 600));
+        assertSame(entry, expired.get(0));
+        assertEquals(1, wheel.getExpiredCount());
+    }
+
+    @Test
+    public void testLongExpiryCascadesThroughLevels() {
+        List<ProcessStateEntry> expired = new ArrayList<>();
+        // Levels cover 16, 256 and 4096 ticks, the entry is due beyond all of them
+        ExpiryTimingWheel wheel = new ExpiryTimingWheel(10, 16, 1000, expired::add);
+        long now = System.currentTimeMillis();
+        long expiry = TimeUnit.MINUTES.toMillis(10);
+
+        ProcessStateEntry entry = new ProcessStateEntry("wheel-2", now, expiry);
+        wheel.schedule(entry);
+        wheel.shutdown();
+
+        for (long t = now; t < now + expiry; t += 5000) {
+            wheel.sweep(t);
+        }
+        assertTrue("Expired before deadline", expired.isEmpty());
+
+        wheel.sweep(now + expiry + 50);
+        assertEquals(1, expired.size());
+    }
+
+    @Test
+    public void testBatchSizeLimitsWorkPerSweep() {
+        List<ProcessStateEntry> expired = new ArrayList<>();
+        ExpiryTimingWheel wheel = new ExpiryTimingWheel(10, 16, 10, expired::add);
+        long now = System.currentTimeMillis();
+
+        for (int i = 0; i < 35; i++) {
+            wheel.schedule(new ProcessStateEntry("batch-" + i, now, 100));
+        }
+        wheel.shutdown();
+
+        long later = now + 500;
+        assertEquals(10, wheel.sweep(later));
+        assertEquals(10, wheel.sweep(later));
+        assertEquals(10, wheel.sweep(later));
+        assertEquals(5, wheel.sweep(later));
+        assertEquals(0, wheel.sweep(later));
+        assertEquals(35, expired.size());
+    }
+
+    @Test
+    public void testEntriesWithoutExpiryAreIgnored() {
+        List<ProcessStateEntry> expired = new ArrayList<>();
+        ExpiryTimingWheel wheel = new ExpiryTimingWheel(10, 16, 10, expired::add);
+        wheel.schedule(new ProcessStateEntry("no-expiry", System.currentTimeMillis(), 0));
+        wheel.shutdown();
+
+        assertEquals(0, wheel.getScheduledCount());
+        assertEquals(0, wheel.sweep(System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1)));
+    }
+
+    @Test
+    public void testReplacedEntryIsNotRemoved() {
+        InMemoryStoreConfig config = new InMemoryStoreConfig();
+        config.setExpiryTickMillis(10);
+        InMemoryProcessStatusManager manager = new InMemoryProcessStatusManager(config);
+        try {
+            manager.startProcess("replaced-1", 50);
+            manager.startProcess("replaced-1", 0);
+
+            manager.getExpiryWheel().sweep(System.currentTimeMillis() + 1000);
+
+            assertTrue(manager.isProcessRunning("replaced-1"));
+            assertEquals(0, manager.getExpiryWheel().getExpiredCount());
+        } finally {
+            manager.shutdown();
+        }
+    }
+
+    @Test
+    public void testSweeperRemovesUnqueriedEntries() throws InterruptedException {
+        InMemoryStoreConfig config = new InMemoryStoreConfig();
+        config.setExpiryTickMillis(10);
+        InMemoryProcessStatusManager manager = new InMemoryProcessStatusManager(config);
+        try {
+            for (int i = 0; i < 1000; i++) {
+                manager.startProcess("never-queried-" + i, 50);
+            }
+            manager.startProcess("long-lived", 0);
+
+            long deadline = System.currentTimeMillis() + 5000;
+            while (manager.size() > 1 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+
+            assertEquals(1, manager.size());
+            assertTrue(manager.isProcessRunning("long-lived"));
+            assertEquals(1000, manager.getExpiryWheel().getExpiredCount());
+        } finally {
+            manager.shutdown();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidTick() {
+        new ExpiryTimingWheel(0, 16, 10, entry -> true);
+    }
+}
@@ -0,0 +1,77 @@
+package com.ycr.wso2.mediator.statetracker;
+
+import org.apache.synapse.MessageContext;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests for configuring the mediator through class mediator properties
+ */
+public class MediatorConfigurationTest {
+
+    private static InMemoryProcessStatusManager newManager() {
+        InMemoryStoreConfig config = new InMemoryStoreConfig();
+        config.setActiveExpiryEnabled(false);
+        return new InMemoryProcessStatusManager(config);
+    }
+
+    @Test
+    public void testConfiguredOperationAndExpiry() {
+        InMemoryProcessStatusManager manager = newManager();
+        StateTrackerMediator mediator = new StateTrackerMediator(manager);
+        mediator.setOperation(" start_process ");
+        mediator.setExpiryTime("60");
+        assertEquals("START_PROCESS", mediator.getOperation());
+
+        assertTrue(mediator.mediate(MessageContextStub.create(null, "config-1")));
+        assertEquals(60000, manager.getProcessState("config-1").getExpiryTimeMillis());
+
+        // Message properties take precedence
+        MessageContext override = MessageContextStub.create(null, "config-2");
+        override.setProperty(Contants.STATE_EXPIRY_TIME_PROPERTY, "0");
+        assertTrue(mediator.mediate(override));
+        assertEquals(0, manager.getProcessState("config-2").getExpiryTimeMillis());
+
+        MessageContext stop = MessageContextStub.create("STOP_PROCESS", "config-1");
+        assertTrue(mediator.mediate(stop));
+        assertEquals("STOPPED", stop.getProperty("STATE_TRACKER_RESULT"));
+        assertFalse(manager.isProcessRunning("config-1"));
+    }
+
+    @Test
+    public void testOutputPropertiesAreFiltered() {
+        InMemoryProcessStatusManager manager = newManager();
+        manager.startProcess("output-1", 0);
+        StateTrackerMediator mediator = new StateTrackerMediator(manager);
+        mediator.setOperation("IS_PROCESS_RUNNING");
+        mediator.setOutputProperties("PROCESS_IS_RUNNING, PROCESS_ELAPSED_TIME_MS");
+
+        MessageContext messageContext = MessageContextStub.create(null, "output-1");
+        assertTrue(mediator.mediate(messageContext));
+        assertEquals("RUNNING", messageContext.getProperty("STATE_TRACKER_RESULT"));
+        assertEquals(true, messageContext.getProperty("PROCESS_IS_RUNNING"));
+        assertNotNull(messageContext.getProperty("PROCESS_ELAPSED_TIME_MS"));
+        assertNull(messageContext.getProperty("PROCESS_START_TIMESTAMP"));
+        assertNull(messageContext.getProperty("PROCESS_EXPIRY_TIME_MS"));
+    }
+
+    @Test
+    public void testUnknownOperations() {
+        StateTrackerMediator mediator = new StateTrackerMediator(newManager());
+        try {
+            mediator.setOperation("RESTART_PROCESS");
+            fail("Unknown operation accepted");
+        } catch (IllegalArgumentException expected) {
+            assertNull(mediator.getOperation());
+        }
+
+        MessageContext messageContext = MessageContextStub.create("RESTART_PROCESS", "unknown-1");
+        assertFalse(mediator.mediate(messageContext));
+        assertEquals("ERROR", messageContext.getProperty("STATE_TRACKER_RESULT"));
+        assertEquals("Unsupported operation: RESTART_PROCESS", messageContext.getProperty("STATE_TRACKER_ERROR"));
+
+        MessageContext missing = MessageContextStub.create(null, "unknown-1");
+        assertFalse(mediator.mediate(missing));
+        assertEquals("Operation not specified", missing.getProperty("STATE_TRACKER_ERROR"));
+    }
+}
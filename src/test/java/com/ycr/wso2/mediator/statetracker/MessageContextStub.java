@@ -0,0 +1,69 @@
+package com.ycr.wso2.mediator.statetracker;
+
+import org.apache.axiom.soap.SOAPEnvelope;
+import org.apache.synapse.Mediator;
+import org.apache.synapse.MessageContext;
+import org.apache.synapse.core.SynapseEnvironment;
+
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Minimal MessageContext for tests, backed by a property map
+ * Only getProperty/setProperty/getPropertyKeySet/getEnvelope/getEnvironment/getSequence are supported
+ */
+final class MessageContextStub {
+
+    private MessageContextStub() {
+    }
+
+    static MessageContext create() {
+        return create((SOAPEnvelope) null);
+    }
+
+    static MessageContext create(SOAPEnvelope envelope) {
+        return create(envelope, null, Collections.emptyMap());
+    }
+
+    static MessageContext create(SOAPEnvelope envelope, SynapseEnvironment environment,
+                                 Map<String, ? extends Mediator> sequences) {
+        Map<String, Object> properties = new HashMap<>();
+        return (MessageContext) Proxy.newProxyInstance(
+                MessageContext.class.getClassLoader(),
+                new Class<?>[] { MessageContext.class },
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getProperty":
+                            return properties.get((String) args[0]);
+                        case "setProperty":
+                            properties.put((String) args[0], args[1]);
+                            return null;
+                        case "getPropertyKeySet":
+                            return properties.keySet();
+                        case "getEnvelope":
+                            return envelope;
+                        case "getEnvironment":
+                            return environment;
+                        case "getSequence":
+                            return sequences.get((String) args[0]);
+                        case "toString":
+                            return "MessageContextStub" + properties;
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    static MessageContext create(String operation, String processId) {
+        MessageContext messageContext = create();
+        messageContext.setProperty(Contants.STATE_TRACKER_OPERATION_PROPERTY, operation);
+        messageContext.setProperty(Contants.PROCESS_IDENTIFIER_PROPERTY, processId);
+        return messageContext;
+    }
+}
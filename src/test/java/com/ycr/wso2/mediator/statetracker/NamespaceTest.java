@@ -0,0 +1,169 @@
+package com.ycr.wso2.mediator.statetracker;
+
+import org.apache.synapse.MessageContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for namespace stores
+ *
+ * The factory is shared by all tests in the JVM, so every test uses its own namespace names.
+ */
+public class NamespaceTest {
+
+    private ManualClock clock;
+    private ProcessClock previous;
+
+    @Before
+    public void setUp() {
+        clock = new ManualClock(1000000);
+        previous = ProcessClocks.setClock(clock);
+    }
+
+    @After
+    public void tearDown() {
+        ProcessClocks.setClock(previous);
+    }
+
+    private static InMemoryStoreConfig quota(long maxEntries, long defaultExpiryTimeMillis) {
+        InMemoryStoreConfig config = new InMemoryStoreConfig();
+        config.setActiveExpiryEnabled(false);
+        config.setMaxEntries(maxEntries);
+        config.setDefaultExpiryTimeMillis(defaultExpiryTimeMillis);
+        return config;
+    }
+
+    private static MessageContext message(String namespace, String operation, String processId) {
+        MessageContext messageContext = MessageContextStub.create(operation, processId);
+        messageContext.setProperty(Contants.STATE_TRACKER_NAMESPACE_PROPERTY, namespace);
+        return messageContext;
+    }
+
+    @Test
+    public void testNamespacesAreIsolatedWithOwnQuota() {
+        ProcessStatusManagerFactory.setNamespaceConfig("quota-small", quota(2, 0));
+        ProcessStatusManagerFactory.setNamespaceConfig("quota-large", quota(100, 0));
+        StateTrackerMediator mediator = new StateTrackerMediator();
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(mediator.mediate(message("quota-large", "START_PROCESS", "order-" + i)));
+        }
+        assertTrue(mediator.mediate(message("quota-small", "START_PROCESS", "order-0")));
+        assertTrue(mediator.mediate(message("quota-small", "START_PROCESS", "order-1")));
+        MessageContext overQuota = message("quota-small", "START_PROCESS", "order-2");
+        mediator.mediate(overQuota);
+        assertEquals("REJECTED", overQuota.getProperty("STATE_TRACKER_RESULT"));
+
+        MessageContext query = message("quota-small", "IS_PROCESS_RUNNING", "order-2");
+        assertTrue(mediator.mediate(query));
+        assertEquals(false, query.getProperty("PROCESS_IS_RUNNING"));
+        query = message("quota-large", "IS_PROCESS_RUNNING", "order-2");
+        assertTrue(mediator.mediate(query));
+        assertEquals(true, query.getProperty("PROCESS_IS_RUNNING"));
+
+        ProcessNamespace small = ProcessStatusManagerFactory.getNamespace("quota-small");
+        assertEquals(2, small.getTrackedProcessCount());
+        assertEquals(1, small.getRejectedCount());
+        assertEquals(2, small.getMaxEntries());
+        assertEquals(4, small.getOperationCount());
+        assertEquals(3, ProcessStatusManagerFactory.getNamespace("quota-large").getTrackedProcessCount());
+        assertTrue(ProcessStatusManagerFactory.getInitializedManagers().contains(small.getManager()));
+    }
+
+    @Test
+    public void testNamespaceDefaultExpiry() {
+        ProcessStatusManagerFactory.setNamespaceConfig("expiring", quota(0, 5000));
+        StateTrackerMediator mediator = new StateTrackerMediator();
+        mediator.setNamespace("expiring");
+
+        MessageContext start = MessageContextStub.create("START_PROCESS", "short-1");
+        assertTrue(mediator.mediate(start));
+        MessageContext explicit = MessageContextStub.create("START_PROCESS", "long-1");
+        explicit.setProperty(Contants.STATE_EXPIRY_TIME_PROPERTY, "60");
+        assertTrue(mediator.mediate(explicit));
+
+        clock.advance(6, TimeUnit.SECONDS);
+        ProcessStatusManager manager = ProcessStatusManagerFactory.getNamespace("expiring").getManager();
+        assertFalse(manager.isProcessRunning("short-1"));
+        assertTrue(manager.isProcessRunning("long-1"));
+        assertEquals(5, ProcessStatusManagerFactory.getNamespace("expiring").getDefaultExpirySeconds());
+    }
+
+    @Test
+    public void testConcurrentFirstUseCreatesOneStore() throws InterruptedException {
+        int threadCount = 16;
+        Set<ProcessNamespace> seen = ConcurrentHashMap.newKeySet();
+        CountDownLatch ready = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threadCount);
+        for (int t = 0; t < threadCount; t++) {
+            new Thread(() -> {
+                try {
+                    ready.await();
+                    seen.add(ProcessStatusManagerFactory.getNamespace("lazy-tenant"));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                done.countDown();
+            }).start();
+        }
+        ready.countDown();
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(1, seen.size());
+
+        try {
+            ProcessStatusManagerFactory.getNamespace("../etc");
+            fail("Invalid namespace accepted");
+        } catch (IllegalArgumentException expected) {
+            // Namespaces end up in property names and file paths
+        }
+        try {
+            ProcessStatusManagerFactory.setNamespaceConfig("lazy-tenant", quota(1, 0));
+            fail("Config of a created namespace replaced");
+        } catch (IllegalStateException expected) {
+            // Settings only apply before first use
+        }
+    }
+
+    @Test
+    public void testNamespacesShareOneScheduler() throws InterruptedException {
+        int sweepersBefore = countThreads("state-tracker-expiry-sweeper");
+        for (int i = 0; i < 50; i++) {
+            InMemoryStoreConfig config = quota(0, 0);
+            config.setActiveExpiryEnabled(true);
+            config.setExpiryTickMillis(10);
+            ProcessStatusManagerFactory.setNamespaceConfig("shared-" + i, config);
+            ProcessNamespace namespace = ProcessStatusManagerFactory.getNamespace("shared-" + i);
+            assertNull(namespace.getManagerIfCreated());
+            namespace.getManager().startProcess("order-1", 1000);
+        }
+        assertEquals(sweepersBefore, countThreads("state-tracker-expiry-sweeper"));
+        assertTrue(countThreads("state-tracker-namespace-scheduler") <= 2);
+
+        // Swept on the shared scheduler without being read
+        clock.advance(2, TimeUnit.SECONDS);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        for (int i = 0; i < 50; i++) {
+            ProcessNamespace namespace = ProcessStatusManagerFactory.getNamespace("shared-" + i);
+            while (namespace.getExpiredProcessCount() == 0 && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            assertEquals("shared-" + i, 1, namespace.getExpiredProcessCount());
+        }
+    }
+
+    private static int countThreads(String namePrefix) {
+        int count = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().startsWith(namePrefix)) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,130 @@
+package com.ycr.wso2.mediator.statetracker;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests for the near cache decorator
+ */
+public class NearCacheProcessStatusManagerTest {
+
+    private ManualClock clock;
+    private ProcessClock previous;
+    private AtomicInteger remoteReads;
+    private InMemoryProcessStatusManager remote;
+    private NearCacheProcessStatusManager manager;
+
+    @Before
+    public void setUp() {
+        clock = new ManualClock(1000000);
+        previous = ProcessClocks.setClock(clock);
+
+        InMemoryStoreConfig remoteConfig = new InMemoryStoreConfig();
+        remoteConfig.setActiveExpiryEnabled(false);
+        remoteReads = new AtomicInteger();
+        // Stands in for a remote backend, counting the round trips
+        remote = new InMemoryProcessStatusManager(remoteConfig) {
+            @Override
+            public ProcessStateEntry getProcessState(String processId) {
+                remoteReads.incrementAndGet();
+                return super.getProcessState(processId);
+            }
+
+            @Override
+            public ProcessStateEntry[] getProcessStates(List<String> processIds) {
+                remoteReads.incrementAndGet();
+                ProcessStateEntry[] entries = new ProcessStateEntry[processIds.size()];
+                for (int i = 0; i < entries.length; i++) {
+                    entries[i] = super.getProcessState(processIds.get(i));
+                }
+                return entries;
+            }
+        };
+
+        NearCacheConfig config = new NearCacheConfig();
+        config.setMaxStalenessMillis(1000);
+        config.setNegativeTtlMillis(100);
+        manager = new NearCacheProcessStatusManager(remote, config);
+    }
+
+    @After
+    public void tearDown() {
+        manager.shutdown();
+        ProcessClocks.setClock(previous);
+    }
+
+    @Test
+    public void testRepeatedReadsAreServedFromCache() {
+        manager.startProcess("hot-1", 0);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(manager.isProcessRunning("hot-1"));
+        }
+        assertEquals(1, remoteReads.get());
+        assertEquals(99, manager.getHitCount());
+        assertEquals(1, manager.getMissCount());
+        assertEquals(0.99, manager.getHitRatio(), 0.0001);
+    }
+
+    @Test
+    public void testWritesThroughThisNodeInvalidate() {
+        manager.startProcess("inv-1", 0);
+        assertTrue(manager.isProcessRunning("inv-1"));
+        assertTrue(manager.stopProcess("inv-1"));
+        assertFalse(manager.isProcessRunning("inv-1"));
+
+        manager.startProcessIfAbsent("inv-1", 0, false, "owner-a");
+        ProcessStatusView view = new ProcessStatusView();
+        assertTrue(manager.queryProcess("inv-1", view));
+        assertEquals("owner-a", manager.getProcessState("inv-1").getOwnerToken());
+        assertEquals(3, remoteReads.get());
+    }
+
+    @Test
+    public void testStalenessBoundAndNegativeTtl() {
+        assertFalse(manager.isProcessRunning("stale-1"));
+
+        // Started by another node, hidden until the negative entry times out
+        remote.startProcess("stale-1", 0);
+        assertFalse(manager.isProcessRunning("stale-1"));
+        clock.advance(100, TimeUnit.MILLISECONDS);
+        assertTrue(manager.isProcessRunning("stale-1"));
+
+        // Stopped by another node, visible after at most the staleness bound
+        remote.stopProcess("stale-1");
+        clock.advance(999, TimeUnit.MILLISECONDS);
+        assertTrue(manager.isProcessRunning("stale-1"));
+        clock.advance(1, TimeUnit.MILLISECONDS);
+        assertFalse(manager.isProcessRunning("stale-1"));
+    }
+
+    @Test
+    public void testEntryIsNotCachedPastItsExpiry() {
+        manager.startProcess("expiring-1", 300);
+        assertTrue(manager.isProcessRunning("expiring-1"));
+        clock.advance(300, TimeUnit.MILLISECONDS);
+        assertTrue(manager.isProcessRunning("expiring-1"));
+        clock.advance(1, TimeUnit.MILLISECONDS);
+        assertFalse(manager.isProcessRunning("expiring-1"));
+    }
+
+    @Test
+    public void testBulkReadLoadsOnlyMisses() {
+        manager.startProcesses(Arrays.asList("bulk-1", "bulk-2"), 0, false, null);
+        assertTrue(manager.isProcessRunning("bulk-1"));
+
+        ProcessStateEntry[] entries = manager.getProcessStates(Arrays.asList("bulk-1", "bulk-2", "bulk-3"));
+        assertNotNull(entries[0]);
+        assertNotNull(entries[1]);
+        assertNull(entries[2]);
+        assertEquals(2, remoteReads.get());
+
+        manager.getProcessStates(Arrays.asList("bulk-1", "bulk-2", "bulk-3"));
+        assertEquals(2, remoteReads.get());
+    }
+}
@@ -0,0 +1,177 @@
+package com.ycr.wso2.mediator.statetracker;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Tests for the off-heap process table
+ */
+public class OffHeapProcessStatusManagerTest {
+
+    private Path directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("state-tracker-offheap");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    private static OffHeapStoreConfig smallConfig() {
+        OffHeapStoreConfig config = new OffHeapStoreConfig();
+        config.setInitialCapacity(16);
+        config.setPurgeIntervalMillis(0);
+        return config;
+    }
+
+    @Test
+    public void testStartQueryStop() {
+        OffHeapProcessStatusManager manager = new OffHeapProcessStatusManager(smallConfig());
+        manager.startProcess("order-12345", 60000, true, "owner-1");
+
+        ProcessStateEntry entry = manager.getProcessState("order-12345");
+        assertNotNull(entry);
+        assertEquals(60000, entry.getExpiryTimeMillis());
+        assertTrue(entry.isPinned());
+        assertEquals("owner-1", entry.getOwnerToken());
+
+        ProcessStatusView view = new ProcessStatusView();
+        assertTrue(manager.queryProcess("order-12345", view));
+        assertEquals(entry.getStartTimestamp(), view.getStartTimestamp());
+        assertEquals("owner-1", view.getOwnerToken());
+
+        assertFalse(manager.stopProcessIfOwner("order-12345", "owner-2").isApplied());
+        assertTrue(manager.stopProcessIfOwner("order-12345", "owner-1").isApplied());
+        assertFalse(manager.isProcessRunning("order-12345"));
+        assertEquals(0, manager.size());
+        manager.shutdown();
+    }
+
+    @Test
+    public void testExpiredProcessIsNotRunning() throws InterruptedException {
+        OffHeapProcessStatusManager manager = new OffHeapProcessStatusManager(smallConfig());
+        manager.startProcess("expiring", 50);
+        assertTrue(manager.isProcessRunning("expiring"));
+
+        Thread.sleep(100);
+        assertFalse(manager.isProcessRunning("expiring"));
+        assertTrue(manager.replaceProcessIfExpired("expiring", 60000, false, null).isApplied());
+        manager.startProcess("other", 50);
+        Thread.sleep(100);
+        assertEquals(1, manager.purgeExpired());
+        assertEquals(1, manager.size());
+        manager.shutdown();
+    }
+
+    @Test
+    public void testTableGrowsAndReusesDeletedSlots() {
+        OffHeapProcessStatusManager manager = new OffHeapProcessStatusManager(smallConfig());
+        for (int i = 0; i < 1000; i++) {
+            manager.startProcess("grow-" + i, 60000);
+        }
+        for (int i = 0; i < 1000; i++) {
+            assertTrue("Lost grow-" + i, manager.isProcessRunning("grow-" + i));
+        }
+        assertTrue(manager.getCapacity() >= 1024);
+
+        // Deleted slots are reclaimed by rebuilds, churn does not keep growing the table
+        churn(manager, "churn-a-");
+        long capacity = manager.getCapacity();
+        churn(manager, "churn-b-");
+        assertEquals(capacity, manager.getCapacity());
+        assertEquals(1000, manager.size());
+        manager.shutdown();
+    }
+
+    private static void churn(OffHeapProcessStatusManager manager, String prefix) {
+        for (int i = 0; i < 20000; i++) {
+            manager.startProcess(prefix + i, 60000);
+            manager.stopProcess(prefix + i);
+        }
+    }
+
+    @Test
+    public void testIdTooLongForSlot() {
+        OffHeapProcessStatusManager manager = new OffHeapProcessStatusManager(smallConfig());
+        try {
+            manager.startProcess("an-identifier-that-does-not-fit-in-64-bytes", 60000);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            assertFalse(manager.isProcessRunning("an-identifier-that-does-not-fit-in-64-bytes"));
+        }
+        manager.shutdown();
+    }
+
+    @Test
+    public void testMappedTableSurvivesRestart() {
+        OffHeapStoreConfig config = smallConfig();
+        config.setFile(directory.resolve("state-tracker.table").toString());
+
+        OffHeapProcessStatusManager manager = new OffHeapProcessStatusManager(config);
+        for (int i = 0; i < 100; i++) {
+            manager.startProcess("mapped-" + i, 60000, false, "node-" + i);
+        }
+        manager.stopProcess("mapped-7");
+        manager.shutdown();
+
+        OffHeapProcessStatusManager reopened = new OffHeapProcessStatusManager(config);
+        assertEquals(99, reopened.size());
+        assertTrue(reopened.isProcessRunning("mapped-42"));
+        assertFalse(reopened.isProcessRunning("mapped-7"));
+        assertEquals("node-42", reopened.getProcessState("mapped-42").getOwnerToken());
+        reopened.shutdown();
+    }
+
+    @Test
+    public void testReadersDuringResize() throws InterruptedException {
+        OffHeapProcessStatusManager manager = new OffHeapProcessStatusManager(smallConfig());
+        for (int i = 0; i < 8; i++) {
+            manager.startProcess("stable-" + i, 0);
+        }
+
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicInteger misses = new AtomicInteger();
+        Thread[] readers = new Thread[4];
+        for (int r = 0; r < readers.length; r++) {
+            readers[r] = new Thread(() -> {
+                while (!done.get()) {
+                    for (int i = 0; i < 8; i++) {
+                        if (!manager.isProcessRunning("stable-" + i)) {
+                            misses.incrementAndGet();
+                        }
+                    }
+                }
+            });
+            readers[r].start();
+        }
+
+        for (int i = 0; i < 50000; i++) {
+            manager.startProcess("writer-" + i, 60000);
+            if (i % 3 == 0) {
+                manager.stopProcess("writer-" + i);
+            }
+        }
+        done.set(true);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+
+        assertEquals(0, misses.get());
+        assertTrue(manager.getResizeCount() > 0);
+        manager.shutdown();
+    }
+}
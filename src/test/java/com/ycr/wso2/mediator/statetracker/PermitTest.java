@@ -0,0 +1,126 @@
+package com.ycr.wso2.mediator.statetracker;
+
+import org.apache.synapse.MessageContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests for ACQUIRE_PERMIT and RELEASE_PERMIT
+ */
+public class PermitTest {
+
+    private ManualClock clock;
+    private ProcessClock previous;
+
+    @Before
+    public void setUp() {
+        clock = new ManualClock(1000000);
+        previous = ProcessClocks.setClock(clock);
+    }
+
+    @After
+    public void tearDown() {
+        ProcessClocks.setClock(previous);
+    }
+
+    private static InMemoryProcessStatusManager newManager() {
+        InMemoryStoreConfig config = new InMemoryStoreConfig();
+        config.setActiveExpiryEnabled(false);
+        return new InMemoryProcessStatusManager(config);
+    }
+
+    @Test
+    public void testLimitHoldsUnderContention() throws InterruptedException {
+        InMemoryProcessStatusManager manager = newManager();
+        int limit = 3;
+        int threadCount = 8;
+        AtomicInteger holding = new AtomicInteger();
+        AtomicInteger maxHolding = new AtomicInteger();
+        AtomicInteger acquired = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(threadCount);
+        for (int t = 0; t < threadCount; t++) {
+            new Thread(() -> {
+                for (int i = 0; i < 20000; i++) {
+                    PermitResult result = manager.acquirePermit("tenant-a", limit, 0);
+                    if (!result.isAcquired()) {
+                        continue;
+                    }
+                    acquired.incrementAndGet();
+                    maxHolding.accumulateAndGet(holding.incrementAndGet(), Math::max);
+                    holding.decrementAndGet();
+                    assertTrue(manager.releasePermit("tenant-a", result.getPermitId()));
+                }
+                done.countDown();
+            }).start();
+        }
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+
+        assertTrue(acquired.get() > 0);
+        assertTrue("Held " + maxHolding.get(), maxHolding.get() <= limit);
+        assertEquals(0, manager.getPermitCount("tenant-a"));
+        manager.shutdown();
+    }
+
+    @Test
+    public void testExpiredPermitsAreReclaimed() {
+        InMemoryProcessStatusManager manager = newManager();
+        PermitResult first = manager.acquirePermit("job", 2, 10000);
+        PermitResult second = manager.acquirePermit("job", 2, 0);
+        assertTrue(first.isAcquired());
+        assertTrue(second.isAcquired());
+        assertEquals(2, second.getPermits());
+        assertFalse(manager.acquirePermit("job", 2, 10000).isAcquired());
+
+        // The first permit was never released, it frees its slot once it expires
+        clock.advance(11, TimeUnit.SECONDS);
+        assertEquals(1, manager.getPermitCount("job"));
+        PermitResult third = manager.acquirePermit("job", 2, 10000);
+        assertTrue(third.isAcquired());
+        assertFalse(manager.releasePermit("job", first.getPermitId()));
+
+        assertTrue(manager.releasePermit("job", second.getPermitId()));
+        assertTrue(manager.releasePermit("job", third.getPermitId()));
+        assertFalse(manager.releasePermit("job", third.getPermitId()));
+        assertEquals(0, manager.getPermitCount("job"));
+
+        // Permits do not touch the process of the same key
+        assertFalse(manager.isProcessRunning("job"));
+        manager.shutdown();
+    }
+
+    @Test
+    public void testPermitsThroughMediator() {
+        InMemoryProcessStatusManager manager = newManager();
+        StateTrackerMediator mediator = new StateTrackerMediator(manager);
+
+        MessageContext acquire = MessageContextStub.create("ACQUIRE_PERMIT", "tenant-b");
+        acquire.setProperty(Contants.PROCESS_PERMIT_LIMIT_PROPERTY, "1");
+        assertTrue(mediator.mediate(acquire));
+        assertEquals("ACQUIRED", acquire.getProperty("STATE_TRACKER_RESULT"));
+        assertEquals(1, acquire.getProperty("PROCESS_PERMITS"));
+        Object permitId = acquire.getProperty(Contants.PROCESS_PERMIT_ID_PROPERTY);
+        assertNotNull(permitId);
+
+        MessageContext rejected = MessageContextStub.create("ACQUIRE", "tenant-b");
+        rejected.setProperty(Contants.PROCESS_PERMIT_LIMIT_PROPERTY, "1");
+        assertTrue(mediator.mediate(rejected));
+        assertEquals("REJECTED", rejected.getProperty("STATE_TRACKER_RESULT"));
+        assertNull(rejected.getProperty(Contants.PROCESS_PERMIT_ID_PROPERTY));
+
+        MessageContext release = MessageContextStub.create("RELEASE_PERMIT", "tenant-b");
+        release.setProperty(Contants.PROCESS_PERMIT_ID_PROPERTY, permitId);
+        assertTrue(mediator.mediate(release));
+        assertEquals("RELEASED", release.getProperty("STATE_TRACKER_RESULT"));
+        assertEquals(0, release.getProperty("PROCESS_PERMITS"));
+
+        MessageContext missingLimit = MessageContextStub.create("ACQUIRE_PERMIT", "tenant-b");
+        assertFalse(mediator.mediate(missingLimit));
+        assertEquals("ERROR", missingLimit.getProperty("STATE_TRACKER_RESULT"));
+        manager.shutdown();
+    }
+}
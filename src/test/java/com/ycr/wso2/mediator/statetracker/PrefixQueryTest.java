@@ -0,0 +1,134 @@
+package com.ycr.wso2.mediator.statetracker;
+
+import org.apache.synapse.MessageContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for IS_ANY_RUNNING, COUNT_RUNNING and LIST_RUNNING
+ */
+public class PrefixQueryTest {
+
+    private ManualClock clock;
+    private ProcessClock previous;
+
+    @Before
+    public void setUp() {
+        clock = new ManualClock(1000000);
+        previous = ProcessClocks.setClock(clock);
+    }
+
+    @After
+    public void tearDown() {
+        ProcessClocks.setClock(previous);
+    }
+
+    private static InMemoryProcessStatusManager newManager(boolean prefixIndex) {
+        InMemoryStoreConfig config = new InMemoryStoreConfig();
+        config.setActiveExpiryEnabled(false);
+        config.setPrefixIndexEnabled(prefixIndex);
+        return new InMemoryProcessStatusManager(config);
+    }
+
+    private static List<String> ids(List<ProcessStateEntry> entries) {
+        List<String> ids = new ArrayList<>();
+        for (ProcessStateEntry entry : entries) {
+            ids.add(entry.getProjectId());
+        }
+        return ids;
+    }
+
+    @Test
+    public void testQueriesWithAndWithoutIndex() {
+        for (boolean prefixIndex : new boolean[] { true, false }) {
+            InMemoryProcessStatusManager manager = newManager(prefixIndex);
+            manager.startProcess("tenant-a/batch-1/order-3", 0);
+            manager.startProcess("tenant-a/batch-1/order-1", 0);
+            manager.startProcess("tenant-a/batch-1/order-2", 1000);
+            manager.startProcess("tenant-a/batch-10/order-1", 0);
+            manager.startProcess("tenant-b/batch-1/order-1", 0);
+            manager.startProcess("tenant-a/batch-1/order-4", 0);
+            manager.stopProcess("tenant-a/batch-1/order-4");
+            clock.advance(2, TimeUnit.SECONDS);
+
+            assertTrue(manager.isAnyRunning("tenant-a/batch-1/"));
+            assertFalse(manager.isAnyRunning("tenant-c/"));
+            assertEquals(2, manager.countRunning("tenant-a/batch-1/"));
+            assertEquals(3, manager.countRunning("tenant-a/"));
+            assertEquals(4, manager.countRunning(""));
+
+            List<ProcessStateEntry> first = manager.listRunning("tenant-a/", null, 2);
+            assertEquals(List.of("tenant-a/batch-1/order-1", "tenant-a/batch-1/order-3"), ids(first));
+            List<ProcessStateEntry> second = manager.listRunning("tenant-a/", "tenant-a/batch-1/order-3", 2);
+            assertEquals(List.of("tenant-a/batch-10/order-1"), ids(second));
+            manager.shutdown();
+        }
+    }
+
+    @Test
+    public void testIndexFollowsConcurrentChanges() throws InterruptedException {
+        InMemoryProcessStatusManager manager = newManager(true);
+        int threadCount = 8;
+        CountDownLatch done = new CountDownLatch(threadCount);
+        for (int t = 0; t < threadCount; t++) {
+            new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < 20000; i++) {
+                    String processId = "churn/" + random.nextInt(64);
+                    if (random.nextBoolean()) {
+                        manager.startProcessIfAbsent(processId, 0, false, null);
+                    } else {
+                        manager.stopProcess(processId);
+                    }
+                }
+                done.countDown();
+            }).start();
+        }
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+
+        // Every tracked process must be reachable through the index
+        assertEquals(manager.size(), manager.countRunning("churn/"));
+        manager.shutdown();
+    }
+
+    @Test
+    public void testListRunningPages() {
+        InMemoryProcessStatusManager manager = newManager(true);
+        for (int i = 0; i < 5; i++) {
+            manager.startProcess("page/\"" + i, 0);
+        }
+        StateTrackerMediator mediator = new StateTrackerMediator(manager);
+
+        MessageContext first = MessageContextStub.create("LIST_RUNNING", null);
+        first.setProperty(Contants.PROCESS_IDENTIFIER_PREFIX_PROPERTY, "page/");
+        first.setProperty(Contants.PROCESS_LIST_LIMIT_PROPERTY, "3");
+        assertTrue(mediator.mediate(first));
+        assertEquals("COMPLETED", first.getProperty("STATE_TRACKER_RESULT"));
+        assertEquals(3, first.getProperty("PROCESS_RUNNING_COUNT"));
+        assertEquals("page/\"2", first.getProperty("PROCESS_LIST_NEXT"));
+        String json = (String) first.getProperty(Contants.STATE_TRACKER_LIST_RESULT_PROPERTY);
+        assertTrue(json, json.startsWith("[{\"id\":\"page/\\\"0\",\"startTimestamp\":1000000,\"expiryTimeMs\":0},"));
+
+        MessageContext second = MessageContextStub.create("LIST_RUNNING", null);
+        second.setProperty(Contants.PROCESS_IDENTIFIER_PREFIX_PROPERTY, "page/");
+        second.setProperty(Contants.PROCESS_LIST_LIMIT_PROPERTY, "3");
+        second.setProperty(Contants.PROCESS_LIST_AFTER_PROPERTY, first.getProperty("PROCESS_LIST_NEXT"));
+        assertTrue(mediator.mediate(second));
+        assertEquals(2, second.getProperty("PROCESS_RUNNING_COUNT"));
+        assertNull(second.getProperty("PROCESS_LIST_NEXT"));
+
+        MessageContext any = MessageContextStub.create("IS_ANY_RUNNING", null);
+        any.setProperty(Contants.PROCESS_IDENTIFIER_PREFIX_PROPERTY, "other/");
+        assertTrue(mediator.mediate(any));
+        assertEquals("NOT_RUNNING", any.getProperty("STATE_TRACKER_RESULT"));
+        assertEquals(false, any.getProperty("PROCESS_IS_RUNNING"));
+        manager.shutdown();
+    }
+}
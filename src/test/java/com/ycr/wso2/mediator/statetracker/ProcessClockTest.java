@@ -0,0 +1,93 @@
+package com.ycr.wso2.mediator.statetracker;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for the clock implementations and expiry driven by a manual clock
+ */
+public class ProcessClockTest {
+
+    private ManualClock clock;
+    private ProcessClock previous;
+
+    @Before
+    public void setUp() {
+        clock = new ManualClock(1000000);
+        previous = ProcessClocks.setClock(clock);
+    }
+
+    @After
+    public void tearDown() {
+        ProcessClocks.setClock(previous);
+    }
+
+    @Test
+    public void testExpiryFollowsManualClock() {
+        InMemoryStoreConfig config = new InMemoryStoreConfig();
+        config.setActiveExpiryEnabled(false);
+        InMemoryProcessStatusManager manager = new InMemoryProcessStatusManager(config);
+
+        manager.startProcess("manual-1", 500);
+        assertEquals(1000000, manager.getProcessState("manual-1").getStartTimestamp());
+
+        clock.advance(500, TimeUnit.MILLISECONDS);
+        assertTrue(manager.isProcessRunning("manual-1"));
+        clock.advance(1, TimeUnit.MILLISECONDS);
+        assertFalse(manager.isProcessRunning("manual-1"));
+        manager.shutdown();
+    }
+
+    @Test
+    public void testTimingWheelSweepsOnManualClock() {
+        InMemoryStoreConfig config = new InMemoryStoreConfig();
+        config.setExpiryTickMillis(10);
+        InMemoryProcessStatusManager manager = new InMemoryProcessStatusManager(config);
+        manager.startProcess("manual-2", 100);
+        manager.startProcess("manual-3", 0);
+        manager.getExpiryWheel().shutdown();
+        clock.advance(200, TimeUnit.MILLISECONDS);
+        manager.getExpiryWheel().sweep();
+
+        assertEquals(1, manager.size());
+        assertTrue(manager.isProcessRunning("manual-3"));
+        manager.shutdown();
+    }
+
+    @Test
+    public void testManualClockCannotGoBackwards() {
+        try {
+            clock.set(999999);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            assertEquals(1000000, clock.millis());
+        }
+    }
+
+    @Test
+    public void testMonotonicClockIsAnchoredToEpoch() {
+        MonotonicClock monotonic = new MonotonicClock();
+        long last = monotonic.millis();
+        assertTrue(Math.abs(last - System.currentTimeMillis()) < 1000);
+        for (int i = 0; i < 100000; i++) {
+            long now = monotonic.millis();
+            assertTrue(now >= last);
+            last = now;
+        }
+    }
+
+    @Test
+    public void testCoarseClockAdvances() throws InterruptedException {
+        CoarseClock coarse = new CoarseClock(1);
+        try {
+            long first = coarse.millis();
+            Thread.sleep(50);
+            assertTrue(coarse.millis() > first);
+        } finally {
+            coarse.shutdown();
+        }
+    }
+}
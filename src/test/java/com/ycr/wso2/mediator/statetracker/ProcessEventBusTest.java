@@ -0,0 +1,180 @@
+package com.ycr.wso2.mediator.statetracker;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for ProcessEventBus and the lifecycle events of InMemoryProcessStatusManager
+ */
+public class ProcessEventBusTest {
+
+    private ManualClock clock;
+    private ProcessClock previous;
+
+    @Before
+    public void setUp() {
+        clock = new ManualClock(1000000);
+        previous = ProcessClocks.setClock(clock);
+    }
+
+    @After
+    public void tearDown() {
+        ProcessClocks.setClock(previous);
+    }
+
+    /**
+     * Listener that copies every batch, the bus reuses the list
+     */
+    private static class Recorder implements ProcessEventListener {
+        private final List<ProcessEvent> events = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public void onEvents(List<ProcessEvent> batch) {
+            events.addAll(batch);
+        }
+
+        List<String> await(int count) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (events.size() < count && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            List<String> described = new ArrayList<>();
+            synchronized (events) {
+                for (ProcessEvent event : events) {
+                    described.add(event.getType() + " " + event.getProcessId());
+                }
+            }
+            return described;
+        }
+    }
+
+    @Test
+    public void testManagerPublishesEveryTransition() throws InterruptedException {
+        InMemoryStoreConfig config = new InMemoryStoreConfig();
+        config.setExpiryTickMillis(10);
+        InMemoryProcessStatusManager manager = new InMemoryProcessStatusManager(config);
+        Recorder recorder = new Recorder();
+        manager.addEventListener(recorder);
+
+        manager.startProcess("p-1", 1000);
+        manager.renewProcess("p-1", 0);
+        manager.stopProcess("p-1");
+
+        // Found expired on read
+        manager.startProcess("p-2", 1000);
+        clock.advance(2, TimeUnit.SECONDS);
+        assertFalse(manager.isProcessRunning("p-2"));
+
+        // Found by the expiry sweeper
+        manager.startProcess("p-3", 1000);
+        clock.advance(2, TimeUnit.SECONDS);
+        manager.getExpiryWheel().sweep(clock.millis());
+
+        assertEquals(List.of("START p-1", "RENEW p-1", "STOP p-1", "START p-2", "EXPIRE p-2",
+                "START p-3", "EXPIRE p-3"), recorder.await(7));
+        assertEquals(7, manager.getEventBus().getPublishedCount());
+        manager.shutdown();
+    }
+
+    @Test
+    public void testExpiredVictimIsPublishedAsExpired() throws InterruptedException {
+        InMemoryStoreConfig config = new InMemoryStoreConfig();
+        config.setActiveExpiryEnabled(false);
+        config.setMaxEntries(2);
+        config.setCapacityPolicy(CapacityPolicy.EVICT_LRU);
+        InMemoryProcessStatusManager manager = new InMemoryProcessStatusManager(config);
+        Recorder recorder = new Recorder();
+        manager.addEventListener(recorder);
+
+        manager.startProcess("old-1", 1000);
+        manager.startProcess("live-1", 0);
+        clock.advance(2, TimeUnit.SECONDS);
+        // Makes room by removing the expired process rather than evicting a live one
+        manager.startProcess("new-1", 0);
+
+        assertEquals(List.of("START old-1", "START live-1", "EXPIRE old-1", "START new-1"), recorder.await(4));
+        assertEquals(0, manager.getCapacityManager().getEvictionCount());
+        assertEquals(1, manager.getExpiredCount());
+        assertTrue(manager.isProcessRunning("live-1"));
+        manager.shutdown();
+    }
+
+    @Test
+    public void testDropPolicyCountsOverflow() throws InterruptedException {
+        ProcessEventBus bus = new ProcessEventBus(16, 4, EventOverflowPolicy.DROP);
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        bus.addListener(events -> {
+            blocked.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        ProcessStateEntry entry = new ProcessStateEntry("overflow", clock.millis(), 0);
+        assertTrue(bus.publish(new ProcessEvent(ProcessEvent.Type.START, entry, clock.millis())));
+        assertTrue(blocked.await(10, TimeUnit.SECONDS));
+
+        // The dispatcher is stuck in the listener, only the buffer's slots are left
+        int accepted = 0;
+        for (int i = 0; i < 100; i++) {
+            if (bus.publish(new ProcessEvent(ProcessEvent.Type.START, entry, clock.millis()))) {
+                accepted++;
+            }
+        }
+        assertEquals(16, accepted);
+        assertEquals(84, bus.getDroppedCount());
+
+        release.countDown();
+        bus.shutdown();
+        assertEquals(17, bus.getDeliveredCount());
+    }
+
+    @Test
+    public void testBlockPolicyLosesNothingAndKeepsPublisherOrder() throws InterruptedException {
+        ProcessEventBus bus = new ProcessEventBus(64, 16, EventOverflowPolicy.BLOCK);
+        int publishers = 4;
+        int perPublisher = 20000;
+        int[] lastSeen = new int[publishers];
+        int[] outOfOrder = new int[1];
+        Arrays.fill(lastSeen, -1);
+        bus.addListener(events -> {
+            for (ProcessEvent event : events) {
+                int publisher = (int) event.getStartTimestamp();
+                int sequence = (int) event.getExpiryTimeMillis();
+                if (sequence != lastSeen[publisher] + 1) {
+                    outOfOrder[0]++;
+                }
+                lastSeen[publisher] = sequence;
+            }
+        });
+
+        CountDownLatch done = new CountDownLatch(publishers);
+        for (int p = 0; p < publishers; p++) {
+            final int publisher = p;
+            new Thread(() -> {
+                for (int i = 0; i < perPublisher; i++) {
+                    ProcessStateEntry entry = new ProcessStateEntry("order", publisher, i);
+                    bus.publish(new ProcessEvent(ProcessEvent.Type.START, entry, 0));
+                }
+                done.countDown();
+            }).start();
+        }
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        bus.shutdown();
+
+        assertEquals(0, bus.getDroppedCount());
+        assertEquals(publishers * perPublisher, bus.getDeliveredCount());
+        assertEquals(0, outOfOrder[0]);
+    }
+}
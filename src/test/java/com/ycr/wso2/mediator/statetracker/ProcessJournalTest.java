@@ -0,0 +1,178 @@
+package com.ycr.wso2.mediator.statetracker;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Tests for recovering in-memory state from the write-ahead journal
+ */
+public class ProcessJournalTest {
+
+    private Path directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("state-tracker-journal");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    private InMemoryProcessStatusManager newManager() {
+        InMemoryStoreConfig config = new InMemoryStoreConfig();
+        config.setActiveExpiryEnabled(false);
+        config.setJournalDirectory(directory.toString());
+        config.setJournalSyncIntervalMillis(1);
+        return new InMemoryProcessStatusManager(config);
+    }
+
+    @Test
+    public void testRunningProcessesSurviveRestart() {
+        InMemoryProcessStatusManager manager = newManager();
+        manager.startProcess("journal-1", 60000, false, "owner-1");
+        manager.startProcess("journal-2", 60000);
+        manager.startProcess("journal-3", 60000);
+        manager.stopProcess("journal-2");
+        manager.shutdown();
+
+        InMemoryProcessStatusManager recovered = newManager();
+        try {
+            assertTrue(recovered.isProcessRunning("journal-1"));
+            assertFalse(recovered.isProcessRunning("journal-2"));
+            assertTrue(recovered.isProcessRunning("journal-3"));
+            assertEquals("owner-1", recovered.getProcessState("journal-1").getOwnerToken());
+        } finally {
+            recovered.shutdown();
+        }
+    }
+
+    @Test
+    public void testExpiredEntriesAreSkippedOnReplay() throws InterruptedException {
+        InMemoryProcessStatusManager manager = newManager();
+        manager.startProcess("short-lived", 50);
+        manager.startProcess("long-lived", 60000);
+        manager.shutdown();
+
+        Thread.sleep(100);
+
+        InMemoryProcessStatusManager recovered = newManager();
+        try {
+            assertEquals(1, recovered.size());
+            assertTrue(recovered.isProcessRunning("long-lived"));
+        } finally {
+            recovered.shutdown();
+        }
+    }
+
+    @Test
+    public void testTornTailIsIgnored() throws IOException {
+        InMemoryProcessStatusManager manager = newManager();
+        manager.startProcess("before-crash", 60000);
+        manager.shutdown();
+
+        // Simulate a crash in the middle of writing a record
+        Path segment = listFiles("journal-").get(0);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(new byte[] {0, 0, 0, 40, 1, 2, 3}));
+        }
+
+        InMemoryProcessStatusManager recovered = newManager();
+        try {
+            assertTrue(recovered.isProcessRunning("before-crash"));
+            recovered.startProcess("after-crash", 60000);
+        } finally {
+            recovered.shutdown();
+        }
+
+        InMemoryProcessStatusManager again = newManager();
+        try {
+            assertTrue(again.isProcessRunning("before-crash"));
+            assertTrue(again.isProcessRunning("after-crash"));
+        } finally {
+            again.shutdown();
+        }
+    }
+
+    @Test
+    public void testCompactionReplacesOldSegments() throws IOException {
+        InMemoryProcessStatusManager manager = newManager();
+        for (int i = 0; i < 100; i++) {
+            manager.startProcess("compact-" + i, 60000);
+        }
+        for (int i = 0; i < 90; i++) {
+            manager.stopProcess("compact-" + i);
+        }
+        manager.getJournal().compact();
+        manager.startProcess("after-compaction", 60000);
+        manager.shutdown();
+
+        assertEquals(1, listFiles("snapshot-").size());
+        assertEquals(1, listFiles("journal-").size());
+        assertEquals(1, manager.getJournal().getCompactionCount());
+
+        InMemoryProcessStatusManager recovered = newManager();
+        try {
+            assertEquals(11, recovered.size());
+            assertTrue(recovered.isProcessRunning("compact-95"));
+            assertFalse(recovered.isProcessRunning("compact-5"));
+            assertTrue(recovered.isProcessRunning("after-compaction"));
+        } finally {
+            recovered.shutdown();
+        }
+    }
+
+    @Test
+    public void testCompactionRunsOnceWithoutNewWrites() throws InterruptedException {
+        InMemoryStoreConfig config = new InMemoryStoreConfig();
+        config.setActiveExpiryEnabled(false);
+        config.setJournalDirectory(directory.toString());
+        config.setJournalSyncIntervalMillis(1);
+        config.setJournalCompactionThresholdBytes(1000);
+        InMemoryProcessStatusManager manager = new InMemoryProcessStatusManager(config);
+        try {
+            // Live set larger than the threshold, so the snapshot alone would exceed it
+            for (int i = 0; i < 100; i++) {
+                manager.startProcess("burst-" + i, 60000);
+            }
+            ProcessJournal journal = manager.getJournal();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (journal.getCompactionCount() == 0 && System.nanoTime() < deadline) {
+                Thread.sleep(20);
+            }
+            // Two more compaction checks, 1 s apart
+            Thread.sleep(2500);
+
+            assertEquals(1, journal.getCompactionCount());
+            assertEquals(0, journal.getBytesSinceSnapshot());
+        } finally {
+            manager.shutdown();
+        }
+    }
+
+    private List<Path> listFiles(String prefix) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, prefix + "*.log")) {
+            stream.forEach(files::add);
+        }
+        files.sort(null);
+        return files;
+    }
+}
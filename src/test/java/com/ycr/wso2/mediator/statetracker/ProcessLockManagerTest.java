@@ -0,0 +1,221 @@
+package com.ycr.wso2.mediator.statetracker;
+
+import org.apache.synapse.MessageContext;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Contention tests for the striped lock table used by the mediator
+ */
+public class ProcessLockManagerTest {
+
+    @Test
+    public void testStripeCountRoundedToPowerOfTwo() {
+        assertEquals(16, new ProcessLockManager(10, true).getStripeCount());
+        assertEquals(1, new ProcessLockManager(1, true).getStripeCount());
+        assertEquals(ProcessLockManager.MAX_STRIPES,
+                new ProcessLockManager(Integer.MAX_VALUE, true).getStripeCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidStripeCount() {
+        new ProcessLockManager(0, true);
+    }
+
+    @Test
+    public void testWritersAreMutuallyExclusive() throws InterruptedException {
+        // Few stripes so that distinct keys also collide
+        ProcessLockManager lockManager = new ProcessLockManager(4, true);
+        int threadCount = 16;
+        int iterations = 5000;
+        int[] counters = new int[8];
+
+        CountDownLatch startLatch = new CountDownLatch(1);
+        CountDownLatch completeLatch = new CountDownLatch(threadCount);
+
+        for (int t = 0; t < threadCount; t++) {
+            new Thread(() -> {
+                try {
+                    startLatch.await();
+                    for (int i = 0; i < iterations; i++) {
+                        int key = i % counters.length;
+                        Lock lock = lockManager.lock("key-" + key, false);
+                        try {
+                            // Non-atomic read-modify-write, only safe under the lock
+                            counters[key] = counters[key] + 1;
+                        } finally {
+                            lock.unlock();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    completeLatch.countDown();
+                }
+            }).start();
+        }
+
+        startLatch.countDown();
+        assertTrue("Writers did not finish", completeLatch.await(30, TimeUnit.SECONDS));
+
+        int total = 0;
+        for (int counter : counters) {
+            total += counter;
+        }
+        assertEquals(threadCount * iterations, total);
+        assertEquals(threadCount * iterations, lockManager.getAcquisitionCount());
+        assertTrue(lockManager.getContendedAcquisitionCount() <= lockManager.getAcquisitionCount());
+    }
+
+    @Test
+    public void testReadersDoNotSerialize() throws InterruptedException {
+        ProcessLockManager lockManager = new ProcessLockManager(1, true);
+        int readerCount = 4;
+
+        // Every reader holds its lock until all readers hold theirs
+        CountDownLatch allHolding = new CountDownLatch(readerCount);
+        CountDownLatch done = new CountDownLatch(readerCount);
+        AtomicInteger timedOut = new AtomicInteger();
+
+        for (int i = 0; i < readerCount; i++) {
+            new Thread(() -> {
+                Lock lock = lockManager.lock("hot-key", true);
+                try {
+                    allHolding.countDown();
+                    if (!allHolding.await(10, TimeUnit.SECONDS)) {
+                        timedOut.incrementAndGet();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    lock.unlock();
+                    done.countDown();
+                }
+            }).start();
+        }
+
+        assertTrue(done.await(20, TimeUnit.SECONDS));
+        assertEquals("Readers serialized on the same key", 0, timedOut.get());
+    }
+
+    @Test
+    public void testReaderWaitsForWriterAndWaitIsRecorded() throws InterruptedException {
+        ProcessLockManager lockManager = new ProcessLockManager(8, true);
+        Lock writeLock = lockManager.lock("order-1", false);
+
+        CountDownLatch readerDone = new CountDownLatch(1);
+        Thread reader = new Thread(() -> {
+            Lock lock = lockManager.lock("order-1", true);
+            lock.unlock();
+            readerDone.countDown();
+        });
+        reader.start();
+
+        // Start timing only once the reader is parked on the lock, it may start late under load
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (reader.getState() != Thread.State.WAITING && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertFalse("Reader got lock while writer held it", readerDone.await(100, TimeUnit.MILLISECONDS));
+        writeLock.unlock();
+        assertTrue(readerDone.await(10, TimeUnit.SECONDS));
+
+        assertEquals(1, lockManager.getContendedAcquisitionCount());
+        assertTrue(lockManager.getTotalWaitNanos() >= TimeUnit.MILLISECONDS.toNanos(100));
+        assertTrue(lockManager.getMaxWaitNanos() >= TimeUnit.MILLISECONDS.toNanos(100));
+    }
+
+    @Test
+    public void testNewReaderWaitsBehindQueuedWriter() throws InterruptedException {
+        ProcessLockManager lockManager = new ProcessLockManager(8, true);
+        Lock firstReader = lockManager.lock("order-9", true);
+
+        AtomicInteger writes = new AtomicInteger();
+        Thread writer = new Thread(() -> {
+            Lock lock = lockManager.lock("order-9", false);
+            writes.incrementAndGet();
+            lock.unlock();
+        });
+        writer.start();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (writer.getState() != Thread.State.WAITING && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+
+        AtomicInteger writesSeenByReader = new AtomicInteger(-1);
+        CountDownLatch readerDone = new CountDownLatch(1);
+        Thread reader = new Thread(() -> {
+            Lock lock = lockManager.lock("order-9", true);
+            writesSeenByReader.set(writes.get());
+            lock.unlock();
+            readerDone.countDown();
+        });
+        reader.start();
+        assertFalse("Reader barged past the queued writer", readerDone.await(100, TimeUnit.MILLISECONDS));
+
+        firstReader.unlock();
+        assertTrue(readerDone.await(10, TimeUnit.SECONDS));
+        writer.join();
+        assertEquals(1, writesSeenByReader.get());
+    }
+
+    @Test
+    public void testWithoutReadWriteSeparationReadersAreExclusive() throws InterruptedException {
+        ProcessLockManager lockManager = new ProcessLockManager(8, false);
+        Lock first = lockManager.lock("order-2", true);
+
+        CountDownLatch acquired = new CountDownLatch(1);
+        Thread reader = new Thread(() -> {
+            Lock lock = lockManager.lock("order-2", true);
+            acquired.countDown();
+            lock.unlock();
+        });
+        reader.start();
+
+        assertFalse(acquired.await(100, TimeUnit.MILLISECONDS));
+        first.unlock();
+        assertTrue(acquired.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testMediatorUnderContention() throws InterruptedException {
+        StateTrackerMediator mediator = new StateTrackerMediator();
+        int threadCount = 12;
+        int iterations = 500;
+        String[] operations = { "START_PROCESS", "IS_PROCESS_RUNNING", "STOP_PROCESS" };
+
+        CountDownLatch startLatch = new CountDownLatch(1);
+        CountDownLatch completeLatch = new CountDownLatch(threadCount);
+        AtomicInteger errors = new AtomicInteger();
+
+        for (int t = 0; t < threadCount; t++) {
+            final int threadNum = t;
+            new Thread(() -> {
+                try {
+                    startLatch.await();
+                    for (int i = 0; i < iterations; i++) {
+                        MessageContext messageContext = MessageContextStub.create(
+                                operations[(threadNum + i) % operations.length], "lock-contention-" + (i % 4));
+                        if (!mediator.mediate(messageContext)
+                                || "ERROR".equals(messageContext.getProperty("STATE_TRACKER_RESULT"))) {
+                            errors.incrementAndGet();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    completeLatch.countDown();
+                }
+            }).start();
+        }
+
+        startLatch.countDown();
+        assertTrue(completeLatch.await(60, TimeUnit.SECONDS));
+        assertEquals(0, errors.get());
+        assertTrue(StateTrackerMediator.getLockManager().getAcquisitionCount() >= threadCount * iterations);
+    }
+}
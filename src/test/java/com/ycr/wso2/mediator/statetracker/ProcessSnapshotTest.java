@@ -0,0 +1,124 @@
+package com.ycr.wso2.mediator.statetracker;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Tests for ProcessSnapshot and the warm start of InMemoryProcessStatusManager
+ */
+public class ProcessSnapshotTest {
+
+    private ManualClock clock;
+    private ProcessClock previous;
+    private Path directory;
+
+    @Before
+    public void setUp() throws IOException {
+        clock = new ManualClock(1000000);
+        previous = ProcessClocks.setClock(clock);
+        directory = Files.createTempDirectory("state-tracker-snapshot");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        ProcessClocks.setClock(previous);
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    private InMemoryProcessStatusManager newManager(Path file) {
+        InMemoryStoreConfig config = new InMemoryStoreConfig();
+        config.setActiveExpiryEnabled(false);
+        config.setSnapshotFile(file.toString());
+        config.setSnapshotIntervalMillis(0);
+        return new InMemoryProcessStatusManager(config);
+    }
+
+    @Test
+    public void testStateSurvivesRestart() {
+        Path file = directory.resolve("state.bin");
+        InMemoryProcessStatusManager manager = newManager(file);
+        manager.startProcess("plain", 0);
+        manager.startProcess("owned", 60000, true, "token-\u00e9");
+        manager.startProcess("short", 1000);
+        manager.startProcess("stopped", 0);
+        manager.stopProcess("stopped");
+        manager.shutdown();
+        assertEquals(3, manager.getSnapshot().getLastWrittenEntryCount());
+
+        clock.advance(2, TimeUnit.SECONDS);
+        InMemoryProcessStatusManager restarted = newManager(file);
+        assertEquals(2, restarted.size());
+        assertEquals(1, restarted.getSnapshot().getExpiredOnLoadCount());
+        assertTrue(restarted.isProcessRunning("plain"));
+        assertFalse(restarted.isProcessRunning("short"));
+        assertFalse(restarted.isProcessRunning("stopped"));
+
+        ProcessStateEntry owned = restarted.getProcessState("owned");
+        assertEquals(1000000, owned.getStartTimestamp());
+        assertEquals(60000, owned.getExpiryTimeMillis());
+        assertTrue(owned.isPinned());
+        assertTrue(restarted.stopProcessIfOwner("owned", "token-\u00e9").isApplied());
+        restarted.shutdown();
+    }
+
+    @Test
+    public void testCorruptSnapshotIsIgnored() throws IOException {
+        Path file = directory.resolve("corrupt.bin");
+        InMemoryProcessStatusManager manager = newManager(file);
+        for (int i = 0; i < 100; i++) {
+            manager.startProcess("order-" + i, 0);
+        }
+        manager.shutdown();
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] { 'X' }), channel.size() - 20);
+        }
+        InMemoryProcessStatusManager restarted = newManager(file);
+        assertEquals(0, restarted.size());
+        restarted.shutdown();
+    }
+
+    @Test
+    public void testWriteDoesNotBlockWriters() throws Exception {
+        Path file = directory.resolve("concurrent.bin");
+        InMemoryProcessStatusManager manager = newManager(file);
+        for (int i = 0; i < 50000; i++) {
+            manager.startProcess("base-" + i, 0);
+        }
+
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < 50000; i++) {
+                manager.startProcess("late-" + i, 0);
+                manager.stopProcess("base-" + i);
+            }
+        });
+        writer.start();
+        long written = manager.getSnapshot().write();
+        writer.join();
+
+        // Processes changed during the write may be captured in either state
+        ProcessSnapshot snapshot = new ProcessSnapshot(file, 0);
+        Map<String, ProcessStateEntry> loaded = snapshot.load(clock.millis());
+        assertEquals(written, loaded.size());
+        assertTrue(written >= 0 && written <= 100000);
+        for (String processId : loaded.keySet()) {
+            assertTrue(processId, processId.startsWith("base-") || processId.startsWith("late-"));
+        }
+        assertFalse(Arrays.asList(directory.toFile().list()).contains("concurrent.bin.tmp"));
+        manager.shutdown();
+    }
+}
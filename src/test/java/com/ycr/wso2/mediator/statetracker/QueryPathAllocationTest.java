@@ -0,0 +1,200 @@
+package com.ycr.wso2.mediator.statetracker;
+
+import org.apache.synapse.MessageContext;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Verifies that IS_PROCESS_RUNNING does a single store lookup without allocating
+ * beyond the properties it writes
+ */
+public class QueryPathAllocationTest {
+
+    private static final int ITERATIONS = 200_000;
+
+    @Test
+    public void testQueryProcessDoesNotAllocate() {
+        com.sun.management.ThreadMXBean threadBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!threadBean.isThreadAllocatedMemorySupported()) {
+            return;
+        }
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+
+        InMemoryStoreConfig config = new InMemoryStoreConfig();
+        config.setActiveExpiryEnabled(false);
+        InMemoryProcessStatusManager manager = new InMemoryProcessStatusManager(config);
+        manager.startProcess("alloc-running", 60000);
+        ProcessStatusView view = new ProcessStatusView();
+
+        // Warm up so that the measured loop runs compiled code
+        long running = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            running += manager.queryProcess((i & 1) == 0 ? "alloc-running" : "alloc-missing", view) ? 1 : 0;
+        }
+
+        long threadId = Thread.currentThread().getId();
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < ITERATIONS; i++) {
+            running += manager.queryProcess((i & 1) == 0 ? "alloc-running" : "alloc-missing", view) ? 1 : 0;
+        }
+        long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+
+        assertEquals(ITERATIONS, running);
+        // Allow for a few incidental allocations by the measuring code itself
+        assertTrue("queryProcess allocated " + allocated + " bytes", allocated < 1024);
+    }
+
+    @Test
+    public void testMediatorUsesSingleLookup() {
+        AtomicInteger queries = new AtomicInteger();
+        AtomicInteger legacyLookups = new AtomicInteger();
+        InMemoryProcessStatusManager manager = new InMemoryProcessStatusManager() {
+            @Override
+            public boolean queryProcess(String processId, ProcessStatusView view) {
+                queries.incrementAndGet();
+                return super.queryProcess(processId, view);
+            }
+
+            @Override
+            public boolean isProcessRunning(String processId) {
+                legacyLookups.incrementAndGet();
+                return super.isProcessRunning(processId);
+            }
+
+            @Override
+            public ProcessStateEntry getProcessState(String processId) {
+                legacyLookups.incrementAndGet();
+                return super.getProcessState(processId);
+            }
+        };
+        manager.startProcess("single-lookup", 60000);
+        StateTrackerMediator mediator = new StateTrackerMediator(manager);
+
+        MessageContext messageContext = MessageContextStub.create("IS_PROCESS_RUNNING", "single-lookup");
+        assertTrue(mediator.mediate(messageContext));
+
+        assertEquals(1, queries.get());
+        assertEquals(0, legacyLookups.get());
+        assertEquals("RUNNING", messageContext.getProperty("STATE_TRACKER_RESULT"));
+        assertEquals(Boolean.TRUE, messageContext.getProperty("PROCESS_IS_RUNNING"));
+        assertEquals(60000L, messageContext.getProperty("PROCESS_EXPIRY_TIME_MS"));
+        assertTrue((Long) messageContext.getProperty("PROCESS_ELAPSED_TIME_MS") >= 0);
+        manager.shutdown();
+    }
+
+    @Test
+    public void testProjectedMediatePathDoesNotAllocate() {
+        com.sun.management.ThreadMXBean threadBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!threadBean.isThreadAllocatedMemorySupported()) {
+            return;
+        }
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+
+        InMemoryStoreConfig config = new InMemoryStoreConfig();
+        config.setActiveExpiryEnabled(false);
+        InMemoryProcessStatusManager manager = new InMemoryProcessStatusManager(config);
+        manager.startProcess("alloc-running", 60000);
+        StateTrackerMediator mediator = new StateTrackerMediator(manager);
+        mediator.setOutputProperties("PROCESS_IS_RUNNING");
+        MessageContext[] messages = {
+                MessageContextStub.create("IS_PROCESS_RUNNING", "alloc-running"),
+                MessageContextStub.create("IS_PROCESS_RUNNING", "alloc-missing") };
+
+        // The stub is a dynamic proxy that allocates per call, so the property calls of
+        // one mediation are recorded and replayed on their own as the baseline
+        List<String> methods = new ArrayList<>();
+        List<Object[]> arguments = new ArrayList<>();
+        MessageContext recording = (MessageContext) Proxy.newProxyInstance(MessageContext.class.getClassLoader(),
+                new Class<?>[] { MessageContext.class }, (proxy, method, args) -> {
+                    methods.add(method.getName());
+                    arguments.add(args);
+                    return method.invoke(messages[0], args);
+                });
+        assertTrue(mediator.mediate(recording));
+        assertEquals(Boolean.TRUE, messages[0].getProperty("PROCESS_IS_RUNNING"));
+        assertNull(messages[0].getProperty("PROCESS_START_TIMESTAMP"));
+        String[] replayMethods = methods.toArray(new String[0]);
+        Object[][] replayArguments = arguments.toArray(new Object[0][]);
+
+        long running = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            running += mediator.mediate(messages[i & 1]) ? 1 : 0;
+            replay(messages[i & 1], replayMethods, replayArguments);
+        }
+
+        long threadId = Thread.currentThread().getId();
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < ITERATIONS; i++) {
+            running += mediator.mediate(messages[i & 1]) ? 1 : 0;
+        }
+        long mediated = threadBean.getThreadAllocatedBytes(threadId) - before;
+        assertEquals("NOT_RUNNING", messages[1].getProperty("STATE_TRACKER_RESULT"));
+
+        before = threadBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < ITERATIONS; i++) {
+            replay(messages[i & 1], replayMethods, replayArguments);
+        }
+        long baseline = threadBean.getThreadAllocatedBytes(threadId) - before;
+
+        assertEquals(2 * ITERATIONS, running);
+        // Allow for a few incidental allocations by the measuring code itself
+        assertTrue("mediate allocated " + (mediated - baseline) + " bytes besides the message context",
+                mediated - baseline < 1024 + ITERATIONS / 100);
+        manager.shutdown();
+    }
+
+    @Test
+    public void testResultPropertyReplacesOutputProperties() {
+        ProcessClock previous = ProcessClocks.setClock(new ManualClock(1000000));
+        try {
+            InMemoryProcessStatusManager manager = new InMemoryProcessStatusManager();
+            StateTrackerMediator mediator = new StateTrackerMediator(manager);
+            mediator.setResultProperty("STATE_TRACKER_STATUS");
+
+            MessageContext start = MessageContextStub.create("START_PROCESS", "typed-1");
+            start.setProperty(Contants.STATE_EXPIRY_TIME_PROPERTY, "60");
+            assertTrue(mediator.mediate(start));
+            ProcessStatusResult started = (ProcessStatusResult) start.getProperty("STATE_TRACKER_STATUS");
+            assertEquals("STARTED", started.getResult());
+            assertEquals(60000, started.getExpiryTimeMillis());
+            assertNull(start.getProperty("PROCESS_START_TIMESTAMP"));
+
+            MessageContext query = MessageContextStub.create("IS_PROCESS_RUNNING", "typed-1");
+            assertTrue(mediator.mediate(query));
+            ProcessStatusResult status = (ProcessStatusResult) query.getProperty("STATE_TRACKER_STATUS");
+            assertTrue(status.isRunning());
+            assertEquals("RUNNING", status.getResult());
+            assertEquals(started.getStartTimestamp(), status.getStartTimestamp());
+            assertEquals("RUNNING", query.getProperty("STATE_TRACKER_RESULT"));
+            assertNull(query.getProperty("PROCESS_IS_RUNNING"));
+            assertNull(query.getProperty("PROCESS_ELAPSED_TIME_MS"));
+
+            MessageContext stop = MessageContextStub.create("STOP_PROCESS", "typed-1");
+            assertTrue(mediator.mediate(stop));
+            assertEquals("STOPPED", ((ProcessStatusResult) stop.getProperty("STATE_TRACKER_STATUS")).getResult());
+            assertFalse(((ProcessStatusResult) stop.getProperty("STATE_TRACKER_STATUS")).isRunning());
+            manager.shutdown();
+        } finally {
+            ProcessClocks.setClock(previous);
+        }
+    }
+
+    private static void replay(MessageContext messageContext, String[] methods, Object[][] arguments) {
+        for (int i = 0; i < methods.length; i++) {
+            if ("getProperty".equals(methods[i])) {
+                messageContext.getProperty((String) arguments[i][0]);
+            } else if ("setProperty".equals(methods[i])) {
+                messageContext.setProperty((String) arguments[i][0], arguments[i][1]);
+            } else {
+                fail("Unexpected message context call " + methods[i]);
+            }
+        }
+    }
+}
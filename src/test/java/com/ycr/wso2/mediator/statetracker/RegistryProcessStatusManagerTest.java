@@ -0,0 +1,166 @@
+package com.ycr.wso2.mediator.statetracker;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for RegistryProcessStatusManager against an in-memory registry
+ */
+public class RegistryProcessStatusManagerTest {
+
+    private static final String ROOT = "conf:/statetracker/test";
+
+    private ManualClock clock;
+    private ProcessClock previous;
+    private RegistryStub registry;
+    private RegistryProcessStatusManager manager;
+
+    @Before
+    public void setUp() {
+        clock = new ManualClock(1000000);
+        previous = ProcessClocks.setClock(clock);
+        registry = new RegistryStub();
+    }
+
+    @After
+    public void tearDown() {
+        if (manager != null) {
+            manager.shutdown();
+        }
+        ProcessClocks.setClock(previous);
+    }
+
+    private RegistryStoreConfig newConfig(long flushIntervalMillis) {
+        RegistryStoreConfig config = new RegistryStoreConfig();
+        config.setRegistry(registry.registry);
+        config.setRootPath(ROOT);
+        config.setFlushIntervalMillis(flushIntervalMillis);
+        return config;
+    }
+
+    @Test
+    public void testChangesWithinWindowAreCoalesced() {
+        // Long window so that only the explicit flush writes
+        manager = new RegistryProcessStatusManager(newConfig(TimeUnit.HOURS.toMillis(1)));
+
+        for (int round = 0; round < 50; round++) {
+            for (int i = 0; i < 10; i++) {
+                manager.startProcess("coalesce-" + i, 0);
+                if (round < 49 || i % 2 == 0) {
+                    manager.stopProcess("coalesce-" + i);
+                }
+            }
+        }
+        assertEquals(0, registry.writeCount.get());
+        assertEquals(10, manager.getPendingWriteCount());
+
+        assertEquals(10, manager.flush());
+        assertEquals(1, manager.getFlushCount());
+        assertEquals(10, registry.writeCount.get());
+        assertEquals(995, manager.getChangeCount());
+        assertEquals(5, registry.resources.size());
+        assertNotNull(registry.resources.get(ROOT + "/coalesce-1"));
+        assertNull(registry.resources.get(ROOT + "/coalesce-0"));
+    }
+
+    @Test
+    public void testCallersDoNotWaitForRegistryWrites() {
+        registry.writeDelayMillis = 5;
+        manager = new RegistryProcessStatusManager(newConfig(50));
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 200; i++) {
+            manager.startProcess("latency-" + i, 60000);
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // 200 synchronous writes would take at least a second
+        assertTrue("Starts took " + elapsedMillis + " ms", elapsedMillis < 500);
+
+        manager.shutdown();
+        assertEquals(200, registry.resources.size());
+        assertEquals(200, manager.getWriteCount());
+        assertTrue("Too many flushes: " + manager.getFlushCount(), manager.getFlushCount() < 200);
+        assertTrue(manager.getMaxFlushNanos() >= TimeUnit.MILLISECONDS.toNanos(5));
+        manager = null;
+    }
+
+    @Test
+    public void testStateIsLoadedOnStartup() {
+        manager = new RegistryProcessStatusManager(newConfig(TimeUnit.HOURS.toMillis(1)));
+        manager.startProcess("load-1", 0, true, "owner,a");
+        manager.startProcess("load/2", 60000);
+        manager.startProcess("load-3", 1);
+        long started = manager.getProcessState("load-1").getStartTimestamp();
+        manager.shutdown();
+        assertEquals(3, registry.resources.size());
+        clock.advance(5, TimeUnit.MILLISECONDS);
+
+        manager = new RegistryProcessStatusManager(newConfig(TimeUnit.HOURS.toMillis(1)));
+        ProcessStateEntry entry = manager.getProcessState("load-1");
+        assertNotNull(entry);
+        assertEquals(started, entry.getStartTimestamp());
+        assertTrue(entry.isPinned());
+        assertEquals("owner,a", entry.getOwnerToken());
+        assertTrue(manager.isProcessRunning("load/2"));
+
+        // The expired process is not loaded and its resource is deleted
+        assertFalse(manager.isProcessRunning("load-3"));
+        assertEquals(2, registry.resources.size());
+    }
+
+    @Test
+    public void testExpiredProcessIsDeletedByNextFlush() {
+        manager = new RegistryProcessStatusManager(newConfig(TimeUnit.HOURS.toMillis(1)));
+        manager.startProcess("expire-1", 1000);
+        manager.startProcess("expire-2", 60000);
+        assertEquals(2, manager.flush());
+        assertEquals(2, registry.resources.size());
+
+        clock.advance(2, TimeUnit.SECONDS);
+        assertFalse(manager.isProcessRunning("expire-1"));
+        assertEquals(1, manager.getPendingWriteCount());
+        assertEquals(1, manager.flush());
+        assertNull(registry.resources.get(ROOT + "/expire-1"));
+        assertNotNull(registry.resources.get(ROOT + "/expire-2"));
+    }
+
+    @Test
+    public void testShutDownManagerRejectsChangesBeforeApplying() {
+        manager = new RegistryProcessStatusManager(newConfig(TimeUnit.HOURS.toMillis(1)));
+        manager.startProcess("closed-1", 0);
+        manager.shutdown();
+        try {
+            manager.startProcess("closed-2", 0);
+            fail("Start accepted after shutdown");
+        } catch (IllegalStateException expected) {
+            // Not applied locally either
+        }
+        try {
+            manager.stopProcess("closed-1");
+            fail("Stop accepted after shutdown");
+        } catch (IllegalStateException expected) {
+            // Not applied locally either
+        }
+        assertFalse(manager.isProcessRunning("closed-2"));
+        assertTrue(manager.isProcessRunning("closed-1"));
+        manager = null;
+    }
+
+    @Test
+    public void testFailedWriteIsRetried() {
+        manager = new RegistryProcessStatusManager(newConfig(TimeUnit.HOURS.toMillis(1)));
+        manager.startProcess("retry-1", 0);
+        registry.failuresToInject.set(1);
+
+        assertEquals(0, manager.flush());
+        assertEquals(1, manager.getFailedWriteCount());
+        assertEquals(1, manager.getPendingWriteCount());
+
+        assertEquals(1, manager.flush());
+        assertNotNull(registry.resources.get(ROOT + "/retry-1"));
+    }
+}
@@ -0,0 +1,86 @@
+package com.ycr.wso2.mediator.statetracker;
+
+import org.apache.synapse.registry.Registry;
+import org.apache.synapse.registry.RegistryEntry;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-memory Registry for tests with a configurable delay per write
+ * Only the resource and property methods used by RegistryProcessStatusManager are supported
+ */
+final class RegistryStub {
+
+    // Resource key to its properties
+    final Map<String, Properties> resources = new ConcurrentHashMap<>();
+    final AtomicInteger writeCount = new AtomicInteger();
+    final AtomicInteger failuresToInject = new AtomicInteger();
+    volatile long writeDelayMillis;
+
+    final Registry registry = (Registry) Proxy.newProxyInstance(Registry.class.getClassLoader(),
+            new Class<?>[] { Registry.class }, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "newNonEmptyResource": {
+                        beforeWrite();
+                        Properties properties = new Properties();
+                        properties.setProperty((String) args[4], (String) args[3]);
+                        resources.put((String) args[0], properties);
+                        return null;
+                    }
+                    case "delete":
+                        beforeWrite();
+                        resources.remove((String) args[0]);
+                        return null;
+                    case "getResourceProperties":
+                        return resources.get((String) args[0]);
+                    case "isResourceExists":
+                        return resources.containsKey((String) args[0]);
+                    case "getRegistryEntry":
+                        return entry((String) args[0]);
+                    case "getChildren": {
+                        String prefix = ((RegistryEntry) args[0]).getKey() + "/";
+                        List<RegistryEntry> children = new ArrayList<>();
+                        for (String key : resources.keySet()) {
+                            if (key.startsWith(prefix)) {
+                                children.add(entry(key));
+                            }
+                        }
+                        return children.toArray(new RegistryEntry[0]);
+                    }
+                    case "toString":
+                        return "RegistryStub" + resources.keySet();
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "equals":
+                        return proxy == args[0];
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                }
+            });
+
+    private void beforeWrite() throws InterruptedException {
+        if (failuresToInject.getAndUpdate(n -> n > 0 ? n - 1 : 0) > 0) {
+            throw new IllegalStateException("Injected registry failure");
+        }
+        writeCount.incrementAndGet();
+        if (writeDelayMillis > 0) {
+            Thread.sleep(writeDelayMillis);
+        }
+    }
+
+    private static RegistryEntry entry(String key) {
+        return (RegistryEntry) Proxy.newProxyInstance(RegistryEntry.class.getClassLoader(),
+                new Class<?>[] { RegistryEntry.class }, (proxy, method, args) -> {
+                    if ("getKey".equals(method.getName())) {
+                        return key;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
@@ -0,0 +1,109 @@
+package com.ycr.wso2.mediator.statetracker;
+
+import org.apache.synapse.MessageContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for RENEW_PROCESS lease extension
+ */
+public class RenewProcessTest {
+
+    private ManualClock clock;
+    private ProcessClock previous;
+
+    @Before
+    public void setUp() {
+        clock = new ManualClock(1000000);
+        previous = ProcessClocks.setClock(clock);
+    }
+
+    @After
+    public void tearDown() {
+        ProcessClocks.setClock(previous);
+    }
+
+    private static InMemoryProcessStatusManager newManager() {
+        InMemoryStoreConfig config = new InMemoryStoreConfig();
+        config.setActiveExpiryEnabled(false);
+        return new InMemoryProcessStatusManager(config);
+    }
+
+    @Test
+    public void testRenewKeepsStartTimeAndLease() {
+        InMemoryProcessStatusManager manager = newManager();
+        manager.startProcess("lease-1", 10000);
+        ProcessStateEntry started = manager.getProcessState("lease-1");
+
+        clock.advance(8, TimeUnit.SECONDS);
+        ProcessStateEntry renewed = manager.renewProcess("lease-1", 0);
+        assertSame(started, renewed);
+        assertEquals(1000000, renewed.getStartTimestamp());
+        assertEquals(1008000, renewed.getLastRenewTimestamp());
+        assertEquals(1, renewed.getRenewCount());
+        assertEquals(10000, renewed.getLeaseMillis());
+        assertEquals(1018000, renewed.getExpiryDeadline());
+
+        clock.advance(9, TimeUnit.SECONDS);
+        assertTrue(manager.isProcessRunning("lease-1"));
+        clock.advance(2, TimeUnit.SECONDS);
+        assertFalse(manager.isProcessRunning("lease-1"));
+
+        // An expired process cannot be renewed
+        assertNull(manager.renewProcess("lease-1", 10000));
+        assertNull(manager.renewProcess("lease-unknown", 10000));
+        manager.shutdown();
+    }
+
+    @Test
+    public void testRenewedEntryIsRescheduledByTheWheel() {
+        List<ProcessStateEntry> expired = new ArrayList<>();
+        ExpiryTimingWheel wheel = new ExpiryTimingWheel(10, 16, 1000, expired::add);
+        long now = clock.millis();
+        ProcessStateEntry entry = new ProcessStateEntry("wheel-renew", now, 500);
+        wheel.schedule(entry);
+        wheel.shutdown();
+
+        entry.renew(now + 400, 500);
+        assertEquals(0, wheel.sweep(now + 600));
+        assertTrue(expired.isEmpty());
+        assertEquals(1, wheel.sweep(now + 1000));
+        assertSame(entry, expired.get(0));
+    }
+
+    @Test
+    public void testRenewThroughMediator() {
+        InMemoryProcessStatusManager manager = newManager();
+        StateTrackerMediator mediator = new StateTrackerMediator(manager);
+
+        MessageContext start = MessageContextStub.create("START_PROCESS", "job-1");
+        start.setProperty(Contants.STATE_EXPIRY_TIME_PROPERTY, "30");
+        assertTrue(mediator.mediate(start));
+
+        for (int i = 1; i <= 3; i++) {
+            clock.advance(20, TimeUnit.SECONDS);
+            MessageContext heartbeat = MessageContextStub.create("HEARTBEAT", "job-1");
+            assertTrue(mediator.mediate(heartbeat));
+            assertEquals("RENEWED", heartbeat.getProperty("STATE_TRACKER_RESULT"));
+            assertEquals(i, heartbeat.getProperty("PROCESS_RENEW_COUNT"));
+            assertEquals(clock.millis(), heartbeat.getProperty("PROCESS_LAST_RENEW_TIMESTAMP"));
+            assertEquals(1000000L, heartbeat.getProperty("PROCESS_START_TIMESTAMP"));
+        }
+
+        MessageContext renew = MessageContextStub.create("RENEW_PROCESS", "job-1");
+        renew.setProperty(Contants.STATE_EXPIRY_TIME_PROPERTY, "5");
+        assertTrue(mediator.mediate(renew));
+        assertEquals(65000L, renew.getProperty("PROCESS_EXPIRY_TIME_MS"));
+
+        MessageContext missing = MessageContextStub.create("RENEW", "job-2");
+        assertTrue(mediator.mediate(missing));
+        assertEquals("NOT_FOUND", missing.getProperty("STATE_TRACKER_RESULT"));
+        assertEquals(false, missing.getProperty("PROCESS_RENEWED"));
+        manager.shutdown();
+    }
+}
@@ -0,0 +1,81 @@
+package com.ycr.wso2.mediator.statetracker;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for the operation metrics and their JMX registration
+ */
+public class StateTrackerMetricsTest {
+
+    @Test
+    public void testMediatorRecordsOperationsAndResults() {
+        StateTrackerMetrics metrics = StateTrackerMetrics.getInstance();
+        OperationMetrics stops = metrics.operationMetrics(TrackerOperation.STOP_PROCESS);
+        OperationMetrics renewals = metrics.operationMetrics(TrackerOperation.RENEW_PROCESS);
+        long renewCount = renewals.getCount();
+        long unknownCount = metrics.operationMetrics(null).getCount();
+        long count = stops.getCount();
+        long notFound = stops.getResultCounts().getOrDefault("NOT_FOUND", 0L);
+        long errors = metrics.getErrorCount();
+
+        InMemoryProcessStatusManager manager = new InMemoryProcessStatusManager();
+        StateTrackerMediator mediator = new StateTrackerMediator(manager);
+        mediator.mediate(MessageContextStub.create("START_PROCESS", "metrics-1"));
+        mediator.mediate(MessageContextStub.create("stop_process", "metrics-1"));
+        mediator.mediate(MessageContextStub.create("STOP_PROCESS", "metrics-1"));
+        mediator.mediate(MessageContextStub.create("STOP_PROCESS", null));
+        mediator.mediate(MessageContextStub.create("HEARTBEAT", "metrics-1"));
+        mediator.mediate(MessageContextStub.create("renew", "metrics-1"));
+        mediator.mediate(MessageContextStub.create("NO_SUCH_OPERATION", "metrics-1"));
+        manager.shutdown();
+
+        assertEquals(count + 3, stops.getCount());
+        assertEquals(notFound + 1, (long) stops.getResultCounts().get("NOT_FOUND"));
+        assertEquals(errors + 2, metrics.getErrorCount());
+
+        // Aliases count towards their operation, unknown names share one bucket
+        assertEquals(renewCount + 2, renewals.getCount());
+        assertEquals(unknownCount + 1, metrics.operationMetrics(null).getCount());
+        assertEquals("UNKNOWN", metrics.operationMetrics(null).getOperation());
+    }
+
+    @Test
+    public void testMBeansAreRegistered() throws Exception {
+        assertTrue(StateTrackerMetrics.ENABLED);
+        StateTrackerMetrics.getInstance().operationMetrics(TrackerOperation.IS_PROCESS_RUNNING).record("RUNNING", 1000);
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName totals = new ObjectName(StateTrackerMetrics.DOMAIN + ":type=StateTracker,name=Metrics");
+        assertTrue((Long) server.getAttribute(totals, "OperationCount") > 0);
+        assertNotNull(server.getAttribute(totals, "TotalLockWaitMicros"));
+
+        ObjectName operation = new ObjectName(StateTrackerMetrics.DOMAIN
+                + ":type=StateTracker,name=Operation,operation=" + ObjectName.quote("IS_PROCESS_RUNNING"));
+        assertTrue((Long) server.getAttribute(operation, "Count") > 0);
+        assertNotNull(server.getAttribute(operation, "ResultCounts"));
+    }
+
+    @Test
+    public void testLatencyPercentiles() {
+        OperationMetrics metrics = new OperationMetrics("TEST");
+        for (int i = 0; i < 990; i++) {
+            metrics.record("OK", TimeUnit.MICROSECONDS.toNanos(10));
+        }
+        for (int i = 0; i < 10; i++) {
+            metrics.record("OK", TimeUnit.MILLISECONDS.toNanos(5));
+        }
+
+        // Bucket upper bounds: 10 us falls below 2^14 ns, 5 ms below 2^23 ns
+        assertEquals(16, metrics.getP50LatencyMicros());
+        assertEquals(16, metrics.getP99LatencyMicros());
+        assertEquals(8388, metrics.getP999LatencyMicros());
+        assertEquals(5000, metrics.getMaxLatencyMicros());
+        assertEquals(59.9, metrics.getMeanLatencyMicros(), 0.01);
+        assertEquals(1000, (long) metrics.getResultCounts().get("OK"));
+    }
+}